@@ -0,0 +1,357 @@
+package davisDB;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+/*
+ *  Benchmarks of the storage and execution hot paths.
+ *  Every configured table size is run at every configured page size on synthetic tables
+ *  (id int primary key, name text(40), v int). For each operation the benchmark prints operations per second,
+ *  bytes allocated per operation by the running thread and the p50 and p99 latency of a single operation.
+ *  The operations are called on FileHandler, CommandTree and Utilities directly, so statement overhead such as
+ *  the write-ahead log is not measured; the log is off unless davisdb.wal is given.
+ *  A split is not called on its own, the inserts of the random-key run that grew the file are reported as splits.
+ *  Before the lookups are timed every key of both tables is looked up once and ranges up to a key are counted, so a
+ *  key equal to a separator of the B+-tree is checked to be found by a key range scan, a wrong count stops the run.
+ *
+ *  Compile and run from the DavisDB folder, the databases are created in the working directory, which must not
+ *  hold an earlier benchmark run:
+ *    mkdir -p bench/bin && javac -d bench/bin src/davisDB/*.java bench/davisDB/Benchmark.java
+ *    java -cp bench/bin davisDB.Benchmark
+ *
+ *  Options (pass with -D):
+ *    davisdb.bench.rows=<n>,<n>,...        table sizes (default 10000,100000)
+ *    davisdb.bench.pagesizes=<n>,<n>,...   page sizes (default 4096,16384)
+ *    davisdb.bench.ops=<n>                 operations of a lookup or update benchmark (default 10000)
+ *    davisdb.bench.warmup=<n>              rows of the unreported warm-up run, 0 to skip it (default 10000)
+ */
+public class Benchmark {
+
+	private static int[] rowCounts;
+	private static int[] pageSizes;
+	private static int ops;
+	private static int warmupRows;
+
+	// allocation counter of the running thread, null if the JVM does not provide one
+	private static com.sun.management.ThreadMXBean threads = null;
+
+	/*
+	 *  latencies and allocated bytes of the operations of one benchmark
+	 */
+	private static class Sample{
+		private String name;
+		private long[] nanos;
+		private int count = 0;
+		private long bytes = 0;
+		private long start;
+		private long startBytes;
+
+		// latency and allocated bytes of the last operation
+		private long lastNanos;
+		private long lastBytes;
+
+		public Sample(String name,int ops){
+			this.name = name;
+			this.nanos = new long[Math.max(ops, 16)];
+		}
+
+		public void begin(){
+			this.startBytes = allocated();
+			this.start = System.nanoTime();
+		}
+
+		public void end(){
+			long t = System.nanoTime();
+			add(t-this.start, allocated()-this.startBytes);
+		}
+
+		public void add(long nanos,long bytes){
+			if(this.count == this.nanos.length)
+				this.nanos = Arrays.copyOf(this.nanos, 2*this.count);
+			this.nanos[this.count++] = nanos;
+			this.bytes += bytes;
+			this.lastNanos = nanos;
+			this.lastBytes = bytes;
+		}
+
+		/*
+		 * @param rows rows of the table, 0 if the benchmark does not use a table
+		 * @param pageSize page size of the table
+		 */
+		public void print(int rows,int pageSize){
+			if(this.count == 0)
+				return;
+			long[] sorted = Arrays.copyOf(this.nanos, this.count);
+			Arrays.sort(sorted);
+			long total = 0;
+			for(int i=0;i<sorted.length;i++)
+				total += sorted[i];
+			double opsPerSec = total == 0 ? 0 : this.count*1e9/total;
+			String alloc = threads == null ? "-" : String.format("%.0f", (double) this.bytes/this.count);
+			System.out.println(String.format("%-22s %10s %9s %14.0f %12s %12.2f %12.2f",
+					this.name, rows == 0 ? "-" : String.valueOf(rows), rows == 0 ? "-" : String.valueOf(pageSize),
+					opsPerSec, alloc, percentile(sorted,0.50)/1e3, percentile(sorted,0.99)/1e3));
+		}
+	}
+
+	public static void main(String[] args) throws Exception{
+		// must be set before the log is first used
+		if(System.getProperty("davisdb.wal") == null)
+			System.setProperty("davisdb.wal", "off");
+		rowCounts = parseList(System.getProperty("davisdb.bench.rows", "10000,100000"));
+		pageSizes = parseList(System.getProperty("davisdb.bench.pagesizes", "4096,16384"));
+		ops = Integer.parseInt(System.getProperty("davisdb.bench.ops", "10000"));
+		warmupRows = Integer.parseInt(System.getProperty("davisdb.bench.warmup", "10000"));
+
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+			threads = (com.sun.management.ThreadMXBean) bean;
+
+		String cwd = System.getProperty("user.dir");
+		File[] earlier = new File(cwd+"/davisbase_tables").listFiles();
+		if(earlier != null)
+			for(File f : earlier)
+				if(f.getName().startsWith("bench_"))
+					throw new Exception("Error: "+cwd+" holds an earlier benchmark run, please run in an empty folder!");
+
+		if(warmupRows>0){
+			runTables("bench_warmup",pageSizes[0],warmupRows,false);
+			runParser(false);
+		}
+		System.out.println(String.format("%-22s %10s %9s %14s %12s %12s %12s",
+				"benchmark","rows","page size","ops/s","bytes/op","p50 (us)","p99 (us)"));
+		for(int pageSize : pageSizes)
+			for(int rows : rowCounts)
+				runTables("bench_"+pageSize+"_"+rows,pageSize,rows,true);
+		runParser(true);
+
+		TableHandles.closeAll();
+		PageFile.flushAll();
+	}
+
+	/*
+	 * run the benchmarks that need a table
+	 * @param database name of the database to create
+	 * @param pageSize page size of the database
+	 * @param rows rows of each table
+	 * @param print print the results or only warm up
+	 */
+	private static void runTables(String database,int pageSize,int rows,boolean print) throws Exception{
+		Terminal terminal = new Terminal();
+		quiet(terminal,"create database "+database+" page_size "+pageSize+";");
+		quiet(terminal,"use "+database+";");
+		quiet(terminal,"create table seq (id int primary key, name text(40), v int);");
+		quiet(terminal,"create table rnd (id int primary key, name text(40), v int);");
+		String path = System.getProperty("user.dir")+"/davisbase_tables/"+database;
+		Random random = new Random(42);
+
+		// inserts with ascending keys
+		FileHandler seq = TableHandles.acquire(path+"/seq.tbl");
+		String[] colNames = seq.getTableColNames("seq");
+		HashMap<String,HashMap<String,String>> constraints = seq.getTableConstraints("seq");
+		Sample insertSeq = new Sample("insert sequential",rows);
+		for(int k=1;k<=rows;k++){
+			Row row = new Row(colNames);
+			int[] typeCodes = encode(k,colNames,constraints,row);
+			insertSeq.begin();
+			seq.writeTableRow(typeCodes,row,false,"seq");
+			insertSeq.end();
+		}
+
+		// inserts with random keys, the inserts that add a page are the splits
+		FileHandler rnd = TableHandles.acquire(path+"/rnd.tbl");
+		rnd.getTableConstraints("rnd");
+		int[] keys = new int[rows];
+		for(int i=0;i<rows;i++)
+			keys[i] = i+1;
+		for(int i=rows-1;i>0;i--){
+			int j = random.nextInt(i+1);
+			int tmp = keys[i];
+			keys[i] = keys[j];
+			keys[j] = tmp;
+		}
+		Sample insertRnd = new Sample("insert random",rows);
+		Sample split = new Sample("split",rows/16);
+		for(int i=0;i<rows;i++){
+			Row row = new Row(colNames);
+			int[] typeCodes = encode(keys[i],colNames,constraints,row);
+			int pages = rnd.recalFilePages();
+			insertRnd.begin();
+			rnd.writeTableRow(typeCodes,row,false,"rnd");
+			insertRnd.end();
+			if(i>0 && rnd.recalFilePages()>pages)
+				split.add(insertRnd.lastNanos, insertRnd.lastBytes);
+		}
+
+		checkKeyRanges(seq,"seq",colNames,rows);
+		checkKeyRanges(rnd,"rnd",colNames,rows);
+
+		// lookups of a random key
+		Sample lookup = new Sample("select point",ops);
+		for(int i=0;i<ops;i++){
+			Value value = Utilities.getData("int",String.valueOf(1+random.nextInt(rows)));
+			ArrayList<Row> result = new ArrayList<>();
+			lookup.begin();
+			seq.selectRecs(false,"seq",seq,"=",value,0,true,true,colNames,true,result);
+			lookup.end();
+		}
+
+		// scans of the first percent of the table
+		int scans = Math.max(ops/100, 10);
+		Sample range = new Sample("select range 1%",scans);
+		Value bound = Utilities.getData("int",String.valueOf(Math.max(rows/100, 1)+1));
+		for(int i=0;i<scans;i++){
+			ArrayList<Row> result = new ArrayList<>();
+			range.begin();
+			seq.selectRecs(false,"seq",seq,"<",bound,0,true,true,colNames,true,result);
+			range.end();
+		}
+
+		Sample full = new Sample("select full scan",5);
+		for(int i=0;i<5;i++){
+			ArrayList<Row> result = new ArrayList<>();
+			full.begin();
+			seq.selectRecs(false,"seq",seq,null,null,-1,false,false,colNames,false,result);
+			full.end();
+		}
+
+		// updates of an int column stay in place, longer text moves the record
+		Sample inPlace = new Sample("update in place",ops);
+		Sample rewrite = new Sample("update rewrite",ops);
+		for(int i=0;i<2*ops;i++){
+			boolean text = i>=ops;
+			int k = 1+random.nextInt(rows);
+			int col = text ? 1 : 2;
+			String dataType = constraints.get(colNames[col]).get("DATA_TYPE");
+			HashMap<Integer,Integer> typeCodeList = new HashMap<>();
+			Row values = new Row(colNames);
+			values.set(col, Utilities.getData(dataType, text ? "renamed row number "+k : String.valueOf(k%7), col, typeCodeList));
+			Value where = Utilities.getData("int",String.valueOf(k));
+			Sample sample = text ? rewrite : inPlace;
+			sample.begin();
+			seq.updateDelRecs(new int[]{col},values,false,"seq",seq,false,true,false,"=",where,0,true,true,true,typeCodeList,null);
+			sample.end();
+		}
+		TableHandles.release(seq);
+		TableHandles.release(rnd);
+
+		if(print)
+			for(Sample sample : new Sample[]{insertSeq,insertRnd,split,lookup,range,full,inPlace,rewrite})
+				sample.print(rows,pageSize);
+	}
+
+	/*
+	 * check the key range scans of a table holding the keys 1 to rows, each key is a lower and an upper bound once
+	 * @param handler the table
+	 * @param table name of the table
+	 * @param colNames columns of the table
+	 * @param rows rows of the table
+	 */
+	private static void checkKeyRanges(FileHandler handler,String table,String[] colNames,int rows) throws Exception{
+		for(int k=1;k<=rows;k++){
+			Value key = Utilities.getData("int",String.valueOf(k));
+			ArrayList<Row> result = new ArrayList<>();
+			handler.selectRecs(false,table,handler,"=",key,0,true,true,colNames,true,result);
+			if(result.size() != 1)
+				throw new Exception(String.format("Error: %s where id = %d returns %d rows!",table,k,result.size()));
+			if(k%Math.max(rows/64, 1) != 0)
+				continue;
+			result.clear();
+			handler.selectRecs(false,table,handler,"<=",key,0,true,true,colNames,true,result);
+			if(result.size() != k)
+				throw new Exception(String.format("Error: %s where id <= %d returns %d rows!",table,k,result.size()));
+		}
+	}
+
+	/*
+	 * run the benchmarks that need no table: parsing and encoding a record
+	 * @param print print the results or only warm up
+	 */
+	private static void runParser(boolean print) throws Exception{
+		String[] commands = new String[]{
+				"insert into seq (id,name,v) values (17,\"name 17\",3);",
+				"select * from seq where id = 17;",
+				"update seq set name = \"renamed\" where id = 17;",
+				"delete from seq where v > 5;"};
+		Sample parse = new Sample("parse",10*ops);
+		for(int i=0;i<10*ops;i++){
+			String cmd = commands[i%commands.length];
+			parse.begin();
+			new CommandTree(cmd);
+			parse.end();
+		}
+
+		// a handler is needed to decode, any table file will do
+		String database = null;
+		File[] dirs = new File(System.getProperty("user.dir")+"/davisbase_tables").listFiles();
+		for(File f : dirs)
+			if(f.getName().startsWith("bench_"))
+				database = f.getName();
+		FileHandler handler = TableHandles.acquire(System.getProperty("user.dir")+"/davisbase_tables/"+database+"/seq.tbl");
+		String[] colNames = handler.getTableColNames("seq");
+		HashMap<String,HashMap<String,String>> constraints = handler.getTableConstraints("seq");
+		Sample roundTrip = new Sample("record round trip",10*ops);
+		for(int i=0;i<10*ops;i++){
+			Row row = new Row(colNames);
+			int[] typeCodes = encode(i,colNames,constraints,row);
+			roundTrip.begin();
+			handler.readRecordRow(Utilities.convertoBytes(typeCodes,row,true,i));
+			roundTrip.end();
+		}
+		TableHandles.release(handler);
+
+		if(print){
+			parse.print(0,0);
+			roundTrip.print(0,0);
+		}
+	}
+
+	/*
+	 * build the row with key k the way INSERT builds it
+	 * @return the type codes of the row
+	 */
+	private static int[] encode(int k,String[] colNames,HashMap<String,HashMap<String,String>> constraints,Row row) throws Exception{
+		HashMap<String,byte[]> valueList = new HashMap<>();
+		valueList.put(colNames[0], String.valueOf(k).getBytes());
+		valueList.put(colNames[1], ("\"name "+k+"\"").getBytes());
+		valueList.put(colNames[2], String.valueOf(k%100).getBytes());
+		ArrayList<Integer> typeCodes = new ArrayList<>();
+		Utilities.checkConstraints(colNames,constraints,valueList,typeCodes,row,true);
+		return Utilities.toIntArray(typeCodes.toArray(new Integer[]{}));
+	}
+
+	/*
+	 * run a setup command without printing its output
+	 */
+	private static void quiet(Terminal terminal,String cmd) throws Exception{
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new ByteArrayOutputStream()));
+		try{
+			terminal.executeCmd(cmd);
+		}
+		finally{
+			System.setOut(out);
+		}
+	}
+
+	private static long allocated(){
+		return threads == null ? 0 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static double percentile(long[] sorted,double p){
+		return sorted[Math.min((int) Math.ceil(p*sorted.length)-1, sorted.length-1)];
+	}
+
+	private static int[] parseList(String list){
+		String[] items = list.split(",");
+		int[] result = new int[items.length];
+		for(int i=0;i<items.length;i++)
+			result[i] = Integer.parseInt(items[i].trim());
+		return result;
+	}
+}
@@ -0,0 +1,364 @@
+package davisDB;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/*
+ *  Cursor returning one row per group of the rows of another cursor, with COUNT, SUM, AVG, MIN and MAX of each group.
+ *  Groups are kept in a hash table on the values of the GROUP BY columns, without GROUP BY all rows form one group.
+ *  The aggregates are updated from the long and double values of the rows as they are read.
+ *  When the groups outgrow -Ddavisdb.group.memory bytes (default 16777216) the rows of a group not in the table yet
+ *  are written to one of PARTITIONS temp files by the hash of their group, and the partitions are aggregated one
+ *  after the other once the groups in memory are returned, a partition that outgrows the memory as well is split again.
+ */
+public class AggregateCursor implements Cursor {
+
+	private static long memory = Long.parseLong(System.getProperty("davisdb.group.memory", "16777216"));
+
+	// partitions the rows of the groups that do not fit are spread over, each split uses 4 more bits of the hash
+	private static final int PARTITIONS = 16;
+	private static final int MAX_DEPTH = 8;
+
+	public static final int COUNT = 0;
+	public static final int SUM = 1;
+	public static final int AVG = 2;
+	public static final int MIN = 3;
+	public static final int MAX = 4;
+
+	/*
+	 *  aggregate function of the select list
+	 */
+	public static class Function{
+		private int op;
+
+		// ordinal of the column in the rows read, -1 for COUNT(*)
+		private int column;
+
+		// SUM and AVG add doubles instead of longs
+		private boolean real;
+
+		/*
+		 * @param name count, sum, avg, min or max
+		 */
+		public Function(String name,int column,boolean real){
+			this.op = Arrays.asList("count","sum","avg","min","max").indexOf(name);
+			this.column = column;
+			this.real = real;
+		}
+
+		public int getColumn(){
+			return this.column;
+		}
+	}
+
+	/*
+	 *  values of the GROUP BY columns of a group and the state of its aggregates
+	 */
+	private class Group{
+		private Row key;
+
+		// rows and not null values counted, sums, and the smallest or largest value of each aggregate
+		private long[] counts = new long[functions.length];
+		private long[] longs = new long[functions.length];
+		private double[] doubles = new double[functions.length];
+		private Row extremes = new Row(functions.length);
+
+		Group(Row row){
+			this.key = new Row(groupColumns.length);
+			for(int i=0;i<groupColumns.length;i++)
+				this.key.copy(i, row, groupColumns[i]);
+		}
+
+		void update(Row row){
+			for(int k=0;k<functions.length;k++){
+				Function f = functions[k];
+				if(f.column == -1){
+					this.counts[k]++;
+					continue;
+				}
+				if(row.isNull(f.column))
+					continue;
+				this.counts[k]++;
+				switch(f.op){
+				case SUM:
+				case AVG:
+					if(f.real)
+						this.doubles[k] += row.getDouble(f.column);
+					else
+						this.longs[k] += row.getLong(f.column);
+					break;
+				case MIN:
+					if(this.counts[k] == 1 || Utilities.compare(row, f.column, this.extremes, k)<0)
+						this.extremes.copy(k, row, f.column);
+					break;
+				case MAX:
+					if(this.counts[k] == 1 || Utilities.compare(row, f.column, this.extremes, k)>0)
+						this.extremes.copy(k, row, f.column);
+					break;
+				}
+			}
+		}
+
+		Row toRow(){
+			Row row = new Row(labels);
+			for(int i=0;i<output.length;i++){
+				if(output[i]>=0){
+					row.copy(i, this.key, output[i]);
+					continue;
+				}
+				int k = -output[i]-1;
+				Function f = functions[k];
+				if(f.op == COUNT)
+					row.setLong(i, 0x07, this.counts[k]);
+				else if(this.counts[k] == 0)
+					row.setNull(i, 0x03);
+				else if(f.op == SUM && f.real)
+					row.setDouble(i, 0x09, this.doubles[k]);
+				else if(f.op == SUM)
+					row.setLong(i, 0x07, this.longs[k]);
+				else if(f.op == AVG)
+					row.setDouble(i, 0x09, (f.real ? this.doubles[k] : this.longs[k])/(double) this.counts[k]);
+				else
+					row.copy(i, this.extremes, k);
+			}
+			return row;
+		}
+	}
+
+	/*
+	 *  temp file holding the rows of the groups that did not fit
+	 */
+	private static class Partition{
+		private File file;
+		private DataOutputStream out;
+		private int rows = 0;
+
+		// splits the rows went through, the next split uses the following bits of the hash
+		private int depth;
+
+		Partition(int depth) throws IOException{
+			this.file = File.createTempFile("davisdb-group", ".part");
+			this.file.deleteOnExit();
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file)));
+			this.depth = depth;
+			Metrics.add(Metrics.Counter.GROUP_PARTITIONS, 1);
+		}
+	}
+
+	private Cursor input = null;
+	private int[] groupColumns;
+	private Function[] functions;
+
+	// column i of a result row is GROUP BY column output[i] if output[i] >= 0, otherwise aggregate -output[i]-1
+	private int[] output;
+	private String[] labels;
+
+	// column names and number of columns of the rows read, taken from the first row
+	private String[] colNames = null;
+	private int size = 0;
+
+	// groups in memory, their estimated size, and the group to return next
+	private HashMap<List<Object>,Group> groups = new HashMap<>();
+	private long used = 0;
+	private Iterator<Group> iterator = null;
+
+	// partitions of the split going on, and the partitions waiting to be aggregated
+	private Partition[] spills = new Partition[PARTITIONS];
+	private ArrayDeque<Partition> pending = new ArrayDeque<>();
+
+	// rows of the input if they are known without reading it, -1 to read them
+	private long rowCount = -1;
+
+	/*
+	 * @param groupColumns ordinals of the GROUP BY columns in the rows read
+	 * @param functions aggregates of the select list
+	 * @param output columns of a result row, see output
+	 * @param labels names of the columns of a result row
+	 */
+	public AggregateCursor(int[] groupColumns,Function[] functions,int[] output,String[] labels){
+		this.groupColumns = groupColumns;
+		this.functions = functions;
+		this.output = output;
+		this.labels = labels;
+	}
+
+	public void setInput(Cursor input){
+		this.input = input;
+	}
+
+	public static long getMemory(){
+		return memory;
+	}
+
+	/*
+	 * @return true if the result is only COUNT(*) without GROUP BY, i.e. the number of rows read is enough
+	 */
+	public boolean countsRowsOnly(){
+		if(this.groupColumns.length != 0)
+			return false;
+		for(Function f : this.functions)
+			if(f.column != -1)
+				return false;
+		return true;
+	}
+
+	/*
+	 * answer a query for which countsRowsOnly holds with a known number of rows, the input is not read
+	 */
+	public void setRowCount(long rowCount){
+		this.rowCount = rowCount;
+	}
+
+	/*
+	 * @return ordinals of the columns the aggregation reads in ascending order
+	 */
+	public int[] getInputColumns(){
+		java.util.TreeSet<Integer> columns = new java.util.TreeSet<>();
+		for(int column : this.groupColumns)
+			columns.add(column);
+		for(Function f : this.functions)
+			if(f.column != -1)
+				columns.add(f.column);
+		int[] result = new int[columns.size()];
+		int i = 0;
+		for(int column : columns)
+			result[i++] = column;
+		return result;
+	}
+
+	/*
+	 * read every row of the input, the groups in memory are complete when open returns
+	 */
+	@Override
+	public void open() throws Exception{
+		if(this.rowCount>=0){
+			Group group = new Group(null);
+			Arrays.fill(group.counts, this.rowCount);
+			this.groups.put(key(null), group);
+			this.iterator = this.groups.values().iterator();
+			return;
+		}
+		this.input.open();
+		Row row;
+		while((row = this.input.next()) != null){
+			if(this.colNames == null){
+				this.colNames = row.getColNames();
+				this.size = row.size();
+			}
+			add(row,0);
+		}
+		this.input.close();
+		finishSplit();
+		// without GROUP BY there is a result row even if no row was read
+		if(this.groupColumns.length == 0 && this.groups.isEmpty() && this.pending.isEmpty())
+			this.groups.put(key(null), new Group(null));
+		this.iterator = this.groups.values().iterator();
+	}
+
+	@Override
+	public Row next() throws Exception{
+		while(!this.iterator.hasNext()){
+			if(this.pending.isEmpty())
+				return null;
+			this.groups.clear();
+			this.used = 0;
+			Partition partition = this.pending.poll();
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(partition.file)));
+			try{
+				for(int i=0;i<partition.rows;i++)
+					add(Row.read(in,this.colNames,this.size),partition.depth);
+			}
+			finally{
+				in.close();
+				partition.file.delete();
+			}
+			finishSplit();
+			this.iterator = this.groups.values().iterator();
+		}
+		return this.iterator.next().toRow();
+	}
+
+	@Override
+	public void close() throws Exception{
+		if(this.input != null)
+			this.input.close();
+		for(int i=0;i<PARTITIONS;i++){
+			if(this.spills[i] != null){
+				this.spills[i].out.close();
+				this.spills[i].file.delete();
+				this.spills[i] = null;
+			}
+		}
+		for(Partition partition : this.pending)
+			partition.file.delete();
+		this.pending.clear();
+		this.groups.clear();
+		this.iterator = null;
+	}
+
+	/*
+	 * add a row to its group, the row goes to a partition if its group is not in memory and the memory is used up
+	 * @param depth splits the row went through
+	 */
+	private void add(Row row,int depth) throws IOException{
+		List<Object> key = key(row);
+		Group group = this.groups.get(key);
+		if(group == null){
+			if(this.used>memory && depth<MAX_DEPTH){
+				int hash = key.hashCode()*0x9E3779B9;
+				int i = (hash>>>(4*depth)) & (PARTITIONS-1);
+				if(this.spills[i] == null)
+					this.spills[i] = new Partition(depth+1);
+				row.write(this.spills[i].out);
+				this.spills[i].rows++;
+				return;
+			}
+			group = new Group(row);
+			this.groups.put(key, group);
+			this.used += SortCursor.estimateSize(group.key)+96+40*this.functions.length;
+		}
+		group.update(row);
+	}
+
+	/*
+	 * close the partitions of a split, they are aggregated after the groups in memory
+	 */
+	private void finishSplit() throws IOException{
+		for(int i=0;i<PARTITIONS;i++){
+			if(this.spills[i] != null){
+				this.spills[i].out.close();
+				this.pending.add(this.spills[i]);
+				this.spills[i] = null;
+			}
+		}
+	}
+
+	/*
+	 * @return the values of the GROUP BY columns of a row, a null column is null
+	 */
+	private List<Object> key(Row row){
+		Object[] values = new Object[this.groupColumns.length];
+		for(int i=0;i<values.length;i++){
+			int column = this.groupColumns[i];
+			if(row.isNull(column))
+				values[i] = null;
+			else if(row.getTypeCode(column)>=0x0C)
+				values[i] = row.getText(column);
+			else if(Row.isReal(row.getTypeCode(column)))
+				values[i] = row.getDouble(column);
+			else
+				values[i] = row.getLong(column);
+		}
+		return Arrays.asList(values);
+	}
+}
@@ -0,0 +1,386 @@
+package davisDB;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/*
+ *  Process-wide buffer pool shared by every FileHandler.
+ *  A frame caches one page of one file and is keyed by (file id, page number).
+ *  Frames are pinned while they are being read or written, dirty frames are written back
+ *  when they are evicted or when their file is flushed.
+ *  With the write-ahead log a dirty frame goes to the log instead and its file is only written by a checkpoint,
+ *  a page that is in the log is read from there.
+ *
+ *  capacity:  -Ddavisdb.bufferpool.frames=<number of frames>   (default 1024)
+ *  policy:    -Ddavisdb.bufferpool.policy=clock|lru-k          (default clock)
+ *  k:         -Ddavisdb.bufferpool.k=<k for lru-k>             (default 2)
+ */
+public class BufferPool {
+
+	public static enum Policy{
+		CLOCK,LRU_K;
+
+		public static Policy parse(String name){
+			name = name.toLowerCase().trim();
+			if(name.equals("lru-k") || name.equals("lru_k") || name.equals("lruk"))
+				return LRU_K;
+			return CLOCK;
+		}
+	}
+
+	// the only pool of the process
+	private static BufferPool instance = null;
+
+	// maximum number of frames
+	private int capacity;
+
+	// eviction policy
+	private Policy policy;
+
+	// k of LRU-K
+	private int k;
+
+	// (file id, page number) -> frame
+	private HashMap<Long,Frame> table = new HashMap<>();
+
+	// frame slots, scanned by the clock hand
+	private Frame[] slots;
+
+	// clock hand
+	private int hand = 0;
+
+	// logical time used by LRU-K
+	private long clock = 0;
+
+	// counters
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private long writeBacks = 0;
+
+	/*
+	 *  one cached page
+	 */
+	class Frame{
+		// owner file
+		private PageFile.Shared file;
+
+		// page number inside the file
+		private int pageNumber;
+
+		// page content
+		private ByteBuffer data;
+
+		// number of users currently holding the frame
+		private int pinCount = 0;
+
+		// frame content differs from the file
+		private boolean dirty = false;
+
+		// frame content differs from the newest image in the write-ahead log
+		private boolean unlogged = false;
+
+		// reference bit of CLOCK
+		private boolean reference = true;
+
+		// last k access times of LRU-K, history[0] is the most recent one
+		private long[] history;
+
+		// slot index in the slot array
+		private int slot;
+
+		public Frame(PageFile.Shared file,int pageNumber,int pageSize,int slot){
+			this.file = file;
+			this.pageNumber = pageNumber;
+			this.data = ByteBuffer.allocate(pageSize);
+			this.history = new long[k];
+			this.slot = slot;
+		}
+
+		public ByteBuffer getData(){
+			return this.data;
+		}
+
+		public int getPageNumber(){
+			return this.pageNumber;
+		}
+	}
+
+	private BufferPool(int capacity,Policy policy,int k){
+		this.capacity = Math.max(capacity, 8);
+		this.policy = policy;
+		this.k = Math.max(k, 1);
+		this.slots = new Frame[this.capacity];
+	}
+
+	/*
+	 * @return the buffer pool of the process, created from system properties on first use
+	 */
+	public static synchronized BufferPool getInstance(){
+		if(instance == null){
+			int capacity = Integer.parseInt(System.getProperty("davisdb.bufferpool.frames", "1024"));
+			Policy policy = Policy.parse(System.getProperty("davisdb.bufferpool.policy", "clock"));
+			int k = Integer.parseInt(System.getProperty("davisdb.bufferpool.k", "2"));
+			instance = new BufferPool(capacity,policy,k);
+		}
+		return instance;
+	}
+
+	/*
+	 * replace the pool of the process, all dirty frames of the old pool are written back first
+	 * @param capacity number of frames
+	 * @param policy eviction policy
+	 * @param k k of LRU-K
+	 */
+	public static synchronized void configure(int capacity,Policy policy,int k) throws IOException{
+		if(instance != null)
+			instance.flushAll();
+		instance = new BufferPool(capacity,policy,k);
+	}
+
+	private static long key(int fileId,int pageNumber){
+		return ((long)fileId<<32) | (pageNumber & 0xFFFFFFFFL);
+	}
+
+	/*
+	 * pin a page, loading it from the file if it is not cached
+	 * @param file owner file
+	 * @param pageNumber page number inside the file
+	 * @return the pinned frame, must be released with unpin
+	 */
+	public synchronized Frame pin(PageFile.Shared file,int pageNumber) throws IOException{
+		long key = key(file.getId(),pageNumber);
+		Frame frame = this.table.get(key);
+		if(frame != null){
+			this.hits++;
+		}
+		else{
+			this.misses++;
+			int slot = findSlot();
+			frame = new Frame(file,pageNumber,file.getPageSize(),slot);
+			WriteAheadLog log = WriteAheadLog.getInstance();
+			if(log == null || !log.readPage(file,pageNumber,frame.data.array()))
+				file.readPage(pageNumber,frame.data.array());
+			this.slots[slot] = frame;
+			this.table.put(key, frame);
+		}
+		frame.pinCount++;
+		touch(frame);
+		return frame;
+	}
+
+	/*
+	 * release a pinned frame
+	 * @param frame frame returned by pin
+	 * @param dirty the frame was modified
+	 */
+	public synchronized void unpin(Frame frame,boolean dirty){
+		if(frame.pinCount>0)
+			frame.pinCount--;
+		if(dirty){
+			frame.dirty = true;
+			frame.unlogged = true;
+		}
+	}
+
+	private void touch(Frame frame){
+		frame.reference = true;
+		this.clock++;
+		for(int i=frame.history.length-1;i>0;i--)
+			frame.history[i] = frame.history[i-1];
+		frame.history[0] = this.clock;
+	}
+
+	/*
+	 * find a free slot or evict a victim
+	 * @return index of the slot to use
+	 */
+	private int findSlot() throws IOException{
+		if(this.table.size()<this.capacity){
+			for(int i=0;i<this.slots.length;i++)
+				if(this.slots[i] == null)
+					return i;
+		}
+		Frame victim;
+		if(this.policy == Policy.CLOCK)
+			victim = clockVictim();
+		else
+			victim = lruKVictim();
+		if(victim == null)
+			throw new IOException("Error 17: buffer pool exhausted, all frames are pinned!");
+		evict(victim);
+		return victim.slot;
+	}
+
+	private Frame clockVictim(){
+		// two full sweeps clear every reference bit, a third one only finds pinned frames
+		for(int i=0;i<this.slots.length*3;i++){
+			Frame frame = this.slots[this.hand];
+			this.hand = (this.hand+1)%this.slots.length;
+			if(frame == null || frame.pinCount>0)
+				continue;
+			if(frame.reference)
+				frame.reference = false;
+			else
+				return frame;
+		}
+		return null;
+	}
+
+	private Frame lruKVictim(){
+		// evict the frame with the largest backward k-distance,
+		// frames referenced less than k times have an infinite distance and go first (ties broken by LRU)
+		Frame victim = null;
+		for(int i=0;i<this.slots.length;i++){
+			Frame frame = this.slots[i];
+			if(frame == null || frame.pinCount>0)
+				continue;
+			if(victim == null){
+				victim = frame;
+				continue;
+			}
+			long kth = frame.history[frame.history.length-1];
+			long victimKth = victim.history[victim.history.length-1];
+			if(kth<victimKth || (kth == victimKth && frame.history[0]<victim.history[0]))
+				victim = frame;
+		}
+		return victim;
+	}
+
+	private void evict(Frame frame) throws IOException{
+		if(frame.dirty)
+			save(frame);
+		this.table.remove(key(frame.file.getId(),frame.pageNumber));
+		this.slots[frame.slot] = null;
+		this.evictions++;
+	}
+
+	private void writeBack(Frame frame) throws IOException{
+		frame.file.writePage(frame.pageNumber, frame.data.array());
+		frame.dirty = false;
+		frame.unlogged = false;
+		this.writeBacks++;
+	}
+
+	/*
+	 * make the content of a dirty frame survive the frame: append it to the write-ahead log, or write it back if there is no log
+	 */
+	private void save(Frame frame) throws IOException{
+		WriteAheadLog log = WriteAheadLog.getInstance();
+		if(log == null)
+			writeBack(frame);
+		else if(frame.unlogged){
+			log.appendPage(frame.file, frame.pageNumber, frame.data.array());
+			frame.unlogged = false;
+		}
+	}
+
+	/*
+	 * append every frame changed since it was last logged to the write-ahead log, called by a commit
+	 * @param log the log
+	 */
+	synchronized void logPages(WriteAheadLog log) throws IOException{
+		for(int i=0;i<this.slots.length;i++){
+			Frame frame = this.slots[i];
+			if(frame != null && frame.unlogged){
+				log.appendPage(frame.file, frame.pageNumber, frame.data.array());
+				frame.unlogged = false;
+			}
+		}
+	}
+
+	/*
+	 * a checkpoint wrote every logged page into its file, the frames holding those pages are clean now
+	 */
+	synchronized void markWritten(){
+		for(int i=0;i<this.slots.length;i++){
+			Frame frame = this.slots[i];
+			if(frame != null && !frame.unlogged)
+				frame.dirty = false;
+		}
+	}
+
+	/*
+	 * write back all dirty frames of a file
+	 * @param file the file to flush
+	 */
+	public synchronized void flush(PageFile.Shared file) throws IOException{
+		for(int i=0;i<this.slots.length;i++){
+			Frame frame = this.slots[i];
+			if(frame != null && frame.file == file && frame.dirty)
+				save(frame);
+		}
+	}
+
+	/*
+	 * write back all dirty frames of the pool
+	 */
+	public synchronized void flushAll() throws IOException{
+		for(int i=0;i<this.slots.length;i++){
+			Frame frame = this.slots[i];
+			if(frame != null && frame.dirty)
+				save(frame);
+		}
+	}
+
+	/*
+	 * drop all frames of a file without writing them back, used when the file is deleted
+	 * its pages in the write-ahead log are dropped as well
+	 * @param file the file to discard
+	 */
+	public synchronized void discard(PageFile.Shared file) throws IOException{
+		WriteAheadLog log = WriteAheadLog.getInstance();
+		if(log != null)
+			log.drop(file);
+		Iterator<Frame> it = this.table.values().iterator();
+		while(it.hasNext()){
+			Frame frame = it.next();
+			if(frame.file == file){
+				this.slots[frame.slot] = null;
+				it.remove();
+			}
+		}
+	}
+
+	public synchronized long getHits(){
+		return this.hits;
+	}
+
+	public synchronized long getMisses(){
+		return this.misses;
+	}
+
+	public synchronized long getEvictions(){
+		return this.evictions;
+	}
+
+	public synchronized long getWriteBacks(){
+		return this.writeBacks;
+	}
+
+	public synchronized int getCapacity(){
+		return this.capacity;
+	}
+
+	public synchronized int getCachedPages(){
+		return this.table.size();
+	}
+
+	public synchronized Policy getPolicy(){
+		return this.policy;
+	}
+
+	public synchronized void resetCounters(){
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+		this.writeBacks = 0;
+	}
+
+	@Override
+	public synchronized String toString(){
+		return String.format("BufferPool[policy=%s, capacity=%d, cached=%d, hits=%d, misses=%d, evictions=%d, writeBacks=%d]",
+				this.policy,this.capacity,this.table.size(),this.hits,this.misses,this.evictions,this.writeBacks);
+	}
+}
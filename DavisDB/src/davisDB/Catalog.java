@@ -0,0 +1,208 @@
+package davisDB;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/*
+ *  Process-wide cache of the schema tables.
+ *  For every table it keeps what davisbase_columns.tbl and davisbase_tables.tbl say about it: the column records in
+ *  insertion order, column names, constraints, ordinal of the primary key and number of rows, so a statement does not
+ *  rescan the schema files. Entries are loaded by FileHandler on first use, CREATE TABLE and DROP TABLE invalidate them.
+ *  It also keeps the secondary indexes of each database, read from the headers of its .ndx files.
+ */
+public class Catalog {
+
+	// table name -> cached information
+	private static HashMap<String,TableInfo> tables = new HashMap<>();
+
+	// database name -> names of its tables
+	private static HashMap<String,String[]> tableNames = new HashMap<>();
+
+	// database name -> indexes of its tables
+	private static HashMap<String,ArrayList<IndexInfo>> indexes = new HashMap<>();
+
+	/*
+	 *  schema information of one table
+	 */
+	public static class TableInfo{
+		// records of the table in davisbase_columns, in the order the columns were created
+		private ArrayList<Row> columns;
+
+		// row ids of the column records
+		private ArrayList<Integer> keys;
+
+		// column names in column order
+		private String[] colNames;
+
+		// column name -> IS_NULLABLE, DATA_TYPE, CHAR_MAX_LENGTH, COLUMN_KEY, COLUMN_DEFAULT
+		private HashMap<String,HashMap<String,String>> constraints;
+
+		// ordinal of the primary key column, -1 if the table has no primary key
+		private int priIndex;
+
+		// the primary key is an integer column (not bigint), rows are keyed by its value instead of a row id
+		private boolean priInt;
+
+		// number of rows, -1 until it is read from davisbase_tables
+		private int rowCount = -1;
+
+		// file address of the TABLE_ROWS value of the table in davisbase_tables.tbl, -1 if not known yet
+		private long rowCountAddress = -1;
+
+		public TableInfo(ArrayList<Row> columns,ArrayList<Integer> keys,String[] colNames,
+				HashMap<String,HashMap<String,String>> constraints,int priIndex,boolean priInt){
+			this.columns = columns;
+			this.keys = keys;
+			this.colNames = colNames;
+			this.constraints = constraints;
+			this.priIndex = priIndex;
+			this.priInt = priInt;
+		}
+
+		public ArrayList<Row> getColumns(){
+			return this.columns;
+		}
+
+		public ArrayList<Integer> getKeys(){
+			return this.keys;
+		}
+
+		public String[] getColNames(){
+			return this.colNames;
+		}
+
+		public HashMap<String,HashMap<String,String>> getConstraints(){
+			return this.constraints;
+		}
+
+		public int getPriIndex(){
+			return this.priIndex;
+		}
+
+		public boolean isPriInt(){
+			return this.priInt;
+		}
+
+		public int getRowCount(){
+			return this.rowCount;
+		}
+
+		public void setRowCount(int rowCount){
+			this.rowCount = rowCount;
+		}
+
+		public long getRowCountAddress(){
+			return this.rowCountAddress;
+		}
+
+		public void setRowCountAddress(long rowCountAddress){
+			this.rowCountAddress = rowCountAddress;
+		}
+	}
+
+	/*
+	 *  a secondary index, see IndexFile
+	 */
+	public static class IndexInfo{
+		private String name;
+		private String tableName;
+		private String columnName;
+
+		// path of the .ndx file
+		private String path;
+
+		public IndexInfo(String name,String tableName,String columnName,String path){
+			this.name = name;
+			this.tableName = tableName;
+			this.columnName = columnName;
+			this.path = path;
+		}
+
+		public String getName(){
+			return this.name;
+		}
+
+		public String getTableName(){
+			return this.tableName;
+		}
+
+		public String getColumnName(){
+			return this.columnName;
+		}
+
+		public String getPath(){
+			return this.path;
+		}
+	}
+
+	private static String key(String name){
+		return name.toLowerCase().trim();
+	}
+
+	/*
+	 * @param tableName name of the table
+	 * @return cached information of the table, null if it is not cached
+	 */
+	public static synchronized TableInfo get(String tableName){
+		TableInfo info = tables.get(key(tableName));
+		Metrics.add(Metrics.Counter.CATALOG_LOOKUPS, 1);
+		if(info == null)
+			Metrics.add(Metrics.Counter.CATALOG_MISSES, 1);
+		return info;
+	}
+
+	public static synchronized void put(String tableName,TableInfo info){
+		tables.put(key(tableName), info);
+	}
+
+	/*
+	 * @param database name of the database
+	 * @return cached table names of the database, null if they are not cached
+	 */
+	public static synchronized String[] getTableNames(String database){
+		return tableNames.get(key(database));
+	}
+
+	public static synchronized void putTableNames(String database,String[] names){
+		tableNames.put(key(database), names);
+	}
+
+	/*
+	 * @param database name of the database
+	 * @return cached indexes of the database, null if they are not cached
+	 */
+	public static synchronized ArrayList<IndexInfo> getIndexes(String database){
+		return indexes.get(key(database));
+	}
+
+	public static synchronized void putIndexes(String database,ArrayList<IndexInfo> list){
+		indexes.put(key(database), list);
+	}
+
+	/*
+	 * forget the indexes of a database after an index was created or dropped
+	 */
+	public static synchronized void invalidateIndexes(String database){
+		indexes.remove(key(database));
+	}
+
+	/*
+	 * forget a created or dropped table
+	 * davisbase_tables.tbl may have been reorganized by the change, so the TABLE_ROWS address of every other table is forgotten as well
+	 * @param tableName name of the table
+	 */
+	public static synchronized void invalidate(String tableName){
+		tables.remove(key(tableName));
+		for(TableInfo info : tables.values())
+			info.rowCountAddress = -1;
+		tableNames.clear();
+	}
+
+	/*
+	 * forget everything, e.g. after the schema files were recreated
+	 */
+	public static synchronized void clear(){
+		tables.clear();
+		tableNames.clear();
+		indexes.clear();
+	}
+}
@@ -6,15 +6,15 @@ import java.nio.file.NoSuchFileException;
 import java.nio.file.Paths;
 import java.util.Scanner;
 
-import org.omg.CORBA.Any;
-import org.omg.CORBA.ORB;
-
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 
 import davisDB.CommandTree.Node;
 
@@ -23,8 +23,56 @@ public class CommandExecutor {
 	private String engine = "davisDB";
 	private String charSetName = "utf-8";
 	
+	// plan of the running statement if it is explained, null otherwise
+	private Plan plan = null;
+	
+	// ORDER BY and GROUP BY of the running select, null if there is none
+	private Node orderBy = null;
+	private Node groupBy = null;
+	
+	// LIMIT and OFFSET of the running select, -1 and 0 if there is none
+	private long limit = -1;
+	private long offset = 0;
+	
+	// tables joined to the first table of the running select, null if there is none
+	private Node joins = null;
+	
 	public void execute(CommandTree tree) throws Exception{
-		Node root = tree.getRoot();
+		long start = System.nanoTime();
+		this.plan = tree.isExplain() ? new Plan(tree.isAnalyze()) : null;
+		this.orderBy = tree.getOrderBy();
+		this.groupBy = tree.getGroupBy();
+		this.limit = tree.getLimit();
+		this.offset = tree.getOffset();
+		this.joins = tree.getJoins();
+		try{
+			if(this.plan != null)
+				this.plan.begin();
+			execute(tree.getRoot());
+			if(this.plan != null){
+				this.plan.end();
+				this.plan.print();
+			}
+		}
+		finally{
+			this.plan = null;
+			this.orderBy = null;
+			this.groupBy = null;
+			this.limit = -1;
+			this.offset = 0;
+			this.joins = null;
+			Metrics.recordStatement(tree.getRoot().getCode(), System.nanoTime()-start);
+			Metrics.dump(false);
+			// a statement is the unit of the write-ahead log, a failed one keeps the changes it made so far as before
+			WriteAheadLog log = WriteAheadLog.getInstance();
+			if(log != null)
+				log.commit();
+			// handlers stay open for the next statement, but none of them is held by this one any more
+			TableHandles.releaseAll();
+		}
+	}
+	
+	private void execute(Node root) throws Exception{
 		int typeCode = root.getCode();
 		switch(typeCode){
 		case 0:
@@ -63,6 +111,12 @@ public class CommandExecutor {
 		case 11:
 			execute_ShowSchemas(root);
 			break;
+		case 12:
+			execute_LoadData(root);
+			break;
+		case 13:
+			execute_ShowStatus(root);
+			break;
 		default:
 			throw new Exception("Error 03: Unsupported Command! Please type 'help;' for information.");
 		}
@@ -75,11 +129,7 @@ public class CommandExecutor {
 		}
 		try{
 			if(!(this.database.equals("davisbase_schemas"))){
-				String cwd = System.getProperty("user.dir");
-				String path = cwd + "/davisbase_schemas";
-				FileHandler table_handler = new FileHandler(path+"/davisbase_tables"+"/davisbase_tables.tbl",true);
-				String[] tableNames = table_handler.getTableNames(table_handler,this.database);
-				table_handler.close();
+				String[] tableNames = getTableNames();
 		
 				String[] headerList = new String[]{"Table Name"};
 				HashMap<String,String[]> map = new HashMap<>();
@@ -116,7 +166,7 @@ public class CommandExecutor {
 		String path = cwd + "/davisbase_schemas";
 		String tableName = root.getLeft().getName();
 		Node attrRoot = root.getLeft().getLeft();
-		FileHandler table_handler = new FileHandler(path+"/davisbase_tables"+"/davisbase_tables.tbl",true);
+		FileHandler table_handler = TableHandles.acquire(path+"/davisbase_tables"+"/davisbase_tables.tbl");
 		
 		// define values for davisbase_tables.tbl
 		String table_catalog = "def";
@@ -146,76 +196,53 @@ public class CommandExecutor {
 		
 		
 		// collect Contents
-		HashMap<Integer,Any> values = new HashMap<>();
-		org.omg.CORBA.ORB orb = ORB.init();
+		Row values = new Row(typeCodes.length);
 		
 		int idx = 0;
-		Any any;
 		
 		// insert table catalog
-		any = orb.create_any();
-		any.insert_string(table_catalog);
-		values.put(idx++, any);
+		values.setText(idx++, table_catalog);
 		
 		// insert table schema
-		any = orb.create_any();
-		any.insert_string(table_schema);
-		values.put(idx++, any);
+		values.setText(idx++, table_schema);
 		
 		// insert table name
-		any = orb.create_any();
-		any.insert_string(tableName);
-		values.put(idx++, any);
+		values.setText(idx++, tableName);
 		
 		// insert table type
-		any = orb.create_any();
-		any.insert_string(table_type);
-		values.put(idx++, any);
+		values.setText(idx++, table_type);
 		
 		// insert table engine
-		any = orb.create_any();
-		any.insert_string(this.engine);
-		values.put(idx++, any);
+		values.setText(idx++, this.engine);
 		
 		// insert row format
-		any = orb.create_any();
-		any.insert_string(row_format);
-		values.put(idx++, any);
+		values.setText(idx++, row_format);
 		
 		// insert table rows
-		any = orb.create_any();
-		any.insert_long(table_rows);
-		values.put(idx++, any);
+		values.setLong(idx++, Utilities.TypeCode.INT.getTypeCode(), table_rows);
 		
 		// insert max_record_length
-		any = orb.create_any();
-		any.insert_long(max_record_length);
-		values.put(idx++, any);
+		values.setLong(idx++, Utilities.TypeCode.INT.getTypeCode(), max_record_length);
 		
 		// insert create_time
-		any = orb.create_any();
-		any.insert_longlong(create_time);
-		values.put(idx++, any);
+		values.setLong(idx++, Utilities.TypeCode.DATETIME.getTypeCode(), create_time);
 		
 		// insert update_time
-		any = orb.create_any();
-		any.insert_longlong(update_time);
-		values.put(idx++, any);
+		values.setLong(idx++, Utilities.TypeCode.DATETIME.getTypeCode(), update_time);
 		
 		// insert check_time
-		any = orb.create_any();
-		any.insert_longlong(check_time);
-		values.put(idx++, any);
+		values.setLong(idx++, Utilities.TypeCode.DATETIME.getTypeCode(), check_time);
 	
 		
 		table_handler.writeTableRow(typeCodes,values,true,null);
-		table_handler.close();
+		TableHandles.release(table_handler);
 		
 		/* write columns */
-		FileHandler column_handler = new FileHandler(path+"/davisbase_columns"+"/davisbase_columns.tbl",true);
+		FileHandler column_handler = TableHandles.acquire(path+"/davisbase_columns"+"/davisbase_columns.tbl");
 		
 		// restore index
 		typeCodes = new int[13];
+		values = new Row(typeCodes.length);
 		
 		ArrayList<String> colNames = new ArrayList<>();
 		HashMap<String,String> dataTypes = new HashMap<>();
@@ -227,7 +254,6 @@ public class CommandExecutor {
 		// set content
 		for(int i=0;i<colNames.size();i++){
 			idx = 0;
-			values.clear();
 			
 			typeCodes[0] = Utilities.TypeCode.TEXT.getTypeCode()+table_catalog.length(); 
 			typeCodes[1] = Utilities.TypeCode.TEXT.getTypeCode()+table_schema.length();
@@ -243,27 +269,18 @@ public class CommandExecutor {
 			typeCodes[12] = Utilities.TypeCode.TEXT.getTypeCode()+"PRI".length();
 			
 			// insert table catalog
-			any = orb.create_any();
-			any.insert_string(table_catalog);
-			values.put(idx++, any);
+			values.setText(idx++, table_catalog);
 		
 			// insert table schema
-			any = orb.create_any();
-			any.insert_string(table_schema);
-			values.put(idx++, any);
+			values.setText(idx++, table_schema);
 		
 			// insert table name
-			any = orb.create_any();
-			any.insert_string(tableName);
-			values.put(idx++, any);
+			values.setText(idx++, tableName);
 		
 			// insert column name
-			any = orb.create_any();
-			any.insert_string(colNames.get(i));
-			values.put(idx++, any);
+			values.setText(idx++, colNames.get(i));
 		
 			// insert column_default 
-			any = orb.create_any();
 			String tmp;
 			String cons_tmp = Utilities.checkANull(constraints.get(colNames.get(i)));
 			if (cons_tmp.equals("NO"))
@@ -272,75 +289,317 @@ public class CommandExecutor {
 				tmp = "NULL";
 			
 			if(tmp.length()<"NULL".length()){
-				any.insert_string(Utilities.buildStrWithSize(tmp, "NULL".length()-tmp.length()));
+				values.setText(idx++, Utilities.buildStrWithSize(tmp, "NULL".length()-tmp.length()));
 				typeCodes[4] = Utilities.TypeCode.TEXT.getTypeCode()+"NULL".length();
 			}
 			else{
-				any.insert_string(tmp);
+				values.setText(idx++, tmp);
 				typeCodes[4] = Utilities.TypeCode.TEXT.getTypeCode()+tmp.length();
 			}
-			
-			values.put(idx++, any);
+
 			
 
 			// insert is_nullable
-			any = orb.create_any();
-			any.insert_string(Utilities.buildStrWithSize(Utilities.checkANull(constraints.get(colNames.get(i))),"YES".length()-Utilities.checkANull(constraints.get(colNames.get(i))).length()));
-			values.put(idx++, any);
+			values.setText(idx++, Utilities.buildStrWithSize(Utilities.checkANull(constraints.get(colNames.get(i))),"YES".length()-Utilities.checkANull(constraints.get(colNames.get(i))).length()));
 		
 			// insert data_type
-			any = orb.create_any();
-			any.insert_string(Utilities.getDataType(dataTypes.get(colNames.get(i))));
-			values.put(idx++, any);
+			values.setText(idx++, Utilities.getDataType(dataTypes.get(colNames.get(i))));
 		
 			// insert char_max_length
-			any = orb.create_any();
-			any.insert_string(Integer.toString(Utilities.getCharMaxLength(dataTypes.get(colNames.get(i)))));
-			values.put(idx++, any);
+			values.setText(idx++, Integer.toString(Utilities.getCharMaxLength(dataTypes.get(colNames.get(i)))));
 		
 			// insert numeric_prec
-			any = orb.create_any();
-			any.insert_string(Integer.toString(Utilities.getNumPrec(dataTypes.get(colNames.get(i)))));
-			values.put(idx++, any);
+			values.setText(idx++, Integer.toString(Utilities.getNumPrec(dataTypes.get(colNames.get(i)))));
 		
 			// insert numeric_scale
-			any = orb.create_any();
-			any.insert_long(0);
-			values.put(idx++, any);
+			values.setLong(idx++, Utilities.TypeCode.INT.getTypeCode(), 0);
 		
 			// insert char_set_name
-			any = orb.create_any();
-			any.insert_string(Utilities.buildStrWithSize(this.charSetName,"UTF-16".length()-this.charSetName.length()));
-			values.put(idx++, any);
+			values.setText(idx++, Utilities.buildStrWithSize(this.charSetName,"UTF-16".length()-this.charSetName.length()));
 
 			// insert column_type 
-			any = orb.create_any();
-			any.insert_string(dataTypes.get(colNames.get(i)));
-			values.put(idx++, any);
+			values.setText(idx++, dataTypes.get(colNames.get(i)));
 
 			// insert column_key 
-			any = orb.create_any();
-			any.insert_string(Utilities.buildStrWithSize(Utilities.checkPri(constraints.get(colNames.get(i))),"PRI".length()-Utilities.checkPri(constraints.get(colNames.get(i))).length()));
-			values.put(idx++, any);
+			values.setText(idx++, Utilities.buildStrWithSize(Utilities.checkPri(constraints.get(colNames.get(i))),"PRI".length()-Utilities.checkPri(constraints.get(colNames.get(i))).length()));
 			
 
 			column_handler.writeTableRow(typeCodes,values,true,null);
 
 		}	
-			column_handler.close();
+			TableHandles.release(column_handler);
+			Catalog.invalidate(tableName);
 			
 		/* create and write database header of the table */
 		path = cwd + "/davisbase_tables" + "/" + this.database;
-		FileHandler handler = new FileHandler(path+"/"+tableName+".tbl",true);
+		FileHandler handler = TableHandles.acquire(path+"/"+tableName+".tbl",getDatabasePageSize(this.database));
 		handler.writeDatabaseHeader(handler.getRFile());
 		handler.writePageHeader();
 		handler.initializePage(1);
 		handler.writePageHeader();
-		handler.close();
+		TableHandles.release(handler);
+	}
+	
+	/*
+	 *  e.g. CREATE INDEX idx_name ON t1(name);
+	 *  the index is written to <index name>.ndx in the directory of the database
+	 */
+	private void execute_CreateIndex(Node root) throws Exception{
+		if(this.database == null){
+			System.out.println("No database selected!\nPlease select a database first!");
+			return;
+		}
+		String cwd = System.getProperty("user.dir");
+		String indexName = root.getLeft().getName();
+		String tableName = root.getLeft().getLeft().getName();
+		String columnName = root.getLeft().getLeft().getCons()[0].trim();
+		String path = cwd + "/davisbase_tables" + "/" + this.database;
+		if(!new File(path+"/"+tableName+".tbl").exists())
+			throw new Exception(String.format("Error 08: %s table does not exist!",tableName));
+		File indexFile = new File(path+"/"+indexName+".ndx");
+		if(indexFile.exists())
+			throw new Exception(String.format("Error 20: Can't create index %s: %s already exists",indexName,indexName));
+		
+		FileHandler handler = TableHandles.acquire(path+"/"+tableName+".tbl");
+		try{
+			int column = Utilities.indexOf(handler.getTableColNames(tableName), columnName);
+			if(column == -1)
+				throw new Exception(String.format("Error 21: column %s does not exist in table %s!",columnName,tableName));
+			IndexFile index = IndexFile.create(indexFile, tableName, columnName, handler.getFilePageSize());
+			index.setColumn(column);
+			try{
+				handler.buildIndex(index, tableName);
+			}
+			catch(Exception e){
+				index.close();
+				PageFile.invalidate(indexFile);
+				Files.delete(indexFile.toPath());
+				throw e;
+			}
+			index.close();
+		}
+		finally{
+			TableHandles.release(handler);
+			Catalog.invalidateIndexes(this.database);
+		}
+	}
+	
+	/*
+	 * @return indexes of the current database
+	 */
+	private ArrayList<Catalog.IndexInfo> getIndexes() throws IOException{
+		ArrayList<Catalog.IndexInfo> indexes = Catalog.getIndexes(this.database);
+		if(indexes == null){
+			String cwd = System.getProperty("user.dir");
+			indexes = IndexFile.listIndexes(new File(cwd + "/davisbase_tables" + "/" + this.database));
+			Catalog.putIndexes(this.database, indexes);
+		}
+		return indexes;
+	}
+	
+	/*
+	 * compile the where tree of a statement, see CommandTree.parseDelete
+	 * @param node root of the where tree
+	 */
+	private Predicate compileWhere(Node node,String tableName,String[] colNames,HashMap<String,HashMap<String,String>> constraints) throws Exception{
+		if(!node.getLeaf()){
+			ArrayList<Predicate> operands = new ArrayList<>();
+			for(Node child=node.getLeft();child!=null;child=child.getSibl())
+				operands.add(compileWhere(child,tableName,colNames,constraints));
+			switch(node.getName()){
+			case "and":
+				return new Predicate.And(operands);
+			case "or":
+				return new Predicate.Or(operands);
+			default:
+				return new Predicate.Not(operands.get(0));
+			}
+		}
+		String colName = node.getName();
+		int column = Utilities.indexOf(colNames, colName);
+		if(column == -1)
+			throw new Exception(String.format("Error 21: column %s does not exist in table %s!",colName,tableName));
+		String dataType = constraints.get(colName).get("DATA_TYPE");
+		String operator = node.getCons()[0];
+		switch(operator){
+		case "in":
+		case "not in":
+			ArrayList<Value> values = new ArrayList<>();
+			for(Node child=node.getLeft();child!=null;child=child.getSibl())
+				values.add(Utilities.getData(dataType,unquote(new String(child.getVal()))));
+			Predicate in = Predicate.in(column,colName,dataType,values);
+			return operator.equals("in") ? in : new Predicate.Not(in);
+		case "between":
+		case "not between":
+			Value low = Utilities.getData(dataType,unquote(new String(node.getLeft().getVal())));
+			Value high = Utilities.getData(dataType,unquote(new String(node.getLeft().getSibl().getVal())));
+			Predicate between = Predicate.between(column,colName,dataType,low,high);
+			return operator.equals("between") ? between : new Predicate.Not(between);
+		default:
+			return Predicate.compare(column,colName,dataType,operator,Utilities.getData(dataType,unquote(new String(node.getVal()))));
+		}
+	}
+	
+	/*
+	 * @return the value inside the quotes of a quoted value, other values as they are
+	 */
+	private String unquote(String value){
+		if(value.contains("\""))
+			value = value.substring(value.indexOf('"')+1,value.lastIndexOf('"'));
+		if(value.contains("\'"))
+			value = value.substring(value.indexOf('\'')+1,value.lastIndexOf('\''));
+		return value;
+	}
+	
+	/*
+	 * @return ordinal of the primary key of a table if it is a tinyint, smallint or int, -1 otherwise
+	 */
+	private int getIntKeyColumn(String[] colNames,HashMap<String,HashMap<String,String>> constraints){
+		for(int i=0;i<colNames.length;i++){
+			HashMap<String,String> cons = constraints.get(colNames[i]);
+			if(cons.get("COLUMN_KEY").toLowerCase().trim().equals("pri")){
+				String dataType = cons.get("DATA_TYPE").toLowerCase().trim();
+				return dataType.contains("int") && !dataType.contains("big") ? i : -1;
+			}
+		}
+		return -1;
+	}
+	
+	/*
+	 * @param selColList columns of the select list
+	 * @param colNames columns of the table
+	 * @param extra ordinals of other columns the query needs, e.g. those it is ordered by, may be null
+	 * @return ordinals of the selected columns in ascending order, null if every column is selected
+	 */
+	private int[] getProjection(String[] selColList,String[] colNames,int[] extra){
+		if(selColList == colNames)
+			return null;
+		boolean[] selected = new boolean[colNames.length];
+		int n = 0;
+		for(String colName : selColList){
+			int i = Utilities.indexOf(colNames, colName);
+			if(i != -1 && !selected[i]){
+				selected[i] = true;
+				n++;
+			}
+		}
+		for(int i=0;extra != null && i<extra.length;i++){
+			if(!selected[extra[i]]){
+				selected[extra[i]] = true;
+				n++;
+			}
+		}
+		if(n == colNames.length)
+			return null;
+		int[] projection = new int[n];
+		for(int i=0,j=0;i<colNames.length;i++)
+			if(selected[i])
+				projection[j++] = i;
+		return projection;
 	}
 	
-	private void execute_CreateIndex(Node root){
-		System.out.println("Warning: command currently not supported. It is in the support plan in future versions.");
+	/*
+	 * @param orderBy columns of an ORDER BY
+	 * @param descending receives the direction of each column, one entry per column
+	 * @return ordinals of the columns in the order of the clause
+	 */
+	private int[] getOrderColumns(Node orderBy,String tableName,String[] colNames,boolean[] descending) throws Exception{
+		int[] columns = new int[descending.length];
+		int i = 0;
+		for(Node node=orderBy;node!=null;node=node.getSibl(),i++){
+			// the columns of the schema tables are named in upper case
+			columns[i] = -1;
+			for(int j=0;j<colNames.length && columns[i] == -1;j++)
+				if(colNames[j].equalsIgnoreCase(node.getName()))
+					columns[i] = j;
+			if(columns[i] == -1)
+				throw new Exception(String.format("Error 21: column %s does not exist in table %s!",node.getName(),tableName));
+			descending[i] = node.getCons()[0].equals("desc");
+		}
+		return columns;
+	}
+	
+	/*
+	 * check the select list of a query with aggregates or a GROUP BY and build the aggregation
+	 * a column of the select list has to be a GROUP BY column, SUM and AVG need a numeric column
+	 * @param selectList the select list
+	 * @return the aggregation, its input is set once the scan is opened, null if the query does not aggregate
+	 */
+	private AggregateCursor compileAggregate(Node selectList,Node groupBy,String tableName,String[] colNames,
+			HashMap<String,HashMap<String,String>> constraints) throws Exception{
+		int n = 0;
+		boolean aggregates = false;
+		for(Node node=selectList;node!=null;node=node.getSibl(),n++)
+			aggregates |= node.getCons() != null;
+		if(!aggregates && groupBy == null)
+			return null;
+		
+		ArrayList<Integer> groupColumns = new ArrayList<>();
+		for(Node node=groupBy;node!=null;node=node.getSibl()){
+			int column = Utilities.indexOf(colNames, node.getName());
+			if(column == -1)
+				throw new Exception(String.format("Error 21: column %s does not exist in table %s!",node.getName(),tableName));
+			groupColumns.add(column);
+		}
+		ArrayList<AggregateCursor.Function> functions = new ArrayList<>();
+		int[] output = new int[n];
+		String[] labels = new String[n];
+		int i = 0;
+		for(Node node=selectList;node!=null;node=node.getSibl(),i++){
+			labels[i] = node.getName();
+			if(node.getCons() == null){
+				int column = Utilities.indexOf(colNames, node.getName());
+				if(column == -1 && !node.getName().equals("*"))
+					throw new Exception(String.format("Error 21: column %s does not exist in table %s!",node.getName(),tableName));
+				output[i] = groupColumns.indexOf(column);
+				if(output[i] == -1)
+					throw new Exception(String.format("Error 27: column %s is neither in the GROUP BY nor in an aggregate!",node.getName()));
+				continue;
+			}
+			String colName = new String(node.getVal());
+			int column = -1;
+			boolean real = false;
+			if(!colName.equals("*")){
+				column = Utilities.indexOf(colNames, colName);
+				if(column == -1)
+					throw new Exception(String.format("Error 21: column %s does not exist in table %s!",colName,tableName));
+				String dataType = constraints.get(colName).get("DATA_TYPE").toLowerCase().trim();
+				real = dataType.equals("real") || dataType.equals("double");
+				String function = node.getCons()[0];
+				if((function.equals("sum") || function.equals("avg")) && !real && !dataType.contains("int"))
+					throw new Exception(String.format("Error 28: %s needs a numeric column!",node.getName()));
+			}
+			functions.add(new AggregateCursor.Function(node.getCons()[0],column,real));
+			output[i] = -functions.size();
+		}
+		return new AggregateCursor(Utilities.toIntArray(groupColumns.toArray(new Integer[]{})),
+				functions.toArray(new AggregateCursor.Function[]{}),output,labels);
+	}
+	
+	/*
+	 * open the indexes of a table for a statement, close them with closeIndexes
+	 * @param tableName the table name
+	 * @param colNames column names of the table
+	 * @return open indexes, null if the table has none
+	 */
+	private ArrayList<IndexFile> openIndexes(String tableName,String[] colNames) throws IOException{
+		ArrayList<IndexFile> indexes = null;
+		for(Catalog.IndexInfo info : getIndexes()){
+			if(!info.getTableName().equals(tableName))
+				continue;
+			if(indexes == null)
+				indexes = new ArrayList<>();
+			IndexFile index = IndexFile.open(new File(info.getPath()));
+			index.setColumn(Utilities.indexOf(colNames, info.getColumnName()));
+			indexes.add(index);
+		}
+		return indexes;
+	}
+	
+	private void closeIndexes(ArrayList<IndexFile> indexes) throws IOException{
+		if(indexes != null)
+			for(IndexFile index : indexes)
+				index.close();
 	}
 	
 	private void execute_DropTable(Node root) throws Exception{
@@ -351,11 +610,13 @@ public class CommandExecutor {
 		String cwd = System.getProperty("user.dir");
 		String tableName = root.getLeft().getName();
 		String path = cwd + "/davisbase_tables" + "/" + this.database;
-		FileHandler davisbasetable_handler = new FileHandler(cwd+"/"+"davisbase_schemas"+"/"+"davisbase_tables"+"/"+"davisbase_tables"+".tbl",true);
-		FileHandler davisbasecolumn_handler = new FileHandler(cwd+"/"+"davisbase_schemas"+"/"+"davisbase_columns"+"/"+"davisbase_columns"+".tbl",true);
+		FileHandler davisbasetable_handler = TableHandles.acquire(cwd+"/"+"davisbase_schemas"+"/"+"davisbase_tables"+"/"+"davisbase_tables"+".tbl");
+		FileHandler davisbasecolumn_handler = TableHandles.acquire(cwd+"/"+"davisbase_schemas"+"/"+"davisbase_columns"+"/"+"davisbase_columns"+".tbl");
 
 		// delete table file
 		try {
+		    TableHandles.evict(path+"/"+tableName+".tbl");
+		    PageFile.invalidate(new File(path+"/"+tableName+".tbl"));
 		    Files.delete(Paths.get(path+"/"+tableName+".tbl"));
 		} catch (NoSuchFileException x) {
 		    System.err.format("%s: no such" + " file or directory%n", path+"/"+tableName+".tbl");
@@ -366,14 +627,39 @@ public class CommandExecutor {
 		    System.err.println(x);
 		}
 		
+		// delete the indexes of the table
+		for(Catalog.IndexInfo info : getIndexes()){
+			if(!info.getTableName().equals(tableName))
+				continue;
+			PageFile.invalidate(new File(info.getPath()));
+			Files.deleteIfExists(Paths.get(info.getPath()));
+		}
+		Catalog.invalidateIndexes(this.database);
+		
 		// delete table schema
 		davisbasetable_handler.updateDelRecs(null, null, true, tableName, davisbasetable_handler, false, false, true, "=", null, -1, false, false, true,null,this.database);
 		davisbasecolumn_handler.updateDelRecs(null, null, true, tableName, davisbasecolumn_handler, false, false, true, null, null, -1, false, false, true,null,this.database);
-		
+		TableHandles.release(davisbasetable_handler);
+		TableHandles.release(davisbasecolumn_handler);
+		Catalog.invalidate(tableName);
 	}
 	
-	private void execute_DropIndex(Node root){
-		System.out.println("Warning: command currently not supported. It is in the support plan in future versions.");
+	/*
+	 *  e.g. DROP INDEX idx_name;
+	 */
+	private void execute_DropIndex(Node root) throws Exception{
+		if(this.database == null){
+			System.out.println("No database selected!\nPlease select a database first!");
+			return;
+		}
+		String cwd = System.getProperty("user.dir");
+		String indexName = root.getLeft().getName();
+		File indexFile = new File(cwd + "/davisbase_tables" + "/" + this.database + "/" + indexName + ".ndx");
+		if(!indexFile.exists())
+			throw new Exception(String.format("Error 22: Can't drop index %s: %s does not exist",indexName,indexName));
+		PageFile.invalidate(indexFile);
+		Files.delete(indexFile.toPath());
+		Catalog.invalidateIndexes(this.database);
 	}
 	
 	private void execute_InsertIntoTable(Node root) throws Exception{
@@ -384,56 +670,223 @@ public class CommandExecutor {
 		String cwd = System.getProperty("user.dir");
 		String tableName = root.getLeft().getName();
 		String path = cwd + "/davisbase_tables" + "/" + this.database;
-		FileHandler handler = new FileHandler(path+"/"+tableName+".tbl",true);
-		Node valRoot = root.getLeft().getLeft();
+		FileHandler handler = TableHandles.acquire(path+"/"+tableName+".tbl");
+		Node rowRoot = root.getLeft().getLeft();
 		
 		HashMap<String,HashMap<String,String>> constraints = handler.getTableConstraints(tableName);
 		String[] colNames = handler.getTableColNames();
 		
-		// construct value list
-		HashMap<String,byte[]> valueList = new HashMap<>();
-		int idx = 0;
-		while(valRoot!=null){
-			if(valRoot.getName()!=null)
-				valueList.put(valRoot.getName(),valRoot.getVal());
-			else
-				// if no column is provided, it is assumed values are corresponding to first n columns respectively
-				valueList.put(colNames[idx++], valRoot.getVal());
-			valRoot = valRoot.getSibl();
+		// every row is checked before the first one is written
+		ArrayList<int[]> rowTypeCodes = new ArrayList<>();
+		ArrayList<Row> rows = new ArrayList<>();
+		HashSet<String> keys = new HashSet<>();
+		while(rowRoot!=null){
+			Node valRoot = rowRoot.getLeft();
+			
+			// construct value list
+			HashMap<String,byte[]> valueList = new HashMap<>();
+			int idx = 0;
+			while(valRoot!=null){
+				if(valRoot.getName()!=null)
+					valueList.put(valRoot.getName(),valRoot.getVal());
+				else
+					// if no column is provided, it is assumed values are corresponding to first n columns respectively
+					valueList.put(colNames[idx++], valRoot.getVal());
+				valRoot = valRoot.getSibl();
+			}
+			ArrayList<Integer> typeCodes = new ArrayList<>();
+			Row comValList = new Row(colNames);
+			Utilities.checkConstraints(colNames,constraints,valueList,typeCodes,comValList,true);
+			// check the column that is primary key
+			int operaIndex = -1;
+			for(int i=0;i<colNames.length;i++){
+				if(constraints.get(colNames[i]).get("COLUMN_KEY").toLowerCase().trim().equals("pri")){
+					operaIndex = i;
+					break;
+				}
+			}
+			// the key may not be in an earlier row of the statement, writeTableRows checks the keys in the table
+			if(operaIndex != -1 && !keys.add(comValList.toString(operaIndex).trim()))
+				throw new Exception("Error: duplicate keys are found!");
+			
+			rowTypeCodes.add(Utilities.toIntArray(typeCodes.toArray(new Integer[]{})));
+			rows.add(comValList);
+			rowRoot = rowRoot.getSibl();
 		}
-		ArrayList<Integer> typeCodes = new ArrayList<>();
-		HashMap<Integer,Any> comValList = new HashMap<>();
-		Utilities.checkConstraints(colNames,constraints,valueList,typeCodes,comValList,true);
-		// check the column that is primary key
-		Any whereValue = null;
-		int operaIndex = -1;
-		boolean priInt=false;
-		for(int i=0;i<colNames.length;i++){
-			HashMap<String,String> cons = constraints.get(colNames[i]);
-			if(cons.get("COLUMN_KEY").toLowerCase().trim().equals("pri")){
-				byte[] tmp = valueList.get(colNames[i]);
-				String dataType = cons.get("DATA_TYPE");
-				if(dataType.contains("int") && !dataType.contains("big"))
-					priInt=true;
-				whereValue = Utilities.getData(dataType,new String(tmp));
-				operaIndex = i;
-				break;
+		
+		ArrayList<IndexFile> indexes = openIndexes(tableName,colNames);
+		handler.setIndexes(indexes);
+		try{
+			handler.writeTableRows(rowTypeCodes,rows,tableName);
+		}
+		finally{
+			handler.setIndexes(null);
+			closeIndexes(indexes);
+		}
+		TableHandles.release(handler);
+	}
+	
+	/*
+	 *  e.g. LOAD DATA INFILE "rows.csv" INTO TABLE t1 IGNORE 1 LINES; or COPY t1 FROM "rows.csv";
+	 *  every line of the file holds the values of one row in column order, an empty value is null.
+	 *  The rows are checked like inserted rows, then the table and its indexes are rebuilt in one pass.
+	 */
+	private void execute_LoadData(Node root) throws Exception{
+		if(this.database == null){
+			System.out.println("No database selected!\nPlease select a database first!");
+			return;
+		}
+		String cwd = System.getProperty("user.dir");
+		String tableName = root.getLeft().getName();
+		String path = cwd + "/davisbase_tables" + "/" + this.database;
+		if(!new File(path+"/"+tableName+".tbl").exists())
+			throw new Exception(String.format("Error 08: %s table does not exist!",tableName));
+		File file = new File(new String(root.getLeft().getLeft().getVal()));
+		if(!file.isFile())
+			throw new Exception(String.format("Error 24: file %s does not exist!",file.getPath()));
+		int ignoreLines = Integer.parseInt(root.getLeft().getLeft().getCons()[0]);
+		
+		FileHandler handler = TableHandles.acquire(path+"/"+tableName+".tbl");
+		HashMap<String,HashMap<String,String>> constraints = handler.getTableConstraints(tableName);
+		String[] colNames = handler.getTableColNames();
+		Catalog.TableInfo info = handler.getTableInfo(tableName);
+		int priIndex = info.getPriIndex();
+		
+		// encode the rows, without an integer primary key the loader assigns the row ids
+		ArrayList<byte[]> records = new ArrayList<>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try{
+			String line;
+			int lineNum = 0;
+			while((line = reader.readLine()) != null){
+				lineNum++;
+				if(lineNum<=ignoreLines || line.trim().isEmpty())
+					continue;
+				try{
+					String[] fields = Utilities.parseCSVLine(line);
+					if(fields.length != colNames.length)
+						throw new Exception(String.format("%d values for %d columns",fields.length,colNames.length));
+					HashMap<String,byte[]> valueList = new HashMap<>();
+					for(int i=0;i<colNames.length;i++){
+						String field = fields[i];
+						if(field.isEmpty())
+							field = "null";
+						else if(constraints.get(colNames[i]).get("DATA_TYPE").toLowerCase().contains("text"))
+							field = "\""+field+"\"";
+						valueList.put(colNames[i], field.getBytes());
+					}
+					ArrayList<Integer> typeCodes = new ArrayList<>();
+					Row comValList = new Row(colNames);
+					Utilities.checkConstraints(colNames,constraints,valueList,typeCodes,comValList,true);
+					if(priIndex>=0 && comValList.isNull(priIndex))
+						throw new Exception(String.format("Missing required data for %s (PRIMARY KEY)",colNames[priIndex]));
+					int key = info.isPriInt() ? comValList.getInt(priIndex) : 0;
+					records.add(Utilities.convertoBytes(Utilities.toIntArray(typeCodes.toArray(new Integer[]{})),comValList,true,key));
+				}
+				catch(Exception e){
+					throw new Exception(String.format("Error 25: line %d of %s: %s",lineNum,file.getPath(),e.getMessage()));
+				}
 			}
 		}
-		ArrayList<HashMap<String,Any>> whereRows = new ArrayList<>();
-		ArrayList<HashMap<String,Integer>> whereTypeCodes = new ArrayList<>();
-		handler.selectRecs(false, tableName, handler,"=", whereValue, operaIndex, priInt, true, colNames, true, whereRows, whereTypeCodes);
-		if(!whereRows.isEmpty())
-			throw new Exception("Error: duplicate keys are found!");
+		finally{
+			reader.close();
+		}
 		
-		int[] typeCodes_1 = Utilities.toIntArray(typeCodes.toArray(new Integer[]{}));
-		handler.writeTableRow(typeCodes_1,comValList,false,tableName);
-		handler.close();
+		try{
+			handler.bulkLoad(records, tableName);
+			if(!records.isEmpty())
+				rebuildIndexes(tableName,handler);
+		}
+		finally{
+			TableHandles.release(handler);
+		}
+		System.out.println(String.format("%d rows loaded into %s",records.size(),tableName));
 	}
 	
-	private void execute_DeleteFrom(Node root) throws Exception{
+	/*
+	 * build the indexes of a table again from its rows, e.g. after a bulk load
+	 * @param tableName the table name
+	 * @param handler handler of the table file
+	 */
+	private void rebuildIndexes(String tableName,FileHandler handler) throws Exception{
+		String[] colNames = handler.getTableColNames(tableName);
+		for(Catalog.IndexInfo info : getIndexes()){
+			if(!info.getTableName().equals(tableName))
+				continue;
+			File indexFile = new File(info.getPath());
+			PageFile.invalidate(indexFile);
+			Files.delete(indexFile.toPath());
+			IndexFile index = IndexFile.create(indexFile, tableName, info.getColumnName(), handler.getFilePageSize());
+			index.setColumn(Utilities.indexOf(colNames, info.getColumnName()));
+			try{
+				handler.buildIndex(index, tableName);
+			}
+			finally{
+				index.close();
+			}
+		}
+	}
 	
+	/*
+	 *  e.g. DELETE FROM table_name WHERE id = 3;
+	 */
+	private void execute_DeleteFrom(Node root) throws Exception{
+		if(this.database == null){
+			System.out.println("No database selected!\nPlease select a database first!");
+			return;
+		}
+		String cwd = System.getProperty("user.dir");
+		String tableName = root.getLeft().getName();
+		String path = cwd + "/davisbase_tables" + "/" + this.database;
+		if(!new File(path+"/"+tableName+".tbl").exists())
+			throw new Exception(String.format("Error 08: %s table does not exist!",tableName));
+		FileHandler handler = TableHandles.acquire(path+"/"+tableName+".tbl");
+		boolean where = false;
+		int operIndex = -1;
+		Value value = null;
+		String operator = null;
+		boolean primary = false;
+		boolean priInt = false;
 		
+		Node whereRoot = root.getLeft().getSibl();  // where condition
+		if(whereRoot!=null)
+			where=true;
+		
+		// get constraints
+		HashMap<String,HashMap<String,String>> constraints = handler.getTableConstraints(tableName);
+		String[] colNames = handler.getTableColNames();
+		
+		Predicate filter = where ? compileWhere(whereRoot,tableName,colNames,constraints) : null;
+		
+		// delete the rows
+		ArrayList<IndexFile> indexes = openIndexes(tableName,colNames);
+		if(where){
+			int keyColumn = getIntKeyColumn(colNames,constraints);
+			Predicate.Compare driver = filter.drivingCondition(keyColumn,indexes);
+			if(driver != null){
+				operIndex = driver.getColumn();
+				operator = driver.getOperator();
+				value = driver.getValue();
+				primary = constraints.get(colNames[operIndex]).get("COLUMN_KEY").toLowerCase().trim().equals("pri");
+			}
+			priInt = keyColumn != -1;
+		}
+		handler.setIndexes(indexes);
+		handler.setPlan(this.plan);
+		handler.setFilter(filter);
+		try{
+			long start = System.nanoTime();
+			handler.updateDelRecs(null,null,false,tableName,handler,true,false,false,operator,value,operIndex,priInt,primary,where,null,this.database);
+			if(this.plan != null && this.plan.isAnalyze())
+				this.plan.addPhase("delete", System.nanoTime()-start-this.plan.getPhase("plan"));
+		}
+		finally{
+			handler.setPlan(null);
+			handler.setFilter(null);
+			handler.setIndexes(null);
+			closeIndexes(indexes);
+		}
+		TableHandles.release(handler);
 	}
 	
 	private void execute_Update(Node root) throws Exception{
@@ -444,10 +897,10 @@ public class CommandExecutor {
 		String cwd = System.getProperty("user.dir");
 		String tableName = root.getLeft().getName();
 		String path = cwd + "/davisbase_tables" + "/" + this.database;
-		FileHandler handler = new FileHandler(path+"/"+tableName+".tbl",true);
+		FileHandler handler = TableHandles.acquire(path+"/"+tableName+".tbl");
 		boolean where = false;
 		int operIndex = -1;
-		Any value = null;
+		Value value = null;
 		boolean primary = false;
 		boolean priInt = false;
 		
@@ -462,7 +915,7 @@ public class CommandExecutor {
 		String[] colNames = handler.getTableColNames();
 		
 		// construct value list
-		HashMap<Integer,Any> valueList = new HashMap<>();
+		Row valueList = new Row(colNames);
 		ArrayList<Integer> indexes_tmp = new ArrayList<>();
 		HashMap<Integer,Integer> typeCodeList = new HashMap<>();
 		while(valRoot!=null){
@@ -482,95 +935,471 @@ public class CommandExecutor {
 				HashMap<String,String> map1 = constraints.get(colName);
 				String dataType = map1.get("DATA_TYPE");
 
-				Any val = Utilities.getData(dataType, tmp,colIndex,typeCodeList);
-				valueList.put(colIndex, val);	
+				Value val = Utilities.getData(dataType, tmp,colIndex,typeCodeList);
+				valueList.set(colIndex, val);	
 			valRoot = valRoot.getSibl();
 		}
 		
 		// check the update column
 		int whereOperIndex = -1;
 		boolean wherePriInt=false;
-		Any whereValue2 = null;
+		Value whereValue2 = null;
 		for(int i=0;i<colNames.length;i++){
 			HashMap<String,String> cons = constraints.get(colNames[i]);
 			if(cons.get("COLUMN_KEY").toLowerCase().trim().equals("pri")){
-				if(valueList.containsKey(i)){
+				if(typeCodeList.containsKey(i)){
 					whereOperIndex=i;
 					whereValue2 = valueList.get(i);
 					String dataType = cons.get("DATA_TYPE");
 					if(dataType.contains("int") && !dataType.contains("big"))
 						wherePriInt=true;
 					int typeCode = typeCodeList.get(i);
-					if ((typeCode<0x0C && Utilities.In(typeCode, new int[]{0x00,0x01,0x02,0x03})) || (typeCode>=0x0C && valueList.get(i).extract_string().toLowerCase().trim().equals("null")))
+					if ((typeCode<0x0C && Utilities.In(typeCode, new int[]{0x00,0x01,0x02,0x03})) || (typeCode>=0x0C && valueList.getText(i).toLowerCase().trim().equals("null")))
 						throw new Exception(String.format("Error: %s cannot accept null value",colNames[i]));
 				}
 			}
 			if(cons.get("IS_NULLABLE").toLowerCase().trim().equals("no")){
-				if(valueList.containsKey(i))
+				if(typeCodeList.containsKey(i))
 				{
 					int typeCode = typeCodeList.get(i);
-					if ((typeCode<0x0C && Utilities.In(typeCode, new int[]{0x00,0x01,0x02,0x03})) || (typeCode>=0x0C && valueList.get(i).extract_string().toLowerCase().trim().equals("null")))
+					if ((typeCode<0x0C && Utilities.In(typeCode, new int[]{0x00,0x01,0x02,0x03})) || (typeCode>=0x0C && valueList.getText(i).toLowerCase().trim().equals("null")))
 						throw new Exception(String.format("Error: %s cannot accept null value",colNames[i]));
 				}
 			}
 		}
 		
-		ArrayList<HashMap<String,Any>> whereRows = new ArrayList<>();
-		ArrayList<HashMap<String,Integer>> whereTypeCodes = new ArrayList<>();
+		ArrayList<Row> whereRows = new ArrayList<>();
 		if(whereValue2!=null){
-			handler.selectRecs(false, tableName, handler,"=", whereValue2, whereOperIndex, wherePriInt, true, colNames, true, whereRows, whereTypeCodes);
+			handler.selectRecs(false, tableName, handler,"=", whereValue2, whereOperIndex, wherePriInt, true, colNames, true, whereRows);
 			if(!whereRows.isEmpty())
 				throw new Exception("Error: duplicate keys are found!");
 		}
 		
-		// read where condition
-		String whereColName = null;
 		String operator = null;
-		String whereValue = null;
-		HashMap<String, byte[]> whereValList = null;	
+		Predicate filter = where ? compileWhere(whereRoot,tableName,colNames,constraints) : null;
+		
+		// update value
+		ArrayList<IndexFile> indexes = openIndexes(tableName,colNames);
 		if(where){
-			// read where condition
-			whereColName = whereRoot.getName();
-			operator = whereRoot.getCons()[0];
-			whereValue = new String(whereRoot.getVal());
-			if(whereValue.contains("\""))
-				whereValue = whereValue.substring(whereValue.indexOf('"')+1,whereValue.lastIndexOf('"'));
-			if(whereValue.contains("\'"))
-				whereValue = whereValue.substring(whereValue.indexOf('\'')+1,whereValue.lastIndexOf('\''));
-			whereValList = new HashMap<>();
-			whereValList.put(whereColName, whereRoot.getVal());
-
-			// check operIndex
-			for(int i=0;i<colNames.length;i++)
-				if(whereColName.equals(colNames[i])){
-					operIndex = i;
-					break;
+			int keyColumn = getIntKeyColumn(colNames,constraints);
+			Predicate.Compare driver = filter.drivingCondition(keyColumn,indexes);
+			if(driver != null){
+				operIndex = driver.getColumn();
+				operator = driver.getOperator();
+				value = driver.getValue();
+				primary = constraints.get(colNames[operIndex]).get("COLUMN_KEY").toLowerCase().trim().equals("pri");
+			}
+			priInt = keyColumn != -1;
+		}
+		handler.setIndexes(indexes);
+		handler.setPlan(this.plan);
+		handler.setFilter(filter);
+		try{
+			long start = System.nanoTime();
+			handler.updateDelRecs(Utilities.toIntArray(indexes_tmp.toArray(new Integer[]{})),valueList,false,tableName,handler,false,true,false,operator,value,operIndex,priInt,primary,where,typeCodeList,null);
+			if(this.plan != null && this.plan.isAnalyze())
+				this.plan.addPhase("update", System.nanoTime()-start-this.plan.getPhase("plan"));
+		}
+		finally{
+			handler.setPlan(null);
+			handler.setFilter(null);
+			handler.setIndexes(null);
+			closeIndexes(indexes);
+		}
+		TableHandles.release(handler);
+	}
+	
+	/*
+	 * select from tables joined on equal columns, e.g. SELECT * FROM t1 JOIN t2 ON t1.c1 = t2.c2 LEFT JOIN t3 ON t2.c3 = t3.id;
+	 * the tables are joined from left to right, a joined row has the columns of every table joined so far named
+	 * table.column, a column may be named alone if no other table has a column of that name.
+	 * A join on the integer primary key of the right table merges the two when the left rows come in the order of
+	 * their join column, as the first table does on its integer key, or reads the record of each left row by its key,
+	 * any other join is a hash join building on the side with fewer rows in davisbase_tables. Only a key-to-key join is
+	 * merged: a foreign key column is stored out of order, so merging it would need a sort first. A where condition on the first
+	 * table only is checked while that table is read, any other on the joined rows.
+	 */
+	private void execute_Join(Node root) throws Exception{
+		String cwd = System.getProperty("user.dir");
+		String path = cwd + "/davisbase_tables" + "/" + this.database;
+		ArrayList<String> tables = new ArrayList<>();
+		tables.add(root.getLeft().getName());
+		for(Node node=this.joins;node!=null;node=node.getSibl())
+			tables.add(node.getName());
+		for(int i=0;i<tables.size();i++){
+			String table = tables.get(i);
+			if(table.equals("davisbase_tables") || table.equals("davisbase_columns") || tables.indexOf(table) != i)
+				throw new Exception(String.format("Error 30: table %s can not be joined!",table));
+			if(!new File(path+"/"+table+".tbl").exists())
+				throw new Exception(String.format("Error 08: %s table does not exist!",table));
+		}
+		String tableList = String.join(", ", tables);
+		
+		// columns of every table, table i starts at column offsets[i] of a joined row
+		int t = tables.size();
+		FileHandler[] handlers = new FileHandler[t];
+		String[][] tableColNames = new String[t][];
+		int[] offsets = new int[t+1];
+		ArrayList<String> names = new ArrayList<>();
+		HashMap<String,HashMap<String,String>> constraints = new HashMap<>();
+		ArrayList<IndexFile> indexes = null;
+		try{
+			for(int i=0;i<t;i++){
+				handlers[i] = TableHandles.acquire(path+"/"+tables.get(i)+".tbl");
+				HashMap<String,HashMap<String,String>> tableConstraints = handlers[i].getTableConstraints(tables.get(i));
+				tableColNames[i] = handlers[i].getTableColNames();
+				offsets[i+1] = offsets[i]+tableColNames[i].length;
+				for(String colName : tableColNames[i]){
+					names.add(tables.get(i)+"."+colName);
+					constraints.put(tables.get(i)+"."+colName, tableConstraints.get(colName));
 				}
-			// get value
-			HashMap<String,String> tmp = constraints.get(whereColName);
-			String dataType = tmp.get("DATA_TYPE");
-
-			value = Utilities.getData(dataType,whereValue);
+			}
+			String[] colNames = names.toArray(new String[]{});
 			
-			// check if where column is primary or not
-			HashMap<String,String> tmp2 = constraints.get(whereColName);
-			String column_key = tmp2.get("COLUMN_KEY").toLowerCase().trim();
-			if(column_key.equals("pri"))
-				primary=true;
+			// every column is named table.column from here on
+			Node selectList = root.getLeft().getLeft();
+			Node whereRoot = root.getLeft().getSibl();
+			String[] selColList = colNames;
+			if(!selectList.getName().equals("*")){
+				ArrayList<String> list = new ArrayList<>();
+				for(Node node=selectList;node!=null;node=node.getSibl()){
+					if(node.getCons() == null)
+						node.setName(qualify(node.getName(),colNames,tableList));
+					else if(!new String(node.getVal()).equals("*"))
+						node.setVal(qualify(new String(node.getVal()),colNames,tableList).getBytes());
+					list.add(node.getName());
+				}
+				selColList = list.toArray(new String[]{});
+			}
+			if(whereRoot != null)
+				qualifyWhere(whereRoot,colNames,tableList);
+			for(Node node=this.groupBy;node!=null;node=node.getSibl())
+				node.setName(qualify(node.getName(),colNames,tableList));
+			// an aggregated query is ordered by the columns of its result, e.g. count(*)
+			for(Node node=this.orderBy;node!=null;node=node.getSibl())
+				if(!node.getName().contains("("))
+					node.setName(qualify(node.getName(),colNames,tableList));
 			
-			// check if primary column is int or not
-			for(int idx1=0;idx1<colNames.length;idx1++){
-				HashMap<String,String> tmp3 = constraints.get(colNames[idx1]);
-				if(tmp3.get("COLUMN_KEY").toLowerCase().trim().equals("pri")){
-					String data_type = tmp3.get("DATA_TYPE").toLowerCase().trim();
-					if(data_type.contains("int") && !data_type.contains("big"))
-						priInt = true;	
+			// the join columns, the one of the left rows and the one of the table joined
+			int[] leftColumns = new int[t];
+			int[] rightColumns = new int[t];
+			int k = 1;
+			for(Node node=this.joins;node!=null;node=node.getSibl(),k++){
+				int a = Utilities.indexOf(colNames, qualify(node.getCons()[1],colNames,tableList));
+				int b = Utilities.indexOf(colNames, qualify(node.getCons()[2],colNames,tableList));
+				if(a>=offsets[k] && a<offsets[k+1] && b<offsets[k]){
+					int tmp = a;
+					a = b;
+					b = tmp;
 				}
+				if(a>=offsets[k] || b<offsets[k] || b>=offsets[k+1])
+					throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+				leftColumns[k] = a;
+				rightColumns[k] = b-offsets[k];
 			}
+			
+			Predicate filter = whereRoot == null ? null : compileWhere(whereRoot,tableList,colNames,constraints);
+			boolean pushed = filter != null && lastWhereColumn(whereRoot,colNames)<offsets[1];
+			AggregateCursor aggregate = compileAggregate(selectList,this.groupBy,tableList,colNames,constraints);
+			int n = 0;
+			for(Node node=this.orderBy;node!=null;node=node.getSibl())
+				n++;
+			boolean[] descending = new boolean[n];
+			int[] orderColumns = null;
+			if(this.orderBy != null)
+				orderColumns = getOrderColumns(this.orderBy,tableList,aggregate == null ? colNames : selColList,descending);
+			
+			// columns decoded: the selected ones, and those the join, the where condition and the aggregation read
+			ArrayList<Integer> extra = new ArrayList<>();
+			for(int i=1;i<t;i++){
+				extra.add(leftColumns[i]);
+				extra.add(offsets[i]+rightColumns[i]);
+			}
+			for(int column : aggregate == null ? (orderColumns == null ? new int[0] : orderColumns) : aggregate.getInputColumns())
+				extra.add(column);
+			for(int i=0;filter != null && !pushed && i<colNames.length;i++)
+				if(whereReads(whereRoot,colNames[i]))
+					extra.add(i);
+			int[] projection = getProjection(selColList,colNames,Utilities.toIntArray(extra.toArray(new Integer[]{})));
+			if(this.plan != null){
+				StringBuilder columns = new StringBuilder(projection == null ? "every column" : (projection.length == 0 ? "none" : ""));
+				for(int i=0;projection != null && i<projection.length;i++)
+					columns.append(i == 0 ? "" : ", ").append(colNames[projection[i]]);
+				this.plan.setColumns(columns.toString());
+			}
+			
+			// the first table, the where condition is checked on its records if it reads no other table
+			String[] firstColNames = Arrays.copyOf(colNames, offsets[1]);
+			Cursor cursor;
+			if(handlers[0].getTreeHeight() == 0){
+				cursor = new Cursor.ListCursor(new ArrayList<Row>());
+				if(this.plan != null)
+					this.plan.setAccess(tables.get(0), null, 0, 0, 0, 0);
+			}
+			else{
+				indexes = pushed ? openIndexes(tables.get(0),tableColNames[0]) : null;
+				cursor = openTable(handlers[0],tables.get(0),firstColNames,constraints,pushed ? filter : null,
+						tableProjection(projection,offsets[0],offsets[1]),indexes,this.plan);
+			}
+			
+			// estimated rows of the left side of each join, from the row counts in davisbase_tables
+			long leftRows = handlers[0].getRowCount(tables.get(0));
+			// columns the left rows come in ascending order of, the first table is read in the order of its key
+			boolean[] ascending = new boolean[colNames.length];
+			int firstKey = getIntKeyColumn(firstColNames,constraints);
+			if(firstKey != -1)
+				ascending[firstKey] = true;
+			k = 1;
+			for(Node node=this.joins;node!=null;node=node.getSibl(),k++){
+				String table = tables.get(k);
+				boolean outer = node.getCons()[0].equals("left");
+				String[] joined = Arrays.copyOf(colNames, offsets[k+1]);
+				int[] columns = tableProjection(projection,offsets[k],offsets[k+1]);
+				long rightRows = handlers[k].getRowCount(table);
+				HashMap<String,HashMap<String,String>> tableConstraints = handlers[k].getTableConstraints(table);
+				String on = (node.getCons()[0].equals("left") ? "left join " : "inner join ")+table+" on "+colNames[leftColumns[k]]+" = "+colNames[offsets[k]+rightColumns[k]];
+				
+				// a lookup of the key costs a descent per left row, a merge join and a hash join one scan of the table
+				boolean keyJoin = getIntKeyColumn(tableColNames[k],tableConstraints) == rightColumns[k];
+				int rightColumn = offsets[k]+rightColumns[k];
+				if(keyJoin && ascending[leftColumns[k]] && leftRows*handlers[k].getTreeHeight()>=handlers[k].recalFilePages()){
+					// both sides come in key order, the leaf chains are read side by side
+					if(this.plan == null || this.plan.isAnalyze()){
+						Cursor right = handlers[k].getTreeHeight() == 0 ? new Cursor.ListCursor(new ArrayList<Row>())
+								: openTable(handlers[k],table,tableColNames[k],tableConstraints,null,columns,null,null);
+						cursor = new MergeJoinCursor(cursor,right,leftColumns[k],rightColumns[k],outer,joined,offsets[k]);
+					}
+					if(this.plan != null)
+						this.plan.addJoin(on+", merge join, the left rows and the leaf chain of "+table+" are read in key order side by side");
+					ascending[rightColumn] = !outer;
+				}
+				else if(keyJoin && leftRows<=rightRows){
+					if(this.plan == null || this.plan.isAnalyze())
+						cursor = new IndexJoinCursor(cursor,handlers[k],table,tableColNames[k],columns,leftColumns[k],outer,joined,offsets[k]);
+					if(this.plan != null)
+						this.plan.addJoin(on+", index nested-loop join, the record of each left row is read by its key "+tableColNames[k][rightColumns[k]]);
+					ascending[rightColumn] = !outer && ascending[leftColumns[k]];
+				}
+				else{
+					// the smaller side is kept in the hash table, a left join keeps the right side
+					boolean buildLeft = !outer && leftRows<rightRows;
+					String leftType = constraints.get(colNames[leftColumns[k]]).get("DATA_TYPE").toLowerCase().trim();
+					String rightType = tableConstraints.get(tableColNames[k][rightColumns[k]]).get("DATA_TYPE").toLowerCase().trim();
+					boolean real = leftType.equals("real") || leftType.equals("double") || rightType.equals("real") || rightType.equals("double");
+					if(this.plan == null || this.plan.isAnalyze()){
+						Cursor right = handlers[k].getTreeHeight() == 0 ? new Cursor.ListCursor(new ArrayList<Row>())
+								: openTable(handlers[k],table,tableColNames[k],tableConstraints,null,columns,null,null);
+						cursor = new HashJoinCursor(cursor,right,leftColumns[k],rightColumns[k],buildLeft,outer,real,joined,offsets[k]);
+					}
+					if(this.plan != null)
+						this.plan.addJoin(on+", hash join, "+(buildLeft ? "the left rows (about "+leftRows+")" : table+" ("+rightRows+" rows)")
+								+" in the hash table, partitioned beyond "+HashJoinCursor.getMemory()+" bytes");
+					// the rows of partitions come in the order of the partitions
+					Arrays.fill(ascending, false);
+				}
+				leftRows = Math.max(leftRows, rightRows);
+			}
+			if(filter != null && !pushed){
+				if(this.plan == null || this.plan.isAnalyze())
+					cursor = new Cursor.FilterCursor(cursor,filter);
+				if(this.plan != null)
+					this.plan.setPredicate(filter+", checked on every joined row");
+			}
+			printSelect(cursor,aggregate,orderColumns,descending,selColList);
 		}
-		// update value
-		handler.updateDelRecs(Utilities.toIntArray(indexes_tmp.toArray(new Integer[]{})),valueList,false,tableName,handler,false,true,false,operator,value,operIndex,priInt,primary,where,typeCodeList,null);
+		finally{
+			for(FileHandler handler : handlers){
+				if(handler != null){
+					handler.setIndexes(null);
+					TableHandles.release(handler);
+				}
+			}
+			closeIndexes(indexes);
+		}
+	}
+	
+	/*
+	 * @param name column name, alone or as table.column
+	 * @param colNames columns of a joined row, named table.column
+	 * @param tables the joined tables
+	 * @return the column of a joined row the name stands for
+	 */
+	private String qualify(String name,String[] colNames,String tables) throws Exception{
+		String found = null;
+		for(String colName : colNames){
+			if(colName.equalsIgnoreCase(name))
+				return colName;
+			if(name.indexOf('.') == -1 && colName.substring(colName.indexOf('.')+1).equalsIgnoreCase(name)){
+				if(found != null)
+					throw new Exception(String.format("Error 29: column %s is ambiguous!",name));
+				found = colName;
+			}
+		}
+		if(found == null)
+			throw new Exception(String.format("Error 21: column %s does not exist in table %s!",name,tables));
+		return found;
+	}
+	
+	/*
+	 * name the columns of a where condition table.column, see qualify
+	 */
+	private void qualifyWhere(Node node,String[] colNames,String tables) throws Exception{
+		if(node.getLeaf()){
+			node.setName(qualify(node.getName(),colNames,tables));
+			return;
+		}
+		for(Node child=node.getLeft();child!=null;child=child.getSibl())
+			qualifyWhere(child,colNames,tables);
+	}
+	
+	/*
+	 * @return the largest ordinal of a column the where condition reads
+	 */
+	private int lastWhereColumn(Node node,String[] colNames){
+		if(node.getLeaf())
+			return Utilities.indexOf(colNames, node.getName());
+		int last = -1;
+		for(Node child=node.getLeft();child!=null;child=child.getSibl())
+			last = Math.max(last, lastWhereColumn(child,colNames));
+		return last;
+	}
+	
+	/*
+	 * @return true if the where condition reads the column
+	 */
+	private boolean whereReads(Node node,String colName){
+		if(node.getLeaf())
+			return node.getName().equals(colName);
+		for(Node child=node.getLeft();child!=null;child=child.getSibl())
+			if(whereReads(child,colName))
+				return true;
+		return false;
+	}
+	
+	/*
+	 * @param projection ordinals of the columns of a joined row decoded, null for every column
+	 * @param from first column of the table in a joined row
+	 * @param to column after the last column of the table
+	 * @return ordinals of the columns of the table decoded, null for every column
+	 */
+	private int[] tableProjection(int[] projection,int from,int to){
+		if(projection == null)
+			return null;
+		ArrayList<Integer> columns = new ArrayList<>();
+		for(int column : projection)
+			if(column>=from && column<to)
+				columns.add(column-from);
+		return Utilities.toIntArray(columns.toArray(new Integer[]{}));
+	}
 	
+	/*
+	 * group, sort and limit the rows of a select and print them, or count them for EXPLAIN ANALYZE
+	 * @param cursor the rows read, it is closed when they are printed
+	 * @param aggregate aggregation of the select list, null if the select does not aggregate
+	 * @param orderColumns ordinals of the columns of the ORDER BY, null if there is none
+	 * @param descending direction of each ORDER BY column
+	 * @param selColList columns printed
+	 */
+	private void printSelect(Cursor cursor,AggregateCursor aggregate,int[] orderColumns,boolean[] descending,String[] selColList) throws Exception{
+		// rows are grouped in a hash table, partitioned on disk when the groups outgrow davisdb.group.memory
+		// EXPLAIN without ANALYZE does not read the rows, so they are neither grouped nor sorted
+		if(aggregate != null){
+			aggregate.setInput(cursor);
+			if(this.plan == null || this.plan.isAnalyze())
+				cursor = aggregate;
+			if(this.plan != null){
+				StringBuilder group = new StringBuilder(this.groupBy == null ? "one group" : "hash group by ");
+				for(Node node=this.groupBy;node!=null;node=node.getSibl())
+					group.append(node.getName()).append(node.getSibl() == null ? "" : ", ");
+				this.plan.setAggregate(group.toString());
+			}
+		}
+		// rows are sorted in memory, or in runs on disk when they outgrow davisdb.sort.memory
+		// with a LIMIT only the rows up to OFFSET plus LIMIT are kept while sorting
+		long bound = this.limit<0 || this.limit>Long.MAX_VALUE-this.offset ? -1 : this.offset+this.limit;
+		if(orderColumns != null){
+			if(this.plan == null || this.plan.isAnalyze())
+				cursor = new SortCursor(cursor,orderColumns,descending,bound);
+			if(this.plan != null){
+				StringBuilder order = new StringBuilder();
+				Node node = this.orderBy;
+				for(int i=0;i<orderColumns.length;i++,node=node.getSibl())
+					order.append(i == 0 ? "" : ", ").append(node.getName()).append(descending[i] ? " desc" : "");
+				this.plan.setOrder(order.toString(),bound);
+			}
+		}
+		// the scan stops once the last row is returned, unless the rows are sorted or grouped first
+		if(this.limit>=0 || this.offset>0){
+			if(this.plan == null || this.plan.isAnalyze())
+				cursor = new LimitCursor(cursor,this.offset,this.limit);
+			if(this.plan != null)
+				this.plan.setLimit((this.limit<0 ? "every row" : this.limit+" rows")+" after skipping "+this.offset
+						+(aggregate == null && orderColumns == null ? ", no leaf is read after the one of the last row returned" : ""));
+		}
+		try{
+			long sortStart = System.nanoTime();
+			cursor.open();
+			// a hash join reads its build side when it is opened
+			String phase = aggregate == null ? (orderColumns == null ? null : "sort") : (orderColumns == null ? "aggregate" : "aggregate and sort");
+			if(this.joins != null)
+				phase = phase == null ? "join build" : "join build, "+phase;
+			if(this.plan != null && this.plan.isAnalyze() && phase != null)
+				this.plan.addPhase(phase, System.nanoTime()-sortStart);
+			if(this.plan == null)
+				Utilities.printRows(selColList, cursor);
+			else if(this.plan.isAnalyze()){
+				// rows are read but not printed, the plan is the result
+				long start = System.nanoTime();
+				long rows = 0;
+				while(cursor.next() != null)
+					rows++;
+				this.plan.addPhase("read", System.nanoTime()-start);
+				this.plan.addActual("rows emitted", rows);
+			}
+		}
+		finally{
+			cursor.close();
+		}
+	}
+	
+	/*
+	 * open a cursor over the records of a table that meet a where condition, the where condition is checked on the
+	 * records in the page and the leaves read are picked by its driving condition, see Predicate.drivingCondition
+	 * @param filter where condition, null to read every record
+	 * @param projection ordinals of the columns decoded, null for every column
+	 * @param indexes secondary indexes of the table, may be null
+	 * @param plan plan the access path is described in, null for none
+	 */
+	private Cursor openTable(FileHandler handler,String tableName,String[] colNames,HashMap<String,HashMap<String,String>> constraints,
+			Predicate filter,int[] projection,ArrayList<IndexFile> indexes,Plan plan) throws Exception{
+		String operator = null;
+		Value value = null;
+		int operIndex = -1;
+		boolean primary = false;
+		boolean priInt = false;
+		if(filter != null){
+			int keyColumn = getIntKeyColumn(colNames,constraints);
+			Predicate.Compare driver = filter.drivingCondition(keyColumn,indexes);
+			if(driver != null){
+				operIndex = driver.getColumn();
+				operator = driver.getOperator();
+				value = driver.getValue();
+				primary = constraints.get(colNames[operIndex]).get("COLUMN_KEY").toLowerCase().trim().equals("pri");
+			}
+			priInt = keyColumn != -1;
+		}
+		handler.setIndexes(indexes);
+		handler.setPlan(plan);
+		handler.setFilter(filter);
+		handler.setProjection(projection);
+		try{
+			return handler.openCursor(false, tableName, handler, operator, value, operIndex, priInt, primary, colNames, filter != null);
+		}
+		finally{
+			handler.setPlan(null);
+			handler.setFilter(null);
+			handler.setProjection(null);
+		}
 	}
 	
 	private void execute_Select(Node root) throws Exception{
@@ -578,46 +1407,50 @@ public class CommandExecutor {
 			System.out.println("No database selected!\nPlease select a database first!");
 			return;
 		}
+		if(this.joins != null){
+			execute_Join(root);
+			return;
+		}
 		String cwd = System.getProperty("user.dir");
 		String tableName = root.getLeft().getName();
 		String path;
 		FileHandler handler;
 		boolean schema;
 		boolean where = false;
-		ArrayList<HashMap<String,Any>> rows= new ArrayList<>();
-		ArrayList<HashMap<String,Integer>> typeCodes = new ArrayList<>();
 		
-		String whereColName = null;
-		String operator = null;
-		String whereValue = null;
-		HashMap<String, byte[]> whereValList = null;	
+		Predicate filter = null;
+		HashMap<String,HashMap<String,String>> constraints = null;
 		String[] colNames = null;
 		String[] selColList = null;
 		
-		int operIndex = -1;
-		Any value = null;
-		boolean primary = false;
-		boolean priInt = false;
+		// columns of the ORDER BY
+		int n = 0;
+		for(Node node=this.orderBy;node!=null;node=node.getSibl())
+			n++;
+		boolean[] descending = new boolean[n];
+		int[] orderColumns = null;
+		AggregateCursor aggregate = null;
 		
 		if(!tableName.equals("davisbase_tables") && !tableName.equals("davisbase_columns")){
 			path = cwd + "/davisbase_tables" + "/" + this.database;
-			handler = new FileHandler(path+"/"+tableName+".tbl",true);
+			handler = TableHandles.acquire(path+"/"+tableName+".tbl");
 			schema =false;
 		}
 		else{
 			path = cwd + "/davisbase_schemas" + "/"+ tableName;
-			handler = new FileHandler(path+"/"+tableName+".tbl",true);
+			handler = TableHandles.acquire(path+"/"+tableName+".tbl");
 			schema = true;
 		}
 		
 		if(!schema){
 			Node selectRoot = root.getLeft().getLeft();    // set select root
+			Node selectList = selectRoot;
 			Node whereRoot = root.getLeft().getSibl();  // where condition
 			if(whereRoot!=null)
 				where=true;
 		
 			// get constraints
-			HashMap<String,HashMap<String,String>> constraints = handler.getTableConstraints(tableName);
+			constraints = handler.getTableConstraints(tableName);
 			colNames = handler.getTableColNames();
 		
 			// construct selection list
@@ -637,84 +1470,69 @@ public class CommandExecutor {
 				selColList = tmp_colList.toArray(new String[]{});
 			
 			
-			if(where){
-			// read where condition
-				whereColName = whereRoot.getName();
-				operator = whereRoot.getCons()[0];
-				whereValue = new String(whereRoot.getVal());
-				if(whereValue.contains("\""))
-					whereValue = whereValue.substring(whereValue.indexOf('"')+1,whereValue.lastIndexOf('"'));
-				if(whereValue.contains("\'"))
-					whereValue = whereValue.substring(whereValue.indexOf('\'')+1,whereValue.lastIndexOf('\''));
-				whereValList = new HashMap<>();
-				whereValList.put(whereColName, whereRoot.getVal());
-		
-			
-				// check operIndex
-				for(int i=0;i<colNames.length;i++)
-					if(whereColName.equals(colNames[i])){
-						operIndex = i;
-						break;
-					}
-				// get value
-				HashMap<String,String> tmp = constraints.get(whereColName);
-				String dataType = tmp.get("DATA_TYPE");
-				value = Utilities.getData(dataType,whereValue);
-			
-				// check if where column is primary or not
-				HashMap<String,String> tmp2 = constraints.get(whereColName);
-				String column_key = tmp2.get("COLUMN_KEY").toLowerCase().trim();
-				if(column_key.equals("pri"))
-					primary=true;
-			
-				// check if primary column is int or not
-				for(int idx=0;idx<colNames.length;idx++){
-					HashMap<String,String> tmp3 = constraints.get(colNames[idx]);
-					if(tmp3.get("COLUMN_KEY").toLowerCase().trim().equals("pri")){
-						String data_type = tmp3.get("DATA_TYPE").toLowerCase().trim();
-							if(data_type.contains("int") && !data_type.contains("big"))
-								priInt = true;	
-					}
+			if(where)
+				filter = compileWhere(whereRoot,tableName,colNames,constraints);
+			// an aggregated query is ordered by the columns of its result
+			aggregate = compileAggregate(selectList,this.groupBy,tableName,colNames,constraints);
+			if(this.orderBy != null)
+				orderColumns = getOrderColumns(this.orderBy,tableName,aggregate == null ? colNames : selColList,descending);
+		}
+		// rows are printed while the table is read
+		Cursor cursor;
+		ArrayList<IndexFile> indexes = null;
+		if(!schema){
+			indexes = where ? openIndexes(tableName,colNames) : null;
+			// only the selected columns are decoded, the where condition is checked on the records in the page
+			int[] projection = getProjection(selColList,colNames,aggregate == null ? orderColumns : aggregate.getInputColumns());
+			if(this.plan != null){
+				StringBuilder columns = new StringBuilder(projection == null ? "every column" : (projection.length == 0 ? "none" : ""));
+				for(int i=0;projection != null && i<projection.length;i++)
+					columns.append(i == 0 ? "" : ", ").append(colNames[projection[i]]);
+				this.plan.setColumns(columns.toString());
+			}
+			// COUNT(*) of the whole table is the row count davisbase_tables keeps, no leaf is read
+			if(!where && aggregate != null && aggregate.countsRowsOnly()){
+				aggregate.setRowCount(handler.getRowCount(tableName));
+				cursor = new Cursor.ListCursor(new ArrayList<Row>());
+				if(this.plan != null){
+					this.plan.setAccess(tableName, Plan.Access.CATALOG, handler.getTreeHeight(), 0, 0, 0);
+					this.plan.setPredicate("none, TABLE_ROWS of the table is the count");
 				}
 			}
+			else
+				cursor = openTable(handler,tableName,colNames,constraints,filter,projection,indexes,this.plan);
 		}
-		if(!schema)
-			handler.selectRecs(schema, tableName, handler, operator, value, operIndex, priInt, primary, colNames, where, rows, typeCodes);
 		else{
+			ArrayList<Row> rows = new ArrayList<>();
 			ArrayList<Integer> keys = new ArrayList<>();
 			String[] colNames1;
 			if(tableName.equals("davisbase_columns"))
 				colNames1 = FileHandler.davisbase_column_header;
 			else
 				colNames1 = FileHandler.davisbase_table_header;
-			handler.getTableRows(null, null, handler, rows, typeCodes, keys,colNames1, -1, null, true, true, tableName, false);
+			handler.getTableRows(null, null, handler, rows, keys,colNames1, -1, null, true, true, tableName, false);
 			selColList=colNames1;
-		}
-		
-		// construct parameters for print table
-		// selColList is the headerList
-		HashMap<String,String[]> column_map = new HashMap<>();
-		int maxLength = 0;
-		int maxRows = rows.size();
-		for(int i=0;i<selColList.length;i++){
-			String[] tmp_columns = new String[rows.size()];
-			for(int idx=0;idx<rows.size();idx++){
-				HashMap<String,Any> tmp_rows = rows.get(idx);
-				HashMap<String,Integer> tmp_typeCode = typeCodes.get(idx);
-				tmp_columns[idx] = Utilities.getStrData(tmp_rows.get(selColList[i]), tmp_typeCode.get(selColList[i]));
-				if(maxLength<tmp_columns[idx].length())
-					maxLength = tmp_columns[idx].length();
-				if(maxLength<selColList[i].length())
-					maxLength = selColList[i].length();
+			cursor = new Cursor.ListCursor(rows);
+			if(this.orderBy != null)
+				orderColumns = getOrderColumns(this.orderBy,tableName,colNames1,descending);
+			if(this.plan != null){
+				this.plan.setAccess(tableName, Plan.Access.SCHEMA, handler.getTreeHeight(), 0, 0, handler.recalFilePages()-1);
+				this.plan.setPredicate("none, every record read is emitted");
 			}
-			column_map.put(selColList[i], tmp_columns);
 		}
-		Utilities.printTable(selColList, column_map, maxLength, maxRows);
+		try{
+			printSelect(cursor,aggregate,orderColumns,descending,selColList);
+		}
+		finally{
+			handler.setIndexes(null);
+			closeIndexes(indexes);
+		}
+		TableHandles.release(handler);
 	}
 	
 	
 	@SuppressWarnings("resource")
-	private void execute_CreateDatabase(Node root) throws IOException{
+	private void execute_CreateDatabase(Node root) throws Exception{
 		
 		String cwd = System.getProperty("user.dir");
 		String path = cwd + "/davisbase_schemas";
@@ -722,10 +1540,25 @@ public class CommandExecutor {
 		
 		
 		/* database schema:
-		 * database name	
-		 *    name			
+		 * database name	page size of its table files
+		 *    name			pageSize
 		 */
 		
+		// an invalid page size is reported like any other syntax error, before anything is written
+		int pageSize = FileHandler.getDefaultPageSize();
+		Node pageSizeNode = root.getLeft().getLeft();
+		if (pageSizeNode != null){
+			String str = new String(pageSizeNode.getVal());
+			try{
+				pageSize = Integer.parseInt(str);
+			}
+			catch(NumberFormatException e){
+				pageSize = -1;
+			}
+			if (!FileHandler.isValidPageSize(pageSize))
+				throw new Exception(String.format("Error 19: invalid page size %s, page size must be a power of two between %d and %d",str,FileHandler.MIN_PAGE_SIZE,FileHandler.MAX_PAGE_SIZE));
+		}
+		
 		BufferedWriter writer;
 		Scanner reader;
 		try
@@ -738,7 +1571,7 @@ public class CommandExecutor {
 			
 			if (!database.exists()){
 				writer = new BufferedWriter(new FileWriter(database));
-				writer.append(dbName);
+				writer.append(dbName+" "+pageSize);
 				writer.newLine();
 				writer.flush();
 				writer.close();
@@ -746,12 +1579,12 @@ public class CommandExecutor {
 			else{
 				reader = new Scanner(database);
 				while(reader.hasNextLine()){
-					String line = reader.nextLine().toLowerCase().trim();
+					String line = reader.nextLine().toLowerCase().trim().split("\\s+")[0];
 					if (dbName.equals(line))
 						throw new Exception(String.format("Error 05: Can't create database %s: %s already exists",dbName,dbName));
 				}
 				writer = new BufferedWriter(new FileWriter(database,true));
-				writer.append(dbName);
+				writer.append(dbName+" "+pageSize);
 				writer.newLine();
 					
 				reader.close();
@@ -767,18 +1600,21 @@ public class CommandExecutor {
 			// create and write davisbase_tables.tbl
 			if (Files.exists(Paths.get(path+"/davisbase_tables"+"/davisbase_tables.tbl")) && Files.exists(Paths.get(path+"/davisbase_columns"+"/davisbase_columns.tbl")))
 				return;
-			handler = new FileHandler(path+"/davisbase_tables"+"/davisbase_tables.tbl",true);
+			handler = TableHandles.acquire(path+"/davisbase_tables"+"/davisbase_tables.tbl");
 			handler.writeDatabaseHeader(handler.getRFile());
 			handler.writePageHeader();
 			handler.writeSchemaCols(FileHandler.davisbase_table_header);
-			handler.close();
+			TableHandles.release(handler);
 			
 			// create and write davisbase_columns.tbl
-			handler = new FileHandler(path+"/davisbase_columns"+"/davisbase_columns.tbl",true);
+			handler = TableHandles.acquire(path+"/davisbase_columns"+"/davisbase_columns.tbl");
 			handler.writeDatabaseHeader(handler.getRFile());
 			handler.writePageHeader();
 			handler.writeSchemaCols(FileHandler.davisbase_column_header);
-			handler.close();
+			TableHandles.release(handler);
+			
+			// schema files were (re)created, nothing cached about the old ones is valid
+			Catalog.clear();
 			
 		}
 		catch(Exception e){
@@ -787,6 +1623,29 @@ public class CommandExecutor {
 		}
 	}
 	
+	/*
+	 * @param dbName name of the database
+	 * @return page size chosen for the database at creation, the default page size if none was chosen
+	 */
+	private int getDatabasePageSize(String dbName){
+		String cwd = System.getProperty("user.dir");
+		File database = new File(cwd + "/davisbase_schemas","schemas");
+		int pageSize = FileHandler.getDefaultPageSize();
+		try{
+			Scanner reader = new Scanner(database);
+			while(reader.hasNextLine()){
+				String[] line = reader.nextLine().toLowerCase().trim().split("\\s+");
+				if (line[0].equals(dbName) && line.length>1)
+					pageSize = Integer.parseInt(line[1]);
+			}
+			reader.close();
+		}
+		catch(FileNotFoundException | NumberFormatException e){
+			// database created before page sizes were recorded
+		}
+		return pageSize;
+	}
+	
 	private void execute_UseDatabase(Node root){
 		String dbName = root.getLeft().getName();
 		String cwd = System.getProperty("user.dir");
@@ -797,6 +1656,49 @@ public class CommandExecutor {
 		System.out.println("Reading table information for completion of table and column names\n\nDatabase Changed");
 	}
 	
+	/*
+	 * @return names of the tables of the current database
+	 */
+	private String[] getTableNames() throws Exception{
+		String[] tableNames = Catalog.getTableNames(this.database);
+		if(tableNames == null){
+			String cwd = System.getProperty("user.dir");
+			String path = cwd + "/davisbase_schemas";
+			FileHandler table_handler = TableHandles.acquire(path+"/davisbase_tables"+"/davisbase_tables.tbl");
+			tableNames = table_handler.getTableNames(table_handler,this.database);
+			TableHandles.release(table_handler);
+			Catalog.putTableNames(this.database, tableNames);
+		}
+		return tableNames;
+	}
+	
+	/*
+	 * print the counters of Metrics, and the B+-tree height of every table of the current database
+	 */
+	private void execute_ShowStatus(Node root) throws Exception{
+		LinkedHashMap<String,Long> values = Metrics.snapshot();
+		if(this.database != null && !this.database.equals("davisbase_schemas")){
+			String path = System.getProperty("user.dir") + "/davisbase_tables" + "/" + this.database;
+			String[] tableNames = getTableNames();
+			for(int i=0;tableNames != null && i<tableNames.length;i++){
+				FileHandler handler = TableHandles.acquire(path+"/"+tableNames[i]+".tbl");
+				values.put("tree_height."+tableNames[i], (long) handler.getTreeHeight());
+				TableHandles.release(handler);
+			}
+		}
+		String[] headerList = new String[]{"Variable_name","Value"};
+		String[] names = values.keySet().toArray(new String[]{});
+		String[] counts = new String[names.length];
+		for(int i=0;i<names.length;i++)
+			counts[i] = String.valueOf(values.get(names[i]));
+		HashMap<String,String[]> map = new HashMap<>();
+		map.put(headerList[0], names);
+		map.put(headerList[1], counts);
+		int maxLength = Math.max(Utilities.getMaxLength(names), Utilities.getMaxLength(counts));
+		maxLength = Math.max(maxLength, headerList[0].length());
+		Utilities.printTable(headerList, map, maxLength, names.length);
+	}
+	
 	private void execute_ShowSchemas(Node root) throws Exception{
 		String cwd = System.getProperty("user.dir");
 		String path = cwd + "/davisbase_schemas";
@@ -807,7 +1709,7 @@ public class CommandExecutor {
 		try{
 			reader = new Scanner(new File(path,"schemas"));
 			while(reader.hasNextLine()){
-				String line = reader.nextLine();
+				String line = reader.nextLine().trim().split("\\s+")[0];
 				rows.add(line);
 				if(maxLength<line.length())
 					maxLength=line.length();
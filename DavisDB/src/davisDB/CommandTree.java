@@ -1,4 +1,5 @@
 package davisDB;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.regex.*;
 /*
@@ -24,9 +25,31 @@ import java.util.regex.*;
 public class CommandTree{
 	private Node root = null;
 	
+	// EXPLAIN prints the access path of the statement, EXPLAIN ANALYZE runs it as well
+	private boolean explain = false;
+	private boolean analyze = false;
+	
+	// tokens of the where condition being parsed and the position of the next one
+	private ArrayList<String> whereTokens = null;
+	private int wherePos = 0;
+	
+	// ORDER BY of a select, a column per node with "asc" or "desc" as its constraint, null if there is none
+	private Node orderBy = null;
+	
+	// GROUP BY of a select, a column per node, null if there is none
+	private Node groupBy = null;
+	
+	// LIMIT and OFFSET of a select, -1 and 0 if there is none
+	private long limit = -1;
+	private long offset = 0;
+	
+	// tables joined to the first table of a select, a table per node with the join type ("inner" or "left") and the two
+	// columns of its ON condition as its constraints, null if there is none
+	private Node joins = null;
+	
 	public enum CommandType
 	{
-		SHOW_TABLES(0),CREATE_TABLE(1),CREATE_INDEX(2),DROP_TABLE(3),DROP_INDEX(4),INSERT_INTO_TABLE(5),DELETE_FROM(6),UPDATE(7),SELECT(8),CREATE_DATABASE(9),USE(10),SHOW_SCHEMAS(11);
+		SHOW_TABLES(0),CREATE_TABLE(1),CREATE_INDEX(2),DROP_TABLE(3),DROP_INDEX(4),INSERT_INTO_TABLE(5),DELETE_FROM(6),UPDATE(7),SELECT(8),CREATE_DATABASE(9),USE(10),SHOW_SCHEMAS(11),LOAD_DATA(12),SHOW_STATUS(13);
 		private int value;
 		
 		private CommandType(int value)
@@ -157,7 +180,23 @@ public class CommandTree{
 		cmd = cmd.trim();
 		if (!cmd.endsWith(";"))
 			throw new Exception("Incorrect Syntax! every sql statement should terminates with ;");
+		if (cmd.startsWith("explain "))
+		{
+			this.explain = true;
+			cmd = cmd.substring(8).trim();
+			if (cmd.startsWith("analyze "))
+			{
+				this.analyze = true;
+				cmd = cmd.substring(8).trim();
+			}
+		}
 		parseCmd(cmd);
+		if (this.explain)
+		{
+			int typeCode = this.root.getCode();
+			if (typeCode != CommandType.SELECT.getCode() && typeCode != CommandType.UPDATE.getCode() && typeCode != CommandType.DELETE_FROM.getCode())
+				throw new Exception("Error 26: EXPLAIN supports SELECT, UPDATE and DELETE only!");
+		}
 	}
 	
 	public Node getRoot()
@@ -165,6 +204,41 @@ public class CommandTree{
 		return this.root;
 	}
 	
+	public boolean isExplain()
+	{
+		return this.explain;
+	}
+	
+	public boolean isAnalyze()
+	{
+		return this.analyze;
+	}
+	
+	public Node getOrderBy()
+	{
+		return this.orderBy;
+	}
+	
+	public Node getGroupBy()
+	{
+		return this.groupBy;
+	}
+	
+	public long getLimit()
+	{
+		return this.limit;
+	}
+	
+	public long getOffset()
+	{
+		return this.offset;
+	}
+	
+	public Node getJoins()
+	{
+		return this.joins;
+	}
+	
 	private int checkType(String cmd)
 	{
 		String startStr = cmd.substring(0,cmd.indexOf(" "));
@@ -172,6 +246,8 @@ public class CommandTree{
 		case "show":
 			if (cmd.startsWith("show tables"))
 				return CommandType.SHOW_TABLES.getCode();
+			else if (cmd.startsWith("show status"))
+				return CommandType.SHOW_STATUS.getCode();
 			else
 				return CommandType.SHOW_SCHEMAS.getCode();
 		case "update":
@@ -209,12 +285,15 @@ public class CommandTree{
 			}
 		case "use":
 			return CommandType.USE.getCode();
+		case "load":
+		case "copy":
+			return CommandType.LOAD_DATA.getCode();
 		}
 		return -1;
 	}
 	
 	
-	private String getTarget(int typeCode,String cmd)
+	private String getTarget(int typeCode,String cmd) throws Exception
 	{
 		String name = null;
 		int startIndex = -1;
@@ -251,6 +330,8 @@ public class CommandTree{
 		case 6:
 			startIndex = cmd.indexOf(" ",7)+1;
 			endIndex = cmd.indexOf(" ",startIndex);
+			if (endIndex == -1)
+				endIndex = cmd.indexOf(";",startIndex);
 			name = cmd.substring(startIndex,endIndex).trim();
 			break;
 		case 7:
@@ -269,7 +350,10 @@ public class CommandTree{
 			break;		
 		case 9:
 			startIndex = cmd.indexOf("database")+9;
-			name = cmd.substring(startIndex,cmd.indexOf(";")).trim();
+			endIndex = cmd.indexOf(" page_size",startIndex-1);
+			if (endIndex == -1)
+				endIndex = cmd.indexOf(";");
+			name = cmd.substring(startIndex,endIndex).trim();
 			break;
 		case 10:
 			startIndex = cmd.indexOf("use")+4;
@@ -277,6 +361,22 @@ public class CommandTree{
 			break;
 		case 11:
 			break;
+		case 12:
+			if (cmd.startsWith("copy"))
+			{
+				startIndex = cmd.indexOf(" ")+1;
+				endIndex = cmd.indexOf(" ",startIndex);
+			}
+			else
+			{
+				// the path may contain any word, the table name follows it
+				startIndex = cmd.indexOf(" table ",findQuoted(cmd)[1])+7;
+				endIndex = cmd.indexOf(" ",startIndex);
+				if (endIndex == -1)
+					endIndex = cmd.indexOf(";",startIndex);
+			}
+			name = cmd.substring(startIndex,endIndex).trim();
+			break;
 		}		
 		return name;
 	}
@@ -294,7 +394,7 @@ public class CommandTree{
 			attr = new Node[]{this.parseAttrs(attrs)};
 			break;
 		case 2:
-			String table_col = cmd.substring(cmd.indexOf("on")+3,cmd.indexOf(")")+1);
+			String table_col = cmd.substring(cmd.indexOf(" on ")+4,cmd.indexOf(")")+1);
 			attr = new Node[]{this.parseIndex(table_col)};
 			break;
 		case 3:
@@ -314,22 +414,229 @@ public class CommandTree{
 			attr = this.parseSelect(cmd);
 			break;
 		case 9:
+			if (cmd.contains(" page_size"))
+				attr = new Node[]{this.parsePageSize(cmd)};
 			break;
 		case 10:
 			break;
 		case 11:
 			break;
+		case 12:
+			attr = new Node[]{this.parseLoad(cmd)};
+			break;
 		}	
 		return attr;
 	}
 	
+	/*
+	 *  e.g. LOAD DATA INFILE "rows.csv" INTO TABLE t1 IGNORE 1 LINES; or COPY t1 FROM "rows.csv";
+	 *  the path is the value of the node, the number of leading lines to skip its constraint
+	 */
+	private Node parseLoad(String cmd) throws Exception
+	{
+		int[] quoted = findQuoted(cmd);
+		String path = cmd.substring(quoted[0]+1,quoted[1]);
+		String lines = "0";
+		String subStr = cmd.substring(quoted[1]+1,cmd.lastIndexOf(";")).trim();
+		if (subStr.contains("ignore "))
+		{
+			String[] tmp = subStr.substring(subStr.indexOf("ignore ")+7).trim().split(" ");
+			if (tmp.length != 2 || !tmp[0].matches("[0-9]+") || !tmp[1].startsWith("line"))
+				throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+			lines = tmp[0];
+		}
+		return new Node("infile",path.getBytes(),new String[]{lines},true,null);
+	}
+	
+	/*
+	 * @return position of a clause keyword, e.g. " order by ", outside the quoted values of a command, -1 if it is not there
+	 */
+	private int indexOfClause(String cmd,String keyword)
+	{
+		char quote = 0;
+		for (int i=0;i<cmd.length();i++)
+		{
+			char c = cmd.charAt(i);
+			if (quote != 0)
+			{
+				if (c == quote)
+					quote = 0;
+			}
+			else if (c == '\'' || c == '"')
+				quote = c;
+			else if (cmd.startsWith(keyword,i))
+				return i;
+		}
+		return -1;
+	}
+	
+	/*
+	 *  e.g. SELECT * FROM t1 WHERE c1 > 5 ORDER BY c2 DESC, c3;
+	 *  the columns are kept in orderBy, each with "asc" or "desc" as its constraint
+	 *  @return the command without the clause
+	 */
+	private String parseOrderBy(String cmd) throws Exception
+	{
+		int start = indexOfClause(cmd," order by ");
+		if (start == -1)
+			return cmd;
+		String subStr = cmd.substring(start+10,cmd.lastIndexOf(";")).trim();
+		String[] list = subStr.split(",");
+		Node current = null;
+		for (int i=0;i<list.length;i++)
+		{
+			String[] words = list[i].trim().split("\\s+");
+			if (words[0].isEmpty() || words.length > 2 || (words.length == 2 && !words[1].equals("asc") && !words[1].equals("desc")))
+				throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+			Node tmp = new Node(words[0],null,new String[]{words.length == 2 ? words[1] : "asc"},true,null);
+			if (current != null)
+				current.setSibl(tmp);
+			else
+				this.orderBy = tmp;
+			current = tmp;
+		}
+		return cmd.substring(0,start)+";";
+	}
+	
+	/*
+	 *  e.g. SELECT * FROM t1 ORDER BY c1 DESC LIMIT 10 OFFSET 20; or LIMIT 20, 10 for the same rows
+	 *  the numbers are kept in limit and offset
+	 *  @return the command without the clause
+	 */
+	private String parseLimit(String cmd) throws Exception
+	{
+		int start = indexOfClause(cmd," limit ");
+		if (start == -1)
+			return cmd;
+		String subStr = cmd.substring(start+7,cmd.lastIndexOf(";")).trim();
+		Matcher m;
+		try
+		{
+			if (subStr.matches("[0-9]+"))
+				this.limit = Long.parseLong(subStr);
+			else if ((m = Pattern.compile("([0-9]+)\\s+offset\\s+([0-9]+)").matcher(subStr)).matches())
+			{
+				this.limit = Long.parseLong(m.group(1));
+				this.offset = Long.parseLong(m.group(2));
+			}
+			else if ((m = Pattern.compile("([0-9]+)\\s*,\\s*([0-9]+)").matcher(subStr)).matches())
+			{
+				this.offset = Long.parseLong(m.group(1));
+				this.limit = Long.parseLong(m.group(2));
+			}
+			else
+				throw new NumberFormatException();
+		}
+		catch (NumberFormatException e)
+		{
+			throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+		}
+		return cmd.substring(0,start)+";";
+	}
+	
+	/*
+	 *  e.g. SELECT * FROM t1 JOIN t2 ON t1.c1 = t2.c2 LEFT JOIN t3 ON t2.c3 = t3.c4 WHERE ...;
+	 *  JOIN is INNER JOIN, LEFT JOIN is LEFT OUTER JOIN, the joined tables are kept in joins
+	 *  @return the command with only the first table in the FROM clause
+	 */
+	private String parseJoin(String cmd) throws Exception
+	{
+		int from = indexOfClause(cmd," from ");
+		if (from == -1)
+			return cmd;
+		int end = indexOfClause(cmd," where ");
+		if (end == -1)
+			end = cmd.lastIndexOf(";");
+		String tables = cmd.substring(from+6,end).trim();
+		if (indexOfClause(" "+tables+" "," join ") == -1)
+			return cmd;
+		Matcher first = Pattern.compile("([^\\s=,;]+)").matcher(tables);
+		if (!first.lookingAt())
+			throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+		Pattern join = Pattern.compile("\\s+(inner\\s+|left\\s+(?:outer\\s+)?)?join\\s+([^\\s=,;]+)\\s+on\\s+([^\\s=,;]+)\\s*=\\s*([^\\s=,;]+)");
+		Matcher m = join.matcher(tables);
+		Node current = null;
+		for (int pos = first.end();pos<tables.length();pos = m.end())
+		{
+			m.region(pos,tables.length());
+			if (!m.lookingAt())
+				throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+			String type = m.group(1) != null && m.group(1).startsWith("left") ? "left" : "inner";
+			Node tmp = new Node(m.group(2),null,new String[]{type,m.group(3),m.group(4)},true,null);
+			if (current != null)
+				current.setSibl(tmp);
+			else
+				this.joins = tmp;
+			current = tmp;
+		}
+		return cmd.substring(0,from)+" from "+first.group(1)+cmd.substring(end);
+	}
+	
+	/*
+	 *  e.g. SELECT c1, COUNT(*) FROM t1 WHERE c2 > 5 GROUP BY c1; the columns are kept in groupBy
+	 *  @return the command without the clause
+	 */
+	private String parseGroupBy(String cmd) throws Exception
+	{
+		int start = indexOfClause(cmd," group by ");
+		if (start == -1)
+			return cmd;
+		String[] list = cmd.substring(start+10,cmd.lastIndexOf(";")).split(",");
+		Node current = null;
+		for (int i=0;i<list.length;i++)
+		{
+			String colName = list[i].trim();
+			if (colName.isEmpty() || colName.contains(" "))
+				throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+			Node tmp = new Node(colName,null,null,true,null);
+			if (current != null)
+				current.setSibl(tmp);
+			else
+				this.groupBy = tmp;
+			current = tmp;
+		}
+		return cmd.substring(0,start)+";";
+	}
+	
+	/*
+	 * @return positions of the opening and the closing quote of the first quoted string of a command
+	 */
+	static int[] findQuoted(String cmd) throws Exception
+	{
+		int start = cmd.indexOf('"');
+		int single = cmd.indexOf('\'');
+		if (start == -1 || (single != -1 && single < start))
+			start = single;
+		int end = start == -1 ? -1 : cmd.indexOf(cmd.charAt(start),start+1);
+		if (end == -1)
+			throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+		return new int[]{start,end};
+	}
+	
+	/*
+	 *  e.g. CREATE DATABASE d1 PAGE_SIZE 8192; or CREATE DATABASE d1 PAGE_SIZE = 8192;
+	 */
+	private Node parsePageSize(String cmd) throws Exception
+	{
+		String subStr = cmd.substring(cmd.indexOf(" page_size")+10,cmd.lastIndexOf(";")).trim();
+		if (subStr.startsWith("="))
+			subStr = subStr.substring(1).trim();
+		if (subStr.isEmpty())
+			throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+		return new Node("page_size",subStr.getBytes(),null,true,null);
+	}
+	
+	/*
+	 *  a column of the select list is a node named after it, an aggregate such as SUM(c1) or COUNT(*) is named
+	 *  "sum(c1)" with the function as its constraint and the column, or *, as its value
+	 */
 	private Node[] parseSelect(String cmd) throws Exception
 	{
 		String subStr = null;
 		subStr = cmd.substring(cmd.indexOf("select")+7,cmd.indexOf("from")).trim();
 		Node attrRoot = null;
 		Node current = null;
-		
+		Pattern aggregate = Pattern.compile("(count|sum|avg|min|max)\\s*\\(\\s*(\\*|[^\\s()*]+)\\s*\\)");
 		
 		if(subStr.equals("*"))
 			attrRoot = new Node("*",null,null,true,null);
@@ -339,7 +646,18 @@ public class CommandTree{
 			for (int i=0;i<list.length;i++)
 			{
 				list[i]=list[i].trim();
-				Node tmp = new Node(list[i],null,null,true,null);
+				Node tmp;
+				Matcher m = aggregate.matcher(list[i]);
+				if (m.matches())
+				{
+					if (m.group(2).equals("*") && !m.group(1).equals("count"))
+						throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+					tmp = new Node(m.group(1)+"("+m.group(2)+")",m.group(2).getBytes(),new String[]{m.group(1)},true,null);
+				}
+				else if (list[i].contains("("))
+					throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+				else
+					tmp = new Node(list[i],null,null,true,null);
 				if(current != null)
 					current.setSibl(tmp);
 				if(i == 0)
@@ -383,67 +701,196 @@ public class CommandTree{
 		return new Node[]{attrRoot,whereRoot};
 	}
 	
+	/*
+	 *  where condition of a command, e.g. WHERE c1 > 5 AND (c2 IN (1,2,3) OR NOT c3 BETWEEN 'a' AND 'f');
+	 *  a comparison is a leaf node: the column is its name, the value its value and the operator its constraint.
+	 *  IN and BETWEEN are leaf nodes with the operator "in", "not in", "between" or "not between" and the values as the
+	 *  list of children. AND, OR and NOT are nodes named after the connective with the operands as the list of children.
+	 *  NOT binds tighter than AND, AND tighter than OR
+	 */
 	private Node parseDelete(String cmd) throws Exception
 	{
 		if (!cmd.contains("where"))
 			return null;
-		else
+		String subStr = cmd.substring(cmd.indexOf("where")+6,cmd.lastIndexOf(";"));
+		this.whereTokens = tokenizeWhere(subStr);
+		this.wherePos = 0;
+		Node root = parseOr();
+		if (this.wherePos != this.whereTokens.size())
+			throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+		return root;
+	}
+	
+	/*
+	 *  split a where condition into words, quoted values, operators, parentheses and commas
+	 */
+	private ArrayList<String> tokenizeWhere(String where) throws Exception
+	{
+		ArrayList<String> tokens = new ArrayList<>();
+		String operators = "<>=!";
+		int i = 0;
+		while (i < where.length())
 		{
-			String subStr = cmd.substring(cmd.indexOf("where")+6,cmd.lastIndexOf(";"));
-			String[] list = null;
-			String columnName = null;
-			String operator = null;
-			String value = null;
-			if (subStr.contains("("))
+			char c = where.charAt(i);
+			int start = i;
+			if (Character.isWhitespace(c))
 			{
-				String tmp1 = subStr.substring(0,subStr.indexOf("(")).trim();
-				String[] tmp = tmp1.split(" ");
-				columnName = tmp[0].trim();
-				operator = tmp[1].trim();
-				tmp1 = subStr.substring(subStr.indexOf("(")+1,subStr.indexOf(")"));
-				list = tmp1.split(",");
-				for (int i=0;i<list.length;i++)
-					list[i] = list[i].trim();
+				i++;
+				continue;
 			}
-			else
+			if (c == '\'' || c == '"')
 			{
-				Pattern patt = Pattern.compile("[<>=!]{1,2}");
-				Matcher matcher = patt.matcher(subStr);
-				if(matcher.find()){
-					operator = matcher.group().trim();
-				}
-				else
+				i = where.indexOf(c,i+1)+1;
+				if (i == 0)
 					throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
-				String[] tmp = subStr.split(operator);
-				columnName = tmp[0].trim();
-				value = tmp[1].trim();
 			}
-			
-			
-			Node root = null;
-			Node current = null;
-			
-			if(list == null)
-				return new Node(columnName,value.getBytes(),new String[]{operator},true,null);
+			else if (c == '(' || c == ')' || c == ',')
+				i++;
+			else if (operators.indexOf(c) != -1)
+			{
+				while (i < where.length() && operators.indexOf(where.charAt(i)) != -1)
+					i++;
+			}
 			else
 			{
-				for (int i=0;i<list.length;i++)
-				{
-					if (operator.equals("in"))
-						operator = "=";
-					Node tmp = new Node(columnName,list[i].getBytes(),new String[]{operator},true,null);
-					if (current != null)
-						current.setSibl(tmp);
-					if (i == 0)
-						root = current = tmp;
-					else
-						current = tmp;
-				}	
+				while (i < where.length() && !Character.isWhitespace(where.charAt(i)) && "()',\"<>=!".indexOf(where.charAt(i)) == -1)
+					i++;
 			}
-			return root;
+			tokens.add(where.substring(start,i));
 		}
+		return tokens;
 	}
 	
+	private String peekWhere()
+	{
+		return this.wherePos < this.whereTokens.size() ? this.whereTokens.get(this.wherePos) : null;
+	}
+	
+	private boolean acceptWhere(String token)
+	{
+		if (!token.equals(peekWhere()))
+			return false;
+		this.wherePos++;
+		return true;
+	}
+	
+	private String nextWhere() throws Exception
+	{
+		String token = peekWhere();
+		if (token == null)
+			throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+		this.wherePos++;
+		return token;
+	}
+	
+	/*
+	 *  operands joined by a connective, a single operand is returned as it is
+	 */
+	private Node parseOr() throws Exception
+	{
+		Node first = parseAnd();
+		if (!"or".equals(peekWhere()))
+			return first;
+		Node current = first;
+		while (acceptWhere("or"))
+		{
+			Node next = parseAnd();
+			current.setSibl(next);
+			current = next;
+		}
+		return new Node("or",first);
+	}
+	
+	private Node parseAnd() throws Exception
+	{
+		Node first = parseNot();
+		if (!"and".equals(peekWhere()))
+			return first;
+		Node current = first;
+		while (acceptWhere("and"))
+		{
+			Node next = parseNot();
+			current.setSibl(next);
+			current = next;
+		}
+		return new Node("and",first);
+	}
+	
+	private Node parseNot() throws Exception
+	{
+		if (acceptWhere("not"))
+			return new Node("not",parseNot());
+		if (acceptWhere("("))
+		{
+			Node node = parseOr();
+			if (!acceptWhere(")"))
+				throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+			return node;
+		}
+		String columnName = nextWhere();
+		boolean not = acceptWhere("not");
+		if (acceptWhere("in"))
+		{
+			if (!acceptWhere("("))
+				throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+			Node first = null;
+			Node current = null;
+			do
+			{
+				Node tmp = new Node(null,parseWhereValue().getBytes(),null,true,null);
+				if (current != null)
+					current.setSibl(tmp);
+				else
+					first = tmp;
+				current = tmp;
+			}
+			while (acceptWhere(","));
+			if (!acceptWhere(")"))
+				throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+			Node node = new Node(columnName,null,new String[]{not ? "not in" : "in"},true,null);
+			node.setLeft(first);
+			return node;
+		}
+		if (acceptWhere("between"))
+		{
+			Node low = new Node(null,parseWhereValue().getBytes(),null,true,null);
+			if (!acceptWhere("and"))
+				throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+			low.setSibl(new Node(null,parseWhereValue().getBytes(),null,true,null));
+			Node node = new Node(columnName,null,new String[]{not ? "not between" : "between"},true,null);
+			node.setLeft(low);
+			return node;
+		}
+		String operator = nextWhere();
+		if (not || !operator.matches("[<>=!]{1,2}"))
+			throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+		return new Node(columnName,parseWhereValue().getBytes(),new String[]{operator},true,null);
+	}
+	
+	/*
+	 *  a quoted value, or the words up to the next connective, parenthesis or comma, e.g. 2018-01-01 10:00:00
+	 */
+	private String parseWhereValue() throws Exception
+	{
+		String value = nextWhere();
+		if (value.equals("(") || value.equals(")") || value.equals(",") || value.matches("[<>=!]{1,2}"))
+			throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+		if (value.startsWith("'") || value.startsWith("\""))
+			return value;
+		String token = peekWhere();
+		while (token != null && !token.equals("and") && !token.equals("or") && !token.equals(")") && !token.equals(",")
+				&& !token.startsWith("'") && !token.startsWith("\"") && !token.matches("[<>=!]{1,2}"))
+		{
+			value += " "+nextWhere();
+			token = peekWhere();
+		}
+		return value;
+	}
+	
+	/*
+	 *  e.g. INSERT INTO t1 (c1,c2) VALUES (1,'a'),(2,'b');
+	 *  every value tuple becomes a "row" node, its left child is the list of values, the next tuple is its sibling
+	 */
 	private Node[] parseInsert(String cmd) throws Exception
 	{
 		Node root = null;
@@ -459,30 +906,82 @@ public class CommandTree{
 		}
 		else if ((subStr.contains("(") && !subStr.contains(")")) || (!subStr.contains("(") && subStr.contains(")")))
 			throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
-		subStr = cmd.substring(cmd.indexOf("(",cmd.indexOf("values"))+1, cmd.lastIndexOf(")")).trim();
-		String[] valueList = subStr.split(",");
-		for (int i=0;i<valueList.length;i++)
-		{	
-			valueList[i] = valueList[i].trim();
-			Node tmp = null;
-			if (columnList != null)
-				tmp = new Node(columnList[i],valueList[i].getBytes(),null,true,null);
-			else
-				tmp = new Node(null,valueList[i].getBytes(),null,true,null);
-			
+		subStr = cmd.substring(cmd.indexOf("(",cmd.indexOf("values")), cmd.lastIndexOf(")")+1).trim();
+		String[] tupleList = splitList(subStr);
+		for (int j=0;j<tupleList.length;j++)
+		{
+			String tuple = tupleList[j].trim();
+			if (!tuple.startsWith("(") || !tuple.endsWith(")"))
+				throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+			String[] valueList = splitList(tuple.substring(1,tuple.length()-1));
+			if (columnList != null && valueList.length != columnList.length)
+				throw new Exception("Error 04: you have an error in your SQL syntax, please check it first!");
+			Node valRoot = null;
+			Node valCurrent = null;
+			for (int i=0;i<valueList.length;i++)
+			{	
+				valueList[i] = valueList[i].trim();
+				Node tmp = null;
+				if (columnList != null)
+					tmp = new Node(columnList[i],valueList[i].getBytes(),null,true,null);
+				else
+					tmp = new Node(null,valueList[i].getBytes(),null,true,null);
+				
+				if (valCurrent != null)
+					valCurrent.setSibl(tmp);
+				
+				if (i == 0)
+					valRoot = valCurrent = tmp;
+				else
+					valCurrent = tmp;	
+			}
+			Node tmp = new Node("row",valRoot);
 			if (current != null)
 				current.setSibl(tmp);
-			
-			if (i == 0)
+			if (j == 0)
 				root = current = tmp;
 			else
-				current = tmp;	
+				current = tmp;
 		}
 		Node whereRoot = parseDelete(cmd);
 		return new Node[]{root,whereRoot};
 		
 	}
 	
+	/*
+	 *  split a list at its commas, commas inside quotes or parentheses do not split it
+	 *  e.g. (1,'a,b'),(2,'c') -> (1,'a,b') and (2,'c')
+	 */
+	private String[] splitList(String list)
+	{
+		ArrayList<String> items = new ArrayList<>();
+		int depth = 0;
+		char quote = 0;
+		int start = 0;
+		for (int i=0;i<list.length();i++)
+		{
+			char c = list.charAt(i);
+			if (quote != 0)
+			{
+				if (c == quote)
+					quote = 0;
+			}
+			else if (c == '\'' || c == '"')
+				quote = c;
+			else if (c == '(')
+				depth++;
+			else if (c == ')')
+				depth--;
+			else if (c == ',' && depth == 0)
+			{
+				items.add(list.substring(start,i));
+				start = i+1;
+			}
+		}
+		items.add(list.substring(start));
+		return items.toArray(new String[]{});
+	}
+	
 	private Node parseIndex(String table_col) throws Exception
 	{
 		Node attr = null;
@@ -547,6 +1046,8 @@ public class CommandTree{
 	public void parseCmd(String cmd) throws Exception
 	{
 		int typeCode = checkType(cmd);
+		if (typeCode == CommandType.SELECT.getCode())
+			cmd = parseJoin(parseGroupBy(parseOrderBy(parseLimit(cmd))));
 		String tarName = getTarget(typeCode,cmd);
 		Node[] attr = checkAttr(typeCode,cmd);
 		constructTree(typeCode,tarName,attr);
@@ -0,0 +1,81 @@
+package davisDB;
+import java.util.ArrayList;
+
+/*
+ *  Pull-based row source of a query.
+ *  A consumer calls open once, then next until it returns null, then close. A cursor over a table decodes one leaf
+ *  at a time, so rows reach the consumer while the scan goes on and memory does not grow with the result.
+ */
+public interface Cursor {
+
+	public void open() throws Exception;
+
+	/*
+	 * @return the next row, null when there are no more rows
+	 */
+	public Row next() throws Exception;
+
+	public void close() throws Exception;
+
+	/*
+	 *  cursor over rows that are already in memory, e.g. the rows of a schema table
+	 */
+	public static class ListCursor implements Cursor{
+		private ArrayList<Row> rows;
+		private int pos = 0;
+
+		public ListCursor(ArrayList<Row> rows){
+			this.rows = rows;
+		}
+
+		@Override
+		public void open(){
+			this.pos = 0;
+		}
+
+		@Override
+		public Row next(){
+			return this.pos<this.rows.size() ? this.rows.get(this.pos++) : null;
+		}
+
+		@Override
+		public void close(){
+			this.rows = null;
+		}
+	}
+
+	/*
+	 *  cursor over the rows of another cursor that meet a where condition, e.g. the joined rows of a join
+	 */
+	public static class FilterCursor implements Cursor{
+		private Cursor input;
+		private Predicate filter;
+		private Predicate.Record record = new Predicate.Record();
+
+		public FilterCursor(Cursor input,Predicate filter){
+			this.input = input;
+			this.filter = filter;
+		}
+
+		@Override
+		public void open() throws Exception{
+			this.input.open();
+		}
+
+		@Override
+		public Row next() throws Exception{
+			Row row;
+			while((row = this.input.next()) != null){
+				this.record.reset(row);
+				if(this.filter.test(this.record))
+					return row;
+			}
+			return null;
+		}
+
+		@Override
+		public void close() throws Exception{
+			this.input.close();
+		}
+	}
+}
@@ -1,30 +1,34 @@
 package davisDB;
-import java.io.RandomAccessFile;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
-import org.omg.CORBA.Any;
-import org.omg.CORBA.ORB;
-
 import davisDB.MultiMap;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 
 public class FileHandler {
 	
 	// magic header
 	private static String magicHeader = "DavisBase format 1";
 	
-	// page size
-	private static int pageSize = 512;
+	// page size of files created without an explicit page size
+	private static int defaultPageSize = 4096;
+	
+	// smallest and largest page size accepted for a new database, legacy files with 512 byte pages can still be read
+	public static final int MIN_PAGE_SIZE = 4096;
+	public static final int MAX_PAGE_SIZE = 65536;
 	
-	// B+-tree degree
-	private static int degree = 4; // suppose maximum length of TEXT data is 80 characters.
+	// page size of this file, read from the database header at 0x0014
+	private int pageSize;
 	
 	// if readVersion = 1 but write version > 1, the file is read-only
 	// if readVersion > 1 the file cannot be read or written
@@ -37,6 +41,9 @@ public class FileHandler {
 	// database size in pages
 	private int databasePages = 0;
 	
+	// first page of the list of pages freed by merging leaves, 0 if the list is empty
+	private int firstFreePage = 0;
+	
 	// database version number
 	private static int version = 1;
 	
@@ -47,17 +54,15 @@ public class FileHandler {
 	private int uspace = 4;
 	
 	// table row container
-	private ArrayList<HashMap<String,Any>> rows = null;
-	// typeCodes container
-	private ArrayList<HashMap<String,Integer>> typeCodes = null;
+	private ArrayList<Row> rows = null;
 	// key value corresponding to each row 
 	private ArrayList<Integer> keys = null;
 
 	// File 
 	private File f;
 	
-	// RandomAccessFile
-	private RandomAccessFile rfile;
+	// page file, all page reads and writes go through the buffer pool
+	private PageFile rfile;
 	
 	// current page
 	private Page p = null;
@@ -67,28 +72,118 @@ public class FileHandler {
 	
 	// first page of the file containing the database header information
 	private Page schemaRoot = null;
+	
+	// write version of the page file when the database header was read
+	private long headerVersion = -1;
+	
+	// secondary indexes of the table, maintained by inserts and updates and used by where conditions
+	private ArrayList<IndexFile> tableIndexes = null;
+	
+	// access path of the running statement if it is explained, null otherwise
+	private Plan plan = null;
+	
+	// where condition of the running statement, records are tested against it instead of the single condition
+	// openCursor and updateDelRecs pick the leaves by
+	private Predicate filter = null;
+	
+	// ordinals of the columns openCursor decodes in ascending order, null to decode every column
+	private int[] projection = null;
+	
+	// rows of one INSERT statement are being written, the database header and the row count are written once at its end
+	private boolean batch = false;
 
 	// constructor
 	public FileHandler(String filePath,boolean table) throws IOException{
+		this(filePath,table,FileHandler.defaultPageSize);
+	}
+	
+	/*
+	 * @param filePath path of the file
+	 * @param table table or index file
+	 * @param pageSize page size used if the file is created, an existing file keeps the page size stored in its header
+	 */
+	public FileHandler(String filePath,boolean table,int pageSize) throws IOException{
 		this.f = new File(filePath);
 		this.table = table;
+		this.pageSize = pageSize;
 		if (this.f.exists()){
-			this.rfile = new RandomAccessFile(f,"rw");
+			int storedPageSize = readPageSize(this.f);
+			if(storedPageSize>0)
+				this.pageSize = storedPageSize;
+			this.rfile = PageFile.open(f,this.pageSize);
 			prepareDatabaseHeader();
 			this.schemaRoot = preparePage(0,this);
 			this.schemaRoot.schemaRoot=true;
+			this.headerVersion = this.rfile.getVersion();
 		}
 		else
-			this.rfile = new RandomAccessFile(f,"rw");
+			this.rfile = PageFile.open(f,this.pageSize);
 	}
 	
 	/*
-	 * @return the randome access file of this handler
+	 * prepare a handler kept open by TableHandles for the next statement
+	 * the root is looked up again, the database header and schema root are re-read only if the file changed since they were read
 	 */
-	public RandomAccessFile getRFile(){
+	public void refresh() throws IOException{
+		this.p = null;
+		this.root = null;
+		this.tableIndexes = null;
+		if(this.rfile.getVersion() != this.headerVersion && this.rfile.length()>0){
+			prepareDatabaseHeader();
+			this.schemaRoot = preparePage(0,this);
+			this.schemaRoot.schemaRoot=true;
+			this.headerVersion = this.rfile.getVersion();
+		}
+	}
+	
+	/*
+	 * @return the page file of this handler
+	 */
+	public PageFile getRFile(){
 		return this.rfile;
 	}
 	
+	public File getFile(){
+		return this.f;
+	}
+	
+	/*
+	 * @param indexes open indexes of the table in this file, null if the table has none
+	 */
+	public void setIndexes(ArrayList<IndexFile> indexes){
+		this.tableIndexes = indexes;
+	}
+	
+	/*
+	 * @param plan plan of an EXPLAIN, filled in by openCursor and updateDelRecs, null for a statement that is not explained
+	 */
+	public void setPlan(Plan plan){
+		this.plan = plan;
+	}
+	
+	/*
+	 * @param filter where condition of the next openCursor or updateDelRecs, null to test the condition they are given
+	 */
+	public void setFilter(Predicate filter){
+		this.filter = filter;
+	}
+	
+	public void setProjection(int[] projection){
+		this.projection = projection;
+	}
+	
+	/*
+	 * @param column ordinal of a column
+	 * @return an index on the column, null if there is none
+	 */
+	public IndexFile getIndex(int column){
+		if(this.tableIndexes != null)
+			for(IndexFile index : this.tableIndexes)
+				if(index.getColumn() == column)
+					return index;
+		return null;
+	}
+	
 	
 	/*
 	 *  Page Class
@@ -101,7 +196,7 @@ public class FileHandler {
 		private int cellNum = 0;
 	
 		// start of cell content area
-		private int cellStart = pageSize-1-uspace;
+		private int cellStart = FileHandler.this.pageSize-1-uspace;
 	
 		// num of fragmented free bytes within the cell content area
 		private int fragNum = 0;
@@ -112,6 +207,9 @@ public class FileHandler {
 		// page number, used as page address, start from 0
 		private int pagNumber = 0;
 		
+		// page size of the file the page belongs to
+		private int pageSize = FileHandler.this.pageSize;
+		
 		
 		// leaf 
 		private boolean leaf = true;
@@ -122,6 +220,12 @@ public class FileHandler {
 		// parent page
 		private Page parentPage = null;
 		
+		// content of the page read in one piece, decoded in memory
+		private ByteBuffer buffer = null;
+		
+		// file version the buffer was read at
+		private long bufferVersion = -1;
+		
 		public Page(int pagNum) throws Exception{
 			this.pagNumber = pagNum;
 			initPage(this.pagNumber);
@@ -146,10 +250,9 @@ public class FileHandler {
 		
 		
 		public void initPage(int pagNumber) throws Exception{
-			rfile.seek(pagNumber*FileHandler.pageSize);
-			for (int i=0; i<FileHandler.pageSize;i++)
-				rfile.writeByte(0);
-			rfile.seek(pagNumber*FileHandler.pageSize);
+			rfile.seek(pagNumber*pageSize);
+			rfile.write(new byte[pageSize]);
+			rfile.seek(pagNumber*pageSize);
 		}
 	}
 	
@@ -195,10 +298,50 @@ public class FileHandler {
 	 */
 	public void getPageSize() throws IOException{
 		this.rfile.seek(20);
-		FileHandler.pageSize = this.rfile.readShort();
+		this.pageSize = decodePageSize(this.rfile.readShort() & 0xFFFF);
 		this.rfile.seek(0);
 	}
 	
+	/*
+	 * read the page size stored in the database header of a file before the file is opened
+	 * @param f the file
+	 * @return page size of the file, 0 if the file has no database header yet
+	 */
+	public static int readPageSize(File f) throws IOException{
+		// a file opened by another handler may not be written back yet, its page size is already known
+		int pageSize = PageFile.getOpenPageSize(f);
+		if(pageSize>0)
+			return pageSize;
+		if(f.length()<0x16)
+			return 0;
+		RandomAccessFile raf = new RandomAccessFile(f,"r");
+		try{
+			raf.seek(0x14);
+			return decodePageSize(raf.readUnsignedShort());
+		}
+		finally{
+			raf.close();
+		}
+	}
+	
+	/*
+	 * page size as stored in the 2-byte header field, 65536 does not fit and is stored as 1
+	 */
+	static int encodePageSize(int pageSize){
+		return pageSize == 65536 ? 1 : pageSize;
+	}
+	
+	private static int decodePageSize(int stored){
+		return stored == 1 ? 65536 : stored;
+	}
+	
+	/*
+	 * @return true if the page size is allowed for a new database
+	 */
+	public static boolean isValidPageSize(int pageSize){
+		return pageSize>=MIN_PAGE_SIZE && pageSize<=MAX_PAGE_SIZE && (pageSize & (pageSize-1)) == 0;
+	}
+	
 	/* 
 	 * get file size in pages
 	 */
@@ -232,13 +375,14 @@ public class FileHandler {
 	 * 0X001C-0X001F: file change counter
 	 * 0x0020-0x0023: file size in pages
 	 * 0x0024-0x0027: database text encoding
-	 * 0x0028-0x003B: reserved space for expansion, 0
+	 * 0x0028-0x002B: first page of the free page list, 0 if there is none
+	 * 0x002C-0x003B: reserved space for expansion, 0
 	 * 0x003C-0x003F: database version number
 	 * 0x0040-0x0043: file change counter immediately after database version number is stored.
 	 * 
 	 */
 	
-	public void writeDatabaseHeader(RandomAccessFile rfile) throws Exception{
+	public void writeDatabaseHeader(PageFile rfile) throws Exception{
 		if(this.databasePages == 0)
 			initializePage();
 		
@@ -248,7 +392,7 @@ public class FileHandler {
 		rfile.writeUTF(FileHandler.magicHeader);
 		
 		// write page size
-		rfile.writeShort(FileHandler.pageSize);
+		rfile.writeShort(encodePageSize(this.pageSize));
 		
 		// write file format version number
 		rfile.writeByte(FileHandler.writeVersion);
@@ -278,8 +422,11 @@ public class FileHandler {
 		// default UTF-8
 		rfile.writeInt(2);
 		
+		// write first page of the free page list
+		rfile.writeInt(this.firstFreePage);
+		
 		// write reserved space for expansion, must be 0
-		byte[] tmp = new byte[]{0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0};
+		byte[] tmp = new byte[]{0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0};
 		this.rfile.write(tmp);
 		
 		// write library version number - davisbase version number value for the davisbase library that most recently modified the database file
@@ -295,7 +442,7 @@ public class FileHandler {
 	 * @return number of file pages
 	 */
 	public int recalFilePages(){
-		long numOfBytes = f.length();
+		long numOfBytes = this.rfile.length();
 		this.databasePages = (int) Math.ceil(numOfBytes/pageSize);
 		return this.databasePages;
 	}
@@ -306,23 +453,34 @@ public class FileHandler {
 	}
 	
 	public static void writeTextEncoding(String filePath,int encode) throws Exception{
-		RandomAccessFile rfile = new RandomAccessFile(new File(filePath),"rws");
-		rfile.seek(0x24);
-		rfile.writeInt(encode);
-		rfile.seek(0);
-		rfile.close();	
+		writeTextEncoding(new File(filePath),encode);
 	}
 	
 	public static void writeTextEncoding(File f,int encode) throws Exception{
-		RandomAccessFile rfile = new RandomAccessFile(f,"rws");
+		int pageSize = readPageSize(f);
+		PageFile rfile = PageFile.open(f,pageSize>0 ? pageSize : FileHandler.defaultPageSize);
 		rfile.seek(0x24);
 		rfile.writeInt(encode);
 		rfile.seek(0);
 		rfile.close();	
 	}
 	
+	/*
+	 * set the page size of files created without an explicit page size
+	 */
 	public static void setPageSize(int pageSize){
-		FileHandler.pageSize = pageSize;
+		FileHandler.defaultPageSize = pageSize;
+	}
+	
+	public static int getDefaultPageSize(){
+		return FileHandler.defaultPageSize;
+	}
+	
+	/*
+	 * @return page size of this file
+	 */
+	public int getFilePageSize(){
+		return this.pageSize;
 	}
 	
 	/*
@@ -330,7 +488,7 @@ public class FileHandler {
 	 */
 	public void onSchemaFileCreated() throws Exception{
 		this.fileChangeCounter++;
-		long totalSize = f.length();
+		long totalSize = this.rfile.length();
 		if (totalSize == 0){
 			throw new IOException("file specified does not exist!");
 		}
@@ -393,13 +551,13 @@ public class FileHandler {
 				this.rfile.writeByte(13);		
 			}
 			if(leaf && !root){
-				this.rfile.seek(p.pagNumber*FileHandler.pageSize);
+				this.rfile.seek(p.pagNumber*p.pageSize);
 				// write flag
 				this.rfile.writeByte(13);
 				
 			}
 			if(!leaf && !root){
-				this.rfile.seek(p.pagNumber*FileHandler.pageSize);
+				this.rfile.seek(p.pagNumber*p.pageSize);
 				// write flag, interior table b-tree page
 				this.rfile.writeByte(5);
 			}
@@ -432,13 +590,13 @@ public class FileHandler {
 				
 			}
 			if(leaf && !root){
-				this.rfile.seek(p.pagNumber*FileHandler.pageSize);
+				this.rfile.seek(p.pagNumber*p.pageSize);
 				// write flag
 				this.rfile.writeByte(10);
 				
 			}
 			if(!leaf && !root){
-				this.rfile.seek(p.pagNumber*FileHandler.pageSize);
+				this.rfile.seek(p.pagNumber*p.pageSize);
 				// write flag, interior table b-tree page
 				this.rfile.writeByte(2);
 			}
@@ -558,35 +716,115 @@ public class FileHandler {
 		writePageHeader(p);
 	}
 	
+	/*
+	 * return the content of a page, the page is read again only if the file has been written since the last read
+	 * @param p page to read
+	 * @param handler file to read
+	 * @return page content, index 0 is the first byte of the page
+	 */
+	private ByteBuffer pageBuffer(Page p,FileHandler handler) throws IOException{
+		PageFile rfile = handler.getRFile();
+		if(p.buffer == null || p.bufferVersion != rfile.getVersion()){
+			p.buffer = rfile.readPage(p.pagNumber);
+			p.bufferVersion = rfile.getVersion();
+		}
+		return p.buffer;
+	}
+	
 	/* 
 	 * Scan for unallocated space between last inserted cell and end of cell pointer array
 	 * @param p page to scan
 	 * @param handler file to scan
 	 */
 	private int scanForUnallocatedSpace(Page p,FileHandler handler) throws IOException{
-		RandomAccessFile rfile = handler.getRFile();
+		ByteBuffer page = pageBuffer(p,handler);
 		int numOfCells = 0;
 		long start = 0;
 		if (p.schemaRoot){
 			start = 0x004C;
-			rfile.seek(0x0047);
-			numOfCells = rfile.readShort();
+			numOfCells = page.getShort(0x0047);
 		}
 		else{
-			start = p.pagNumber*FileHandler.pageSize+0x000C;
-			rfile.seek(p.pagNumber*FileHandler.pageSize+0x0003);
-			numOfCells = rfile.readShort();
+			start = p.pagNumber*p.pageSize+0x000C;
+			numOfCells = page.getShort(0x0003);
 		}
 		
 		if(numOfCells == 0)
-			return FileHandler.pageSize-12-this.uspace; // pageSize - (pageHeader size + reserved space)
+			return p.pageSize-12-this.uspace; // pageSize - (pageHeader size + reserved space)
 		// last cell pointer position
 		long lastCellPointer = start+(numOfCells)*2;
 		// last cell pointer value
 		int lastCell = scanForLastCellPointer(p,handler);
 		
 		// number of available bytes
-		return (int) (lastCell-(lastCellPointer-p.pagNumber*FileHandler.pageSize));
+		return (int) (lastCell-(lastCellPointer-p.pagNumber*p.pageSize));
+	}
+	
+	/*
+	 * Scan for all space a new cell could use once the page is defragmented, i.e. the page minus
+	 * page header, cell pointer array and cell content
+	 * @param p page to scan
+	 * @param handler file to scan
+	 */
+	private int scanForFreeSpace(Page p,FileHandler handler) throws IOException{
+		int[] pointers = scanForCellPointers(p,handler);
+		long baseAddress = p.pagNumber*p.pageSize;
+		int used = 0;
+		for(int i=0;i<pointers.length;i++)
+			used += readRecordLength(pointers[i],baseAddress,p.leaf,handler.getRFile());
+		long headerEnd = scanForPageHeaderEnd(p)-baseAddress;
+		return (int) (p.pageSize-this.uspace-headerEnd-pointers.length*2-used);
+	}
+	
+	/*
+	 * move all cells of a page to the end of the page, the unallocated space between the cell pointer array
+	 * and the cell content area becomes one piece, cell pointers keep their order
+	 * @param p page to defragment
+	 * @param handler file to process
+	 */
+	private void defragmentPage(Page p,FileHandler handler) throws Exception{
+		PageFile rfile = handler.getRFile();
+		int[] cellPointers = scanForCellPointers(p,handler);
+		long baseAddress = p.pagNumber*p.pageSize;
+		
+		byte[][] records = new byte[cellPointers.length][];
+		for(int i=0;i<cellPointers.length;i++)
+			records[i] = readRecord(cellPointers[i],baseAddress,p.leaf,rfile);
+		writeCells(p,records,handler);
+	}
+	
+	/*
+	 * write the cells of a page from the end of the page down, the cell pointers follow the order of the records
+	 * @param p page to write
+	 * @param records the cells, already ordered by key
+	 * @param handler file to process
+	 */
+	private void writeCells(Page p,byte[][] records,FileHandler handler) throws Exception{
+		PageFile rfile = handler.getRFile();
+		long baseAddress = p.pagNumber*p.pageSize;
+		int[] cellPointers = new int[records.length];
+		
+		// move all records to end of the page
+		long pageEndPos = baseAddress+p.pageSize-this.uspace;
+		for(int i=0;i<records.length;i++){
+			pageEndPos -= records[i].length;
+			rfile.seek(pageEndPos);
+			rfile.write(records[i]);
+			cellPointers[i] = (int) (pageEndPos-baseAddress);
+		}
+		
+		// write cell pointers
+		rfile.seek(scanForPageHeaderEnd(p));
+		for(int i=0;i<cellPointers.length;i++)
+			rfile.writeShort(cellPointers[i]);
+		
+		// update page information
+		p.cellNum = records.length;
+		p.cellStart = (int) (pageEndPos-baseAddress);
+		int[] result = scanForFBlockandFrag(p,handler);
+		p.freeBlockStart = result[0];
+		p.fragNum = result[1];
+		writePageHeader(p);
 	}
 	
 	/*
@@ -600,7 +838,7 @@ public class FileHandler {
 			end = 0x004C;
 		}
 		else{
-			end = p.pagNumber*FileHandler.pageSize+0x000C;
+			end = p.pagNumber*p.pageSize+0x000C;
 		}
 		return end;
 	}
@@ -612,30 +850,24 @@ public class FileHandler {
 	 */
 	private int[] scanForCellPointers(Page p, FileHandler handler) throws IOException{
 
-		RandomAccessFile rfile = handler.getRFile();
-		ArrayList<Integer> pointers = new ArrayList<>();
+		ByteBuffer page = pageBuffer(p,handler);
 		int numOfCells = 0;
-		long start = 0;
+		int start = 0;
 		if(p.schemaRoot){
 			start = 0x004C;
-			rfile.seek(0x0047);
-			numOfCells = rfile.readShort();
+			numOfCells = page.getShort(0x0047);
 		}
 		else{
-			start = p.pagNumber*FileHandler.pageSize+0x000C;
-
-			rfile.seek(p.pagNumber*FileHandler.pageSize+0x0003);
-			numOfCells = rfile.readShort();
+			start = 0x000C;
+			numOfCells = page.getShort(0x0003);
 		}
 		
-		rfile.seek(start);
-		int pointer = -1;
-		for (int i=0;i<numOfCells;i++){
-			pointer = rfile.readShort();
-			pointers.add(pointer);
+		int[] pointers = new int[Math.max(numOfCells, 0)];
+		for (int i=0;i<pointers.length;i++){
+			pointers[i] = page.getShort(start) & 0xFFFF;
 			start+=2;
 		}
-		return Utilities.toIntArray(pointers.toArray(new Integer[]{}));
+		return pointers;
 	}
 	
 	
@@ -654,113 +886,115 @@ public class FileHandler {
 	}
 	
 	/*
-	 * note it should be called before alter pointer arrays
+	 * rebuild the free-block chain of a page from its cells
+	 * every gap between two cells of the cell content area, or between the last cell and the end of the page, becomes a
+	 * free block, linked in address order: 2 bytes offset of the next block (0 ends the chain) | 2 bytes size of the block
+	 * a gap smaller than the 4 byte block header is counted as fragmented bytes
+	 * the first p.cellNum cell pointers are used, a leaf cell still among them but marked deleted counts as free space
+	 * @return {offset of the first free block or 0, number of fragmented bytes}
 	 */
 	public int[] scanForFBlockandFrag(Page p,FileHandler handler) throws IOException{
-		RandomAccessFile rfile = handler.getRFile();
-		
 		int[] result = new int[2];
-		int[] pointers = scanForCellPointers(p,handler);
-		long baseAddress = p.pagNumber*FileHandler.pageSize;
-		Arrays.sort(pointers);
-		
-		// start of the free space
-		long freeStart = 0;
-				
-		// length of free region
-		int length = 0;
-		int tmp_length = 0;
-		
-		
-		// last freeBlock
-		long lastFreeBKPos = 0;
+		// cells of the schema root page have a different layout and are never deleted
+		if(p.schemaRoot)
+			return result;
+		PageFile rfile = handler.getRFile();
+		ByteBuffer page = pageBuffer(p,handler);
+		long baseAddress = p.pagNumber*p.pageSize;
+		int pointerEnd = 0x000C+2*p.cellNum;
+		int pageEnd = p.pageSize-this.uspace;
 		
-		// first freeBlock
-		long firstFreeBKPos = 0;
+		int[] pointers = new int[Math.max(p.cellNum, 0)];
+		for(int i=0;i<pointers.length;i++)
+			pointers[i] = page.getShort(0x000C+2*i) & 0xFFFF;
+		Arrays.sort(pointers);
 		
-		// free block counter 
-		int numOfFreeBK = 0;
+		// gaps between the live cells, in address order
+		ArrayList<int[]> gaps = new ArrayList<>();
+		int pos = -1;
+		for(int i=0;i<pointers.length;i++){
+			if(pointers[i]<pointerEnd || pointers[i]>=pageEnd)
+				return result;
+			if(p.leaf && page.get(pointers[i]) == 1)
+				continue;
+			int length = p.leaf ? 1+2+4+(page.getShort(pointers[i]+1) & 0xFFFF) : 8+1;
+			if(pointers[i]+length>pageEnd || pointers[i]<pos)
+				return result; // the cells do not describe the page, leave it alone
+			if(pos != -1 && pointers[i]>pos)
+				gaps.add(new int[]{pos,pointers[i]-pos});
+			pos = pointers[i]+length;
+		}
+		if(pos != -1 && pos<pageEnd)
+			gaps.add(new int[]{pos,pageEnd-pos});
 		
-		// number of fragmented bytes
+		int lastBlock = 0;
 		int numOfFrag = 0;
-		
-		// adjacent deleteMarker
-		byte adjDeleteMarker = 0;
-		
-		
-		// scan the cell content area
-		// complete record format: deleteMarder | record format
-		for(int i=0;i<pointers.length;i++){
-			long pos = baseAddress + pointers[i];
-			
-			rfile.seek(pos);
-			byte deleteMarker = rfile.readByte();
-			
-			if(deleteMarker == 1){
-				rfile.seek(pos+1);
-				tmp_length = rfile.readShort()+2+4+1;
+		for(int[] gap : gaps){
+			if(gap[1]<4){
+				numOfFrag += gap[1];
+				continue;
 			}
-			
-			if(adjDeleteMarker == 0 && deleteMarker==1){
-				length = 0;
-				freeStart = pos;
-				length += tmp_length;
-				if (i==pointers.length-1){
-					firstFreeBKPos = freeStart;
-					rfile.seek(firstFreeBKPos+2);
-					rfile.writeShort(length);
-					lastFreeBKPos = freeStart;
-				}
+			if(lastBlock == 0)
+				result[0] = gap[0];
+			else{
+				rfile.seek(baseAddress+lastBlock);
+				rfile.writeShort(gap[0]);
 			}
-			if (adjDeleteMarker == 1 && deleteMarker == 0){
-				if(length > 4){
-					if(numOfFreeBK == 0){
-						firstFreeBKPos = freeStart;
-						rfile.seek(firstFreeBKPos+2);
-						rfile.writeShort(length);
-						lastFreeBKPos = freeStart;
-						
-					}
-					else{
-						rfile.seek(lastFreeBKPos);
-						rfile.writeShort((int)(freeStart-baseAddress));
-						rfile.seek(freeStart+2);
-						rfile.writeShort(length);
-						lastFreeBKPos = freeStart;
-						
-					}
-					numOfFreeBK++;
+			rfile.seek(baseAddress+gap[0]);
+			rfile.writeShort(0);
+			rfile.writeShort(gap[1]);
+			lastBlock = gap[0];
+		}
+		result[1] = Math.min(numOfFrag, 255);
+		return result; 
+	}
+	
+	/*
+	 * take the space of a new cell from the free-block chain of a page, first fit
+	 * the cell goes to the end of the block and the rest of the block stays free
+	 * @param p page to write
+	 * @param length length of the new cell
+	 * @param handler file to process
+	 * @return file address to write the cell at, -1 if no free block is large enough
+	 */
+	private long takeFreeBlock(Page p,int length,FileHandler handler) throws IOException{
+		if(p.freeBlockStart == 0 || p.schemaRoot)
+			return -1;
+		// the chain is rebuilt first, a page written by an older version may carry a stale one
+		int[] chain = scanForFBlockandFrag(p,handler);
+		p.freeBlockStart = chain[0];
+		p.fragNum = chain[1];
+		
+		PageFile rfile = handler.getRFile();
+		ByteBuffer page = pageBuffer(p,handler);
+		long baseAddress = p.pagNumber*p.pageSize;
+		int prev = 0;
+		int block = p.freeBlockStart;
+		while(block != 0){
+			int next = page.getShort(block) & 0xFFFF;
+			int size = page.getShort(block+2) & 0xFFFF;
+			if(size>=length){
+				if(size-length>=4){
+					rfile.seek(baseAddress+block+2);
+					rfile.writeShort(size-length);
+					return baseAddress+block+size-length;
 				}
+				// the rest of the block is too small for a block header
+				if(prev == 0)
+					p.freeBlockStart = next;
 				else{
-					numOfFrag += length;
-				}
-			}
-			if (deleteMarker == 1 && adjDeleteMarker == 1){
-				rfile.seek(pos+1);
-				length+=(rfile.readShort()+2+4+1);	
-				if (i==pointers.length-1){
-					firstFreeBKPos = freeStart;
-					rfile.seek(firstFreeBKPos+2);
-					rfile.writeShort(length);
-					lastFreeBKPos = freeStart;
+					rfile.seek(baseAddress+prev);
+					rfile.writeShort(next);
 				}
+				p.fragNum = Math.min(p.fragNum+size-length, 255);
+				return baseAddress+block;
 			}
-			adjDeleteMarker = deleteMarker;
-			
-		}
-		
-		// set the last freeBlock address part = 0
-		if(lastFreeBKPos != 0){
-			rfile.seek(lastFreeBKPos);
-			rfile.writeShort(0);
+			if(next <= block)
+				break;
+			prev = block;
+			block = next;
 		}
-		
-		if(firstFreeBKPos!=0)
-			result[0] = (int) (firstFreeBKPos - baseAddress);
-		else
-			result[0] = (int) firstFreeBKPos;
-		result[1] = numOfFrag;
-		return result; 
+		return -1;
 	}
 	
 	/*
@@ -782,79 +1016,62 @@ public class FileHandler {
 	 *  where== false: operator,value operIndex = null
 	 *  delete indexes, typeCodes, values=null
 	 */
-	public void updateDelRecs(int[] indexes, HashMap<Integer, Any> values, boolean schema,String tableName,
-			FileHandler handler,boolean delete, boolean update, boolean drop,String operator, Any value, int operIndex, boolean priInt,boolean primary,
+	public void updateDelRecs(int[] indexes, Row values, boolean schema,String tableName,
+			FileHandler handler,boolean delete, boolean update, boolean drop,String operator, Value value, int operIndex, boolean priInt,boolean primary,
 		     boolean where,HashMap<Integer,Integer> typeCodeList, String database) throws Exception{
 		
 		if(this.databasePages == 1)
 			throw new Exception(String.format("Error 14: table %s contains no data!",tableName));
 		if(this.root == null)
 			this.root = getRoot();
-		// find the start page
-		// pages form a linked list
-		Page startP;
-		int endPNum = 0;
-		
-		// if it is schema table, row id is primary key, brute force search all page
-		if(schema){
-			int pagNum = traversePage(null,null,handler.getRoot(),schema,true,true,handler,tableName);
-			startP = preparePage(pagNum,handler);
+		long planStart = System.nanoTime();
+		// the scan starts at the leaf the lower bound of the key would be stored in and ends with the leaf of its upper
+		// bound, without a bound it starts at the leftmost leaf and follows the leaf chain to its end
+		KeyRange range = scanForKeyRange(schema,where,operator,value,operIndex,priInt,primary);
+		Page startP = null;
+		int lastPNum = 0;
+		if(range == null || !range.isEmpty()){
+			if(range != null && range.hasLow())
+				startP = preparePage(traversePage2(range.getLow(),handler.getRoot(),schema,false,false,handler,tableName),handler);
+			else
+				startP = preparePage(traversePage(null,null,handler.getRoot(),schema,true,true,handler,tableName),handler);
+			if(range != null && range.hasHigh())
+				lastPNum = scanForLastLeaf(range.getHigh(),handler,schema,tableName);
 		}
-		else{
-			if(!where){
-				int pagNum = traversePage(null,null,handler.getRoot(),schema,true,true,handler,tableName);
-				startP = preparePage(pagNum,handler);
+		// only the leaves found through an index of the where column are updated, see openCursor
+		int[] pageNums = null;
+		int indexKeys = -1;
+		IndexFile index = handler.getIndex(operIndex);
+		if((update || delete) && !schema && where && operator != null && !(primary && priInt) && index != null && IndexFile.supports(operator)){
+			int[] keys = index.search(operator, value);
+			indexKeys = keys.length;
+			if(keys.length == 0){
+				explainScan(tableName,schema,where,operator,value,operIndex,priInt,primary,null,0,0,indexKeys,range,planStart);
+				return;
 			}
-			else{
-				if(operator.equals(">")||operator.equals(">=")){
-					if((primary && !priInt) || !primary){
-						int pagNum = traversePage(null,null,handler.getRoot(),schema,true,true,handler,tableName);
-						startP = preparePage(pagNum,handler);
-					}
-					else{
-						int pagNum = traversePage2(value.extract_long(),handler.getRoot(),schema,false,false,handler,tableName);
-						startP = preparePage(pagNum,handler);
-					}
-				}
-				else if(operator.equals("<")||operator.equals("<=")){
-					if((primary && !priInt) || !primary){
-						int pagNum = traversePage(null,null,handler.getRoot(),schema,true,true,handler,tableName);
-						startP = preparePage(pagNum,handler);
-					}
-					else{
-						endPNum = traversePage2(value.extract_long(),handler.getRoot(),schema,false,false,handler,tableName);
-						if(endPNum!=0)
-							endPNum = getLeafPagePointer(preparePage(endPNum,handler),handler.getRFile());
-						if(endPNum!=0)
-							endPNum = getLeafPagePointer(preparePage(endPNum,handler),handler.getRFile());
-
-						int pagNum;
-						pagNum = traversePage(null,null,handler.getRoot(),schema,true,true,handler,tableName);
-						startP = preparePage(pagNum,handler);
-					}
-				}
-				else if(operator.equals("!=") || operator.equals("<>")){
-					int pagNum = traversePage(null,null,handler.getRoot(),schema,true,true,handler,tableName);
-					startP = preparePage(pagNum,handler);
-				}
-				else{
-					if((primary && !priInt) || !primary){
-						int pagNum = traversePage(null,null,handler.getRoot(),schema,true,true,handler,tableName);
-						startP = preparePage(pagNum,handler);
-					}
-					else{
-						int pagNum = traversePage2(value.extract_long(),handler.getRoot(),schema,false,false,handler,tableName);	
-						startP = preparePage(pagNum,handler);
-					}
-				}
+			if(scanForIndexBenefit(keys.length)){
+				pageNums = scanForIndexedPages(keys,handler,tableName);
+				startP = pageNums.length == 0 ? null : preparePage(pageNums[0],handler);
 			}
 		}
+		explainScan(tableName,schema,where,operator,value,operIndex,priInt,primary,startP,lastPNum,pageNums == null ? -1 : pageNums.length,indexKeys,range,planStart);
+		// EXPLAIN without ANALYZE only picks the leaves, an empty key range has none
+		if((this.plan != null && !this.plan.isAnalyze()) || startP == null)
+			return;
 		if(update)
-			updateRecord(startP,endPNum,schema,indexes,values,operIndex,handler,value,operator,tableName,priInt,primary,where,typeCodeList);
-		if(delete)
-			deleteRecord(startP,endPNum,schema,operIndex,handler,value,operator,tableName,priInt,primary);
+			updateRecord(startP,lastPNum,schema,indexes,values,operIndex,handler,value,operator,tableName,priInt,primary,where,typeCodeList,pageNums,this.filter);
+		if(delete){
+			int deleted = deleteRecord(startP,lastPNum,schema,operIndex,handler,value,operator,tableName,priInt,primary,where,pageNums,this.filter);
+			if(deleted>0){
+				this.fileChangeCounter++;
+				recalFilePages();
+				writeDatabaseHeader(this.rfile);
+				if(!schema)
+					updateDavisbaseTable(tableName,-deleted);
+			}
+		}
 		if(drop)
-			dropTable(startP,endPNum,schema,tableName,handler,database);
+			dropTable(startP,0,schema,tableName,handler,database);
 	}
 	 
 	/*
@@ -862,24 +1079,29 @@ public class FileHandler {
 	 */
 	private void dropTable(Page startP, int endPNum, boolean schema, String tableName, FileHandler handler, String database) throws Exception {
 
-		RandomAccessFile rfile = handler.getRFile();
+		PageFile rfile = handler.getRFile();
 		int nextLeafPage; // next leaf page pointer = 0 -> null
 		Page p=startP;
 		do{
 			nextLeafPage = getLeafPagePointer(p,handler.getRFile());
 			if(p.cellNum!=0){
-				Long[] recordAddress = getPageRecords(handler,p,-1,null,null,schema,tableName,false,false,true,database);
+				Long[] recordAddress = getPageRecords(handler,p,-1,null,null,schema,tableName,false,false,true,database,null);
 				
 				int[] cellPointers = scanForCellPointers(p,handler);
 				ArrayList<Integer> pointers = Utilities.toArrayList(cellPointers);
 				for(int i=0;i<recordAddress.length;i++){
 					rfile.seek(recordAddress[i]);
 					rfile.writeByte(1);
-					pointers.remove(new Integer((int) (recordAddress[i]-p.pagNumber*FileHandler.pageSize)));
+					pointers.remove(new Integer((int) (recordAddress[i]-p.pagNumber*p.pageSize)));
 				}
 				if(!pointers.isEmpty()){
 					cellPointers = Utilities.toIntArray(pointers.toArray(new Integer[]{}));
 					p.cellNum = cellPointers.length;
+
+					// write the remaining cell pointers
+					rfile.seek(scanForPageHeaderEnd(p));
+					for(int i=0;i<cellPointers.length;i++)
+						rfile.writeShort(cellPointers[i]);
 				}
 				else
 					p.cellNum = 0;
@@ -893,6 +1115,19 @@ public class FileHandler {
 	}	
 	
 
+	/*
+	 * range of keys a scan has to read, from the conditions on an integer primary key
+	 * parameters as in openCursor
+	 * @return the range, null if the condition does not bound the key and every leaf is read
+	 */
+	private KeyRange scanForKeyRange(boolean schema,boolean where,String operator,Value value,int operIndex,boolean priInt,boolean primary) throws Exception{
+		if(schema || !where || operator == null || !(primary && priInt))
+			return null;
+		if(this.filter != null)
+			return this.filter.keyRange(operIndex);
+		return KeyRange.of(operator,value.getInt());
+	}
+	
 	/*
 	 * 	select records in a table
 	 *  by default, this -> file to process
@@ -906,143 +1141,676 @@ public class FileHandler {
 	 *  
 	 *  where== false: operator,value operIndex = null
 	 */
-	public void selectRecs(boolean schema,String tableName, FileHandler handler, String operator, Any value, int operIndex, boolean priInt,boolean primary,String[] ColNames, 
-		     boolean where, ArrayList<HashMap<String,Any>> rows, ArrayList<HashMap<String,Integer>> typeCodes) throws Exception{
+	public void selectRecs(boolean schema,String tableName, FileHandler handler, String operator, Value value, int operIndex, boolean priInt,boolean primary,String[] ColNames, 
+		     boolean where, ArrayList<Row> rows) throws Exception{
+		Cursor cursor = openCursor(schema,tableName,handler,operator,value,operIndex,priInt,primary,ColNames,where);
+		cursor.open();
+		Row row;
+		while((row = cursor.next()) != null)
+			rows.add(row);
+		cursor.close();
+	}
+	
+	/*
+	 * 	cursor over the records of a table that meet the where condition, parameters as in selectRecs
+	 *  the start page is located here, the leaves are read as the cursor advances
+	 */
+	public Cursor openCursor(boolean schema,String tableName, FileHandler handler, String operator, Value value, int operIndex, boolean priInt,boolean primary,String[] ColNames, 
+		     boolean where) throws Exception{
 		
 		if(this.databasePages == 1)
 			throw new Exception(String.format("Error 14: table %s contains no data!",tableName));
 		if(this.root == null)
 			this.root = getRoot();
-		// find the start page
-		// pages form a linked list
-		Page startP;
-		int endPNum = 0;
-		
-		// if it is schema table, row id is primary key, brute force search all page
-		if(schema){
-			int pagNum = traversePage(null,null,handler.getRoot(),schema,true,true,handler,tableName);
-			startP = preparePage(pagNum,handler);
+		long planStart = System.nanoTime();
+		// the scan starts at the leaf the lower bound of the key would be stored in and ends with the leaf of its upper
+		// bound, without a bound it starts at the leftmost leaf and follows the leaf chain to its end
+		KeyRange range = scanForKeyRange(schema,where,operator,value,operIndex,priInt,primary);
+		Page startP = null;
+		int lastPNum = 0;
+		if(range == null || !range.isEmpty()){
+			if(range != null && range.hasLow())
+				startP = preparePage(traversePage2(range.getLow(),handler.getRoot(),schema,false,false,handler,tableName),handler);
+			else
+				startP = preparePage(traversePage(null,null,handler.getRoot(),schema,true,true,handler,tableName),handler);
+			if(range != null && range.hasHigh())
+				lastPNum = scanForLastLeaf(range.getHigh(),handler,schema,tableName);
 		}
-		else{
-			if(!where){
-				int pagNum = traversePage(null,null,handler.getRoot(),schema,true,true,handler,tableName);
-				startP = preparePage(pagNum,handler);
+		// a secondary index on the where column narrows the scan down to the leaves holding the matching rows, unless
+		// they are spread over about every leaf. Only the first leaf is looked up here, the cursor finds the others as
+		// it advances, so a scan stopped early (e.g. by LIMIT) descends to no further leaf
+		IndexedLeaves indexed = null;
+		int indexKeys = -1;
+		IndexFile index = handler.getIndex(operIndex);
+		if(!schema && where && operator != null && !(primary && priInt) && index != null && IndexFile.supports(operator)){
+			int[] keys = index.search(operator, value);
+			indexKeys = keys.length;
+			if(keys.length == 0){
+				explainScan(tableName,schema,where,operator,value,operIndex,priInt,primary,null,0,0,indexKeys,range,planStart);
+				return new Cursor.ListCursor(new ArrayList<Row>());
 			}
-			else{
-				if(operator.equals(">")||operator.equals(">=")){
-					if((primary && !priInt) || !primary){
-						int pagNum = traversePage(null,null,handler.getRoot(),schema,true,true,handler,tableName);
-						startP = preparePage(pagNum,handler);
-					}
-					else{
-						int pagNum = traversePage2(value.extract_long(),handler.getRoot(),schema,false,false,handler,tableName);
-						startP = preparePage(pagNum,handler);
-					}
-				}
-				else if(operator.equals("<")||operator.equals("<=")){
-					if((primary && !priInt) || !primary){
-						int pagNum = traversePage(null,null,handler.getRoot(),schema,true,true,handler,tableName);
-						startP = preparePage(pagNum,handler);
-					}
-					else{
-						endPNum = traversePage2(value.extract_long(),handler.getRoot(),schema,false,false,handler,tableName);
-						endPNum = getLeafPagePointer(preparePage(endPNum,handler),handler.getRFile());
-						int pagNum;
-						pagNum = traversePage(null,null,handler.getRoot(),schema,true,true,handler,tableName);
-						startP = preparePage(pagNum,handler);
-					}
+			if(scanForIndexBenefit(keys.length)){
+				indexed = new IndexedLeaves(keys,handler,tableName);
+				int first = indexed.next();
+				startP = first == 0 ? null : preparePage(first,handler);
+			}
+		}
+		explainScan(tableName,schema,where,operator,value,operIndex,priInt,primary,startP,lastPNum,
+				indexed == null ? -1 : Math.min(indexKeys, recalFilePages()-1),indexKeys,range,planStart);
+		if(startP == null)
+			return new Cursor.ListCursor(new ArrayList<Row>());
+		return new LeafCursor(startP, lastPNum, schema, operIndex, handler, value, operator, tableName,priInt,  primary, ColNames,where,indexed,this.filter,this.projection);
+	}
+	
+	/*
+	 * read the record with an integer primary key, its leaf is found by one descent of the B+-tree
+	 * @param key the key
+	 * @param tableName the table name
+	 * @param colNames column names of the row
+	 * @param columns ordinals of the columns to decode in ascending order, null for every column
+	 * @return the row, null if no record has the key
+	 */
+	public Row readRowByKey(int key,String tableName,String[] colNames,int[] columns) throws Exception{
+		if(recalFilePages()<=1)
+			return null;
+		Page p = preparePage(traversePage2(key,getRoot(),false,false,false,this,tableName),this);
+		// a key equal to a separator leads to the leaf left of the one starting with it, so the next leaf is read too
+		for(int step=0;step<2 && p.cellNum>0;step++){
+			ByteBuffer page = pageBuffer(p,this);
+			int[] pointers = scanForCellPointers(p,this);
+			Metrics.add(Metrics.Counter.ROWS_EXAMINED, pointers.length);
+			int maxKey = Integer.MIN_VALUE;
+			for(int cell : pointers){
+				int cellKey = page.getInt(cell+3);
+				maxKey = Math.max(maxKey, cellKey);
+				if(cellKey != key)
+					continue;
+				Row row = new Row(colNames);
+				readRow(row,page,cell,columns);
+				Metrics.add(Metrics.Counter.ROWS_RETURNED, 1);
+				return row;
+			}
+			int next = getLeafPagePointer(p,getRFile());
+			if(maxKey>key || next == 0)
+				return null;
+			p = preparePage(next,this);
+		}
+		return null;
+	}
+	
+	/*
+	 * describe the leaves picked by openCursor or updateDelRecs in the plan of an explained statement
+	 * parameters as in openCursor, startP, lastPNum and range as picked, startP is null if no leaf is read
+	 * @param indexLeaves leaves read through an index (estimated if they are looked up by the cursor), -1 without index
+	 * @param indexKeys rows an index of the where column found, -1 if no index was searched
+	 * @param planStart time the picking started
+	 */
+	private void explainScan(String tableName,boolean schema,boolean where,String operator,Value value,int operIndex,boolean priInt,boolean primary,
+			Page startP,int lastPNum,int indexLeaves,int indexKeys,KeyRange range,long planStart) throws Exception{
+		if(this.plan == null)
+			return;
+		Plan.Access access;
+		if(schema)
+			access = Plan.Access.SCHEMA;
+		else if(indexLeaves>=0)
+			access = Plan.Access.INDEX;
+		else if(range != null)
+			access = Plan.Access.KEY_RANGE;
+		else
+			access = Plan.Access.FULL_SCAN;
+		
+		// leaves in key order, from the interior pages only
+		int height = getTreeHeight();
+		int startPage = startP == null ? 0 : startP.pagNumber;
+		int leaves;
+		if(indexLeaves>=0)
+			leaves = indexLeaves;
+		else if(schema)
+			leaves = recalFilePages()-1;
+		else if(startP == null)
+			leaves = 0;
+		else{
+			ArrayList<Integer> order = new ArrayList<>();
+			scanForLeafOrder(1,height,order);
+			int from = Math.max(order.indexOf(startPage), 0);
+			int to = lastPNum == 0 || order.indexOf(lastPNum)<0 ? order.size()-1 : order.indexOf(lastPNum);
+			leaves = Math.max(to-from+1, 0);
+		}
+		this.plan.setAccess(tableName,access,height,startPage,lastPNum,leaves);
+		if(range != null)
+			this.plan.setKeyRange(getTableColNames(tableName)[operIndex]+" in "+range+(range.isEmpty() ? ", empty" : ""));
+		
+		if(schema)
+			this.plan.setPredicate("table and database name of every record read");
+		else if(where){
+			String driver = operator == null ? null : getTableColNames(tableName)[operIndex]+" "+operator+" "+value;
+			String bound = "";
+			if(access == Plan.Access.INDEX)
+				bound = ", the index picks the leaves read by "+driver;
+			else if(indexKeys>=0)
+				bound = ", the index on "+getTableColNames(tableName)[operIndex]+" is not used, its "+indexKeys
+						+" rows are spread over about every leaf";
+			else if(access == Plan.Access.KEY_RANGE)
+				bound = ", the key range picks the first and last leaf read";
+			this.plan.setPredicate((this.filter != null ? this.filter.toString() : driver)+", checked on every record read"+bound);
+		}
+		else
+			this.plan.setPredicate("none, every record read is emitted");
+		this.plan.addPhase("plan", System.nanoTime()-planStart);
+	}
+	
+	/*
+	 * collect the leaves of the subtree of a page in key order, only interior pages are read
+	 * @param pageNum the page
+	 * @param height levels of the subtree, 1 for a leaf
+	 * @param leaves the leaves found
+	 */
+	private void scanForLeafOrder(int pageNum,int height,ArrayList<Integer> leaves) throws IOException{
+		if(height<=1){
+			leaves.add(pageNum);
+			return;
+		}
+		ByteBuffer page = this.rfile.readPage(pageNum);
+		int n = page.getShort(0x03);
+		long[] children = new long[n];
+		for(int i=0;i<n;i++){
+			int cell = page.getShort(0x000C+2*i) & 0xFFFF;
+			children[i] = ((long)page.getInt(cell+5)<<32) | (page.getInt(cell+1) & 0xFFFFFFFFL);
+		}
+		Arrays.sort(children);
+		for(int i=0;i<n;i++)
+			scanForLeafOrder((int) children[i],height-1,leaves);
+		scanForLeafOrder(page.getInt(0x08),height-1,leaves);
+	}
+	
+	/*
+	 * @param keys number of rows an index found
+	 * @return reading their leaves through the index, one descent per leaf, reads fewer pages than a scan of every leaf
+	 */
+	private boolean scanForIndexBenefit(int keys) throws IOException{
+		int pages = recalFilePages()-1;
+		return (long) Math.min(keys, pages)*Math.max(getTreeHeight(), 1)<pages;
+	}
+	
+	/*
+	 * find the leaves holding a set of rows
+	 * @param keys row keys in ascending order
+	 * @param handler file handler
+	 * @param tableName the table name
+	 * @return page numbers of the leaves in leaf order
+	 */
+	private int[] scanForIndexedPages(int[] keys,FileHandler handler,String tableName) throws Exception{
+		ArrayList<Integer> pages = new ArrayList<>();
+		IndexedLeaves indexed = new IndexedLeaves(keys,handler,tableName);
+		int pagNum;
+		while((pagNum = indexed.next()) != 0)
+			pages.add(pagNum);
+		return Utilities.toIntArray(pages.toArray(new Integer[]{}));
+	}
+	
+	/*
+	 *  Leaves holding a set of rows found through an index, looked up one at a time by a descent of the B+-tree
+	 */
+	private class IndexedLeaves{
+		// row keys in ascending order and the first one not looked up yet
+		private int[] keys;
+		private int pos = 0;
+		private FileHandler handler;
+		private String tableName;
+		
+		// greatest key on the last leaf found, keys up to it are on that leaf as well
+		private long maxKey = Long.MIN_VALUE;
+		private int last = 0;
+		
+		public IndexedLeaves(int[] keys,FileHandler handler,String tableName){
+			this.keys = keys;
+			this.handler = handler;
+			this.tableName = tableName;
+		}
+		
+		/*
+		 * @return the next leaf holding some of the rows in leaf order, 0 if there is none
+		 */
+		public int next() throws Exception{
+			while(this.pos<this.keys.length){
+				int key = this.keys[this.pos++];
+				if(key<=this.maxKey)
+					continue;
+				int pagNum = traversePage2(key,this.handler.getRoot(),false,false,false,this.handler,this.tableName);
+				Page p = preparePage(pagNum,this.handler);
+				if(p.cellNum == 0)
+					continue;
+				int pageMax = scanForMaxKey(p,this.handler);
+				// a key equal to a separator leads to the leaf left of the one starting with it
+				if(pageMax<key && getLeafPagePointer(p,this.handler.getRFile()) != 0){
+					pagNum = getLeafPagePointer(p,this.handler.getRFile());
+					p = preparePage(pagNum,this.handler);
+					if(p.cellNum == 0)
+						continue;
+					pageMax = scanForMaxKey(p,this.handler);
 				}
-				else if(operator.equals("!=") || operator.equals("<>")){
-					int pagNum = traversePage(null,null,handler.getRoot(),schema,true,true,handler,tableName);
-					startP = preparePage(pagNum,handler);
+				this.maxKey = Math.max(this.maxKey, pageMax);
+				if(pagNum == this.last)
+					continue;
+				this.last = pagNum;
+				return pagNum;
+			}
+			return 0;
+		}
+	}
+	
+	/*
+	 * @return the greatest key on a leaf, Integer.MIN_VALUE if it has no record
+	 */
+	private int scanForMaxKey(Page p,FileHandler handler) throws Exception{
+		int max = Integer.MIN_VALUE;
+		for(int key : getPageKeyVals(scanForCellPointers(p,handler),p,handler))
+			max = Math.max(max, key);
+		return max;
+	}
+	
+	/*
+	 * find the last leaf a scan up to a key has to read
+	 * a key equal to a separator leads to the leaf left of the one starting with it, the scan then ends with the leaf
+	 * after it, as every leaf that still holds no key above the upper bound
+	 * @param key the upper bound
+	 * @param handler file to process
+	 * @return page number of the leaf
+	 */
+	private int scanForLastLeaf(int key,FileHandler handler,boolean schema,String tableName) throws Exception{
+		Page p = preparePage(traversePage2(key,handler.getRoot(),schema,false,false,handler,tableName),handler);
+		int next;
+		while((next = getLeafPagePointer(p,handler.getRFile())) != 0 && scanForMaxKey(p,handler)<key){
+			Page nextP = preparePage(next,handler);
+			if(nextP.cellNum>0 && scanForMinKey(nextP,handler)>key)
+				break;
+			p = nextP;
+		}
+		return p.pagNumber;
+	}
+	
+	/*
+	 * @return the smallest key on a leaf, Integer.MAX_VALUE if it has no record
+	 */
+	private int scanForMinKey(Page p,FileHandler handler) throws Exception{
+		int min = Integer.MAX_VALUE;
+		for(int key : getPageKeyVals(scanForCellPointers(p,handler),p,handler))
+			min = Math.min(min, key);
+		return min;
+	}
+	
+	/*
+	 *  Cursor over the leaves of a table, decodes the matching records of one leaf at a time
+	 */
+	private class LeafCursor implements Cursor{
+		private Page p;
+		
+		// last leaf to read, 0 to read to the end of the leaf chain
+		private int lastPNum;
+		private boolean schema;
+		private int operIndex;
+		private FileHandler handler;
+		private Value value;
+		private String operator;
+		private String tableName;
+		private boolean priInt;
+		private boolean primary;
+		private String[] colNames;
+		private boolean where;
+		
+		// leaves found through an index to read instead of following the leaf pointers, null to follow them
+		private IndexedLeaves indexed;
+		
+		// where condition, null to test the single condition
+		private Predicate filter;
+		
+		// columns decoded, null for every column
+		private int[] projection;
+		
+		// matching rows of the current leaf
+		private ArrayList<Row> rows = new ArrayList<>();
+		
+		// row returned for every record if no column is decoded
+		private Row empty = null;
+		private int pos = 0;
+		
+		// the last leaf was read
+		private boolean done = false;
+		
+		public LeafCursor(Page startP, int lastPNum, boolean schema, int operIndex, FileHandler handler, Value value,
+				String operator, String tableName, boolean priInt, boolean primary, String[] colNames,boolean where,IndexedLeaves indexed,Predicate filter,int[] projection){
+			this.p = startP;
+			this.lastPNum = lastPNum;
+			this.schema = schema;
+			this.operIndex = operIndex;
+			this.handler = handler;
+			this.value = value;
+			this.operator = operator;
+			this.tableName = tableName;
+			this.priInt = priInt;
+			this.primary = primary;
+			this.colNames = colNames;
+			this.where = where;
+			this.indexed = indexed;
+			this.filter = filter;
+			this.projection = projection;
+		}
+		
+		@Override
+		public void open(){
+		}
+		
+		@Override
+		public Row next() throws Exception{
+			while(this.pos>=this.rows.size()){
+				if(this.done)
+					return null;
+				readLeaf();
+			}
+			return this.rows.get(this.pos++);
+		}
+		
+		@Override
+		public void close(){
+			this.rows.clear();
+			this.done = true;
+		}
+		
+		/*
+		 * decode the matching records of the current leaf and move to the next one
+		 */
+		private void readLeaf() throws Exception{
+			this.rows.clear();
+			this.pos = 0;
+			int nextLeafPage = getLeafPagePointer(this.p,this.handler.getRFile()); // next leaf page pointer = 0 -> null
+			if(this.p.cellNum!=0){
+				Long[] recordAddress = getPageRecords(this.handler,this.p,this.operIndex,this.operator,this.value,this.schema,this.tableName,this.priInt,this.primary,this.where,null,this.filter);
+				ByteBuffer page = pageBuffer(this.p,this.handler);
+				long baseAddress = this.p.pagNumber*this.p.pageSize;
+
+				// without columns to decode, e.g. for a filtered COUNT(*), the cell pointers of the matching records are
+				// all that is needed, one empty row stands for each of them and no payload is read
+				if(this.projection != null && this.projection.length == 0){
+					if(this.empty == null)
+						this.empty = new Row(this.colNames);
+					for(int i=0;i<recordAddress.length;i++)
+						this.rows.add(this.empty);
 				}
 				else{
-					if((primary && !priInt) || !primary){
-						int pagNum = traversePage(null,null,handler.getRoot(),schema,true,true,handler,tableName);
-						startP = preparePage(pagNum,handler);
-					}
-					else{
-						int pagNum = traversePage2(value.extract_long(),handler.getRoot(),schema,false,false,handler,tableName);	
-						startP = preparePage(pagNum,handler);
+					for(int i=0;i<recordAddress.length;i++){
+						Row row = new Row(this.colNames);
+						readRow(row,page,(int) (recordAddress[i]-baseAddress),this.projection);
+						this.rows.add(row);
 					}
 				}
 			}
+			if(this.indexed != null)
+				nextLeafPage = this.indexed.next();
+			if(nextLeafPage == 0 || this.p.pagNumber == this.lastPNum)
+				this.done = true;
+			else
+				this.p = preparePage(nextLeafPage,this.handler);
 		}
-		selectRecord(startP, endPNum, schema, operIndex, handler, value, operator, tableName,priInt,  primary, rows,typeCodes, ColNames,where);
 	}
-	
-	private void selectRecord(Page startP, int endPNum, boolean schema, int operIndex, FileHandler handler, Any value,
-			String operator, String tableName, boolean priInt, boolean primary, ArrayList<HashMap<String, Any>> rows, ArrayList<HashMap<String, Integer>> typeCodes, String[] colNames,boolean where) throws Exception {
-
-			RandomAccessFile rfile = handler.getRFile();
-			org.omg.CORBA.ORB orb = ORB.init();
-			int nextLeafPage; // next leaf page pointer = 0 -> null
-			Page p=startP;
-			do{
-				nextLeafPage = getLeafPagePointer(p,handler.getRFile());
-				if(p.cellNum!=0){
-					Long[] recordAddress = getPageRecords(handler,p,operIndex,operator,value,schema,tableName,priInt,primary,where);
-
 
+	/*
+	 * delete the records meeting the where condition
+	 * a deleted cell is marked, its pointer is removed and its space joins the free-block chain of the page
+	 * leaves left less than a quarter full are merged with a sibling afterwards
+	 * @param pageNums leaves to read instead of following the leaf pointers from startP, null to follow them
+	 * @return number of deleted records
+	 */
+	private int deleteRecord(Page startP, int lastPNum, boolean schema, int operIndex, FileHandler handler, Value value,
+			String operator, String tableName,boolean priInt, boolean primary,boolean where,int[] pageNums,Predicate filter) throws Exception{
+		PageFile rfile = handler.getRFile();
+		int nextLeafPage; // next leaf page pointer = 0 -> null
+		int pageIdx = 0;
+		int deleted = 0;
+		Page p=startP;
+		
+		// underfull leaves, each with a key it held so it can be found again from the root
+		ArrayList<int[]> underfull = new ArrayList<>();
+		do{
+			nextLeafPage = getLeafPagePointer(p,rfile);
+			if(p.cellNum!=0){
+				Long[] recordAddress = getPageRecords(handler,p,operIndex,operator,value,schema,tableName,priInt,primary,where,null,filter);
+				if(recordAddress.length>0){
+					long baseAddress = p.pagNumber*p.pageSize;
+					ArrayList<Integer> pointers = Utilities.toArrayList(scanForCellPointers(p,handler));
+					int key = 0;
 					for(int i=0;i<recordAddress.length;i++){
-						rfile.seek(recordAddress[i]+1+2+4);
-						
-						int payloadHeaderSize = rfile.readShort();
-						
-						HashMap<String,Integer> map = new HashMap<>();
-						for(int idx=0;idx<payloadHeaderSize-2;idx++){
-							map.put(colNames[idx], (int) rfile.readByte());
-
+						rfile.seek(recordAddress[i]+3);
+						key = rfile.readInt();
+						if(handler.tableIndexes != null){
+							Row row = readRecordRow(recordAddress[i],rfile);
+							for(IndexFile index : handler.tableIndexes)
+								index.delete(row.get(index.getColumn()), key);
 						}
-
-						typeCodes.add(map);
-						
-						HashMap<String,Any> map2 = new HashMap<>();
-						for(int idx=0;idx<map.size();idx++){
-							int code = map.get(colNames[idx]);
-							Any any = orb.create_any();
-							readValue(any,code,rfile);
-							map2.put(colNames[idx], any);
-
-						}
-						rows.add(map2);
+						rfile.seek(recordAddress[i]);
+						rfile.writeByte(1);
+						pointers.remove(Integer.valueOf((int) (recordAddress[i]-baseAddress)));
 					}
+					
+					// write the remaining cell pointers
+					rfile.seek(scanForPageHeaderEnd(p));
+					for(int i=0;i<pointers.size();i++)
+						rfile.writeShort(pointers.get(i));
+					p.cellNum = pointers.size();
+					int[] result = scanForFBlockandFrag(p,handler);
+					p.freeBlockStart = result[0];
+					p.fragNum = result[1];
+					handler.writePageHeader(p);
+					deleted += recordAddress.length;
+					
+					if(p.pagNumber != 1 && scanForUsedSpace(p,handler)<(p.pageSize-this.uspace-0x000C)/4)
+						underfull.add(new int[]{p.pagNumber,key});
 				}
-				p = preparePage(nextLeafPage,handler);
-			}while(nextLeafPage!=endPNum);
+			}
+			if(pageNums != null)
+				nextLeafPage = ++pageIdx<pageNums.length ? pageNums[pageIdx] : 0;
+			if(p.pagNumber == lastPNum)
+				break;
+			p = preparePage(nextLeafPage,handler);
+		}while(nextLeafPage!=0);
+		
+		for(int[] leaf : underfull)
+			mergeLeaf(leaf[0],leaf[1],handler);
+		return deleted;
 	}
-
-	private void deleteRecord(Page startP, int endPNum, boolean schema, int operIndex, FileHandler handler, Any value,
-			String operator, String tableName,boolean priInt, boolean primary) {
-		System.out.println("Warning: command currently not supported. It is in the support plan in future versions.");
+	
+	/*
+	 * @return bytes of a page used by cells and cell pointers
+	 */
+	private int scanForUsedSpace(Page p,FileHandler handler) throws IOException{
+		int[] pointers = scanForCellPointers(p,handler);
+		long baseAddress = p.pagNumber*p.pageSize;
+		int used = pointers.length*2;
+		for(int i=0;i<pointers.length;i++)
+			used += readRecordLength(pointers[i],baseAddress,p.leaf,handler.getRFile());
+		return used;
+	}
+	
+	/*
+	 * find the leaf before a leaf in key order
+	 * on the way down to the leaf the deepest subtree left of the path is remembered, the previous leaf is its right-most leaf
+	 * @param pageNum the leaf
+	 * @param key a key the leaf holds, not the smallest one, a separator equal to it may lead to the left sibling
+	 * @param handler file to process
+	 * @return the previous leaf, 0 if the leaf is the first one or it could not be found
+	 */
+	private int getPreviousLeaf(int pageNum,int key,FileHandler handler) throws Exception{
+		int left = 0;
+		Page node = handler.getRoot();
+		while(node != null && !node.leaf && node.cellNum>0 && node.pagNumber != pageNum){
+			int[] pointers = scanForCellPointers(node,handler);
+			int[] keys = getPageKeyVals(pointers,node,handler);
+			ByteBuffer page = pageBuffer(node,handler);
+			
+			// the child on the path holds the smallest key >= key, the child left of it the greatest key below that
+			int child = node.rightPointer;
+			int childKey = Integer.MAX_VALUE;
+			int leftChild = 0;
+			int leftKey = Integer.MIN_VALUE;
+			for(int i=0;i<pointers.length;i++){
+				if(keys[i]>=key && keys[i]<=childKey){
+					childKey = keys[i];
+					child = page.getInt(pointers[i]+1);
+				}
+				else if(keys[i]<key && keys[i]>=leftKey){
+					leftKey = keys[i];
+					leftChild = page.getInt(pointers[i]+1);
+				}
+			}
+			if(leftChild != 0)
+				left = leftChild;
+			node = preparePage(child,handler);
+		}
+		
+		if(node == null || node.pagNumber != pageNum)
+			return 0;
+		
+		// right-most leaf of the left subtree
+		while(left != 0){
+			Page p = preparePage(left,handler);
+			if(p.leaf || p.cellNum == 0)
+				return p.rightPointer == pageNum ? left : 0;
+			left = p.rightPointer;
+		}
+		return 0;
+	}
+	
+	/*
+	 * merge an underfull leaf with its right sibling, or with its left sibling if it is the last child of its parent
+	 * the cells of the right leaf move to the left one, the parent loses the separator between them and the right
+	 * leaf goes to the free page list. Nothing happens if the cells do not fit into one page, or if the parent would be
+	 * left without a separator, interior pages are never merged.
+	 * @param pageNum the leaf
+	 * @param key a key the leaf held, used to find its parent
+	 * @param handler file to process
+	 */
+	private void mergeLeaf(int pageNum,int key,FileHandler handler) throws Exception{
+		PageFile rfile = handler.getRFile();
+		
+		// find the parent of the leaf
+		Page parent = null;
+		Page node = handler.getRoot();
+		while(node != null && !node.leaf && node.cellNum>0){
+			int[] pointers = scanForCellPointers(node,handler);
+			int[] keys = getPageKeyVals(pointers,node,handler);
+			ByteBuffer page = pageBuffer(node,handler);
+			int child = node.rightPointer;
+			int childKey = Integer.MAX_VALUE;
+			for(int i=0;i<pointers.length;i++){
+				if(keys[i]>=key && keys[i]<=childKey){
+					childKey = keys[i];
+					child = page.getInt(pointers[i]+1);
+				}
+			}
+			if(child == pageNum){
+				parent = node;
+				break;
+			}
+			node = preparePage(child,handler);
+		}
+		// the leaf was merged away already, or is the root
+		if(parent == null)
+			return;
+		
+		// children of the parent in key order, the right pointer last
+		int[] pointers = scanForCellPointers(parent,handler);
+		int[] keys = getPageKeyVals(pointers,parent,handler);
+		int n = pointers.length;
+		if(n<2)
+			return;
+		long[] order = new long[n];
+		for(int i=0;i<n;i++)
+			order[i] = ((long)keys[i]<<32) | i;
+		Arrays.sort(order);
+		int[] sorted = new int[n];
+		int[] children = new int[n+1];
+		ByteBuffer parentPage = pageBuffer(parent,handler);
+		for(int i=0;i<n;i++){
+			sorted[i] = pointers[(int) (order[i] & 0xFFFFFFFFL)];
+			children[i] = parentPage.getInt(sorted[i]+1);
+		}
+		children[n] = parent.rightPointer;
+		int i = Utilities.indexOf(children,pageNum);
+		int left = i<n ? i : n-1;
+		int right = left+1;
+		
+		Page leftP = preparePage(children[left],handler);
+		Page rightP = preparePage(children[right],handler);
+		if(!leftP.leaf || !rightP.leaf || getLeafPagePointer(leftP,rfile) != rightP.pagNumber)
+			return;
+		if(scanForUsedSpace(leftP,handler)+scanForUsedSpace(rightP,handler)>leftP.pageSize-this.uspace-0x000C)
+			return;
+		
+		// move the cells of the right leaf behind the cells of the left one
+		int[] leftPointers = scanForCellPointers(leftP,handler);
+		int[] rightPointers = scanForCellPointers(rightP,handler);
+		byte[][] records = new byte[leftPointers.length+rightPointers.length][];
+		for(int j=0;j<leftPointers.length;j++)
+			records[j] = readRecord(leftPointers[j],leftP.pagNumber*leftP.pageSize,true,rfile);
+		for(int j=0;j<rightPointers.length;j++)
+			records[leftPointers.length+j] = readRecord(rightPointers[j],rightP.pagNumber*rightP.pageSize,true,rfile);
+		leftP.rightPointer = rightP.rightPointer;
+		writeCells(leftP,records,handler);
+		
+		// the separator of the left leaf goes, the child holding the right leaf now holds the merged one
+		long baseAddress = parent.pagNumber*parent.pageSize;
+		if(right<n){
+			rfile.seek(baseAddress+sorted[right]+1);
+			rfile.writeInt(leftP.pagNumber);
+		}
+		else
+			parent.rightPointer = leftP.pagNumber;
+		rfile.seek(scanForPageHeaderEnd(parent));
+		for(int j=0;j<n;j++)
+			if(j != left)
+				rfile.writeShort(sorted[j]);
+		parent.cellNum = n-1;
+		int[] result = scanForFBlockandFrag(parent,handler);
+		parent.freeBlockStart = result[0];
+		parent.fragNum = result[1];
+		handler.writePageHeader(parent);
+		
+		releasePage(rightP.pagNumber);
 	}
 
-	private void updateRecord(Page startP, int endPNum, boolean schema, int[] indexes,
-			HashMap<Integer, Any> values, int operIndex, FileHandler handler, Any value, String operator,
-			String tableName,boolean priInt,boolean primary,boolean where,HashMap<Integer,Integer> typeCodeList) throws Exception {
+	/*
+	 * @param pageNums leaves to update instead of following the leaf pointers from startP, null to follow them
+	 */
+	private void updateRecord(Page startP, int lastPNum, boolean schema, int[] indexes,
+			Row values, int operIndex, FileHandler handler, Value value, String operator,
+			String tableName,boolean priInt,boolean primary,boolean where,HashMap<Integer,Integer> typeCodeList,int[] pageNums,Predicate filter) throws Exception {
 
-		RandomAccessFile rfile = handler.getRFile();
-		org.omg.CORBA.ORB orb = ORB.init();
+		PageFile rfile = handler.getRFile();
 		int nextLeafPage; // next leaf page pointer = 0 -> null
+		int pageIdx = 0;
 		Page p=startP;
+		
+		// secondary indexes on updated columns
+		ArrayList<IndexFile> updatedIndexes = new ArrayList<>();
+		for(int idx=0;idx<indexes.length;idx++)
+			if(handler.getIndex(indexes[idx]) != null)
+				updatedIndexes.add(handler.getIndex(indexes[idx]));
 		int[] nullCodeCollection = new int[]{0x00,0x01,0x02,0x03};
 		ArrayList<Integer[]> allTypeCodesList = new ArrayList<>();
-		ArrayList<HashMap<Integer,Any>> allValueList = new ArrayList<>();
+		ArrayList<Row> allValueList = new ArrayList<>();
 		
 		do{
 			nextLeafPage = getLeafPagePointer(p,handler.getRFile());
 
 			if(p.cellNum!=0){
-				Long[] recordAddress = getPageRecords(handler,p,operIndex,operator,value,schema,tableName,priInt,primary,where);
+				Long[] recordAddress = getPageRecords(handler,p,operIndex,operator,value,schema,tableName,priInt,primary,where,null,filter);
 				
 				for(int i=0;i<recordAddress.length;i++){
 					boolean rewrite=false;
 					for(int j=0;j<indexes.length;j++){
 						rfile.seek(recordAddress[i]+1+2+4+2+indexes[j]);
 						int colTypeCode = rfile.readByte();
-						Any colValue = values.get(indexes[j]);
 						if(colTypeCode>=0x0C){
-							String tmp = colValue.extract_string();
+							String tmp = values.getText(indexes[j]);
 							if(tmp.length()>(colTypeCode-0x0C))
 								rewrite=true;
 							break;
@@ -1071,8 +1839,7 @@ public class FileHandler {
 									typeCodes[idx]=tmp;
 								}
 								else{
-									Any colValue = values.get(idx);
-									String newVal = colValue.extract_string();
+									String newVal = values.getText(idx);
 									if(newVal.length()>(tmp-0x0C))
 										typeCodes[idx]=0x0C+newVal.length();
 									else
@@ -1085,19 +1852,21 @@ public class FileHandler {
 							}
 						}
 							
-						HashMap<Integer,Any> val = new HashMap<>();
+						Row val = new Row(tmp_typeCodes.length);
 						// read values
-						for(int idx=0;idx<tmp_typeCodes.length;idx++){
-							Any any = orb.create_any();
-							if(Utilities.In(idx,indexes)){
-								val.put(idx, values.get(idx));
-								readValue(any,tmp_typeCodes[idx],rfile);
-							}
-							else{
-								readValue(any,tmp_typeCodes[idx],rfile);
-								val.put(idx, any);
-							}
+						for(int idx=0;idx<tmp_typeCodes.length;idx++)
+							readValue(val,idx,tmp_typeCodes[idx],rfile);
+						
+						// the record gets a new row key when it is written again, every index entry of it is removed
+						if(handler.tableIndexes != null){
+							rfile.seek(recordAddress[i]+3);
+							int key = rfile.readInt();
+							for(IndexFile index : handler.tableIndexes)
+								index.delete(val.get(index.getColumn()), key);
 						}
+						for(int idx=0;idx<tmp_typeCodes.length;idx++)
+							if(Utilities.In(idx,indexes))
+								val.copy(idx, values, idx);
 							
 						//delete the record
 						rfile.seek(recordAddress[i]);
@@ -1106,7 +1875,7 @@ public class FileHandler {
 						int[] cellPointers = new int[cellPointers_tmp.length-1];
 						int j=0;
 						for(int idx=0;idx<cellPointers_tmp.length;idx++)
-							if(cellPointers_tmp[idx]!=(recordAddress[i]-p.pagNumber*FileHandler.pageSize))
+							if(cellPointers_tmp[idx]!=(recordAddress[i]-p.pagNumber*p.pageSize))
 								cellPointers[j++] = cellPointers_tmp[idx];
 						int[] result = scanForFBlockandFrag(p,handler);
 						
@@ -1125,6 +1894,9 @@ public class FileHandler {
 						allValueList.add(val);
 					}
 					else{
+						// old values of the indexed columns
+						Row old = updatedIndexes.isEmpty() ? null : readRecordRow(recordAddress[i],rfile);
+						
 						for(int idx=0;idx<indexes.length;idx++){
 							// read column type code
 							rfile.seek(recordAddress[i]+1+2+4+2+indexes[idx]);
@@ -1140,7 +1912,6 @@ public class FileHandler {
 								colTypeCode = typeCodeList.get(indexes[idx]);
 								rfile.writeByte(colTypeCode);
 							}
-							Any colValue = values.get(indexes[idx]);
 							
 							// move to the correct position
 							int length = 0;
@@ -1150,75 +1921,102 @@ public class FileHandler {
 							for(int j=0;j<indexes[idx];j++)
 								length+= Utilities.getColumnSize(rfile.readByte());
 							rfile.seek(recordAddress[i]+1+2+4+payloadHeaderSize+length);
-							writeValue(colTypeCode,colValue,rfile);
+							writeValue(colTypeCode,values,indexes[idx],rfile);
+						}
+						
+						// move the index entries to the new values
+						if(old != null){
+							Row updated = readRecordRow(recordAddress[i],rfile);
+							rfile.seek(recordAddress[i]+3);
+							int key = rfile.readInt();
+							for(IndexFile index : updatedIndexes){
+								index.delete(old.get(index.getColumn()), key);
+								index.insert(updated.get(index.getColumn()), key);
+							}
 						}
 					}
 				}
 			}
+			if(pageNums != null)
+				nextLeafPage = ++pageIdx<pageNums.length ? pageNums[pageIdx] : 0;
+			if(p.pagNumber == lastPNum)
+				break;
 			p = preparePage(nextLeafPage,handler);
-		}while(nextLeafPage!=endPNum);
+		}while(nextLeafPage!=0);
 		if(!allTypeCodesList.isEmpty() && !allValueList.isEmpty()){
+			// writing the records again counts them in TABLE_ROWS once more
+			if(!schema)
+				handler.updateDavisbaseTable(tableName,-allValueList.size());
 			for(int idx=0;idx<allTypeCodesList.size();idx++){
 				int[] typeCodes = Utilities.toIntArray(allTypeCodesList.get(idx));
-				HashMap<Integer,Any> val = allValueList.get(idx);
+				Row val = allValueList.get(idx);
+				// the root may be the leaf the records were removed from, reload its header
+				handler.root = handler.getRoot();
 				handler.writeTableRow(typeCodes, val, schema, tableName);
 			}
 		}
 	}
-	private Long[] getPageRecords(FileHandler handler, Page p, int operIndex, String operator, Any value,
+	private Long[] getPageRecords(FileHandler handler, Page p, int operIndex, String operator, Value value,
 			boolean schema, String tableName,boolean priInt, boolean primary,boolean where) throws Exception {
-		return getPageRecords(handler,p,operIndex,operator,value,schema,tableName,priInt,primary,where,null);
+		return getPageRecords(handler,p,operIndex,operator,value,schema,tableName,priInt,primary,where,null,null);
 	}
 
-	private Long[] getPageRecords(FileHandler handler, Page p, int operIndex, String operator, Any value,
-			boolean schema, String tableName,boolean priInt, boolean primary,boolean where,String database) throws Exception {
+	/*
+	 * @param database database of the table, for schema tables
+	 * @param filter where condition the records are tested against, null to test operIndex operator value
+	 */
+	private Long[] getPageRecords(FileHandler handler, Page p, int operIndex, String operator, Value value,
+			boolean schema, String tableName,boolean priInt, boolean primary,boolean where,String database,Predicate filter) throws Exception {
 
 		ArrayList<Long> recAddress = new ArrayList<>();
-		RandomAccessFile rfile = handler.getRFile();
 		if(p.cellNum == 0)
 			return null;
-		long baseAddress = p.pagNumber*FileHandler.pageSize;
+		long baseAddress = p.pagNumber*p.pageSize;
 		int[] pointers = scanForCellPointers(p,handler);
-		org.omg.CORBA.ORB orb = ORB.init();
+		ByteBuffer page = pageBuffer(p,handler);
+		// compare column (and table name, schema name for schema tables), reused for every record
+		Row columnRec = new Row(2);
+		Predicate.Record record = filter == null ? null : new Predicate.Record();
 				
 		for(int i=0;i<pointers.length;i++){
 			
 			
 			long address = baseAddress + pointers[i];
+			int cell = pointers[i];
 			
-			Any columnRec = orb.create_any();
 			int typeCode_compare;
 			
+			if(where && filter != null){
+				record.reset(page,cell);
+				if(filter.test(record))
+					recAddress.add(address);
+				continue;
+			}
+			
 			// read compare column
 			if(where){
 				if(schema || (primary && priInt)){
-					rfile.seek(address+3);
-					int rec_key = rfile.readInt();
-					columnRec.insert_long(rec_key);
+					int rec_key = page.getInt(cell+3);
+					columnRec.setLong(0,0x06,rec_key);
 					typeCode_compare = 0x06;
 				}
 				else{
 					// column is not primary column or it is primary column but is not integer
 				
 					// read header length
-					int valueLength = 0;
-					rfile.seek(address+1+2+4);
-					valueLength = rfile.readShort();
+					int valueLength = page.getShort(cell+1+2+4);
 				
 					// read value record length preceding 
 					int length = 0;
 					for(int idx=0;idx<operIndex;idx++){
-						rfile.seek(address+1+2+4+2+idx);
-						int tmp = rfile.readByte();
+						int tmp = page.get(cell+1+2+4+2+idx);
 						length+=Utilities.getColumnSize(tmp);
 					}
-					rfile.seek(address+1+2+4+2+operIndex);
-					typeCode_compare = rfile.readByte();
+					typeCode_compare = page.get(cell+1+2+4+2+operIndex);
 					
 					// read the column
-					rfile.seek(address+1+2+4+valueLength+length);
-					columnRec = orb.create_any();
-					readValue(columnRec,typeCode_compare,rfile);	
+					page.position(cell+1+2+4+valueLength+length);
+					readValue(columnRec,0,typeCode_compare,page);	
 				}
 				if(!schema){
 					// filter tuples based on compare column
@@ -1232,27 +2030,23 @@ public class FileHandler {
 				}
 				else{
 					// read payload length
-					rfile.seek(address+1+2+4);
-					int payloadHeaderSize = rfile.readShort();
+					int payloadHeaderSize = page.getShort(cell+1+2+4);
 				
 					// read table name 
 					int length = 0;
 					int length2 = 0;
-					rfile.seek(address+9);				
-					length += (rfile.readByte()-0x0C);
+					length += (page.get(cell+9)-0x0C);
 					length2 = length;
-					byte typeCode2 = rfile.readByte();
+					byte typeCode2 = page.get(cell+10);
 					length += (typeCode2-0x0C);
-					byte typeCode1 = rfile.readByte();
-					rfile.seek(address+1+2+4+payloadHeaderSize+length);
-					Any tmp = orb.create_any();
-					readValue(tmp,typeCode1,rfile);
-					String rec_tableName = tmp.extract_string().trim();
-					
-					rfile.seek(address+1+2+4+payloadHeaderSize+length2);
-					tmp = orb.create_any();
-					readValue(tmp,typeCode2,rfile);
-					String rec_schemaName = tmp.extract_string().trim();
+					byte typeCode1 = page.get(cell+11);
+					page.position(cell+1+2+4+payloadHeaderSize+length);
+					readValue(columnRec,0,typeCode1,page);
+					String rec_tableName = columnRec.getText(0).trim();
+					
+					page.position(cell+1+2+4+payloadHeaderSize+length2);
+					readValue(columnRec,1,typeCode2,page);
+					String rec_schemaName = columnRec.getText(1).trim();
 				
 					if(!rec_schemaName.equals(database) || !((tableName.trim()).equals(rec_tableName)))
 						continue;
@@ -1265,47 +2059,33 @@ public class FileHandler {
 				recAddress.add(address);
 			}
 		}
+		Metrics.add(Metrics.Counter.ROWS_EXAMINED, pointers.length);
+		Metrics.add(Metrics.Counter.ROWS_RETURNED, recAddress.size());
 		return recAddress.toArray(new Long[]{});
 	}
 
-	private boolean checkCondition(Any columnRec, Any value, String operator, int typeCode_compare) throws Exception {
+	private boolean checkCondition(Row columnRec, Value value, String operator, int typeCode_compare) throws Exception {
 		switch(typeCode_compare){
 		case 0x04:
-			byte rec_key=columnRec.extract_octet();
-			byte key = value.extract_octet();
-			return Utilities.compare(rec_key, key, operator);			
+			return Utilities.compare(columnRec.getByte(0), value.getByte(), operator);			
 		case 0x05:
-			short rec_key1=columnRec.extract_short();
-			short key1=value.extract_short();
-			return Utilities.compare(rec_key1, key1, operator);
+			return Utilities.compare(columnRec.getShort(0), value.getShort(), operator);
 		case 0x06:
-			int rec_key2=columnRec.extract_long();
-			int key2 = value.extract_long();
-			return Utilities.compare(rec_key2, key2, operator);
+			return Utilities.compare(columnRec.getInt(0), value.getInt(), operator);
 		case 0x07:
-			long rec_key3=columnRec.extract_longlong();
-			long key3 = value.extract_longlong();
-			return Utilities.compare(rec_key3, key3, operator);
+			return Utilities.compare(columnRec.getLong(0), value.getLong(), operator);
 		case 0x08:
-			float rec_key4=columnRec.extract_float();
-			float key4 = value.extract_float();
-			return Utilities.compare(rec_key4, key4, operator);
+			return Utilities.compare(columnRec.getFloat(0), value.getFloat(), operator);
 		case 0x09:
-			double rec_key5=columnRec.extract_double();
-			double key5 = value.extract_double();
-			return Utilities.compare(rec_key5, key5, operator);
+			return Utilities.compare(columnRec.getDouble(0), value.getDouble(), operator);
 		case 0x0A:
-			long rec_key6=columnRec.extract_longlong();
-			long key6 = value.extract_longlong();
-			return Utilities.compare(rec_key6, key6, operator);
+			return Utilities.compare(columnRec.getLong(0), value.getLong(), operator);
 		case 0x0B:
-			long rec_key7=columnRec.extract_longlong();
-			long key7 = value.extract_longlong();
-			return Utilities.compare(rec_key7, key7, operator);
+			return Utilities.compare(columnRec.getLong(0), value.getLong(), operator);
 		default:
 			if(typeCode_compare>=0x0C){
-				String rec_key8=columnRec.extract_string().trim();
-				String key8 = value.extract_string().trim();
+				String rec_key8=columnRec.getText(0).trim();
+				String key8 = value.getText().trim();
 				return Utilities.compare(rec_key8, key8, operator);
 			}
 		}
@@ -1320,7 +2100,7 @@ public class FileHandler {
 	 *  @param schema if the table is a schema table, i.e. davisbase_tables, davisbase_columns
 	 *  @param tableName the name of the table
 	 */
-	public void writeTableRow(int[] typeCodes, HashMap<Integer, Any> values, boolean schema,String tableName) throws Exception{
+	public void writeTableRow(int[] typeCodes, Row values, boolean schema,String tableName) throws Exception{
 		
 		
 		if(this.databasePages == 1){
@@ -1330,7 +2110,16 @@ public class FileHandler {
 		}
 		if(this.root == null)
 			this.root = getRoot();
+		if(schema || this.tableIndexes == null || this.tableIndexes.isEmpty()){
+			writeTableRow(typeCodes,values,this.root, schema,tableName);
+			return;
+		}
+		
+		// the key is determined before the row is written, the same way writeRecord determines it
+		int key = getPriMaryKeyVal(typeCodes,values,this.root,schema,tableName,this);
 		writeTableRow(typeCodes,values,this.root, schema,tableName);
+		for(IndexFile index : this.tableIndexes)
+			index.insert(values.get(index.getColumn()), key);
 	}
 	
 	/*
@@ -1342,15 +2131,24 @@ public class FileHandler {
 	 * @param schema if the table is a schema table 
 	 * @param tableName the name of the table
 	 */
-	public void writeTableRow(int[] typeCodes, HashMap<Integer, Any> values, Page p, boolean schema,String tableName) throws Exception {
+	public void writeTableRow(int[] typeCodes, Row values, Page p, boolean schema,String tableName) throws Exception {
 		// insert this record into the B-tree
 		
 		if (p.leaf){
 			int availSpace = scanForUnallocatedSpace(p,this);
 			int recordLength = Utilities.calRecordLength(typeCodes, p.leaf);
-
 			
-			if(p.cellNum+1 >= FileHandler.degree){
+			// a free block left by deleted records is used first, only its cell pointer needs unallocated space
+			long block = -1;
+			if(p.cellNum>0 && availSpace>=2)
+				block = takeFreeBlock(p,recordLength,this);
+			
+			// the record and its cell pointer must fit, the page is split only if they do not fit even after defragmentation
+			int freeSpace = availSpace;
+			if(block<0 && availSpace<recordLength+2)
+				freeSpace = scanForFreeSpace(p,this);
+			
+			if(block<0 && freeSpace<recordLength+2){
 		
 		
 				// split the tree and get the root
@@ -1359,45 +2157,36 @@ public class FileHandler {
 				this.root = this.getRoot();
 				this.fileChangeCounter++;
 				recalFilePages();
-				writeDatabaseHeader(this.rfile);	
-				if(!schema)
-					updateDavisbaseTable(tableName);
+				if(!this.batch){
+					writeDatabaseHeader(this.rfile);	
+					if(!schema)
+						updateDavisbaseTable(tableName);
+				}
 			}
-			else if(availSpace<recordLength && p.cellNum+1 < FileHandler.degree){
+			else if(block<0 && availSpace<recordLength+2){
 		
 				// wipe and rewrite the page
-				int[] cellPointers = scanForCellPointers(p,this);
-				long baseAddress = p.pagNumber*FileHandler.pageSize;
-				
-				ArrayList<byte[]> records = new ArrayList<>();
-				for(int i=0;i<cellPointers.length;i++){
-					byte[] tmp = readRecord(cellPointers[i],baseAddress,p.leaf,this.rfile);
-					records.add(tmp);
-				}
-				
-				// move all records to end of the page
-				long pageEndPos = (p.pagNumber+1)*FileHandler.pageSize-this.uspace;
-				for(int i=0;i<records.size();i++){
-					byte[] tmp = records.get(i);
-					pageEndPos -= tmp.length;
-					this.rfile.seek(pageEndPos);
-					this.rfile.write(tmp);
-				}	
+				defragmentPage(p,this);
 				writeTableRow(typeCodes,values,p,schema,tableName);
 			}
 			else{
 
-				if(p.cellNum>0){
+				if(block>=0){
+					int[] cellPointers = scanForCellPointers(p,this);
+					long start = scanForPageHeaderEnd(p);
+					writeRecord(this,typeCodes,values,start,block,p,recordLength,schema,0,cellPointers,tableName);
+				}
+				else if(p.cellNum>0){
 					// remember to reorder the cell pointers
 					int[] cellPointers = scanForCellPointers(p,this);
 					int lastCellPointer = scanForLastCellPointer(p,this);
-					long location = p.pagNumber*FileHandler.pageSize+lastCellPointer;
+					long location = p.pagNumber*p.pageSize+lastCellPointer;
 					location = location-recordLength;
 					long start = scanForPageHeaderEnd(p);
 					writeRecord(this,typeCodes,values,start,location,p,recordLength,schema,0,cellPointers,tableName);
 				}
 				else{
-					long location = (p.pagNumber+1)*FileHandler.pageSize-this.uspace;
+					long location = (p.pagNumber+1)*p.pageSize-this.uspace;
 					location = location - recordLength;
 					long start = scanForPageHeaderEnd(p);
 					writeRecord(this,typeCodes,values,start,location,p,recordLength,schema,0,null,tableName);	
@@ -1410,79 +2199,514 @@ public class FileHandler {
 				this.fileChangeCounter++;
 				recalFilePages();
 				writePageHeader(p);
-				writeDatabaseHeader(this.rfile);	
-				if(!schema)
-					updateDavisbaseTable(tableName);
+				if(!this.batch){
+					writeDatabaseHeader(this.rfile);	
+					if(!schema)
+						updateDavisbaseTable(tableName);
+				}
+			}
+		}
+		else{
+			boolean bruteForce = false;
+			if (schema)
+				bruteForce = true;
+			else{
+				bruteForce = !checkPriInt(tableName);
+			}
+			Page page = traversePage1(typeCodes,values,p,schema,bruteForce,false,this,tableName);
+			writeTableRow(typeCodes,values,page,schema,tableName);
+		}	
+		
+	}
+	
+	/*
+	 * write the rows of one INSERT statement
+	 * the rows are written in key order. Rows that go to the same leaf share one traversal from the root, their cells
+	 * are put into the unallocated space of the leaf and the cell pointers and the page header are written once.
+	 * A row that does not fit any more is written by writeTableRow, which defragments or splits the leaf, and the
+	 * next row starts a new traversal. The database header and the row count of the table are written at the end.
+	 * @param typeCodes type code array of each row
+	 * @param values the rows
+	 * @param tableName the table name
+	 */
+	public void writeTableRows(ArrayList<int[]> typeCodes,ArrayList<Row> values,String tableName) throws Exception{
+		if(values.isEmpty())
+			return;
+		if(this.databasePages == 1){
+			// file contains only database page
+			initializePage(this.databasePages);
+			writePageHeader(this.p);
+		}
+		Catalog.TableInfo info = getTableInfo(tableName);
+		boolean priInt = info.isPriInt();
+		int n = values.size();
+		
+		// order of the rows, a table without an integer primary key gives them row ids in the order of the statement
+		long[] order = new long[n];
+		for(int i=0;i<n;i++){
+			int key = priInt ? getPriMaryKeyVal(typeCodes.get(i),values.get(i),getRoot(),false,tableName,this) : i;
+			order[i] = ((long)key<<32) | i;
+		}
+		Arrays.sort(order);
+		checkExistingKeys(order,values,info,tableName);
+		
+		this.batch = true;
+		try{
+			int i = 0;
+			int row = (int) (order[0] & 0xFFFFFFFFL);
+			int key = priInt ? (int) (order[0]>>32) : getPriMaryKeyVal(typeCodes.get(row),values.get(row),getRoot(),false,tableName,this);
+			while(i<n){
+				// go down to the leaf of the next row, bound is the greatest key the leaf may take
+				int[] leafBound = new int[1];
+				Page p = scanForInsertLeaf(key,priInt,leafBound);
+				int bound = leafBound[0];
+				
+				// put the rows of the run into the unallocated space of the leaf
+				long baseAddress = p.pagNumber*p.pageSize;
+				int[] pointers = scanForCellPointers(p,this);
+				int[] pageKeyVals = getPageKeyVals(pointers,p,this);
+				int contentStart = pointers.length>0 ? scanForLastCellPointer(p,this) : p.pageSize-this.uspace;
+				ArrayList<Integer> newPointers = new ArrayList<>();
+				ArrayList<Integer> newKeys = new ArrayList<>();
+				while(i<n && key<=bound){
+					byte[] record = Utilities.convertoBytes(typeCodes.get(row),values.get(row),true,key);
+					if(contentStart-record.length < 0x000C+2*(pointers.length+newPointers.size()+1))
+						break;
+					contentStart -= record.length;
+					this.rfile.seek(baseAddress+contentStart);
+					this.rfile.write(record);
+					newPointers.add(contentStart);
+					newKeys.add(key);
+					insertIndexes(values.get(row),key);
+					if(++i<n){
+						row = (int) (order[i] & 0xFFFFFFFFL);
+						key = priInt ? (int) (order[i]>>32) : key+1;
+					}
+				}
+				
+				// merge the new cell pointers into the key order of the page
+				if(!newPointers.isEmpty()){
+					int[] cellPointers = new int[pointers.length+newPointers.size()];
+					int a = 0;
+					int b = 0;
+					for(int k=0;k<cellPointers.length;k++){
+						if(b == newPointers.size() || (a<pointers.length && pageKeyVals[a]<=newKeys.get(b)))
+							cellPointers[k] = pointers[a++];
+						else
+							cellPointers[k] = newPointers.get(b++);
+					}
+					ByteBuffer buffer = ByteBuffer.allocate(2*cellPointers.length);
+					for(int k=0;k<cellPointers.length;k++)
+						buffer.putShort((short) cellPointers[k]);
+					this.rfile.seek(scanForPageHeaderEnd(p));
+					this.rfile.write(buffer.array());
+					p.cellNum = cellPointers.length;
+					p.cellStart = contentStart;
+					int[] result = scanForFBlockandFrag(p,this);
+					p.freeBlockStart = result[0];
+					p.fragNum = result[1];
+					writePageHeader(p);
+				}
+				
+				// the next row of this leaf does not fit into its unallocated space
+				if(i<n && key<=bound){
+					if(!priInt)
+						key = getPriMaryKeyVal(typeCodes.get(row),values.get(row),getRoot(),false,tableName,this);
+					writeTableRow(typeCodes.get(row),values.get(row),getRoot(),false,tableName);
+					insertIndexes(values.get(row),key);
+					if(++i<n){
+						row = (int) (order[i] & 0xFFFFFFFFL);
+						key = priInt ? (int) (order[i]>>32) : key+1;
+					}
+				}
+			}
+		}
+		finally{
+			this.batch = false;
+		}
+		this.root = getRoot();
+		this.fileChangeCounter++;
+		recalFilePages();
+		writeDatabaseHeader(this.rfile);
+		updateDavisbaseTable(tableName,n);
+	}
+	
+	/*
+	 * go down to the leaf a new row goes to
+	 * @param key key of the row
+	 * @param priInt the table has an integer primary key, otherwise the row goes to the right-most leaf
+	 * @param bound filled with the greatest key the leaf may take, the separator right of it
+	 * @return the leaf
+	 */
+	private Page scanForInsertLeaf(int key,boolean priInt,int[] bound) throws Exception{
+		bound[0] = Integer.MAX_VALUE;
+		Page p = getRoot();
+		while(!p.leaf && p.cellNum>0){
+			int[] pointers = scanForCellPointers(p,this);
+			int[] pageKeyVals = getPageKeyVals(pointers,p,this);
+			int child = -1;
+			if(priInt)
+				for(int k=0;k<pointers.length;k++)
+					if(pageKeyVals[k]>=key && (child<0 || pageKeyVals[k]<pageKeyVals[child]))
+						child = k;
+			int pageNumber;
+			if(child<0)
+				pageNumber = getLeafPagePointer(p,this.rfile);
+			else{
+				pageNumber = pageBuffer(p,this).getInt(pointers[child]+1);
+				bound[0] = pageKeyVals[child];
+			}
+			Page parent = p;
+			p = preparePage(pageNumber,this);
+			p.parentPage = parent;
+		}
+		return p;
+	}
+	
+	/*
+	 * make sure no row of an INSERT has a key the table holds already, before anything is written
+	 * with an integer primary key the rows going to the same leaf share one descent and are looked up in the keys of
+	 * that leaf, with another primary key the key column of every record is read once
+	 * @param order keys of the rows in ascending order in the high half, row numbers in the low half
+	 * @param values the rows
+	 * @param info the table
+	 * @param tableName the table name
+	 */
+	private void checkExistingKeys(long[] order,ArrayList<Row> values,Catalog.TableInfo info,String tableName) throws Exception{
+		if(this.databasePages == 1 || info.getPriIndex()<0)
+			return;
+		if(info.isPriInt()){
+			int i = 0;
+			int[] bound = new int[1];
+			while(i<order.length){
+				Page p = scanForInsertLeaf((int) (order[i]>>32),true,bound);
+				int[] leafKeys = getPageKeyVals(scanForCellPointers(p,this),p,this);
+				Arrays.sort(leafKeys);
+				int[] nextKeys = null;
+				for(;i<order.length && (int) (order[i]>>32)<=bound[0];i++){
+					int key = (int) (order[i]>>32);
+					if(Arrays.binarySearch(leafKeys, key)>=0)
+						throw new Exception("Error: duplicate keys are found!");
+					// a key equal to the separator leads to this leaf, its record is on the leaf right of it
+					if(key == bound[0] && getLeafPagePointer(p,this.rfile) != 0){
+						if(nextKeys == null){
+							Page next = preparePage(getLeafPagePointer(p,this.rfile),this);
+							nextKeys = getPageKeyVals(scanForCellPointers(next,this),next,this);
+							Arrays.sort(nextKeys);
+						}
+						if(Arrays.binarySearch(nextKeys, key)>=0)
+							throw new Exception("Error: duplicate keys are found!");
+					}
+				}
 			}
+			return;
 		}
-		else{
-			boolean bruteForce = false;
-			if (schema)
-				bruteForce = true;
-			else{
-				bruteForce = !checkPriInt(tableName);
+		int priIndex = info.getPriIndex();
+		HashSet<String> priValues = new HashSet<>();
+		for(Row row : values)
+			priValues.add(row.toString(priIndex).trim());
+		int[] projection = this.projection;
+		this.projection = new int[]{priIndex};
+		try{
+			Cursor cursor = openCursor(false,tableName,this,null,null,-1,false,false,getTableColNames(tableName),false);
+			cursor.open();
+			try{
+				Row row;
+				while((row = cursor.next()) != null)
+					if(priValues.contains(row.toString(priIndex).trim()))
+						throw new Exception("Error: duplicate keys are found!");
 			}
-			Page page = traversePage1(typeCodes,values,p,schema,bruteForce,false,this,tableName);
-			writeTableRow(typeCodes,values,page,schema,tableName);
-		}	
-		
+			finally{
+				cursor.close();
+			}
+		}
+		finally{
+			this.projection = projection;
+		}
 	}
 	
-	private void updateDavisbaseTable(String tableName) throws Exception{
-		FileHandler[] handler = openSchema();
-		// define values for davisbase_tables.tbl
-		int pagNum = traversePage(null,null,handler[0].getRoot(),true,true,true,handler[0],tableName);
-		Page p = preparePage(pagNum,handler[0]);
-		int nextLeafPage; // next leaf page pointer = 0 -> null
-		
-		HashMap<String,Any> record;
-		ArrayList<HashMap<String,Any>> rows = new ArrayList<>();
-		ArrayList<HashMap<String,Integer>> typeCodes = new ArrayList<>();
+	/*
+	 * add a new row to the indexes of the table
+	 * @param values the row
+	 * @param key key of the row
+	 */
+	private void insertIndexes(Row values,int key) throws Exception{
+		if(this.tableIndexes != null)
+			for(IndexFile index : this.tableIndexes)
+				index.insert(values.get(index.getColumn()), key);
+	}
+	
+	/*
+	 * @return number of levels of the B+-tree, 0 if the table has no page yet
+	 */
+	public int getTreeHeight() throws IOException{
+		if(recalFilePages()<=1)
+			return 0;
+		int height = 1;
+		ByteBuffer page = this.rfile.readPage(1);
+		while(page.get(0x00) == 0x05){
+			page = this.rfile.readPage(page.getInt(0x08));
+			height++;
+		}
+		return height;
+	}
+	
+	/*
+	 * fill a new index from the rows of the table in this file
+	 * @param index the empty index, its column must be set
+	 * @param tableName the table name
+	 */
+	public void buildIndex(IndexFile index,String tableName) throws Exception{
+		ArrayList<Row> rows = new ArrayList<>();
 		ArrayList<Integer> keys = new ArrayList<>();
-		int idx = -1;
+		if(recalFilePages()>1)
+			getTableRows(null,null,this,rows,keys,getTableColNames(tableName),-1,null,false,true,tableName,false);
+		ArrayList<Value> values = new ArrayList<>();
+		for(Row row : rows)
+			values.add(row.get(index.getColumn()));
+		index.build(values, keys);
+	}
+	
+	/*
+	 * load rows in bulk, the B+-tree of the table is rebuilt bottom-up instead of inserting the rows one at a time
+	 * rows already in the table are kept. All records are merged in key order and packed into leaves written from left
+	 * to right, then every interior level is written on top of the level below, the root last to page 1.
+	 * Pages of the old tree that are not needed any more go to the free page list.
+	 * Nothing is written if a key occurs twice.
+	 * @param records encoded leaf records of the new rows, see Utilities.convertoBytes. Without an integer primary key
+	 *                their keys are replaced by new row ids in the order of the list
+	 * @param tableName the table name
+	 */
+	public void bulkLoad(ArrayList<byte[]> records,String tableName) throws Exception{
+		if(records.isEmpty())
+			return;
+		Catalog.TableInfo info = getTableInfo(tableName);
+		int oldPages = recalFilePages();
 		
-		MainLoop:
-		do{
-			nextLeafPage = getLeafPagePointer(p,handler[0].getRFile());
-			 rows = new ArrayList<>();
-			 typeCodes = new ArrayList<>();
-			 keys = new ArrayList<>();
-			
-			if(p.cellNum!=0)
-				readPageRecords(handler[0],p,rows,typeCodes,keys,FileHandler.davisbase_table_header,-1,"=",true,tableName,true);
-			for(int i=0;i<rows.size();i++){
-				 record = rows.get(i);
-				if(record.get("TABLE_NAME").extract_string().toLowerCase().trim().equals(tableName.toLowerCase().trim())){
-					idx = i;
-					break MainLoop;
-				}
+		// records already in the table, in key order
+		ArrayList<byte[]> existing = new ArrayList<>();
+		if(oldPages>1){
+			Page p = preparePage(traversePage(null,null,getRoot(),false,true,true,this,tableName),this);
+			int nextLeafPage;
+			do{
+				nextLeafPage = getLeafPagePointer(p,this.rfile);
+				int[] pointers = scanForCellPointers(p,this);
+				ByteBuffer page = pageBuffer(p,this);
+				for(int i=0;i<pointers.length;i++)
+					if(page.get(pointers[i]) != 1)
+						existing.add(readRecord(pointers[i],p.pagNumber*p.pageSize,true,this.rfile));
+				p = preparePage(nextLeafPage,this);
+			}while(nextLeafPage!=0);
+		}
+		
+		// sort the new records by key
+		int n = records.size();
+		int lastKey = existing.isEmpty() ? 0 : ByteBuffer.wrap(existing.get(existing.size()-1)).getInt(3);
+		long[] order = new long[n];
+		for(int i=0;i<n;i++){
+			ByteBuffer record = ByteBuffer.wrap(records.get(i));
+			if(!info.isPriInt())
+				record.putInt(3,++lastKey);
+			order[i] = ((long)record.getInt(3)<<32) | i;
+		}
+		Arrays.sort(order);
+		
+		// merge them into the existing records
+		int priIndex = info.getPriIndex();
+		HashSet<String> priValues = (priIndex>=0 && !info.isPriInt()) ? new HashSet<String>() : null;
+		ArrayList<byte[]> all = new ArrayList<>(existing.size()+n);
+		int i = 0;
+		int j = 0;
+		int prevKey = 0;
+		while(i<existing.size() || j<n){
+			byte[] record;
+			if(j==n || (i<existing.size() && ByteBuffer.wrap(existing.get(i)).getInt(3)<=(int) (order[j]>>32)))
+				record = existing.get(i++);
+			else
+				record = records.get((int) (order[j++] & 0xFFFFFFFFL));
+			int key = ByteBuffer.wrap(record).getInt(3);
+			if(!all.isEmpty() && key == prevKey)
+				throw new Exception("Error: duplicate keys are found!");
+			if(priValues != null && !priValues.add(readRecordRow(record).toString(priIndex).trim()))
+				throw new Exception("Error: duplicate keys are found!");
+			all.add(record);
+			prevKey = key;
+		}
+		existing = null;
+		
+		// first record of every leaf, a leaf takes records until the next one does not fit
+		int pageEnd = this.pageSize-this.uspace;
+		ArrayList<Integer> starts = new ArrayList<>();
+		int free = 0;
+		for(int k=0;k<all.size();k++){
+			int cell = all.get(k).length+2;
+			if(starts.isEmpty() || free<cell){
+				starts.add(k);
+				free = pageEnd-0x000C;
 			}
-			p = preparePage(nextLeafPage,handler[0]);
+			free -= cell;
+		}
+		starts.add(all.size());
+		
+		// pages are written in file order: the leaves from page 2 on, then the interior levels, the root is page 1
+		int leaves = starts.size()-1;
+		int[] pages = new int[leaves];
+		int[] maxKeys = new int[leaves];
+		int next = 2;
+		for(int k=0;k<leaves;k++)
+			pages[k] = leaves == 1 ? 1 : next++;
+		for(int k=0;k<leaves;k++){
+			List<byte[]> cells = all.subList(starts.get(k), starts.get(k+1));
+			writeBulkPage(pages[k],true,cells,k+1<leaves ? pages[k+1] : 0);
+			maxKeys[k] = ByteBuffer.wrap(cells.get(cells.size()-1)).getInt(3);
 		}
-		while(nextLeafPage!=0);
 		
-		if (idx == -1)
-			throw new Exception(String.format("Error 08: %s table does not exist!",tableName));
-		int[] pointers = scanForCellPointers(p,handler[0]);
-		long baseAddress = p.pagNumber*FileHandler.pageSize;
-		long address = baseAddress + pointers[idx];
-		RandomAccessFile rfile = handler[0].getRFile();
-		rfile.seek(address+1);
+		// an interior page holds a cell for each child but the last one, which is its right pointer
+		int fanout = (pageEnd-0x000C)/(8+1+2)+1;
+		while(pages.length>1){
+			// spread the children evenly, so that every interior page has at least one cell
+			int m = (pages.length+fanout-1)/fanout;
+			int[] upPages = new int[m];
+			int[] upKeys = new int[m];
+			for(int g=0;g<m;g++)
+				upPages[g] = m == 1 ? 1 : next++;
+			for(int g=0;g<m;g++){
+				int from = (int) ((long)g*pages.length/m);
+				int to = (int) ((long)(g+1)*pages.length/m);
+				ArrayList<byte[]> cells = new ArrayList<>();
+				for(int k=from;k<to-1;k++)
+					cells.add(ByteBuffer.allocate(8+1).put((byte) 0).putInt(pages[k]).putInt(maxKeys[k]).array());
+				writeBulkPage(upPages[g],false,cells,pages[to-1]);
+				upKeys[g] = maxKeys[to-1];
+			}
+			pages = upPages;
+			maxKeys = upKeys;
+		}
 		
-		// read number of bytes of payload
-		int length = rfile.readShort();
+		// the rest of the old tree is free
+		this.firstFreePage = 0;
+		for(int k=oldPages-1;k>=next;k--)
+			releasePage(k);
+		
+		recalFilePages();
+		this.root = getRoot();
+		this.fileChangeCounter++;
+		writeDatabaseHeader(this.rfile);
+		updateDavisbaseTable(tableName,n);
+	}
+	
+	/*
+	 * write a page of a bulk load in one piece, the cells are stored from the end of the page down like writeCells does
+	 * @param pageNum the page
+	 * @param leaf leaf or interior page
+	 * @param cells the cells in key order
+	 * @param rightPointer next leaf of a leaf, right-most child of an interior page
+	 */
+	private void writeBulkPage(int pageNum,boolean leaf,List<byte[]> cells,int rightPointer) throws IOException{
+		ByteBuffer page = ByteBuffer.allocate(this.pageSize);
+		int pos = this.pageSize-this.uspace;
+		for(int i=0;i<cells.size();i++){
+			pos -= cells.get(i).length;
+			page.position(pos);
+			page.put(cells.get(i));
+			page.putShort(0x000C+2*i,(short) pos);
+		}
+		page.put(0x00,(byte) (leaf ? 0x0D : 0x05));
+		page.putShort(0x03,(short) cells.size());
+		page.putShort(0x05,(short) pos);
+		page.putInt(0x08,rightPointer);
+		this.rfile.seek(pageNum*this.pageSize);
+		this.rfile.write(page.array());
+	}
+	
+	private void updateDavisbaseTable(String tableName) throws Exception{
+		updateDavisbaseTable(tableName,1);
+	}
+	
+	/*
+	 * @param change number of rows added, negative for deleted rows
+	 */
+	private void updateDavisbaseTable(String tableName,int change) throws Exception{
+		Catalog.TableInfo info = getTableInfo(tableName);
+		String cwd = System.getProperty("user.dir");
+		FileHandler table_handler = TableHandles.acquire(cwd+"/davisbase_schemas"+"/davisbase_tables"+"/davisbase_tables.tbl");
+		PageFile rfile = table_handler.getRFile();
 		
-		// move to table rows column
-		rfile.seek(address+1+2+4+length-(8+8+8+4+4));
+		// locate TABLE_ROWS of the table once, later inserts write it directly
+		if(info.getRowCountAddress()<0)
+			info.setRowCountAddress(scanForRowCountAddress(table_handler,tableName));
 		
 		// read table rows
+		rfile.seek(info.getRowCountAddress());
 		int rowNum = rfile.readInt();
-		rfile.seek(rfile.getFilePointer()-4);
-		rfile.writeInt(rowNum+1);
+		rfile.seek(info.getRowCountAddress());
+		rfile.writeInt(rowNum+change);
+		info.setRowCount(rowNum+change);
 		
-		// close
-		handler[0].close();
-		handler[1].close();
+		TableHandles.release(table_handler);
+	}
+	
+	/*
+	 * number of rows of a table as davisbase_tables keeps it, inserts, deletes and updates keep it exact
+	 * @param tableName name of the table
+	 * @return TABLE_ROWS of the table, read from davisbase_tables.tbl only the first time
+	 */
+	public int getRowCount(String tableName) throws Exception{
+		Catalog.TableInfo info = getTableInfo(tableName);
+		if(info.getRowCount()>=0)
+			return info.getRowCount();
+		String cwd = System.getProperty("user.dir");
+		FileHandler table_handler = TableHandles.acquire(cwd+"/davisbase_schemas"+"/davisbase_tables"+"/davisbase_tables.tbl");
+		try{
+			if(info.getRowCountAddress()<0)
+				info.setRowCountAddress(scanForRowCountAddress(table_handler,tableName));
+			PageFile rfile = table_handler.getRFile();
+			rfile.seek(info.getRowCountAddress());
+			info.setRowCount(rfile.readInt());
+		}
+		finally{
+			TableHandles.release(table_handler);
+		}
+		return info.getRowCount();
+	}
+	
+	/*
+	 * find the record of a table in davisbase_tables
+	 * @param table_handler davisbase_tables file
+	 * @param tableName name of the table
+	 * @return file address of the TABLE_ROWS value of the record
+	 */
+	private long scanForRowCountAddress(FileHandler table_handler,String tableName) throws Exception{
+		int pagNum = traversePage(null,null,table_handler.getRoot(),true,true,true,table_handler,tableName);
+		Page p = preparePage(pagNum,table_handler);
+		int nextLeafPage; // next leaf page pointer = 0 -> null
+		Row tmp = new Row(1);
+		do{
+			nextLeafPage = getLeafPagePointer(p,table_handler.getRFile());
+			if(p.cellNum!=0){
+				int[] pointers = scanForCellPointers(p,table_handler);
+				ByteBuffer page = pageBuffer(p,table_handler);
+				for(int i=0;i<pointers.length;i++){
+					int cell = pointers[i];
+					// skip deleted records
+					if(page.get(cell) == 1)
+						continue;
+					// TABLE_CATALOG and TABLE_SCHEMA are stored before TABLE_NAME
+					int payloadHeaderSize = page.getShort(cell+7);
+					int length = (page.get(cell+9)-0x0C)+(page.get(cell+10)-0x0C);
+					page.position(cell+1+2+4+payloadHeaderSize+length);
+					readValue(tmp,0,page.get(cell+11),page);
+					if(tmp.getText(0).toLowerCase().trim().equals(tableName.toLowerCase().trim())){
+						// TABLE_ROWS is followed by MAX_RECORD_LENGTH and three datetime columns
+						int payloadLength = page.getShort(cell+1);
+						return p.pagNumber*p.pageSize+cell+1+2+4+payloadLength-(8+8+8+4+4);
+					}
+				}
+			}
+			p = preparePage(nextLeafPage,table_handler);
+		}
+		while(nextLeafPage!=0);
+		throw new Exception(String.format("Error 08: %s table does not exist!",tableName));
 	}
 	
 	/*
@@ -1499,10 +2723,10 @@ public class FileHandler {
 	 *  typeCodes, values is not required if the table is a schema table or the key value is rowId
 	 *  
 	 */
-	private int traversePage(int[] typeCodes, HashMap<Integer, Any> values, Page p2, boolean schema,boolean bruteForce,boolean reverse,FileHandler handler ,String tableName) throws Exception {
+	private int traversePage(int[] typeCodes, Row values, Page p2, boolean schema,boolean bruteForce,boolean reverse,FileHandler handler ,String tableName) throws Exception {
 
 		
-		RandomAccessFile rfile = handler.getRFile();
+		PageFile rfile = handler.getRFile();
 		// write table row - reverse = false always find the right most page
 		// getTableRows - reverse = true always find the left most page
 		// in a page, pointers are sorted based on key value (small -> large)
@@ -1519,11 +2743,11 @@ public class FileHandler {
 				int targetPointer;
 				if(reverse){
 					targetPointer = pointers[0];
-					long address = p2.pagNumber*FileHandler.pageSize+targetPointer;
+					long address = p2.pagNumber*p2.pageSize+targetPointer;
 					rfile.seek(address+1);
 				}
 				else{
-					rfile.seek(p2.pagNumber*FileHandler.pageSize+0x08);			
+					rfile.seek(p2.pagNumber*p2.pageSize+0x08);			
 				}
 				
 				int pageNumber = rfile.readInt();
@@ -1561,7 +2785,7 @@ public class FileHandler {
 					//go to the left most child
 					int keyVal = pageKeyVals[0];
 					int i = key2idx.get(keyVal);
-					long baseAddress = p2.pagNumber*FileHandler.pageSize;
+					long baseAddress = p2.pagNumber*p2.pageSize;
 					rfile.seek(pointers[i]+baseAddress+1);
 					int leftMostChild = rfile.readInt();
 					Page p = preparePage(leftMostChild,handler);
@@ -1570,7 +2794,7 @@ public class FileHandler {
 				}
 				else if (idx == pageKeyVals.length){
 					//go to the right most child, should read page header
-					long baseAddress = p2.pagNumber*FileHandler.pageSize;
+					long baseAddress = p2.pagNumber*p2.pageSize;
 					long address = baseAddress + 0x08;
 					rfile.seek(address);
 					int rightMostChild = rfile.readInt();
@@ -1582,7 +2806,7 @@ public class FileHandler {
 					// read cell of this index
 					int keyVal = pageKeyVals[idx];
 					int i = key2idx.get(keyVal);
-					long baseAddress = p2.pagNumber*FileHandler.pageSize;
+					long baseAddress = p2.pagNumber*p2.pageSize;
 					rfile.seek(baseAddress+pointers[i]+1);
 					int targetPointer = rfile.readInt();
 					Page p = preparePage(targetPointer,handler);
@@ -1608,7 +2832,7 @@ public class FileHandler {
 	 */
 	private int traversePage2(int key, Page p2, boolean schema,boolean bruteForce,boolean reverse,FileHandler handler ,String tableName) throws Exception {
 		
-		RandomAccessFile rfile = handler.getRFile();
+		PageFile rfile = handler.getRFile();
 		// write table row - reverse = false always find the right most page
 		// getTableRows - reverse = true always find the left most page
 		// in a page, pointers are sorted based on key value (small -> large)
@@ -1625,11 +2849,11 @@ public class FileHandler {
 				int targetPointer;
 				if(reverse){
 					targetPointer = pointers[0];
-					long address = p2.pagNumber*FileHandler.pageSize+targetPointer;
+					long address = p2.pagNumber*p2.pageSize+targetPointer;
 					rfile.seek(address+1);
 				}
 				else{
-					rfile.seek(p2.pagNumber*FileHandler.pageSize+0x08);			
+					rfile.seek(p2.pagNumber*p2.pageSize+0x08);			
 				}
 				
 				int pageNumber = rfile.readInt();
@@ -1667,7 +2891,7 @@ public class FileHandler {
 					//go to the left most child
 					int keyVal = pageKeyVals[0];
 					int i = key2idx.get(keyVal);
-					long baseAddress = p2.pagNumber*FileHandler.pageSize;
+					long baseAddress = p2.pagNumber*p2.pageSize;
 					rfile.seek(pointers[i]+baseAddress+1);
 					int leftMostChild = rfile.readInt();
 					Page p = preparePage(leftMostChild,handler);
@@ -1676,7 +2900,7 @@ public class FileHandler {
 				}
 				else if (idx == pageKeyVals.length){
 					//go to the right most child, should read page header
-					long baseAddress = p2.pagNumber*FileHandler.pageSize;
+					long baseAddress = p2.pagNumber*p2.pageSize;
 					long address = baseAddress + 0x08;
 					rfile.seek(address);
 					int rightMostChild = rfile.readInt();
@@ -1688,7 +2912,7 @@ public class FileHandler {
 					// read cell of this index
 					int keyVal = pageKeyVals[idx];
 					int i = key2idx.get(keyVal);
-					long baseAddress = p2.pagNumber*FileHandler.pageSize;
+					long baseAddress = p2.pagNumber*p2.pageSize;
 					rfile.seek(baseAddress+pointers[i]+1);
 					int targetPointer = rfile.readInt();
 					Page p = preparePage(targetPointer,handler);
@@ -1712,10 +2936,10 @@ public class FileHandler {
 	 *  typeCodes, values is not required if the table is a schema table or the key value is rowId
 	 *  
 	 */
-	private Page traversePage1(int[] typeCodes, HashMap<Integer, Any> values, Page p2, boolean schema,boolean bruteForce,boolean reverse,FileHandler handler ,String tableName) throws Exception {
+	private Page traversePage1(int[] typeCodes, Row values, Page p2, boolean schema,boolean bruteForce,boolean reverse,FileHandler handler ,String tableName) throws Exception {
 
 		
-		RandomAccessFile rfile = handler.getRFile();
+		PageFile rfile = handler.getRFile();
 		// write table row - reverse = false always find the right most page
 		// getTableRows - reverse = true always find the left most page
 		// in a page, pointers are sorted based on key value (small -> large)
@@ -1732,11 +2956,11 @@ public class FileHandler {
 				int targetPointer;
 				if(reverse){
 					targetPointer = pointers[0];
-					long address = p2.pagNumber*FileHandler.pageSize+targetPointer;
+					long address = p2.pagNumber*p2.pageSize+targetPointer;
 					rfile.seek(address+1);
 				}
 				else{
-					rfile.seek(p2.pagNumber*FileHandler.pageSize+0x08);			
+					rfile.seek(p2.pagNumber*p2.pageSize+0x08);			
 				}
 				
 				int pageNumber = rfile.readInt();
@@ -1774,7 +2998,7 @@ public class FileHandler {
 					//go to the left most child
 					int keyVal = pageKeyVals[0];
 					int i = key2idx.get(keyVal);
-					long baseAddress = p2.pagNumber*FileHandler.pageSize;
+					long baseAddress = p2.pagNumber*p2.pageSize;
 					rfile.seek(pointers[i]+baseAddress+1);
 					int leftMostChild = rfile.readInt();
 					Page p = preparePage(leftMostChild,handler);
@@ -1783,7 +3007,7 @@ public class FileHandler {
 				}
 				else if (idx == pageKeyVals.length){
 					//go to the right most child, should read page header
-					long baseAddress = p2.pagNumber*FileHandler.pageSize;
+					long baseAddress = p2.pagNumber*p2.pageSize;
 					long address = baseAddress + 0x08;
 					rfile.seek(address);
 					int rightMostChild = rfile.readInt();
@@ -1795,7 +3019,7 @@ public class FileHandler {
 					// read cell of this index
 					int keyVal = pageKeyVals[idx];
 					int i = key2idx.get(keyVal);
-					long baseAddress = p2.pagNumber*FileHandler.pageSize;
+					long baseAddress = p2.pagNumber*p2.pageSize;
 					rfile.seek(baseAddress+pointers[i]+1);
 					int targetPointer = rfile.readInt();
 					Page p = preparePage(targetPointer,handler);
@@ -1816,8 +3040,8 @@ public class FileHandler {
 	 * @param tableName table name
 	 * @return primary key value
 	 */
-	private int getPriMaryKeyVal(int[] typeCodes, HashMap<Integer, Any> values, Page p2, boolean schema, String tableName, FileHandler handler) throws Exception {
-		RandomAccessFile rfile = handler.getRFile();
+	private int getPriMaryKeyVal(int[] typeCodes, Row values, Page p2, boolean schema, String tableName, FileHandler handler) throws Exception {
+		PageFile rfile = handler.getRFile();
 		if(schema){
 			// there is no way to map an arbitrary string to an unique integer, use rowId as the key value,
 			// rowId start from 1
@@ -1830,19 +3054,19 @@ public class FileHandler {
 				pointer = pointers[pointers.length-1];
 
 
-				rfile.seek(p.pagNumber*FileHandler.pageSize+pointer+3);
+				rfile.seek(p.pagNumber*p.pageSize+pointer+3);
 				return rfile.readInt()+1;
 			}
 			else{
 				// probably due to delete record
-				// each page contains at most degree-1 records. Hence the max allowed rowId = (degree-1)*(database pages-1) rowId does not need to be continuous but should be unique
+				// rowId does not need to be continuous but should be unique
 				if (p.parentPage != null){
 					int pageNum = p.pagNumber;
 					p = p.parentPage;
 					int[] pointers = scanForCellPointers(p,handler);
 					int[] pagePointVals = new int[pointers.length];
 					int[] keys = new int[pointers.length];
-					long baseAddress = p.pagNumber*FileHandler.pageSize;
+					long baseAddress = p.pagNumber*p.pageSize;
 					for(int i=0;i<pointers.length;i++){
 						rfile.seek(baseAddress+pointers[i]+1);
 						pagePointVals[i] = rfile.readInt();
@@ -1861,33 +3085,20 @@ public class FileHandler {
 			}
 		}
 		else{
-			// refer to schema table and get the corresponding column list in the order when they are inserted.
-			// read columns table and get all corresponding rows for the table
-			ArrayList<HashMap<String, Any>> rows = new ArrayList<>();
-			ArrayList<HashMap<String,Integer>> type = new ArrayList<>();
-			ArrayList<Integer> keys = new ArrayList<>();
-			FileHandler[] handler1 = openSchema();
-			getTableRows(typeCodes,values,handler1[1],rows,type,keys,FileHandler.davisbase_column_header,-1,"=",true,true,tableName, true);
-			
-			handler1[0].close();
-			handler1[1].close();
-			
 			// check which column is the primary key field
-			int idx = checkPriColumn(rows);
-			boolean priInt = false;
+			Catalog.TableInfo info = getTableInfo(tableName);
+			int idx = info.getPriIndex();
+			boolean priInt = info.isPriInt();
 			if(idx != -1){
-				HashMap<String,Any> priCol = rows.get(idx);
-				priInt = checkPriInt(priCol);
 				if (priInt){
-					Any tmp = values.get(idx);
 					int byteCode = typeCodes[idx];
 					switch(byteCode){
 					case 0x04:
-						return (int)tmp.extract_octet();
+						return (int)values.getByte(idx);
 					case 0x05:
-						return (int)tmp.extract_short();
+						return (int)values.getShort(idx);
 					case 0x06:
-						return tmp.extract_long();
+						return values.getInt(idx);
 					}
 				}
 			}
@@ -1898,12 +3109,12 @@ public class FileHandler {
 				if(p.cellNum>0){
 					int[] pointers = scanForCellPointers(p,handler);
 					pointer = pointers[pointers.length-1];
-					rfile.seek(p.pagNumber*FileHandler.pageSize+pointer+3);
+					rfile.seek(p.pagNumber*p.pageSize+pointer+3);
 					return rfile.readInt()+1;
 				}
 				else{
 					// probably due to delete record
-					// each page contains at most degree-1 records. Hence the max allowed rowId = (degree-1)*(database pages-1) rowId does not need to be continuous but should be unique
+					// rowId does not need to be continuous but should be unique
 					
 					if (p.parentPage != null){
 						int pageNum = p.pagNumber;
@@ -1911,7 +3122,7 @@ public class FileHandler {
 						int[] pointers = scanForCellPointers(p,handler);
 						int[] pagePointVals = new int[pointers.length];
 						int[] keys1 = new int[pointers.length];
-						long baseAddress = p.pagNumber*FileHandler.pageSize;
+						long baseAddress = p.pagNumber*p.pageSize;
 						for(int i=0;i<pointers.length;i++){
 							rfile.seek(baseAddress+pointers[i]+1);
 							pagePointVals[i] = rfile.readInt();
@@ -1933,10 +3144,8 @@ public class FileHandler {
 		return -1;
 	}
 	
-	private boolean checkPriInt(HashMap<String, Any> priCol) {
-		Any any = priCol.get("DATA_TYPE");
-	
-		String dataType = any.extract_string().toLowerCase().trim();
+	private boolean checkPriInt(Row priCol) {
+		String dataType = priCol.getText("DATA_TYPE").toLowerCase().trim();
 		if(dataType.contains("int") && !dataType.contains("big"))
 			return true;
 		return false;
@@ -1946,11 +3155,11 @@ public class FileHandler {
 	 * return the column index which is the primary key, start from 0 
 	 * return -1 if no column is marked as primary key
 	 */
-	public int checkPriColumn(ArrayList<HashMap<String,Any>> rows){
-		HashMap<String,Any> map;
+	public int checkPriColumn(ArrayList<Row> rows){
+		Row map;
 		for(int i=0;i<rows.size();i++){
 			map = rows.get(i);
-			if(map.get("COLUMN_KEY").extract_string().toLowerCase().trim().equals("pri"))
+			if(map.getText("COLUMN_KEY").toLowerCase().trim().equals("pri"))
 				return i;			
 		}
 		return -1;
@@ -1958,8 +3167,7 @@ public class FileHandler {
 
 	/*
 	 *  get all table rows
-	 *  ArrayList<HashMap<String,Any>> an array of row records. HashMap is colName-value pair
-	 *  ArrayList<Integer> an array of type code of each type for each column
+	 *  ArrayList<Row> an array of row records, each row carries the type code of its columns
 	 *  key - the primary or candidate key value, must be an integer
 	 *  filter - for normal table, filter = true if the search field is the primary key field (and is integer); false otherwise
 	 *  if bruteForce = true, go to most left child
@@ -1970,7 +3178,6 @@ public class FileHandler {
 	 *  
 	 * @param handler file handler
 	 * @param rows row container
-	 * @param typeCodes typeCodes container
 	 * @param keys keys container
 	 * @param ColNames column name list of table
 	 * @param k key value of row you want to find
@@ -1982,8 +3189,8 @@ public class FileHandler {
 	 * typeCode, values are needed if you want to find a specific page content into which this new data is to be inserted
 	 */
 	
-	public void getTableRows(int[] typeCode,HashMap<Integer, Any> values, FileHandler handler, 
-			ArrayList<HashMap<String,Any>> rows,ArrayList<HashMap<String,Integer>> typeCodes, ArrayList<Integer> keys,
+	public void getTableRows(int[] typeCode,Row values, FileHandler handler, 
+			ArrayList<Row> rows, ArrayList<Integer> keys,
 			String[] ColNames,int k, String operator,boolean schema, boolean bruteForce,String tableName,boolean filter) throws Exception {
 		
 		// if bruteForce = true, traverse to the most left leaf node of B-tree and go over all leaf nodes using the rightmost pointer
@@ -1996,7 +3203,7 @@ public class FileHandler {
 			do{
 				nextLeafPage = getLeafPagePointer(p,handler.getRFile());
 				if(p.cellNum!=0)
-					readPageRecords(handler,p,rows,typeCodes,keys,ColNames,k,operator,schema,tableName,filter);
+					readPageRecords(handler,p,rows,keys,ColNames,k,operator,schema,tableName,filter);
 				p = preparePage(nextLeafPage,handler);
 			}while(nextLeafPage!=0);
 		}
@@ -2005,7 +3212,7 @@ public class FileHandler {
 			int pagNum = traversePage(typeCode,values,handler.getRoot(),schema,bruteForce,true,handler,tableName);
 			Page p = preparePage(pagNum,handler);
 			if(p.cellNum!=0)
-				readPageRecords(handler,p,rows,typeCodes,keys,ColNames,k,operator,schema,tableName,filter);
+				readPageRecords(handler,p,rows,keys,ColNames,k,operator,schema,tableName,filter);
 		}
 	}
 	
@@ -2013,7 +3220,6 @@ public class FileHandler {
 	 * @param rfile random access file
 	 * @param p the page to read
 	 * @param rows row container
-	 * @param typeCodes typeCode container
 	 * @param keys key container
 	 * @param ColNames the name list of the table
 	 * @param key key value to filter tuples (only select those tuples meet the condition (k operator val))
@@ -2022,28 +3228,23 @@ public class FileHandler {
 	 * @param tableName the name of the table
 	 * @param filter filter tuples according to key value
 	 */
-	public void readPageRecords(FileHandler handler,Page p,ArrayList<HashMap<String,Any>> rows,ArrayList<HashMap<String,Integer>> typeCodes, ArrayList<Integer> keys, String[] ColNames, int key, String operator, boolean schema, String tableName, boolean filter) throws Exception{
-		RandomAccessFile rfile = handler.getRFile();
+	public void readPageRecords(FileHandler handler,Page p,ArrayList<Row> rows, ArrayList<Integer> keys, String[] ColNames, int key, String operator, boolean schema, String tableName, boolean filter) throws Exception{
 		if(p.cellNum == 0)
 			return;
-		long baseAddress = p.pagNumber*FileHandler.pageSize;
 		int[] pointers = scanForCellPointers(p,handler);
-		org.omg.CORBA.ORB orb = ORB.init();
-		ArrayList<Integer> typeCode = new ArrayList<>();
+		ByteBuffer page = pageBuffer(p,handler);
+		// table name of a schema record
+		Row tmp = new Row(1);
 		
 		for(int i=0;i<pointers.length;i++){
 			
-			typeCode.clear();
-			
-			long address = baseAddress + pointers[i];
+			int cell = pointers[i];
 			
 			// read integer key
-			rfile.seek(address+3);
-			int rec_key = rfile.readInt();
+			int rec_key = page.getInt(cell+3);
 			
 			// read # of bytes in the payload header
-			rfile.seek(address+7);
-			int payloadHeaderSize = rfile.readShort();
+			int payloadHeaderSize = page.getShort(cell+7);
 			
 			if(!schema){
 				// filter tuples based on primary key value
@@ -2055,62 +3256,29 @@ public class FileHandler {
 				else{
 					keys.add(rec_key);
 					
-					rfile.seek(address+9);
-					
-					HashMap<String,Integer> map2 = new HashMap<>();
-					// read type codes
-					for(int idx=0;idx<payloadHeaderSize-2;idx++){
-						int code = rfile.readByte();
-						typeCode.add(code);
-						map2.put(ColNames[idx], code);
-					}
-					
-					HashMap<String,Any> map = new HashMap<>();
-					// read values
-					for(int idx=0;idx<typeCode.size();idx++){
-						Any any = orb.create_any();
-						readValue(any,typeCode.get(idx),rfile);
-						map.put(ColNames[idx], any);
-					}
-					rows.add(map);
-					typeCodes.add(map2);
+					Row row = new Row(ColNames);
+					readRow(row,page,cell,null);
+					rows.add(row);
 				}
 			}
 			else{
 				// read table name 
 				int length = 0;
-				rfile.seek(address+9);				
-				length += (rfile.readByte()-0x0C);
-				length += (rfile.readByte()-0x0C);
-				byte typeCode1 = rfile.readByte();
-				rfile.seek(address+1+2+4+payloadHeaderSize+length);
-				Any tmp = orb.create_any();
-				readValue(tmp,typeCode1,rfile);
-				String rec_tableName = tmp.extract_string().trim();
+				length += (page.get(cell+9)-0x0C);
+				length += (page.get(cell+10)-0x0C);
+				byte typeCode1 = page.get(cell+11);
+				page.position(cell+1+2+4+payloadHeaderSize+length);
+				readValue(tmp,0,typeCode1,page);
+				String rec_tableName = tmp.getText(0).trim();
 				
 				if(filter && !((tableName.trim()).equals(rec_tableName)))
 					continue;
 				else{
 					keys.add(rec_key);
-					rfile.seek(address+9);
 				
-					HashMap<String,Integer> map2 = new HashMap<>();
-					// read type codes
-					for(int idx=0;idx<payloadHeaderSize-2;idx++){
-						int code = rfile.readByte();
-						typeCode.add(code);
-						map2.put(ColNames[idx], code);
-					}
-					
-					HashMap<String,Any> map = new HashMap<>();
-					// read values
-					for(int idx=0;idx<typeCode.size();idx++){
-						Any any = orb.create_any();
-						readValue(any,typeCode.get(idx),rfile);
-						map.put(ColNames[idx], any);
-					}	
-					rows.add(map);	
-					typeCodes.add(map2);
+					Row row = new Row(ColNames);
+					readRow(row,page,cell,null);
+					rows.add(row);
 				}
 			}
 		}
@@ -2137,55 +3305,81 @@ public class FileHandler {
 		}
 	}
 
-	private void readValue(Any any, int typeCode,RandomAccessFile rfile) throws IOException {
+	/*
+	 * decode a leaf record into a row, type codes are followed by the values
+	 * a column that is not asked for is skipped by the size its type code gives, it is not decoded and stays null
+	 * @param row row receiving the values
+	 * @param page buffer of the leaf
+	 * @param cell offset of the record in the page
+	 * @param columns ordinals of the columns to decode in ascending order, null for every column
+	 */
+	private void readRow(Row row,ByteBuffer page,int cell,int[] columns) throws IOException{
+		int typeCodeStart = cell+1+2+4+2;
+		int n = page.getShort(cell+1+2+4)-2;
+		page.position(typeCodeStart+n);
+		if(columns == null){
+			for(int idx=0;idx<n;idx++)
+				readValue(row,idx,page.get(typeCodeStart+idx),page);
+			return;
+		}
+		int pos = typeCodeStart+n;
+		int idx = 0;
+		for(int column : columns){
+			if(column>=n)
+				break;
+			for(;idx<column;idx++)
+				pos += Utilities.getColumnSize(page.get(typeCodeStart+idx));
+			page.position(pos);
+			readValue(row,idx,page.get(typeCodeStart+idx),page);
+			pos = page.position();
+			idx++;
+		}
+	}
+
+	/*
+	 * read a value at the file pointer into column i of a row
+	 */
+	private void readValue(Row row, int i, int typeCode,PageFile rfile) throws IOException {
 		switch(typeCode){
 		case 0x00:
-			 any.insert_string("null");
+			 row.setNull(i,typeCode);
 			 rfile.readByte();
 			 return;
 		case 0x01:
-			 any.insert_string("null");
+			 row.setNull(i,typeCode);
 			 rfile.readShort();
 			 return;
 		case 0x02:
-			 any.insert_string("null");
+			 row.setNull(i,typeCode);
 			 rfile.readInt();
 			 return;
 		case 0x03:
-			 any.insert_string("null");
+			 row.setNull(i,typeCode);
 			 rfile.readLong();
 			 return;
 		case 0x04:
-			byte val = rfile.readByte();
-			any.insert_octet(val);
+			row.setLong(i,typeCode,rfile.readByte());
 			return;
 		case 0x05:
-			short val1 = rfile.readShort();
-			any.insert_short(val1);
+			row.setLong(i,typeCode,rfile.readShort());
 			return;
 		case 0x06:
-			int val2 = rfile.readInt();
-			any.insert_long(val2);
+			row.setLong(i,typeCode,rfile.readInt());
 			return;
 		case 0x07:
-			long val3 = rfile.readLong();
-			any.insert_longlong(val3);
+			row.setLong(i,typeCode,rfile.readLong());
 			return;
 		case 0x08:
-			float val4 = rfile.readFloat();
-			any.insert_float(val4);
+			row.setDouble(i,typeCode,rfile.readFloat());
 			return;
 		case 0x09:
-			double val5 = rfile.readDouble();
-			any.insert_double(val5);
+			row.setDouble(i,typeCode,rfile.readDouble());
 			return;
 		case 0x0A:
-			long val6 = rfile.readLong();
-			any.insert_longlong(val6);
+			row.setLong(i,typeCode,rfile.readLong());
 			return;
 		case 0x0B:
-			long val7 = rfile.readLong();
-			any.insert_longlong(val7);
+			row.setLong(i,typeCode,rfile.readLong());
 			return;
 		default:
 			if(typeCode>=0x0C){
@@ -2197,28 +3391,83 @@ public class FileHandler {
 				}
 				else
 					s = "";
-				any.insert_string(s);
+				row.setText(i,typeCode,s);
+				return;
+			}
+		}		
+	}
+
+	/*
+	 * decode a value from a page buffer into column i of a row, the buffer position is moved past the value
+	 * @param row row receiving the value
+	 * @param i column of the value
+	 * @param typeCode type code of the value
+	 * @param page page buffer positioned at the value
+	 */
+	private void readValue(Row row, int i, int typeCode,ByteBuffer page) throws IOException {
+		switch(typeCode){
+		case 0x00:
+			 row.setNull(i,typeCode);
+			 page.position(page.position()+1);
+			 return;
+		case 0x01:
+			 row.setNull(i,typeCode);
+			 page.position(page.position()+2);
+			 return;
+		case 0x02:
+			 row.setNull(i,typeCode);
+			 page.position(page.position()+4);
+			 return;
+		case 0x03:
+			 row.setNull(i,typeCode);
+			 page.position(page.position()+8);
+			 return;
+		case 0x04:
+			row.setLong(i,typeCode,page.get());
+			return;
+		case 0x05:
+			row.setLong(i,typeCode,page.getShort());
+			return;
+		case 0x06:
+			row.setLong(i,typeCode,page.getInt());
+			return;
+		case 0x07:
+			row.setLong(i,typeCode,page.getLong());
+			return;
+		case 0x08:
+			row.setDouble(i,typeCode,page.getFloat());
+			return;
+		case 0x09:
+			row.setDouble(i,typeCode,page.getDouble());
+			return;
+		case 0x0A:
+			row.setLong(i,typeCode,page.getLong());
+			return;
+		case 0x0B:
+			row.setLong(i,typeCode,page.getLong());
+			return;
+		default:
+			if(typeCode>=0x0C){
+				String s;
+				if(typeCode>0x0C){
+					byte[] charArray = new byte[typeCode-0x0C];
+					page.get(charArray);
+					s = new String(charArray,"UTF-8");
+				}
+				else
+					s = "";
+				row.setText(i,typeCode,s);
 				return;
 			}
 		}		
 	}
 
-	private int getLeafPagePointer(Page p,RandomAccessFile rfile) throws IOException{
-		long address = (p.pagNumber)*FileHandler.pageSize+0x08;
+	private int getLeafPagePointer(Page p,PageFile rfile) throws IOException{
+		long address = p.pagNumber*p.pageSize+0x08;
 		rfile.seek(address);
 		return rfile.readInt();
 	}
 
-	// get schema table handler
-	public FileHandler[] openSchema() throws IOException{
-		String cwd = System.getProperty("user.dir");
-		String path = cwd + "/davisbase_schemas";
-		FileHandler[] handler = new FileHandler[2];
-		handler[0] = new FileHandler(path+"/davisbase_tables"+"/davisbase_tables.tbl",true);
-		handler[1] = new FileHandler(path+"/davisbase_columns"+"/davisbase_columns.tbl",true);
-		return handler;
-	}
-	
 	/*
 	 * @param typeCodes type code array of new data
 	 * @param values values of new data
@@ -2228,13 +3477,13 @@ public class FileHandler {
 	 * @param tableName name of the table
 	 * @return root of the B+-tree
 	 */
-	private void split(int[] typeCodes,HashMap<Integer,Any> values,Page p, FileHandler handler, boolean schema, String tableName) throws Exception{
+	private void split(int[] typeCodes,Row values,Page p, FileHandler handler, boolean schema, String tableName) throws Exception{
 
 		if(p == null)
 			return;
-		if(p.cellNum+1<FileHandler.degree){
+		if(scanForUnallocatedSpace(p,handler)>=Utilities.calRecordLength(typeCodes, p.leaf)+2){
 			// insert record to the page
-			long baseAddress = p.pagNumber*FileHandler.pageSize;
+			long baseAddress = p.pagNumber*p.pageSize;
 			int lpointer = scanForLastCellPointer(p,handler);
 			long address = baseAddress+lpointer;
 
@@ -2244,7 +3493,7 @@ public class FileHandler {
 			if(p.leaf)
 				keyVal = getPriMaryKeyVal(typeCodes,values,handler.getRoot(),schema,tableName,handler);	
 			else
-				keyVal = values.get(1).extract_long(); // values: <0,pointer>,<1,keyVal> for internal node
+				keyVal = values.getInt(1); // values: <0,pointer>,<1,keyVal> for internal node
 			byte[] record = Utilities.convertoBytes(typeCodes, values, p.leaf, keyVal);
 			
 			// write the record
@@ -2254,7 +3503,7 @@ public class FileHandler {
 			// write pointer
 			long pageHeaderEnd = scanForPageHeaderEnd(p);
 			ArrayList<Integer> pointer = Utilities.toArrayList(cellPointers);
-			pointer.add((int) (address-record.length-p.pagNumber*FileHandler.pageSize));
+			pointer.add((int) (address-record.length-p.pagNumber*p.pageSize));
 			int[] pointers = sortCellPointers(pointer,p,handler);
 			
 			// write cell pointers
@@ -2272,6 +3521,7 @@ public class FileHandler {
 			return;
 		}
 		else{
+			Metrics.add(Metrics.Counter.SPLITS, 1);
 			// read page information
 			int[] pointers = handler.scanForCellPointers(p,handler);
 			int[] keyVals = handler.getPageKeyVals(pointers, p,handler);
@@ -2281,7 +3531,7 @@ public class FileHandler {
 			if(p.leaf)
 				keyVal = getPriMaryKeyVal(typeCodes,values,handler.getRoot(),schema,tableName,handler);
 			else
-				keyVal = values.get(1).extract_long(); // values: <0,pointer>,<1,keyVal> for internal node
+				keyVal = values.getInt(1); // values: <0,pointer>,<1,keyVal> for internal node
 		
 		
 		
@@ -2297,8 +3547,8 @@ public class FileHandler {
 			int pivot = newKeys[pivotIdx];
 						
 			// get pivot record
-			long baseAddress = p.pagNumber*FileHandler.pageSize;
-			RandomAccessFile rfile = handler.getRFile();
+			long baseAddress = p.pagNumber*p.pageSize;
+			PageFile rfile = handler.getRFile();
 			byte[] pivotRecord;
 			HashMap<Integer,byte[]> records = new HashMap<>();
 			
@@ -2337,21 +3587,16 @@ public class FileHandler {
 				// if p is not leaf, everything is same except pivot record is ignored
 				// if p is an internal node, remember to set the left child page header right pointer = pivot left pointer before spliting. 
 				if(p.leaf){
-					Page newP = new Page(this.databasePages);
+					Page newP = new Page(allocatePage());
 					newP.parentPage = p.parentPage;
 					newP.leaf=true;
 					newP.schemaRoot=false;
 
 					// create the pointer cell inserted into a internal node
 					int[] newTypeCodes = new int[]{0x06,0x06};
-					HashMap<Integer,Any> newValues= new HashMap<>();
-					org.omg.CORBA.ORB orb = org.omg.CORBA.ORB.init();
-					Any any = orb.create_any();
-					Any any1 = orb.create_any();
-					any.insert_long(newP.pagNumber);
-					any1.insert_long(pivot);
-					newValues.put(0, any);
-					newValues.put(1, any1);
+					Row newValues= new Row(2);
+					newValues.setLong(0, 0x06, newP.pagNumber);
+					newValues.setLong(1, 0x06, pivot);
 					
 					// update original page right pointer and newP right pointer
 					newP.rightPointer = p.pagNumber;
@@ -2363,10 +3608,10 @@ public class FileHandler {
 						rfile.writeByte(1);
 					}
 					
-				    long pos = (p.pagNumber+1)*FileHandler.pageSize-this.uspace; // move to the end of page p 
-				    long pos2 = (newP.pagNumber+1)*FileHandler.pageSize-this.uspace; // move to the end of page newP
-				    newP.cellStart = (int) (pos2 - newP.pagNumber*FileHandler.pageSize)-1;
-				    p.cellStart = (int) (pos - p.pagNumber*FileHandler.pageSize)-1;
+				    long pos = (p.pagNumber+1)*p.pageSize-this.uspace; // move to the end of page p 
+				    long pos2 = (newP.pagNumber+1)*newP.pageSize-this.uspace; // move to the end of page newP
+				    newP.cellStart = (int) (pos2 - newP.pagNumber*newP.pageSize)-1;
+				    p.cellStart = (int) (pos - p.pagNumber*p.pageSize)-1;
 				    
 				    ArrayList<Integer> cellPointer_p = new ArrayList<>();
 				    ArrayList<Integer> cellPointer_newP = new ArrayList<>();
@@ -2379,7 +3624,7 @@ public class FileHandler {
 							pos2 = pos2-record.length; // move to the start position to write the record
 							rfile.seek(pos2);
 							rfile.write(record);
-							cellPointer_newP.add((int) (pos2-(newP.pagNumber*FileHandler.pageSize)));
+							cellPointer_newP.add((int) (pos2-(newP.pagNumber*newP.pageSize)));
 							countP++;
 						}
 						else{
@@ -2387,7 +3632,7 @@ public class FileHandler {
 							pos = pos-record.length;
 							rfile.seek(pos);
 							rfile.write(record);
-							cellPointer_p.add((int) (pos-(p.pagNumber*FileHandler.pageSize)));
+							cellPointer_p.add((int) (pos-(p.pagNumber*p.pageSize)));
 						}
 					}
 					// sort cell pointers
@@ -2423,32 +3668,13 @@ public class FileHandler {
 					this.fileChangeCounter++;
 					writePageHeader(newP);
 					
-					// update the previous leaf page right pointer
-					int[] tmp_pointers = scanForCellPointers(p.parentPage,handler);
-					long tmp_baseAddress = p.parentPage.pagNumber*FileHandler.pageSize;
-					long target_address = -1;
-					int idx = -2;
-					for(int i=0;i<tmp_pointers.length;i++){
-						long tmp_address = tmp_baseAddress+tmp_pointers[i];
-						rfile.seek(tmp_address+1);
-						int tmp_pointer = rfile.readInt();
-						if(tmp_pointer == p.pagNumber){
-							if(i == 0)
-								idx = i;
-							else{
-								idx = i-1;
-								target_address = tmp_baseAddress + tmp_pointers[i-1]+1;
-							}
-							break;
-						}
-					}
-					if(idx == -2){
-						target_address = tmp_baseAddress+tmp_pointers[tmp_pointers.length-1]+1;
-					}
-					if(idx!=0){
-						rfile.seek(target_address);
-						int page = rfile.readInt();
-						rfile.seek(page*FileHandler.pageSize+0x08);
+					// update the previous leaf page right pointer, it may be below another parent
+					int maxKey = keyVals[0];
+					for(int i=1;i<keyVals.length;i++)
+						maxKey = Math.max(maxKey, keyVals[i]);
+					int page = getPreviousLeaf(p.pagNumber,maxKey,handler);
+					if(page != 0){
+						rfile.seek(page*p.pageSize+0x08);
 						rfile.writeInt(newP.pagNumber);
 					}
 					
@@ -2461,31 +3687,26 @@ public class FileHandler {
 					// original page is the right page, new page is the left one
 					// change the pivot left pointer to the header right pointer of new page and update the pivot with left pointer that points to new page to the parent page
 					
-					Page newP = new Page(this.databasePages);
+					Page newP = new Page(allocatePage());
 					newP.parentPage = p.parentPage;
 					newP.leaf=false;
 					newP.schemaRoot=false;
 					
 					// create the pointer cell inserted into a internal node
 					int[] newTypeCodes = new int[]{0x06,0x06};
-					HashMap<Integer,Any> newValues= new HashMap<>();
-					org.omg.CORBA.ORB orb = org.omg.CORBA.ORB.init();
-					Any any = orb.create_any();
-					Any any1 = orb.create_any();
-					any.insert_long(newP.pagNumber);
-					any1.insert_long(pivot);
-					newValues.put(0, any);
-					newValues.put(1, any1);
+					Row newValues= new Row(2);
+					newValues.setLong(0, 0x06, newP.pagNumber);
+					newValues.setLong(1, 0x06, pivot);
 					
 					// find the pivot left pointer value
 					int pivot_leftPointer;
 					if(key2pointers.containsKey(pivot)){
-						long tmp_address = p.pagNumber*FileHandler.pageSize + key2pointers.get(pivot)+1;
+						long tmp_address = p.pagNumber*p.pageSize + key2pointers.get(pivot)+1;
 						rfile.seek(tmp_address);
 						pivot_leftPointer = rfile.readInt();
 					}
 					else{
-						pivot_leftPointer = values.get(0).extract_long();
+						pivot_leftPointer = values.getInt(0);
 					}
 					
 					// clear the page
@@ -2494,10 +3715,10 @@ public class FileHandler {
 						rfile.writeByte(1);
 					}
 					
-				    long pos = (p.pagNumber+1)*FileHandler.pageSize-this.uspace; 	 // move to the end of page p 
-				    long pos2 = (newP.pagNumber+1)*FileHandler.pageSize-this.uspace; // move to the end of page newP
-				    newP.cellStart = (int) (pos2 - newP.pagNumber*FileHandler.pageSize)-1;
-				    p.cellStart = (int) (pos - p.pagNumber*FileHandler.pageSize)-1;
+				    long pos = (p.pagNumber+1)*p.pageSize-this.uspace; 	 // move to the end of page p 
+				    long pos2 = (newP.pagNumber+1)*newP.pageSize-this.uspace; // move to the end of page newP
+				    newP.cellStart = (int) (pos2 - newP.pagNumber*newP.pageSize)-1;
+				    p.cellStart = (int) (pos - p.pagNumber*p.pageSize)-1;
 				    
 				    ArrayList<Integer> cellPointer_p = new ArrayList<>();
 				    ArrayList<Integer> cellPointer_newP = new ArrayList<>();
@@ -2511,7 +3732,7 @@ public class FileHandler {
 							pos2 = pos2-record.length; // move to the start position to write the record
 							rfile.seek(pos2);
 							rfile.write(record);
-							cellPointer_newP.add((int) (pos2-(newP.pagNumber*FileHandler.pageSize)));
+							cellPointer_newP.add((int) (pos2-(newP.pagNumber*newP.pageSize)));
 							countP++;
 						}
 						else if(newKeys[i]>pivot){
@@ -2519,7 +3740,7 @@ public class FileHandler {
 							pos = pos-record.length;
 							rfile.seek(pos);
 							rfile.write(record);
-							cellPointer_p.add((int) (pos-(p.pagNumber*FileHandler.pageSize)));
+							cellPointer_p.add((int) (pos-(p.pagNumber*p.pageSize)));
 						}
 					}
 					// sort cell pointers
@@ -2565,12 +3786,12 @@ public class FileHandler {
 			else{
 				if(p.leaf){
 					
-					Page newP2 = new Page(this.databasePages);
+					Page newP2 = new Page(allocatePage());
 					newP2.parentPage = p;
 					newP2.leaf=true;
 					newP2.schemaRoot=false;
 					
-					Page newP = new Page(this.databasePages);
+					Page newP = new Page(allocatePage());
 					newP.parentPage = p;
 					newP.leaf=true;
 					newP.schemaRoot=false;
@@ -2586,12 +3807,12 @@ public class FileHandler {
 						rfile.writeByte(1);
 					}
 					
-				    long pos = (p.pagNumber+1)*FileHandler.pageSize-this.uspace;     // move to the end of page p 
-				    long pos2 = (newP.pagNumber+1)*FileHandler.pageSize-this.uspace; // move to the end of page newP
-				    long pos3 = (newP2.pagNumber+1)*FileHandler.pageSize-this.uspace; // move to the end of page newP2
-				    newP.cellStart = (int) (pos2 - newP.pagNumber*FileHandler.pageSize)-1;
-				    newP2.cellStart = (int) (pos3 - newP2.pagNumber*FileHandler.pageSize)-1;
-				    p.cellStart = (int) (pos - p.pagNumber*FileHandler.pageSize)-1;
+				    long pos = (p.pagNumber+1)*p.pageSize-this.uspace;     // move to the end of page p 
+				    long pos2 = (newP.pagNumber+1)*newP.pageSize-this.uspace; // move to the end of page newP
+				    long pos3 = (newP2.pagNumber+1)*newP2.pageSize-this.uspace; // move to the end of page newP2
+				    newP.cellStart = (int) (pos2 - newP.pagNumber*newP.pageSize)-1;
+				    newP2.cellStart = (int) (pos3 - newP2.pagNumber*newP2.pageSize)-1;
+				    p.cellStart = (int) (pos - p.pagNumber*p.pageSize)-1;
 				    
 				    
 				    ArrayList<Integer> cellPointer_newP = new ArrayList<>();
@@ -2605,7 +3826,7 @@ public class FileHandler {
 							pos2 = pos2-record.length; // move to the start position to write the record
 							rfile.seek(pos2);
 							rfile.write(record);
-							cellPointer_newP.add((int) (pos2-(newP.pagNumber*FileHandler.pageSize)));
+							cellPointer_newP.add((int) (pos2-(newP.pagNumber*newP.pageSize)));
 							countP++;
 						}
 						else{
@@ -2613,7 +3834,7 @@ public class FileHandler {
 							pos3 = pos3-record.length;
 							rfile.seek(pos3);
 							rfile.write(record);
-							cellPointer_newP2.add((int) (pos3-(newP2.pagNumber*FileHandler.pageSize)));
+							cellPointer_newP2.add((int) (pos3-(newP2.pagNumber*newP2.pageSize)));
 						}
 					}
 					// sort cell pointers
@@ -2650,11 +3871,8 @@ public class FileHandler {
 					writePageHeader(newP2);
 					
 					// build internal cell 
-					HashMap<Integer,Any> tmp_any = new HashMap<>();
-					ORB orb = org.omg.CORBA.ORB.init();
-					Any tmp_any2 = orb .create_any();
-					tmp_any2.insert_long(newP.pagNumber);
-					tmp_any.put(0, tmp_any2);
+					Row tmp_any = new Row(1);
+					tmp_any.setLong(0, 0x06, newP.pagNumber);
 					byte[] internal_record = Utilities.convertoBytes(null, tmp_any, false, pivot);
 					rfile.seek(pos-internal_record.length);
 					rfile.write(internal_record);
@@ -2669,19 +3887,19 @@ public class FileHandler {
 					// write internal node cell pointer
 					long pageEnd_p = scanForPageHeaderEnd(p);
 					rfile.seek(pageEnd_p);
-					rfile.writeShort((int) (pos-internal_record.length-(p.pagNumber*FileHandler.pageSize)));
+					rfile.writeShort((int) (pos-internal_record.length-(p.pagNumber*p.pageSize)));
 				}
 				else{
 					// p is an internal node
 					// original page is the right page, new page is the left one
 					// change the pivot left pointer to the header right pointer of new page and update the pivot with left pointer that points to new page to the parent page
 					
-					Page newP = new Page(this.databasePages);
+					Page newP = new Page(allocatePage());
 					newP.parentPage = p;
 					newP.leaf=false;
 					newP.schemaRoot=false;
 					
-					Page newP2 = new Page(this.databasePages);
+					Page newP2 = new Page(allocatePage());
 					newP2.parentPage = p;
 					newP2.leaf=false;
 					newP2.schemaRoot=false;
@@ -2690,12 +3908,12 @@ public class FileHandler {
 					// find the pivot left pointer value
 					int pivot_leftPointer;
 					if(key2pointers.containsKey(pivot)){
-						long tmp_address = p.pagNumber*FileHandler.pageSize + key2pointers.get(pivot)+1;
+						long tmp_address = p.pagNumber*p.pageSize + key2pointers.get(pivot)+1;
 						rfile.seek(tmp_address);
 						pivot_leftPointer = rfile.readInt();
 					}
 					else{
-						pivot_leftPointer = values.get(0).extract_long();
+						pivot_leftPointer = values.getInt(0);
 					}
 					
 					// copy right pointer
@@ -2708,12 +3926,12 @@ public class FileHandler {
 						rfile.writeByte(1);
 					}
 					
-				    long pos = (p.pagNumber+1)*FileHandler.pageSize-this.uspace; 	 // move to the end of page p 
-				    long pos2 = (newP.pagNumber+1)*FileHandler.pageSize-this.uspace; // move to the end of page newP
-				    long pos3 = (newP2.pagNumber+1)*FileHandler.pageSize-this.uspace; // move to the end of page newP2
-				    newP.cellStart = (int) (pos2 - newP.pagNumber*FileHandler.pageSize)-1;
-				    newP2.cellStart = (int) (pos3 - newP2.pagNumber*FileHandler.pageSize)-1;
-				    p.cellStart = (int) (pos - p.pagNumber*FileHandler.pageSize)-1;
+				    long pos = (p.pagNumber+1)*p.pageSize-this.uspace; 	 // move to the end of page p 
+				    long pos2 = (newP.pagNumber+1)*newP.pageSize-this.uspace; // move to the end of page newP
+				    long pos3 = (newP2.pagNumber+1)*newP2.pageSize-this.uspace; // move to the end of page newP2
+				    newP.cellStart = (int) (pos2 - newP.pagNumber*newP.pageSize)-1;
+				    newP2.cellStart = (int) (pos3 - newP2.pagNumber*newP2.pageSize)-1;
+				    p.cellStart = (int) (pos - p.pagNumber*p.pageSize)-1;
 				    
 				    ArrayList<Integer> cellPointer_newP = new ArrayList<>();
 				    ArrayList<Integer> cellPointer_newP2 = new ArrayList<>();
@@ -2727,7 +3945,7 @@ public class FileHandler {
 							pos2 = pos2-record.length; // move to the start position to write the record
 							rfile.seek(pos2);
 							rfile.write(record);
-							cellPointer_newP.add((int) (pos2-(newP.pagNumber*FileHandler.pageSize)));
+							cellPointer_newP.add((int) (pos2-(newP.pagNumber*newP.pageSize)));
 							countP++;
 						}
 						else if(newKeys[i]>pivot){
@@ -2735,7 +3953,7 @@ public class FileHandler {
 							pos3 = pos3-record.length;
 							rfile.seek(pos3);
 							rfile.write(record);
-							cellPointer_newP2.add((int) (pos3-(newP2.pagNumber*FileHandler.pageSize)));
+							cellPointer_newP2.add((int) (pos3-(newP2.pagNumber*newP2.pageSize)));
 						}
 					}
 					// sort cell pointers
@@ -2775,11 +3993,8 @@ public class FileHandler {
 					
 					
 					// build internal cell 
-					HashMap<Integer,Any> tmp_any = new HashMap<>();
-					ORB orb = org.omg.CORBA.ORB.init();
-					Any tmp_any2 = orb .create_any();
-					tmp_any2.insert_long(newP.pagNumber);
-					tmp_any.put(0, tmp_any2);
+					Row tmp_any = new Row(1);
+					tmp_any.setLong(0, 0x06, newP.pagNumber);
 					byte[] internal_record = Utilities.convertoBytes(null, tmp_any, false, pivot);
 					rfile.seek(pos-internal_record.length);
 					rfile.write(internal_record);
@@ -2793,7 +4008,7 @@ public class FileHandler {
 					writePageHeader(p);
 					long pageEnd_p = scanForPageHeaderEnd(p);
 					rfile.seek(pageEnd_p);
-					rfile.writeShort((int) (pos-internal_record.length-(p.pagNumber*FileHandler.pageSize)));
+					rfile.writeShort((int) (pos-internal_record.length-(p.pagNumber*p.pageSize)));
 				}
 			}
 		}
@@ -2809,8 +4024,8 @@ public class FileHandler {
 	 */
 	
 	public long scanForPointer(int pointer, Page p,FileHandler handler) throws Exception{
-		RandomAccessFile rfile = handler.getRFile();
-		long baseAddress = p.pagNumber*FileHandler.pageSize;
+		PageFile rfile = handler.getRFile();
+		long baseAddress = p.pagNumber*p.pageSize;
 		int[] cellPointers = scanForCellPointers(p,handler);
 		for(int i=0;i<cellPointers.length;i++){
 			long address = baseAddress + cellPointers[i] +1;
@@ -2840,7 +4055,51 @@ public class FileHandler {
 	 *  @param rfile random access file
 	 *  @return byte array of the record
 	 */
-	private byte[] readRecord(int pointer, long baseAddress,boolean leaf,RandomAccessFile rfile) throws IOException{
+	/*
+	 * @return length of the record a cell pointer points to
+	 */
+	private int readRecordLength(int pointer, long baseAddress,boolean leaf,PageFile rfile) throws IOException{
+		if(leaf){
+			rfile.seek(baseAddress+pointer+1);
+			return 1+2+4+rfile.readShort();
+		}
+		return 8+1;
+	}
+	
+	/*
+	 * decode the values of a leaf record
+	 * @param address file address of the record
+	 * @param rfile the page file
+	 */
+	private Row readRecordRow(long address,PageFile rfile) throws IOException{
+		rfile.seek(address+1+2+4);
+		int payloadHeaderSize = rfile.readShort();
+		int[] typeCodes = new int[payloadHeaderSize-2];
+		for(int i=0;i<typeCodes.length;i++)
+			typeCodes[i] = rfile.readByte() & 0xFF;
+		Row row = new Row(typeCodes.length);
+		for(int i=0;i<typeCodes.length;i++)
+			readValue(row,i,typeCodes[i],rfile);
+		return row;
+	}
+	
+	/*
+	 * decode the values of a leaf record held in memory
+	 * @param record the record
+	 */
+	Row readRecordRow(byte[] record) throws IOException{
+		ByteBuffer buffer = ByteBuffer.wrap(record);
+		int[] typeCodes = new int[buffer.getShort(1+2+4)-2];
+		for(int i=0;i<typeCodes.length;i++)
+			typeCodes[i] = record[1+2+4+2+i] & 0xFF;
+		buffer.position(1+2+4+2+typeCodes.length);
+		Row row = new Row(typeCodes.length);
+		for(int i=0;i<typeCodes.length;i++)
+			readValue(row,i,typeCodes[i],buffer);
+		return row;
+	}
+	
+	private byte[] readRecord(int pointer, long baseAddress,boolean leaf,PageFile rfile) throws IOException{
 		byte[] record;
 		if(leaf){
 			rfile.seek(baseAddress+pointer+1);
@@ -2858,65 +4117,88 @@ public class FileHandler {
 		return record;
 	}
 	
+	/*
+	 * get the catalog entry of a table, davisbase_columns is only read if the table is not cached
+	 * @param tableName name of the table
+	 */
+	public Catalog.TableInfo getTableInfo(String tableName) throws Exception{
+		Catalog.TableInfo info = Catalog.get(tableName);
+		if(info != null)
+			return info;
+		
+		// refer to schema table and get the corresponding column list in the order when they are inserted.
+		// read columns table and get all corresponding rows for the table
+		ArrayList<Row> rows = new ArrayList<>();
+		ArrayList<Integer> keys = new ArrayList<>();
+		String cwd = System.getProperty("user.dir");
+		FileHandler column_handler = TableHandles.acquire(cwd+"/davisbase_schemas"+"/davisbase_columns"+"/davisbase_columns.tbl");
+		try{
+			getTableRows(null,null,column_handler,rows,keys,FileHandler.davisbase_column_header,-1,null,true,true,tableName,true);
+		}
+		finally{
+			TableHandles.release(column_handler);
+		}
+		
+		String[] names = new String[rows.size()];
+		HashMap<String,String> constraints;
+		HashMap<String,HashMap<String,String>> result = new HashMap<>();
+		for(int i=0;i<rows.size();i++){
+			Row map = rows.get(i);
+			names[i] = map.getText("COLUMN_NAME").trim();
+			String is_nullable = map.getText("IS_NULLABLE").trim();
+			String data_type = map.getText("DATA_TYPE").trim();
+			String char_max_length = map.getText("CHAR_MAX_LENGTH").trim();
+			String column_key = map.getText("COLUMN_KEY").trim();
+			String column_default = map.getText("COLUMN_DEFAULT").trim();
+			constraints = new HashMap<>();
+			constraints.put("IS_NULLABLE", is_nullable);
+			constraints.put("DATA_TYPE",data_type);
+			constraints.put("CHAR_MAX_LENGTH", char_max_length);
+			constraints.put("COLUMN_KEY", column_key);
+			constraints.put("COLUMN_DEFAULT", column_default);
+			result.put(names[i], constraints);
+		}
+		
+		// check which column is the primary key field
+		int idx = checkPriColumn(rows);
+		boolean priInt = false;
+		if(idx != -1)
+			priInt = checkPriInt(rows.get(idx));
+		
+		info = new Catalog.TableInfo(rows,keys,names,result,idx,priInt);
+		Catalog.put(tableName, info);
+		return info;
+	}
+	
 	/*
 	 * read table information in the order of insertion.
 	 */
 	public void prepareTableSchemaInfo(String tableName) throws Exception{
-		ArrayList<HashMap<String,Any>> rows = new ArrayList<>();
-		ArrayList<HashMap<String,Integer>> typeCodes = new ArrayList<>();
-		ArrayList<Integer> keys = new ArrayList<>();
-		FileHandler[] handler = openSchema();
-		getTableRows(null,null,handler[1],rows,typeCodes,keys,FileHandler.davisbase_column_header,-1,null,true,true,tableName,true);
-		handler[0].close();
-		handler[1].close();
-		this.rows = rows;
-		this.typeCodes = typeCodes;
-		this.keys = keys;
+		Catalog.TableInfo info = getTableInfo(tableName);
+		this.rows = info.getColumns();
+		this.keys = info.getKeys();
 	}
 	
 	public String[] getTableColNames(String tableName) throws Exception{
 		prepareTableSchemaInfo(tableName);
-		String[] names = new String[this.rows.size()];
-		for(int i=0;i<this.rows.size();i++){
-			HashMap<String,Any> map = this.rows.get(i);
-			names[i] = map.get("COLUMN_NAME").extract_string().trim();
-		}
-		return names;
+		return getTableColNames();
 	}
 	
 	public String[] getTableColNames() throws Exception{
 		String[] names = new String[this.rows.size()];
 		for(int i=0;i<this.rows.size();i++){
-			HashMap<String,Any> map = this.rows.get(i);
-			names[i] = map.get("COLUMN_NAME").extract_string().trim();
+			Row map = this.rows.get(i);
+			names[i] = map.getText("COLUMN_NAME").trim();
 		}
 		return names;
 	}
 	
+	/*
+	 * @return column name -> constraints of the column, shared with the catalog and must not be modified
+	 */
 	public HashMap<String,HashMap<String,String>> getTableConstraints(String tableName) throws Exception{
 		prepareTableSchemaInfo(tableName);
-		
-		
-		String[] names = new String[this.rows.size()];
-		HashMap<String,String> constraints;
-		HashMap<String,HashMap<String,String>> result = new HashMap<>();
-		for(int i=0;i<this.rows.size();i++){
-			HashMap<String,Any> map = this.rows.get(i);
-			names[i] = map.get("COLUMN_NAME").extract_string().trim();
-			String is_nullable = map.get("IS_NULLABLE").extract_string().trim();
-			String data_type = map.get("DATA_TYPE").extract_string().trim();
-			String char_max_length = map.get("CHAR_MAX_LENGTH").extract_string().trim();
-			String column_key = map.get("COLUMN_KEY").extract_string().trim();
-			String column_default = map.get("COLUMN_DEFAULT").extract_string().trim();
-			constraints = new HashMap<>();
-			constraints.put("IS_NULLABLE", is_nullable);
-			constraints.put("DATA_TYPE",data_type);
-			constraints.put("CHAR_MAX_LENGTH", char_max_length);
-			constraints.put("COLUMN_KEY", column_key);
-			constraints.put("COLUMN_DEFAULT", column_default);
-			result.put(names[i], constraints);
-		}
-		return result;
+		return getTableInfo(tableName).getConstraints();
 	}
 	
 	
@@ -2924,26 +4206,7 @@ public class FileHandler {
 	 *  check if the key column of a table is integer or not
 	 */
 	public boolean checkPriInt(String tableName) throws Exception{
-		// refer to schema table and get the corresponding column list in the order when they are inserted.
-		// read columns table and get all corresponding rows for the table
-		ArrayList<HashMap<String, Any>> rows = new ArrayList<>();
-		ArrayList<HashMap<String,Integer>> type = new ArrayList<>();
-		ArrayList<Integer> keys = new ArrayList<>();
-		FileHandler[] handler = openSchema();
-		
-		getTableRows(null,null,handler[1],rows,type,keys,FileHandler.davisbase_column_header,-1,"=",true,true,tableName, true);
-					
-		handler[0].close();
-		handler[1].close();
-					
-		// check which column is the primary key field
-		int idx = checkPriColumn(rows);
-		boolean priInt = false;
-		if(idx != -1){
-				HashMap<String,Any> priCol = rows.get(idx);
-				priInt = checkPriInt(priCol);
-		}
-		return priInt;
+		return getTableInfo(tableName).isPriInt();
 	}
 	
 	
@@ -2961,9 +4224,9 @@ public class FileHandler {
 	 * @param cellPointers cell pointers in the page
 	 * @param tableName name of the table 
 	 */
-	private void writeRecord(FileHandler handler, int[] typeCodes, HashMap<Integer,Any> values,long pointerStart, long writeLocation, Page p, int recordLength, boolean schema,int leftPointer,int[] cellPointers,String tableName) throws Exception{
-		RandomAccessFile rfile = handler.getRFile();
-		long baseAddress = p.pagNumber*FileHandler.pageSize;
+	private void writeRecord(FileHandler handler, int[] typeCodes, Row values,long pointerStart, long writeLocation, Page p, int recordLength, boolean schema,int leftPointer,int[] cellPointers,String tableName) throws Exception{
+		PageFile rfile = handler.getRFile();
+		long baseAddress = p.pagNumber*p.pageSize;
 
 		// note that for insertion, it requires to insert the cell first
 		// write cell
@@ -3049,82 +4312,74 @@ public class FileHandler {
 	
 	
 	public int[] getPageKeyVals(int[] pointers,Page p,FileHandler handler) throws IOException{
-		RandomAccessFile rfile = handler.getRFile();
+		ByteBuffer page = pageBuffer(p,handler);
 		int[] keys = new int[pointers.length];
-		long baseAddress = p.pagNumber*FileHandler.pageSize;
 		if(p.leaf){
-			for(int i=0;i<pointers.length;i++){
-				long address = baseAddress+pointers[i]+3;
-				rfile.seek(address);
-				keys[i] = rfile.readInt();
-			}
+			for(int i=0;i<pointers.length;i++)
+				keys[i] = page.getInt(pointers[i]+3);
 		}
 		else{
-			for(int i = 0;i<pointers.length;i++){
-				long address = baseAddress+pointers[i]+5;
-				rfile.seek(address);
-				keys[i] = rfile.readInt();
-			}
+			for(int i = 0;i<pointers.length;i++)
+				keys[i] = page.getInt(pointers[i]+5);
 		}
 		return keys;
 	}
 
-	private void writeValue(int i, int typeCode, HashMap<Integer, Any> values, FileHandler handler) throws IOException  {
-		RandomAccessFile rfile = handler.getRFile();
-		Any any = values.get(i);
+	private void writeValue(int i, int typeCode, Row values, FileHandler handler) throws IOException  {
+		PageFile rfile = handler.getRFile();
 		switch(typeCode){
 		// do not need to write null values
 		case 0x00:
-			 byte val8 = any.extract_octet();
+			 byte val8 = values.getByte(i);
 			 rfile.write(val8);
 			 return;
 		case 0x01:
-			 short val9 = any.extract_short();
+			 short val9 = values.getShort(i);
 			 rfile.writeShort(val9);
 			 return;
 		case 0x02:
-			 int val10 = any.extract_long();
+			 int val10 = values.getInt(i);
 			 rfile.writeInt(val10);
 			 return;
 		case 0x03:
-			 long val11 = any.extract_longlong();
+			 long val11 = values.getLong(i);
 			 rfile.writeLong(val11);
 			 return;
 		case 0x04:
-			byte val = any.extract_octet();
+			byte val = values.getByte(i);
 			rfile.write(val);
 			return;
 		case 0x05:
-			short val1 = any.extract_short();
+			short val1 = values.getShort(i);
 			rfile.writeShort(val1);
 			return;
 		case 0x06:
-			int val2 = any.extract_long();
+			int val2 = values.getInt(i);
 			rfile.writeInt(val2);
 			return;
 		case 0x07:
-			long val3 = any.extract_longlong();
+			long val3 = values.getLong(i);
 			rfile.writeLong(val3);
 			return;
 		case 0x08:
-			float val4 = any.extract_float();
+			float val4 = values.getFloat(i);
 			rfile.writeFloat(val4);
 			return;
 		case 0x09:
-			double val5 = any.extract_double();
+			double val5 = values.getDouble(i);
 			rfile.writeDouble(val5);
 			return;
 		case 0x0A:
-			long val6 = any.extract_longlong();
+			long val6 = values.getLong(i);
 			rfile.writeLong(val6);
 			return;
 		case 0x0B:
-			long val7 = any.extract_longlong();
+			long val7 = values.getLong(i);
 			rfile.writeLong(val7);
 			return;
 		default:
 			if(typeCode>=0x0C){
-				String s = any.extract_string();
+				String s = values.getText(i);
 				
 				if(s!=null){
 					s = Utilities.buildStrWithSize(s,typeCode-0x0C-s.length());
@@ -3139,7 +4394,7 @@ public class FileHandler {
 		}
 	}
 
-	private void writeValue( int typeCode, Any any, RandomAccessFile rfile) throws IOException  {
+	private void writeValue( int typeCode, Row values, int i, PageFile rfile) throws IOException  {
 		switch(typeCode){
 		// do not need to write null values
 		case 0x00:
@@ -3151,40 +4406,40 @@ public class FileHandler {
 		case 0x03:
 			return;
 		case 0x04:
-			byte val = any.extract_octet();
+			byte val = values.getByte(i);
 			rfile.write(val);
 			return;
 		case 0x05:
-			short val1 = any.extract_short();
+			short val1 = values.getShort(i);
 			rfile.writeShort(val1);
 			return;
 		case 0x06:
-			int val2 = any.extract_long();
+			int val2 = values.getInt(i);
 			rfile.writeInt(val2);
 			return;
 		case 0x07:
-			long val3 = any.extract_longlong();
+			long val3 = values.getLong(i);
 			rfile.writeLong(val3);
 			return;
 		case 0x08:
-			float val4 = any.extract_float();
+			float val4 = values.getFloat(i);
 			rfile.writeFloat(val4);
 			return;
 		case 0x09:
-			double val5 = any.extract_double();
+			double val5 = values.getDouble(i);
 			rfile.writeDouble(val5);
 			return;
 		case 0x0A:
-			long val6 = any.extract_longlong();
+			long val6 = values.getLong(i);
 			rfile.writeLong(val6);
 			return;
 		case 0x0B:
-			long val7 = any.extract_longlong();
+			long val7 = values.getLong(i);
 			rfile.writeLong(val7);
 			return;
 		default:
 			if(typeCode>=0x0C){
-				String s = any.extract_string();
+				String s = values.getText(i);
 				
 				if(s!=null){
 					s = Utilities.buildStrWithSize(s,typeCode-0x0C-s.length());
@@ -3205,79 +4460,76 @@ public class FileHandler {
 	public Page getRoot() throws IOException{
 		if(this.databasePages == 1)
 			return null;
+		ByteBuffer page = this.rfile.readPage(1);
+		
 		// read flag
-		this.rfile.seek(FileHandler.pageSize);
-		byte flag = this.rfile.readByte();
+		byte flag = page.get(0x00);
 		
 		// read start of first free block
-		this.rfile.seek(FileHandler.pageSize+0x01);
-		int freeBlockStart = this.rfile.readShort();
+		int freeBlockStart = page.getShort(0x01) & 0xFFFF;
 		
 		// read number of cells on the page
-		this.rfile.seek(FileHandler.pageSize+0x03);
-		int cellNum = this.rfile.readShort();
+		int cellNum = page.getShort(0x03);
 		
 		// read start of cell content area
-		this.rfile.seek(FileHandler.pageSize+0x05);
-		int cellStart = this.rfile.readShort();
+		int cellStart = page.getShort(0x05) & 0xFFFF;
 		
 		// read number of fragment free bytes
-		this.rfile.seek(FileHandler.pageSize+0x07);
-		int fragNum = this.rfile.readByte();
+		int fragNum = page.get(0x07);
 		
 		// read right pointer
 		boolean leaf;
 		int rightPointer;
 		if (flag == 0x05){
-			this.rfile.seek(FileHandler.pageSize+0x08);
-			rightPointer = this.rfile.readInt();
+			rightPointer = page.getInt(0x08);
 			leaf =false;
 		}
 		else{
-			this.rfile.seek(FileHandler.pageSize+0x08);
 			leaf = true;
-			rightPointer = this.rfile.readInt(); // 0 means invalid pointer
+			rightPointer = page.getInt(0x08); // 0 means invalid pointer
 		}
 		
 		Page p = new Page(cellNum,cellStart,fragNum,freeBlockStart,leaf,1,null,rightPointer,false);
+		p.buffer = page;
+		p.bufferVersion = this.rfile.getVersion();
 		return p;
 	}
 	
 	
 	public Page preparePage(int pageNum,FileHandler handler) throws IOException{
-		long baseAddress = pageNum*FileHandler.pageSize;
-		RandomAccessFile rfile = handler.getRFile();
+		PageFile rfile = handler.getRFile();
+		Metrics.add(Metrics.Counter.PAGE_VISITS, 1);
+		
+		// read the whole page, the header and later the cells are decoded from memory
+		ByteBuffer page = rfile.readPage(pageNum);
 		
 		// read page header
 		
 		// read flag
-		rfile.seek(baseAddress);
-		byte flag = rfile.readByte();
+		byte flag = page.get(0x0000);
 		
 		// read firstFreeBlockStart
-		rfile.seek(baseAddress+0x0001);
-		short freeblockStart = rfile.readShort();
+		int freeblockStart = page.getShort(0x0001) & 0xFFFF;
 		
 		// read number of cells
-		rfile.seek(baseAddress+0x0003);
-		short cellNum = rfile.readShort();
+		short cellNum = page.getShort(0x0003);
 		
 		// read cell content area start region
-		rfile.seek(baseAddress+0x0005);
-		short cellStart = rfile.readShort();
+		int cellStart = page.getShort(0x0005) & 0xFFFF;
 		
 		// read fragment free bytes
-		rfile.seek(baseAddress+0x0007);
-		byte fragFreeBytes = rfile.readByte();
+		byte fragFreeBytes = page.get(0x0007);
 		
 		// read page right pointer
-		rfile.seek(baseAddress+0x0008);
-		int rightPointer = rfile.readInt();
+		int rightPointer = page.getInt(0x0008);
 		
 		boolean leaf = false;
 		if(flag == 0x0d)
 			leaf = true;
 		Page p = new Page(cellNum,cellStart,fragFreeBytes,freeblockStart,leaf,pageNum,null,rightPointer,false);
+		p.pageSize = rfile.getPageSize();
+		p.buffer = page;
+		p.bufferVersion = rfile.getVersion();
 		return p;
 	}
 	public void prepareDatabaseHeader() throws IOException{
@@ -3301,6 +4553,35 @@ public class FileHandler {
 			this.fileChangeCounter = firstFileChangeCounter;
 		else
 			this.fileChangeCounter = Math.max(firstFileChangeCounter, secondFileChangeCounter);
+		
+		// get first page of the free page list
+		this.rfile.seek(0x0028);
+		this.firstFreePage = this.rfile.readInt();
+	}
+	
+	/*
+	 * @return number of the page a split writes to, a page freed by a merge if there is one, otherwise a new page at the end of the file
+	 */
+	private int allocatePage() throws IOException{
+		if(this.firstFreePage == 0)
+			return this.databasePages;
+		int pageNum = this.firstFreePage;
+		this.rfile.seek(pageNum*this.pageSize+0x08);
+		this.firstFreePage = this.rfile.readInt();
+		return pageNum;
+	}
+	
+	/*
+	 * put a page no longer used by the tree on the free page list, the list is linked through the right pointers of its pages
+	 * the database header must be written afterwards
+	 * @param pageNum the page
+	 */
+	private void releasePage(int pageNum) throws IOException{
+		this.rfile.seek(pageNum*this.pageSize);
+		this.rfile.write(new byte[this.pageSize]);
+		this.rfile.seek(pageNum*this.pageSize+0x08);
+		this.rfile.writeInt(this.firstFreePage);
+		this.firstFreePage = pageNum;
 	}
 	
 	/*
@@ -3311,37 +4592,34 @@ public class FileHandler {
 		
 			int pagNum = traversePage(null,null,handler.getRoot(),true,true,true,handler,null);
 			ArrayList<String> tableNames = new ArrayList<>();
-			org.omg.CORBA.ORB orb = ORB.init();
+			// table name and schema name of a record
+			Row tmp = new Row(2);
 			Page p = preparePage(pagNum,handler);
 			int nextLeafPage; // next leaf page pointer = 0 -> null
 			do{
 				nextLeafPage = getLeafPagePointer(p,handler.getRFile());
 				if(p.cellNum!=0){
-					long baseAddress = p.pagNumber*FileHandler.pageSize;
 					int[] pointers = scanForCellPointers(p,handler);
+					ByteBuffer page = pageBuffer(p,handler);
 					
 					for(int i=0;i<pointers.length;i++){
 						
 						int length = 0;
 						int length2 = 0;
-						long address = baseAddress+pointers[i];
+						int cell = pointers[i];
 
-						rfile.seek(address+7);
-						int payloadHeaderSize = rfile.readShort();
-						rfile.seek(address+9);			
-						length += (rfile.readByte()-0x0C);
+						int payloadHeaderSize = page.getShort(cell+7);
+						length += (page.get(cell+9)-0x0C);
 						length2 = length;
-						byte typeCode2 = rfile.readByte();
+						byte typeCode2 = page.get(cell+10);
 						length += (typeCode2-0x0C);
-						byte typeCode1 = rfile.readByte();
-						rfile.seek(address+1+2+4+payloadHeaderSize+length);
-						Any tmp = orb.create_any();
-						readValue(tmp,typeCode1,rfile);
-						String rec_tableName = tmp.extract_string().trim();
-						rfile.seek(address+1+2+4+payloadHeaderSize+length2);
-						tmp = orb.create_any();
-						readValue(tmp,typeCode2,rfile);
-						String rec_schemaName = tmp.extract_string().trim();
+						byte typeCode1 = page.get(cell+11);
+						page.position(cell+1+2+4+payloadHeaderSize+length);
+						readValue(tmp,0,typeCode1,page);
+						String rec_tableName = tmp.getText(0).trim();
+						page.position(cell+1+2+4+payloadHeaderSize+length2);
+						readValue(tmp,1,typeCode2,page);
+						String rec_schemaName = tmp.getText(1).trim();
 						if(rec_schemaName.equals(database) && !tableNames.contains(rec_tableName))
 							tableNames.add(rec_tableName);
 					}
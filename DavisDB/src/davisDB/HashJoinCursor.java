@@ -0,0 +1,374 @@
+package davisDB;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/*
+ *  Cursor joining the rows of two cursors on equal values of one column of each, an inner or a left outer join.
+ *  The rows of the build side are kept in a hash table on their join value, then every row of the probe side is joined
+ *  with the build rows of its value, so the rows come in the order of the probe side. When the build rows outgrow
+ *  -Ddavisdb.join.memory bytes (default 16777216) both sides are split by the hash of the join value into PARTITIONS
+ *  temp files and the partitions are joined pair by pair, a pair whose build side outgrows the memory as well is split
+ *  again. A null join value matches no row. A left join is built on its right side, its left rows are probed.
+ */
+public class HashJoinCursor implements Cursor {
+
+	private static long memory = Long.parseLong(System.getProperty("davisdb.join.memory", "16777216"));
+
+	// partitions each side is split into, each split uses 4 more bits of the hash
+	private static final int PARTITIONS = 16;
+	private static final int MAX_DEPTH = 8;
+
+	/*
+	 *  temp file holding the rows of one side of a partition
+	 */
+	private static class Spill{
+		private File file;
+		private DataOutputStream out;
+		private int rows = 0;
+
+		Spill() throws IOException{
+			this.file = File.createTempFile("davisdb-join", ".part");
+			this.file.deleteOnExit();
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file)));
+			Metrics.add(Metrics.Counter.JOIN_PARTITIONS, 1);
+		}
+	}
+
+	/*
+	 *  build and probe rows of a partition, either may be null if that side has no row in it
+	 */
+	private static class Pair{
+		private Spill build;
+		private Spill probe;
+
+		// splits the rows went through, the next split uses the following bits of the hash
+		private int depth;
+
+		Pair(Spill build,Spill probe,int depth){
+			this.build = build;
+			this.probe = probe;
+			this.depth = depth;
+		}
+	}
+
+	private Cursor left;
+	private Cursor right;
+
+	// ordinals of the join columns in the left and the right rows
+	private int leftColumn;
+	private int rightColumn;
+
+	// the hash table holds left rows instead of right rows
+	private boolean buildLeft;
+
+	// left outer join, a left row without a match is returned with null right columns
+	private boolean outer;
+
+	// join values are compared as doubles, one of the columns is real
+	private boolean real;
+
+	// columns of a joined row, the columns of the left rows first
+	private String[] colNames;
+	private int leftSize;
+
+	// column names and number of columns of the build and probe rows, taken from the first row of each
+	private String[] buildNames = null;
+	private int buildSize = 0;
+	private String[] probeNames = null;
+	private int probeSize = 0;
+
+	// build rows in memory by join value and their estimated size
+	private HashMap<Object,ArrayList<Row>> table = new HashMap<>();
+	private long used = 0;
+
+	// probe cursor while nothing was split, null once the rows are in partitions
+	private Cursor probe = null;
+
+	// partitions waiting to be joined, and the probe rows of the partition being joined
+	private ArrayDeque<Pair> pending = new ArrayDeque<>();
+	private DataInputStream probeIn = null;
+	private Spill probeSpill = null;
+	private int probeRemaining = 0;
+
+	// probe row being joined and its build rows
+	private Row probeRow = null;
+	private ArrayList<Row> matches = null;
+	private int matchPos = 0;
+
+	/*
+	 * @param left cursor over the left rows
+	 * @param right cursor over the right rows
+	 * @param leftColumn ordinal of the join column in the left rows
+	 * @param rightColumn ordinal of the join column in the right rows
+	 * @param buildLeft keep the left rows in the hash table, false for a left join
+	 * @param outer left outer join
+	 * @param real the join values are compared as doubles
+	 * @param colNames columns of a joined row
+	 * @param leftSize number of columns of the left rows
+	 */
+	public HashJoinCursor(Cursor left,Cursor right,int leftColumn,int rightColumn,boolean buildLeft,boolean outer,boolean real,
+			String[] colNames,int leftSize){
+		this.left = left;
+		this.right = right;
+		this.leftColumn = leftColumn;
+		this.rightColumn = rightColumn;
+		this.buildLeft = buildLeft && !outer;
+		this.outer = outer;
+		this.real = real;
+		this.colNames = colNames;
+		this.leftSize = leftSize;
+	}
+
+	public static long getMemory(){
+		return memory;
+	}
+
+	/*
+	 * read the build side into the hash table, or into partitions with the probe side if it outgrows the memory
+	 */
+	@Override
+	public void open() throws Exception{
+		Cursor build = this.buildLeft ? this.left : this.right;
+		Cursor probe = this.buildLeft ? this.right : this.left;
+		build.open();
+		Spill[] buildSpills = null;
+		Row row;
+		while((row = build.next()) != null){
+			if(this.buildNames == null){
+				this.buildNames = row.getColNames();
+				this.buildSize = row.size();
+			}
+			buildSpills = add(row,buildSpills,0);
+		}
+		build.close();
+		probe.open();
+		if(buildSpills == null){
+			this.probe = probe;
+			return;
+		}
+		Spill[] probeSpills = new Spill[PARTITIONS];
+		while((row = probe.next()) != null){
+			if(this.probeNames == null){
+				this.probeNames = row.getColNames();
+				this.probeSize = row.size();
+			}
+			spill(probeSpills,row,probeColumn(),0);
+		}
+		probe.close();
+		queue(buildSpills,probeSpills,1);
+	}
+
+	@Override
+	public Row next() throws Exception{
+		while(true){
+			if(this.matches != null && this.matchPos<this.matches.size())
+				return join(this.probeRow,this.matches.get(this.matchPos++));
+			this.matches = null;
+			this.probeRow = nextProbe();
+			if(this.probeRow == null)
+				return null;
+			Object key = key(this.probeRow,probeColumn());
+			this.matches = key == null ? null : this.table.get(key);
+			this.matchPos = 0;
+			if(this.matches == null && this.outer)
+				return join(this.probeRow,null);
+		}
+	}
+
+	@Override
+	public void close() throws Exception{
+		this.left.close();
+		this.right.close();
+		if(this.probeIn != null){
+			this.probeIn.close();
+			this.probeSpill.file.delete();
+			this.probeIn = null;
+		}
+		for(Pair pair : this.pending){
+			if(pair.build != null)
+				pair.build.file.delete();
+			if(pair.probe != null)
+				pair.probe.file.delete();
+		}
+		this.pending.clear();
+		this.table.clear();
+		this.matches = null;
+	}
+
+	/*
+	 * @return a joined row of a left row and a right row, the right columns are null if there is no right row
+	 */
+	static Row join(String[] colNames,int leftSize,Row left,Row right){
+		Row row = new Row(colNames);
+		for(int i=0;i<leftSize;i++)
+			row.copy(i, left, i);
+		for(int i=leftSize;right != null && i<colNames.length;i++)
+			row.copy(i, right, i-leftSize);
+		return row;
+	}
+
+	private Row join(Row probeRow,Row buildRow){
+		return this.buildLeft ? join(this.colNames,this.leftSize,buildRow,probeRow) : join(this.colNames,this.leftSize,probeRow,buildRow);
+	}
+
+	private int buildColumn(){
+		return this.buildLeft ? this.leftColumn : this.rightColumn;
+	}
+
+	private int probeColumn(){
+		return this.buildLeft ? this.rightColumn : this.leftColumn;
+	}
+
+	/*
+	 * add a build row to the hash table, or to the partitions once the hash table outgrew the memory
+	 * @param spills partitions of the build rows, null while they fit in memory
+	 * @param depth splits the row went through
+	 * @return the partitions of the build rows, null while they fit in memory
+	 */
+	private Spill[] add(Row row,Spill[] spills,int depth) throws IOException{
+		Object key = key(row,buildColumn());
+		// a null join value matches no row
+		if(key == null)
+			return spills;
+		if(spills != null){
+			spill(spills,row,buildColumn(),depth);
+			return spills;
+		}
+		ArrayList<Row> rows = this.table.get(key);
+		if(rows == null){
+			rows = new ArrayList<>(1);
+			this.table.put(key, rows);
+			this.used += 64;
+		}
+		rows.add(row);
+		this.used += SortCursor.estimateSize(row);
+		if(this.used<=memory || depth>=MAX_DEPTH)
+			return null;
+		// the rows in memory move to the partitions with the rows still to come
+		spills = new Spill[PARTITIONS];
+		for(ArrayList<Row> list : this.table.values())
+			for(Row r : list)
+				spill(spills,r,buildColumn(),depth);
+		this.table.clear();
+		this.used = 0;
+		return spills;
+	}
+
+	/*
+	 * write a row to the partition of its join value
+	 */
+	private void spill(Spill[] spills,Row row,int column,int depth) throws IOException{
+		Object key = key(row,column);
+		int hash = (key == null ? 0 : key.hashCode())*0x9E3779B9;
+		int i = (hash>>>(4*depth)) & (PARTITIONS-1);
+		if(spills[i] == null)
+			spills[i] = new Spill();
+		row.write(spills[i].out);
+		spills[i].rows++;
+	}
+
+	/*
+	 * close the partitions of a split and queue the pairs that can produce rows
+	 */
+	private void queue(Spill[] buildSpills,Spill[] probeSpills,int depth) throws IOException{
+		for(int i=0;i<PARTITIONS;i++){
+			if(buildSpills[i] != null)
+				buildSpills[i].out.close();
+			if(probeSpills[i] != null)
+				probeSpills[i].out.close();
+			if(probeSpills[i] != null && (buildSpills[i] != null || this.outer))
+				this.pending.add(new Pair(buildSpills[i],probeSpills[i],depth));
+			else if(buildSpills[i] != null)
+				buildSpills[i].file.delete();
+			else if(probeSpills[i] != null)
+				probeSpills[i].file.delete();
+		}
+	}
+
+	/*
+	 * @return the next probe row, from the probe cursor or from the partitions one after the other, null at the end
+	 */
+	private Row nextProbe() throws Exception{
+		if(this.probe != null)
+			return this.probe.next();
+		while(true){
+			if(this.probeIn != null){
+				if(this.probeRemaining>0){
+					this.probeRemaining--;
+					return Row.read(this.probeIn,this.probeNames,this.probeSize);
+				}
+				this.probeIn.close();
+				this.probeSpill.file.delete();
+				this.probeIn = null;
+			}
+			if(!nextPair())
+				return null;
+		}
+	}
+
+	/*
+	 * load the build rows of the next partition into the hash table and start reading its probe rows
+	 * a partition whose build rows outgrow the memory is split again instead
+	 * @return false if no partition is left
+	 */
+	private boolean nextPair() throws IOException{
+		while(!this.pending.isEmpty()){
+			Pair pair = this.pending.poll();
+			this.table.clear();
+			this.used = 0;
+			Spill[] buildSpills = null;
+			if(pair.build != null){
+				DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(pair.build.file)));
+				try{
+					for(int i=0;i<pair.build.rows;i++)
+						buildSpills = add(Row.read(in,this.buildNames,this.buildSize),buildSpills,pair.depth);
+				}
+				finally{
+					in.close();
+					pair.build.file.delete();
+				}
+			}
+			if(buildSpills != null){
+				Spill[] probeSpills = new Spill[PARTITIONS];
+				DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(pair.probe.file)));
+				try{
+					for(int i=0;i<pair.probe.rows;i++)
+						spill(probeSpills,Row.read(in,this.probeNames,this.probeSize),probeColumn(),pair.depth);
+				}
+				finally{
+					in.close();
+					pair.probe.file.delete();
+				}
+				queue(buildSpills,probeSpills,pair.depth+1);
+				continue;
+			}
+			this.probeSpill = pair.probe;
+			this.probeRemaining = pair.probe.rows;
+			this.probeIn = new DataInputStream(new BufferedInputStream(new FileInputStream(pair.probe.file)));
+			return true;
+		}
+		return false;
+	}
+
+	/*
+	 * @return the join value of a row, null for a null column
+	 */
+	private Object key(Row row,int column){
+		if(row.isNull(column))
+			return null;
+		if(row.getTypeCode(column)>=0x0C)
+			return row.getText(column).trim();
+		if(this.real || Row.isReal(row.getTypeCode(column)))
+			return row.getDouble(column);
+		return row.getLong(column);
+	}
+}
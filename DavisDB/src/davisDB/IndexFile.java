@@ -0,0 +1,582 @@
+package davisDB;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+
+/*
+ *  Secondary index of one table column, stored in a .ndx file next to the .tbl file of the table.
+ *  The file is a B+-tree of (column value, row key) entries ordered by value and then by key, so equal values of
+ *  different rows are distinct entries. Leaves are linked from left to right like the leaves of a table file.
+ *  Null values are not indexed, a where condition never matches them.
+ *
+ *  Index Header: first page of the file
+ *  0x0000-0x0013: DavisBase index 1
+ *  0x0014-0x0015: page size, stored like in the database header of a table file
+ *  0x0016-0x0019: page number of the root
+ *  0x001A-: name of the table, name of the column
+ *
+ *  Page Header: first bytes of every other page
+ *  0x00: one-byte flag: 0x02 - interior index b-tree page; 0x0a - leaf index b-tree page
+ *  0x01-0x02: number of cells on the page
+ *  0x03-0x06: right-most pointer, next leaf page of a leaf page (0 if none), right-most child of an interior page
+ *
+ *  Cells follow the header in order.
+ *  leaf cell: type code(1) | value | row key(4)
+ *  interior cell: left child page(4) | type code(1) | value | row key(4), the child holds the entries <= (value, row key)
+ *  value: 8 bytes (integer value or raw bits of a real value) or a 2-byte length followed by the text
+ */
+public class IndexFile {
+
+	private static String magicHeader = "DavisBase index 1";
+
+	private static final byte INTERIOR = 0x02;
+	private static final byte LEAF = 0x0A;
+
+	// page header size
+	private static final int HEADER = 7;
+
+	private PageFile rfile;
+
+	private int pageSize;
+
+	// page number of the root
+	private int root;
+
+	// number of pages in the file
+	private int pages;
+
+	private String tableName;
+
+	private String columnName;
+
+	// ordinal of the indexed column in the table, set by the user of the index
+	private int column = -1;
+
+	/*
+	 *  a decoded page
+	 */
+	private static class Page{
+		private boolean leaf;
+		private int pagNumber;
+		private int rightPointer = 0;
+		private ArrayList<Value> values = new ArrayList<>();
+		private ArrayList<Integer> keys = new ArrayList<>();
+		// left child of each cell, interior pages only
+		private ArrayList<Integer> children = new ArrayList<>();
+
+		public Page(boolean leaf,int pagNumber){
+			this.leaf = leaf;
+			this.pagNumber = pagNumber;
+		}
+	}
+
+	/*
+	 *  result of a page split, the new page holds the entries greater than (value, key)
+	 */
+	private static class Split{
+		private Value value;
+		private int key;
+		private int pagNumber;
+
+		public Split(Value value,int key,int pagNumber){
+			this.value = value;
+			this.key = key;
+			this.pagNumber = pagNumber;
+		}
+	}
+
+	private IndexFile(){
+	}
+
+	/*
+	 * create an empty index
+	 * @param f the .ndx file, must not exist
+	 * @param tableName name of the indexed table
+	 * @param columnName name of the indexed column
+	 * @param pageSize page size of the index, the one of the table file
+	 */
+	public static IndexFile create(File f,String tableName,String columnName,int pageSize) throws IOException{
+		IndexFile index = new IndexFile();
+		index.tableName = tableName;
+		index.columnName = columnName;
+		index.pageSize = pageSize;
+		index.rfile = PageFile.open(f,pageSize);
+		index.root = 1;
+		index.pages = 1;
+		index.writePage(index.allocate(true));
+		index.writeHeader();
+		return index;
+	}
+
+	/*
+	 * open an existing index
+	 * @param f the .ndx file
+	 */
+	public static IndexFile open(File f) throws IOException{
+		IndexFile index = new IndexFile();
+		index.pageSize = FileHandler.readPageSize(f);
+		index.rfile = PageFile.open(f,index.pageSize);
+		index.pages = (int) (index.rfile.length()/index.pageSize);
+		index.readHeader();
+		return index;
+	}
+
+	/*
+	 * read the table and column of every index in a database directory
+	 * @param dir directory of the table files of a database
+	 * @return one entry per .ndx file
+	 */
+	public static ArrayList<Catalog.IndexInfo> listIndexes(File dir) throws IOException{
+		ArrayList<Catalog.IndexInfo> result = new ArrayList<>();
+		File[] files = dir.listFiles();
+		if(files == null)
+			return result;
+		Arrays.sort(files);
+		for(File file : files){
+			String name = file.getName();
+			if(!name.endsWith(".ndx"))
+				continue;
+			IndexFile index = open(file);
+			result.add(new Catalog.IndexInfo(name.substring(0,name.length()-4),index.tableName,index.columnName,file.getPath()));
+			index.close();
+		}
+		return result;
+	}
+
+	public void close() throws IOException{
+		this.rfile.close();
+	}
+
+	public String getTableName(){
+		return this.tableName;
+	}
+
+	public String getColumnName(){
+		return this.columnName;
+	}
+
+	public int getColumn(){
+		return this.column;
+	}
+
+	public void setColumn(int column){
+		this.column = column;
+	}
+
+	private void writeHeader() throws IOException{
+		this.rfile.seek(0);
+		this.rfile.writeUTF(IndexFile.magicHeader);
+		this.rfile.seek(0x14);
+		this.rfile.writeShort(FileHandler.encodePageSize(this.pageSize));
+		this.rfile.writeInt(this.root);
+		writeText(this.tableName);
+		writeText(this.columnName);
+	}
+
+	private void readHeader() throws IOException{
+		this.rfile.seek(0x16);
+		this.root = this.rfile.readInt();
+		this.tableName = readText();
+		this.columnName = readText();
+	}
+
+	private void writeText(String s) throws IOException{
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		this.rfile.writeShort(bytes.length);
+		this.rfile.write(bytes);
+	}
+
+	private String readText() throws IOException{
+		byte[] bytes = new byte[this.rfile.readShort() & 0xFFFF];
+		this.rfile.readFully(bytes);
+		return new String(bytes,StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * compare a column value with another value of the same column
+	 * mirrors the where condition check of FileHandler: reals compare as float or double, text trimmed
+	 */
+	static int compare(Value a,Value b){
+		int typeCode = a.getTypeCode();
+		if(typeCode>=0x0C)
+			return a.getText().trim().compareTo(b.getText().trim());
+		switch(typeCode){
+		case 0x08:
+			return Float.compare(a.getFloat(), b.getFloat());
+		case 0x09:
+			return Double.compare(a.getDouble(), b.getDouble());
+		default:
+			return Long.compare(a.getLong(), b.getLong());
+		}
+	}
+
+	private static int compare(Value a,int keyA,Value b,int keyB){
+		int c = compare(a,b);
+		return c != 0 ? c : Integer.compare(keyA, keyB);
+	}
+
+	private static byte[] textBytes(Value value){
+		return value.getText().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static int valueSize(Value value){
+		if(value.getTypeCode()>=0x0C)
+			return 1+2+textBytes(value).length;
+		return 1+8;
+	}
+
+	private static int cellSize(Page p,int i){
+		return (p.leaf ? 0 : 4)+valueSize(p.values.get(i))+4;
+	}
+
+	private static int size(Page p){
+		int size = HEADER;
+		for(int i=0;i<p.keys.size();i++)
+			size += cellSize(p,i);
+		return size;
+	}
+
+	/*
+	 * an entry must leave room for a split, i.e. at least three entries per page
+	 */
+	private void checkSize(Value value) throws Exception{
+		if(4+valueSize(value)+4>(this.pageSize-HEADER)/3)
+			throw new Exception(String.format("Error 23: value of column %s is too long to be indexed!",this.columnName));
+	}
+
+	private Page allocate(boolean leaf){
+		return new Page(leaf,this.pages++);
+	}
+
+	private Page readPage(int pagNumber) throws IOException{
+		ByteBuffer page = this.rfile.readPage(pagNumber);
+		Page p = new Page(page.get(0) == LEAF,pagNumber);
+		int cellNum = page.getShort(1) & 0xFFFF;
+		p.rightPointer = page.getInt(3);
+		page.position(HEADER);
+		for(int i=0;i<cellNum;i++){
+			if(!p.leaf)
+				p.children.add(page.getInt());
+			int typeCode = page.get() & 0xFF;
+			if(typeCode>=0x0C){
+				byte[] bytes = new byte[page.getShort() & 0xFFFF];
+				page.get(bytes);
+				p.values.add(new Value(typeCode,0,new String(bytes,StandardCharsets.UTF_8)));
+			}
+			else
+				p.values.add(new Value(typeCode,page.getLong(),null));
+			p.keys.add(page.getInt());
+		}
+		return p;
+	}
+
+	private void writePage(Page p) throws IOException{
+		ByteBuffer page = ByteBuffer.allocate(this.pageSize);
+		page.put(p.leaf ? LEAF : INTERIOR);
+		page.putShort((short) p.keys.size());
+		page.putInt(p.rightPointer);
+		for(int i=0;i<p.keys.size();i++){
+			if(!p.leaf)
+				page.putInt(p.children.get(i));
+			Value value = p.values.get(i);
+			page.put((byte) value.getTypeCode());
+			if(value.getTypeCode()>=0x0C){
+				byte[] bytes = textBytes(value);
+				page.putShort((short) bytes.length);
+				page.put(bytes);
+			}
+			else
+				page.putLong(value.getBits());
+			page.putInt(p.keys.get(i));
+		}
+		this.rfile.seek((long) p.pagNumber*this.pageSize);
+		this.rfile.write(page.array());
+	}
+
+	/*
+	 * @return first cell of the page that is >= (value, key), number of cells if there is none
+	 */
+	private static int position(Page p,Value value,int key){
+		int low = 0;
+		int high = p.keys.size();
+		while(low<high){
+			int mid = (low+high)>>>1;
+			if(compare(p.values.get(mid),p.keys.get(mid),value,key)<0)
+				low = mid+1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	private static int child(Page p,int i){
+		return i<p.children.size() ? p.children.get(i) : p.rightPointer;
+	}
+
+	/*
+	 * @return the leaf that holds (value, key) or would hold it
+	 */
+	private Page findLeaf(Value value,int key) throws IOException{
+		Page p = readPage(this.root);
+		while(!p.leaf)
+			p = readPage(child(p,position(p,value,key)));
+		return p;
+	}
+
+	/*
+	 * add an entry, null values are ignored
+	 * @param value value of the indexed column
+	 * @param key row key of the row
+	 */
+	public void insert(Value value,int key) throws Exception{
+		if(value.isNull())
+			return;
+		checkSize(value);
+		Split split = insert(readPage(this.root),value,key);
+		if(split != null){
+			// the root was split, the tree grows by one level
+			Page root = allocate(false);
+			root.children.add(this.root);
+			root.values.add(split.value);
+			root.keys.add(split.key);
+			root.rightPointer = split.pagNumber;
+			writePage(root);
+			this.root = root.pagNumber;
+			writeHeader();
+		}
+	}
+
+	private Split insert(Page p,Value value,int key) throws IOException{
+		int i = position(p,value,key);
+		if(p.leaf){
+			p.values.add(i,value);
+			p.keys.add(i,key);
+		}
+		else{
+			int child = child(p,i);
+			Split split = insert(readPage(child),value,key);
+			if(split == null)
+				return null;
+			// the child keeps the lower half, the cell that pointed to it now points to the new page
+			p.children.add(i,child);
+			p.values.add(i,split.value);
+			p.keys.add(i,split.key);
+			if(i+1<p.children.size())
+				p.children.set(i+1,split.pagNumber);
+			else
+				p.rightPointer = split.pagNumber;
+		}
+		if(size(p)<=this.pageSize){
+			writePage(p);
+			return null;
+		}
+		return split(p);
+	}
+
+	/*
+	 * move the upper half of an overflowing page to a new page
+	 */
+	private Split split(Page p) throws IOException{
+		int n = p.keys.size();
+		int half = size(p)/2;
+		int m = 0;
+		int used = HEADER;
+		while(m<n-1 && used<half)
+			used += cellSize(p,m++);
+		if(m == 0)
+			m = 1;
+		if(!p.leaf && m>n-1)
+			m = n-1;
+
+		Page right = allocate(p.leaf);
+		Split split;
+		if(p.leaf){
+			right.values.addAll(p.values.subList(m,n));
+			right.keys.addAll(p.keys.subList(m,n));
+			right.rightPointer = p.rightPointer;
+			p.rightPointer = right.pagNumber;
+			split = new Split(p.values.get(m-1),p.keys.get(m-1),right.pagNumber);
+		}
+		else{
+			// cell m moves up, its child becomes the right-most child of the left page
+			right.values.addAll(p.values.subList(m+1,n));
+			right.keys.addAll(p.keys.subList(m+1,n));
+			right.children.addAll(p.children.subList(m+1,n));
+			right.rightPointer = p.rightPointer;
+			p.rightPointer = p.children.get(m);
+			split = new Split(p.values.get(m),p.keys.get(m),right.pagNumber);
+		}
+		p.values.subList(m,n).clear();
+		p.keys.subList(m,n).clear();
+		if(!p.leaf)
+			p.children.subList(m,n).clear();
+		writePage(p);
+		writePage(right);
+		return split;
+	}
+
+	/*
+	 * remove an entry, pages are not merged
+	 * @param value value of the indexed column
+	 * @param key row key of the row
+	 */
+	public void delete(Value value,int key) throws IOException{
+		if(value.isNull())
+			return;
+		Page p = findLeaf(value,key);
+		int i = position(p,value,key);
+		if(i<p.keys.size() && compare(p.values.get(i),p.keys.get(i),value,key) == 0){
+			p.values.remove(i);
+			p.keys.remove(i);
+			writePage(p);
+		}
+	}
+
+	/*
+	 * @return true if the index can answer a where condition with this operator
+	 */
+	public static boolean supports(String operator){
+		switch(operator){
+		case "=":
+		case ">":
+		case ">=":
+		case "<":
+		case "<=":
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/*
+	 * find the rows whose column value meets (column operator value)
+	 * @param operator one of the operators accepted by supports
+	 * @param value value in the where condition
+	 * @return row keys of the rows in ascending order
+	 */
+	public int[] search(String operator,Value value) throws Exception{
+		ArrayList<Integer> keys = new ArrayList<>();
+		if(value.isNull())
+			return new int[0];
+		boolean upper = operator.equals("<") || operator.equals("<=");
+		Page p;
+		if(upper){
+			// start at the left-most leaf
+			p = readPage(this.root);
+			while(!p.leaf)
+				p = readPage(child(p,0));
+		}
+		else
+			p = findLeaf(value,Integer.MIN_VALUE);
+
+		boolean done = false;
+		while(!done){
+			for(int i=0;i<p.keys.size() && !done;i++){
+				int c = compare(p.values.get(i),value);
+				if(Utilities.compare(c, 0, operator))
+					keys.add(p.keys.get(i));
+				else if(c>0 && !operator.startsWith(">"))
+					done = true;
+			}
+			if(p.rightPointer == 0)
+				break;
+			p = readPage(p.rightPointer);
+		}
+		int[] result = Utilities.toIntArray(keys.toArray(new Integer[]{}));
+		Arrays.sort(result);
+		return result;
+	}
+
+	/*
+	 * fill an empty index bottom-up from the rows of its table
+	 * @param values value of the indexed column of every row
+	 * @param keys row key of every row
+	 */
+	public void build(ArrayList<Value> values,ArrayList<Integer> keys) throws Exception{
+		ArrayList<Integer> order = new ArrayList<>();
+		for(int i=0;i<values.size();i++){
+			if(values.get(i).isNull())
+				continue;
+			checkSize(values.get(i));
+			order.add(i);
+		}
+		Collections.sort(order,new Comparator<Integer>(){
+			@Override
+			public int compare(Integer i,Integer j){
+				return IndexFile.compare(values.get(i),keys.get(i),values.get(j),keys.get(j));
+			}
+		});
+
+		// fill the leaves from left to right, the first one is the empty root
+		// pages of the current level with the greatest entry below each of them
+		ArrayList<Integer> pages = new ArrayList<>();
+		ArrayList<Value> maxValues = new ArrayList<>();
+		ArrayList<Integer> maxKeys = new ArrayList<>();
+		Page p = readPage(this.root);
+		int used = HEADER;
+		for(int i : order){
+			int cell = valueSize(values.get(i))+4;
+			if(used+cell>this.pageSize){
+				Page next = allocate(true);
+				p.rightPointer = next.pagNumber;
+				writePage(p);
+				pages.add(p.pagNumber);
+				maxValues.add(p.values.get(p.keys.size()-1));
+				maxKeys.add(p.keys.get(p.keys.size()-1));
+				p = next;
+				used = HEADER;
+			}
+			p.values.add(values.get(i));
+			p.keys.add(keys.get(i));
+			used += cell;
+		}
+		writePage(p);
+		pages.add(p.pagNumber);
+		maxValues.add(p.keys.isEmpty() ? null : p.values.get(p.keys.size()-1));
+		maxKeys.add(p.keys.isEmpty() ? 0 : p.keys.get(p.keys.size()-1));
+
+		// build the interior levels on top of the pages below until one page is left
+		while(pages.size()>1){
+			ArrayList<Integer> upPages = new ArrayList<>();
+			ArrayList<Value> upValues = new ArrayList<>();
+			ArrayList<Integer> upKeys = new ArrayList<>();
+			Page parent = allocate(false);
+			parent.rightPointer = pages.get(0);
+			used = HEADER;
+			for(int i=1;i<pages.size();i++){
+				// the right-most child so far gets a cell and page i becomes the right-most child
+				int cell = 4+valueSize(maxValues.get(i-1))+4;
+				if(used+cell>this.pageSize){
+					// the parent is full, it ends with page i-1
+					writePage(parent);
+					upPages.add(parent.pagNumber);
+					upValues.add(maxValues.get(i-1));
+					upKeys.add(maxKeys.get(i-1));
+					parent = allocate(false);
+					used = HEADER;
+				}
+				else{
+					parent.children.add(pages.get(i-1));
+					parent.values.add(maxValues.get(i-1));
+					parent.keys.add(maxKeys.get(i-1));
+					used += cell;
+				}
+				parent.rightPointer = pages.get(i);
+			}
+			writePage(parent);
+			upPages.add(parent.pagNumber);
+			upValues.add(maxValues.get(pages.size()-1));
+			upKeys.add(maxKeys.get(pages.size()-1));
+			pages = upPages;
+			maxValues = upValues;
+			maxKeys = upKeys;
+		}
+		this.root = pages.get(0);
+		writeHeader();
+	}
+}
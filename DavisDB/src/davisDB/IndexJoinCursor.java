@@ -0,0 +1,77 @@
+package davisDB;
+
+/*
+ *  Cursor joining the rows of a cursor with a table on the integer primary key of the table (index nested-loop join).
+ *  For every outer row the record with the join value as its key is read by one descent of the B+-tree of the table,
+ *  see FileHandler.readRowByKey, so the table is not scanned and nothing is kept in memory. The rows come in the order
+ *  of the outer rows. An inner join drops an outer row without a record, a left join returns it with null columns.
+ */
+public class IndexJoinCursor implements Cursor {
+
+	private Cursor outer;
+	private FileHandler handler;
+	private String tableName;
+
+	// column names of the table and the columns decoded from its records, null for every column
+	private String[] tableColNames;
+	private int[] columns;
+
+	// ordinal of the join column in the outer rows
+	private int column;
+
+	// left outer join
+	private boolean left;
+
+	// columns of a joined row, the columns of the outer rows first
+	private String[] colNames;
+	private int leftSize;
+
+	/*
+	 * @param outer cursor over the outer rows
+	 * @param handler file of the table
+	 * @param column ordinal of the join column in the outer rows
+	 * @param left left outer join
+	 * @param colNames columns of a joined row
+	 * @param leftSize number of columns of the outer rows
+	 */
+	public IndexJoinCursor(Cursor outer,FileHandler handler,String tableName,String[] tableColNames,int[] columns,int column,
+			boolean left,String[] colNames,int leftSize){
+		this.outer = outer;
+		this.handler = handler;
+		this.tableName = tableName;
+		this.tableColNames = tableColNames;
+		this.columns = columns;
+		this.column = column;
+		this.left = left;
+		this.colNames = colNames;
+		this.leftSize = leftSize;
+	}
+
+	@Override
+	public void open() throws Exception{
+		this.outer.open();
+	}
+
+	@Override
+	public Row next() throws Exception{
+		Row row;
+		while((row = this.outer.next()) != null){
+			Row match = null;
+			int typeCode = row.getTypeCode(this.column);
+			// a null, text or fractional join value, or one out of the range of an int, matches no key
+			if(!row.isNull(this.column) && typeCode<0x0C){
+				double value = row.getDouble(this.column);
+				if(value == Math.rint(value) && value>=Integer.MIN_VALUE && value<=Integer.MAX_VALUE)
+					match = this.handler.readRowByKey((int) row.getLong(this.column),this.tableName,this.tableColNames,this.columns);
+			}
+			if(match != null || this.left)
+				return HashJoinCursor.join(this.colNames,this.leftSize,row,match);
+		}
+		return null;
+	}
+
+	@Override
+	public void close() throws Exception{
+		this.outer.close();
+	}
+}
@@ -0,0 +1,95 @@
+package davisDB;
+
+/*
+ *  Range of integer primary keys a scan of a table reads, see FileHandler.openCursor and updateDelRecs.
+ *  Each bound is inclusive, exclusive or absent. Keys are ints, so the bounds are kept inclusive: an exclusive bound
+ *  is the inclusive bound next to it. The scan starts at the leaf the lower bound would be stored in and ends with
+ *  the leaf the upper bound would be stored in.
+ */
+public class KeyRange {
+
+	// smallest and largest key of the range, Long.MIN_VALUE and Long.MAX_VALUE if there is no such bound
+	private long low;
+	private long high;
+
+	/*
+	 * @param low lower bound, null for none
+	 * @param lowInclusive the lower bound is in the range
+	 * @param high upper bound, null for none
+	 * @param highInclusive the upper bound is in the range
+	 */
+	public KeyRange(Long low,boolean lowInclusive,Long high,boolean highInclusive){
+		this.low = low == null ? Long.MIN_VALUE : (lowInclusive ? low : low+1);
+		this.high = high == null ? Long.MAX_VALUE : (highInclusive ? high : high-1);
+	}
+
+	/*
+	 * @param operator =, <, <=, > or >=
+	 * @param key the key compared with
+	 * @return the keys meeting key operator value, null for another operator
+	 */
+	public static KeyRange of(String operator,long key){
+		switch(operator){
+		case "=":
+			return new KeyRange(key,true,key,true);
+		case "<":
+			return new KeyRange(null,false,key,false);
+		case "<=":
+			return new KeyRange(null,false,key,true);
+		case ">":
+			return new KeyRange(key,false,null,false);
+		case ">=":
+			return new KeyRange(key,true,null,false);
+		default:
+			return null;
+		}
+	}
+
+	/*
+	 * @return the keys in both ranges
+	 */
+	public KeyRange intersect(KeyRange other){
+		KeyRange range = new KeyRange(null,false,null,false);
+		range.low = Math.max(this.low, other.low);
+		range.high = Math.min(this.high, other.high);
+		return range;
+	}
+
+	public boolean hasLow(){
+		return this.low != Long.MIN_VALUE;
+	}
+
+	public boolean hasHigh(){
+		return this.high != Long.MAX_VALUE;
+	}
+
+	/*
+	 * @return the smallest key of the range, limited to the keys an int can hold
+	 */
+	public int getLow(){
+		return (int) Math.min(Math.max(this.low, Integer.MIN_VALUE), Integer.MAX_VALUE);
+	}
+
+	/*
+	 * @return the largest key of the range, limited to the keys an int can hold
+	 */
+	public int getHigh(){
+		return (int) Math.min(Math.max(this.high, Integer.MIN_VALUE), Integer.MAX_VALUE);
+	}
+
+	/*
+	 * @return true if no int key is in the range
+	 */
+	public boolean isEmpty(){
+		return this.low>this.high || this.low>Integer.MAX_VALUE || this.high<Integer.MIN_VALUE;
+	}
+
+	public boolean contains(long key){
+		return key>=this.low && key<=this.high;
+	}
+
+	@Override
+	public String toString(){
+		return "["+(hasLow() ? String.valueOf(this.low) : "-inf")+", "+(hasHigh() ? String.valueOf(this.high) : "+inf")+"]";
+	}
+}
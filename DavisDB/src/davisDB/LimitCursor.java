@@ -0,0 +1,53 @@
+package davisDB;
+
+/*
+ *  Cursor returning the rows of another cursor after skipping OFFSET of them, at most LIMIT rows.
+ *  Once the last row is returned the input is not asked for another one, so a scan below stops at the leaf that row
+ *  came from instead of reading the rest of the leaf chain.
+ */
+public class LimitCursor implements Cursor {
+
+	private Cursor input;
+	private long offset;
+
+	// rows still to return, -1 for no limit
+	private long remaining;
+
+	/*
+	 * @param input cursor over the rows
+	 * @param offset rows skipped first
+	 * @param limit rows returned at most, -1 for no limit
+	 */
+	public LimitCursor(Cursor input,long offset,long limit){
+		this.input = input;
+		this.offset = offset;
+		this.remaining = limit;
+	}
+
+	@Override
+	public void open() throws Exception{
+		this.input.open();
+	}
+
+	@Override
+	public Row next() throws Exception{
+		if(this.remaining == 0)
+			return null;
+		for(;this.offset>0;this.offset--)
+			if(this.input.next() == null){
+				this.remaining = 0;
+				return null;
+			}
+		Row row = this.input.next();
+		if(row == null)
+			this.remaining = 0;
+		else if(this.remaining>0)
+			this.remaining--;
+		return row;
+	}
+
+	@Override
+	public void close() throws Exception{
+		this.input.close();
+	}
+}
@@ -0,0 +1,110 @@
+package davisDB;
+import java.util.ArrayList;
+
+/*
+ *  Cursor joining the rows of two cursors that come in ascending order of their join columns, an inner or a left
+ *  outer join (sort-merge join without the sort). A table with an integer primary key is read in key order along its
+ *  leaf chain, so two such tables joined on their keys are streamed side by side, each leaf read once. Only the right
+ *  rows of the current join value are kept, one row when the right join column is a key, so the memory does not grow
+ *  with the tables. The rows come in the order of the left rows. A null join value matches no row.
+ */
+public class MergeJoinCursor implements Cursor {
+
+	private Cursor left;
+	private Cursor right;
+
+	// ordinals of the join columns in the left and the right rows
+	private int leftColumn;
+	private int rightColumn;
+
+	// left outer join, a left row without a match is returned with null right columns
+	private boolean outer;
+
+	// columns of a joined row, the columns of the left rows first
+	private String[] colNames;
+	private int leftSize;
+
+	// right rows of the current join value, and the first right row after them, null at the end of the right rows
+	private ArrayList<Row> group = new ArrayList<>();
+	private Row rightRow = null;
+
+	// left row being joined and the next right row of its group to join it with
+	private Row leftRow = null;
+	private int matchPos = 0;
+	private boolean matched = false;
+
+	/*
+	 * @param left cursor over the left rows in ascending order of the left join column
+	 * @param right cursor over the right rows in ascending order of the right join column
+	 * @param leftColumn ordinal of the join column in the left rows
+	 * @param rightColumn ordinal of the join column in the right rows
+	 * @param outer left outer join
+	 * @param colNames columns of a joined row
+	 * @param leftSize number of columns of the left rows
+	 */
+	public MergeJoinCursor(Cursor left,Cursor right,int leftColumn,int rightColumn,boolean outer,String[] colNames,int leftSize){
+		this.left = left;
+		this.right = right;
+		this.leftColumn = leftColumn;
+		this.rightColumn = rightColumn;
+		this.outer = outer;
+		this.colNames = colNames;
+		this.leftSize = leftSize;
+	}
+
+	@Override
+	public void open() throws Exception{
+		this.left.open();
+		this.right.open();
+		this.rightRow = this.right.next();
+	}
+
+	@Override
+	public Row next() throws Exception{
+		while(true){
+			if(this.matched && this.matchPos<this.group.size())
+				return HashJoinCursor.join(this.colNames,this.leftSize,this.leftRow,this.group.get(this.matchPos++));
+			this.matched = false;
+			// an inner join is done once the right rows are, the rest of the left rows is not read
+			if(!this.outer && this.rightRow == null && this.group.isEmpty())
+				return null;
+			this.leftRow = this.left.next();
+			if(this.leftRow == null)
+				return null;
+			if(!this.leftRow.isNull(this.leftColumn)){
+				// the group of a smaller value than the left one is not needed by the following left rows either
+				if(!this.group.isEmpty() && Utilities.compare(this.group.get(0), this.rightColumn, this.leftRow, this.leftColumn)<0)
+					this.group.clear();
+				if(this.group.isEmpty())
+					fill();
+				this.matched = !this.group.isEmpty() && Utilities.compare(this.group.get(0), this.rightColumn, this.leftRow, this.leftColumn) == 0;
+				this.matchPos = 0;
+			}
+			if(!this.matched && this.outer)
+				return HashJoinCursor.join(this.colNames,this.leftSize,this.leftRow,null);
+		}
+	}
+
+	@Override
+	public void close() throws Exception{
+		this.left.close();
+		this.right.close();
+		this.group.clear();
+		this.rightRow = null;
+	}
+
+	/*
+	 * skip the right rows with a smaller join value than the left row and read those with the next value into the group
+	 */
+	private void fill() throws Exception{
+		while(this.rightRow != null && (this.rightRow.isNull(this.rightColumn)
+				|| Utilities.compare(this.rightRow, this.rightColumn, this.leftRow, this.leftColumn)<0))
+			this.rightRow = this.right.next();
+		if(this.rightRow == null)
+			return;
+		this.group.add(this.rightRow);
+		while((this.rightRow = this.right.next()) != null && !this.rightRow.isNull(this.rightColumn)
+				&& Utilities.compare(this.rightRow, this.rightColumn, this.group.get(0), this.rightColumn) == 0)
+			this.group.add(this.rightRow);
+	}
+}
@@ -0,0 +1,182 @@
+package davisDB;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ *  Process-wide counters of the work done by statements, shown by SHOW STATUS.
+ *  Physical page I/O is counted where PageFile.Shared reads or writes the file, so with the mmap backend only the
+ *  logical counters move. Statement latencies are kept per CommandTree.CommandType in histograms with power of two
+ *  microsecond buckets.
+ *  With -Ddavisdb.metrics.file=<path> the counters are also written to the file after a statement, at most once per
+ *  -Ddavisdb.metrics.interval milliseconds (default 1000), one "name value" pair per line.
+ */
+public class Metrics {
+
+	public static enum Counter{
+		PAGES_READ,        // pages read from the disk
+		PAGES_WRITTEN,     // pages written to the disk
+		BYTES_READ,
+		BYTES_WRITTEN,
+		DISK_SEEKS,        // seeks issued on the RandomAccessFile of a table file
+		SEEKS,             // seeks issued by FileHandler on its PageFile
+		PAGE_VISITS,       // pages FileHandler decoded a header of, while descending or following the leaf chain
+		SPLITS,            // page splits of a table B+-tree
+		ROWS_EXAMINED,     // records looked at by getPageRecords
+		ROWS_RETURNED,     // records that met the where condition
+		SORT_RUNS,         // sorted runs ORDER BY wrote to temp files
+		GROUP_PARTITIONS,  // partitions GROUP BY wrote to temp files
+		JOIN_PARTITIONS,   // partitions a hash join wrote to temp files
+		CATALOG_LOOKUPS,
+		CATALOG_MISSES;    // lookups that had to read the schema tables
+
+		public String getName(){
+			return this.name().toLowerCase();
+		}
+	}
+
+	private static AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+
+	// number of latency buckets, bucket i counts statements taking less than 2^i microseconds
+	private static final int BUCKETS = 32;
+
+	// command type -> latencies
+	private static Histogram[] latencies = new Histogram[CommandTree.CommandType.values().length];
+
+	private static String file = System.getProperty("davisdb.metrics.file");
+	private static long interval = Long.parseLong(System.getProperty("davisdb.metrics.interval", "1000"));
+	private static long lastDump = 0;
+
+	/*
+	 *  latencies of one command type
+	 */
+	public static class Histogram{
+		private long[] buckets = new long[BUCKETS];
+		private long count = 0;
+		private long total = 0;
+		private long max = 0;
+
+		private synchronized void add(long micros){
+			int bucket = Math.min(64-Long.numberOfLeadingZeros(micros), BUCKETS-1);
+			this.buckets[bucket]++;
+			this.count++;
+			this.total += micros;
+			this.max = Math.max(this.max, micros);
+		}
+
+		/*
+		 * @param p fraction of the statements, e.g. 0.99
+		 * @return upper bound in microseconds of the bucket holding the p-quantile
+		 */
+		public synchronized long quantile(double p){
+			long rank = (long) Math.ceil(p*this.count);
+			long seen = 0;
+			for(int i=0;i<BUCKETS;i++){
+				seen += this.buckets[i];
+				if(seen>=rank && seen>0)
+					return Math.min(1L<<i, this.max);
+			}
+			return this.max;
+		}
+
+		public synchronized long getCount(){
+			return this.count;
+		}
+
+		public synchronized long getTotal(){
+			return this.total;
+		}
+
+		public synchronized long getMax(){
+			return this.max;
+		}
+	}
+
+	static{
+		for(int i=0;i<latencies.length;i++)
+			latencies[i] = new Histogram();
+	}
+
+	public static void add(Counter counter,long n){
+		counters.addAndGet(counter.ordinal(), n);
+	}
+
+	public static long get(Counter counter){
+		return counters.get(counter.ordinal());
+	}
+
+	/*
+	 * @param typeCode code of the command type, see CommandTree.CommandType
+	 * @param nanos time the statement took
+	 */
+	public static void recordStatement(int typeCode,long nanos){
+		if(typeCode>=0 && typeCode<latencies.length)
+			latencies[typeCode].add(nanos/1000);
+	}
+
+	/*
+	 * @return every counter and the latencies of every command type that ran, in a fixed order
+	 */
+	public static LinkedHashMap<String,Long> snapshot(){
+		LinkedHashMap<String,Long> values = new LinkedHashMap<>();
+		for(Counter counter : Counter.values())
+			values.put(counter.getName(), get(counter));
+		BufferPool pool = BufferPool.getInstance();
+		values.put("buffer_pool_hits", pool.getHits());
+		values.put("buffer_pool_misses", pool.getMisses());
+		values.put("buffer_pool_evictions", pool.getEvictions());
+		values.put("buffer_pool_write_backs", pool.getWriteBacks());
+		WriteAheadLog log = WriteAheadLog.getOpened();
+		if(log != null){
+			values.put("wal_commits", log.getCommits());
+			values.put("wal_syncs", log.getSyncs());
+			values.put("wal_checkpoints", log.getCheckpoints());
+			values.put("wal_logged_pages", log.getLoggedPages());
+			values.put("wal_logged_bytes", log.getLoggedBytes());
+			values.put("wal_size", log.getSize());
+		}
+		for(CommandTree.CommandType type : CommandTree.CommandType.values()){
+			Histogram h = latencies[type.getCode()];
+			if(h.getCount() == 0)
+				continue;
+			String name = "latency_us."+type.name().toLowerCase();
+			values.put(name+".count", h.getCount());
+			values.put(name+".total", h.getTotal());
+			values.put(name+".p50", h.quantile(0.50));
+			values.put(name+".p99", h.quantile(0.99));
+			values.put(name+".max", h.getMax());
+		}
+		return values;
+	}
+
+	/*
+	 * write the counters to the file given by davisdb.metrics.file
+	 * @param force write even if the last write is more recent than the interval
+	 */
+	public static synchronized void dump(boolean force) throws IOException{
+		if(file == null)
+			return;
+		long now = System.currentTimeMillis();
+		if(!force && now-lastDump<interval)
+			return;
+		lastDump = now;
+		// written aside and renamed, so a reader never sees half a file
+		File target = new File(file);
+		File tmp = new File(file+".tmp");
+		PrintWriter writer = new PrintWriter(new FileWriter(tmp));
+		try{
+			for(java.util.Map.Entry<String,Long> entry : snapshot().entrySet())
+				writer.println(entry.getKey()+" "+entry.getValue());
+		}
+		finally{
+			writer.close();
+		}
+		if(!tmp.renameTo(target)){
+			target.delete();
+			tmp.renameTo(target);
+		}
+	}
+}
@@ -0,0 +1,572 @@
+package davisDB;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+import davisDB.BufferPool.Frame;
+
+/*
+ *  Random access view of a .tbl file.
+ *  It keeps the RandomAccessFile style (seek + readXxx/writeXxx) so FileHandler code stays the same.
+ *
+ *  Two storage backends, selected at startup with -Ddavisdb.io=raf|mmap (default raf):
+ *  raf  - pages are served by the process-wide BufferPool, a read only reaches the disk when the page is not cached
+ *         and writes are kept in the pool until flushed.
+ *  mmap - the file is mapped with FileChannel.map and values are read and written with absolute gets/puts on the
+ *         MappedByteBuffer, the mapping grows in chunks of -Ddavisdb.mmap.chunk pages (default 64) as the file grows.
+ *
+ *  Every handler owns its own PageFile (own file pointer), handlers opening the same file share one PageFile.Shared.
+ */
+public class PageFile {
+
+	public static enum Backend{
+		RAF,MMAP;
+
+		public static Backend parse(String name){
+			if(name.toLowerCase().trim().equals("mmap"))
+				return MMAP;
+			return RAF;
+		}
+	}
+
+	// storage backend used for files opened from now on
+	private static Backend backend = Backend.parse(System.getProperty("davisdb.io", "raf"));
+
+	// growth of a mapping in pages
+	private static int mapChunk = Integer.parseInt(System.getProperty("davisdb.mmap.chunk", "64"));
+
+	// canonical path -> shared file state, kept after close so cached pages survive between statements
+	private static HashMap<String,Shared> files = new HashMap<>();
+
+	// next file id
+	private static int nextId = 1;
+
+	/*
+	 *  state shared by all handlers of one file
+	 */
+	static class Shared{
+		private int id;
+		private String path;
+		private File f;
+		private RandomAccessFile raf = null;
+		private Backend backend;
+		// mapping of the file, mmap backend only
+		private MappedByteBuffer map = null;
+		private int pageSize;
+		// logical file length, including pages still only in the pool
+		private long length;
+		private int refCount = 0;
+		// incremented on every write, tells whether a page read with readPage is still current
+		private long version = 0;
+
+		public Shared(int id,File f,String path,int pageSize,Backend backend){
+			this.id = id;
+			this.f = f;
+			this.path = path;
+			this.pageSize = pageSize;
+			this.backend = backend;
+		}
+
+		public int getId(){
+			return this.id;
+		}
+
+		public int getPageSize(){
+			return this.pageSize;
+		}
+
+		public String getPath(){
+			return this.path;
+		}
+
+		public long getLength(){
+			return this.length;
+		}
+
+		private void open() throws IOException{
+			this.raf = new RandomAccessFile(this.f,"rw");
+			this.length = Math.max(this.length, this.raf.length());
+			if(this.backend == Backend.MMAP)
+				map(this.length);
+		}
+
+		/*
+		 * (re)map the file so that at least size bytes are mapped, rounded up to whole chunks
+		 */
+		private void map(long size) throws IOException{
+			long chunk = (long)mapChunk*this.pageSize;
+			long mapSize = Math.max(chunk, ((size+chunk-1)/chunk)*chunk);
+			if(mapSize>Integer.MAX_VALUE)
+				throw new IOException("Error 18: file is too large to be memory mapped!");
+			if(this.map != null)
+				this.map.force();
+			this.map = this.raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, mapSize);
+		}
+
+		/*
+		 * @return the mapping, grown so that it covers the first size bytes
+		 */
+		private MappedByteBuffer mapping(long size) throws IOException{
+			if(size>this.map.capacity())
+				map(size);
+			return this.map;
+		}
+
+		/*
+		 * write the mapping back and cut the chunk padding off the end of the file
+		 */
+		private void unmap() throws IOException{
+			this.map.force();
+			this.map = null;
+			try{
+				this.raf.setLength(this.length);
+			}
+			catch(IOException e){
+				// some platforms refuse to truncate a file that is still mapped, the padding is zero and harmless
+			}
+		}
+
+		/*
+		 * load a page from the disk, bytes beyond the end of the file are zero
+		 */
+		public void readPage(int pageNumber,byte[] page) throws IOException{
+			long address = (long)pageNumber*this.pageSize;
+			long fileLength = this.raf.length();
+			int n = 0;
+			if(address<fileLength){
+				n = (int) Math.min(this.pageSize, fileLength-address);
+				this.raf.seek(address);
+				this.raf.readFully(page,0,n);
+				Metrics.add(Metrics.Counter.DISK_SEEKS, 1);
+				Metrics.add(Metrics.Counter.PAGES_READ, 1);
+				Metrics.add(Metrics.Counter.BYTES_READ, n);
+			}
+			for(int i=n;i<page.length;i++)
+				page[i] = 0;
+		}
+
+		/*
+		 * open the file for a checkpoint of the write-ahead log if no handler has it open
+		 * @return the file was opened and must be closed with closeForWrite
+		 */
+		public boolean openForWrite() throws IOException{
+			if(this.raf != null)
+				return false;
+			this.raf = new RandomAccessFile(this.f,"rw");
+			return true;
+		}
+
+		public void closeForWrite() throws IOException{
+			this.raf.close();
+			this.raf = null;
+		}
+
+		/*
+		 * force the written pages to the disk
+		 */
+		public void sync() throws IOException{
+			this.raf.getFD().sync();
+		}
+
+		/*
+		 * write a page back to the disk, never beyond the logical end of the file
+		 */
+		public void writePage(int pageNumber,byte[] page) throws IOException{
+			long address = (long)pageNumber*this.pageSize;
+			if(address>=this.length)
+				return;
+			int n = (int) Math.min(this.pageSize, this.length-address);
+			this.raf.seek(address);
+			this.raf.write(page,0,n);
+			Metrics.add(Metrics.Counter.DISK_SEEKS, 1);
+			Metrics.add(Metrics.Counter.PAGES_WRITTEN, 1);
+			Metrics.add(Metrics.Counter.BYTES_WRITTEN, n);
+		}
+	}
+
+	// shared state of the file
+	private Shared shared;
+
+	// buffer pool
+	private BufferPool pool;
+
+	// file pointer of this handler
+	private long pos = 0;
+
+	// closed or not
+	private boolean closed = false;
+
+	// buffer and pinned frame of the current access
+	private ByteBuffer buf = null;
+	private Frame frame = null;
+
+	private PageFile(Shared shared){
+		this.shared = shared;
+		this.pool = BufferPool.getInstance();
+	}
+
+	/*
+	 * open a file through the buffer pool, the file is created if it does not exist
+	 * @param f file to open
+	 * @param pageSize page size of the file
+	 */
+	public static synchronized PageFile open(File f,int pageSize) throws IOException{
+		// the first file opened by the process replays the write-ahead log
+		WriteAheadLog.getInstance();
+		String path = f.getCanonicalPath();
+		Shared shared = files.get(path);
+		if(shared != null && shared.refCount == 0 && (!f.exists() || shared.pageSize != pageSize || shared.backend != backend)){
+			// the file was deleted or recreated behind our back, cached pages are stale
+			BufferPool.getInstance().discard(shared);
+			files.remove(path);
+			shared = null;
+		}
+		if(shared == null){
+			shared = new Shared(nextId++,f,path,pageSize,backend);
+			files.put(path, shared);
+		}
+		if(shared.refCount == 0)
+			shared.open();
+		shared.refCount++;
+		return new PageFile(shared);
+	}
+
+	/*
+	 * @param f the file
+	 * @return page size of the file if a handler currently has it open or its pages are still in the write-ahead log, 0 otherwise
+	 */
+	public static synchronized int getOpenPageSize(File f) throws IOException{
+		WriteAheadLog log = WriteAheadLog.getInstance();
+		Shared shared = files.get(f.getCanonicalPath());
+		if(shared != null && (shared.refCount>0 || (log != null && f.exists() && log.holds(shared))))
+			return shared.pageSize;
+		return 0;
+	}
+
+	/*
+	 * forget a file and all its cached pages, call it before or after the file is deleted
+	 * @param f the deleted file
+	 */
+	public static synchronized void invalidate(File f) throws IOException{
+		String path = f.getCanonicalPath();
+		Shared shared = files.remove(path);
+		if(shared != null){
+			BufferPool.getInstance().discard(shared);
+			shared.map = null;
+			if(shared.raf != null){
+				shared.raf.close();
+				shared.raf = null;
+			}
+			shared.refCount = 0;
+		}
+	}
+
+	/*
+	 * write back every dirty page of every open file, with the write-ahead log the changes are committed and checkpointed
+	 */
+	public static synchronized void flushAll() throws IOException{
+		WriteAheadLog log = WriteAheadLog.getInstance();
+		if(log != null){
+			log.commit();
+			log.checkpoint();
+		}
+		BufferPool.getInstance().flushAll();
+		for(Shared shared : files.values())
+			if(shared.map != null)
+				shared.map.force();
+	}
+
+	/*
+	 * select the storage backend of files opened from now on
+	 */
+	public static synchronized void setBackend(Backend backend){
+		PageFile.backend = backend;
+	}
+
+	public static synchronized Backend getBackend(){
+		return PageFile.backend;
+	}
+
+	public void seek(long pos) throws IOException{
+		if(pos<0)
+			throw new IOException("Negative seek offset");
+		Metrics.add(Metrics.Counter.SEEKS, 1);
+		this.pos = pos;
+	}
+
+	public long getFilePointer(){
+		return this.pos;
+	}
+
+	public long length(){
+		return this.shared.length;
+	}
+
+	public int getPageSize(){
+		return this.shared.pageSize;
+	}
+
+	/*
+	 * write back dirty pages of this file
+	 */
+	public void flush() throws IOException{
+		synchronized(PageFile.class){
+			if(this.shared.map != null)
+				this.shared.map.force();
+			else
+				this.pool.flush(this.shared);
+		}
+	}
+
+	/*
+	 * release this handler, dirty pages are written back when the last handler of the file is closed
+	 */
+	public void close() throws IOException{
+		if(this.closed)
+			return;
+		this.closed = true;
+		synchronized(PageFile.class){
+			Shared shared = this.shared;
+			if(shared.refCount>0)
+				shared.refCount--;
+			if(shared.refCount == 0 && shared.raf != null){
+				if(shared.map != null)
+					shared.unmap();
+				else
+					this.pool.flush(shared);
+				shared.raf.close();
+				shared.raf = null;
+			}
+		}
+	}
+
+	/*
+	 * make n bytes from the file pointer accessible in this.buf
+	 * @return index of the file pointer in this.buf, -1 if the bytes cross a page boundary of a pooled file
+	 */
+	private int acquire(int n,boolean write) throws IOException{
+		if(!write && this.pos+n>this.shared.length)
+			throw new EOFException();
+		if(this.shared.map != null){
+			this.buf = this.shared.mapping(this.pos+n);
+			return (int) this.pos;
+		}
+		int offset = (int) (this.pos%this.shared.pageSize);
+		if(offset+n>this.shared.pageSize)
+			return -1;
+		this.frame = this.pool.pin(this.shared, (int) (this.pos/this.shared.pageSize));
+		this.buf = this.frame.getData();
+		return offset;
+	}
+
+	/*
+	 * end the current access and move the file pointer past n bytes
+	 */
+	private void release(int n,boolean write){
+		if(this.frame != null){
+			this.pool.unpin(this.frame, write);
+			this.frame = null;
+		}
+		this.buf = null;
+		this.pos += n;
+		if(write){
+			this.shared.version++;
+			if(this.pos>this.shared.length)
+				this.shared.length = this.pos;
+		}
+	}
+
+	/*
+	 * read a whole page at once, values are then decoded from memory without further I/O
+	 * the mmap backend returns a live view of the mapping, the pooled backend a copy of the frame
+	 * @param pageNumber page to read
+	 * @return the page content, index 0 is the first byte of the page
+	 */
+	public ByteBuffer readPage(int pageNumber) throws IOException{
+		long address = (long)pageNumber*this.shared.pageSize;
+		if(address>=this.shared.length)
+			throw new EOFException();
+		if(this.shared.map != null){
+			ByteBuffer view = this.shared.mapping(address+this.shared.pageSize).duplicate();
+			view.position((int) address);
+			view.limit((int) address+this.shared.pageSize);
+			return view.slice();
+		}
+		Frame frame = this.pool.pin(this.shared, pageNumber);
+		ByteBuffer page = ByteBuffer.allocate(this.shared.pageSize);
+		System.arraycopy(frame.getData().array(), 0, page.array(), 0, this.shared.pageSize);
+		this.pool.unpin(frame, false);
+		return page;
+	}
+
+	/*
+	 * @return write version of the file, changes whenever the file is modified
+	 */
+	public long getVersion(){
+		return this.shared.version;
+	}
+
+	public void readFully(byte[] b) throws IOException{
+		readFully(b,0,b.length);
+	}
+
+	public void readFully(byte[] b,int off,int len) throws IOException{
+		if(this.pos+len>this.shared.length)
+			throw new EOFException();
+		while(len>0){
+			// copy at most up to the end of the current page
+			int n = Math.min(len, this.shared.pageSize-(int) (this.pos%this.shared.pageSize));
+			int idx = acquire(n,false);
+			for(int i=0;i<n;i++)
+				b[off+i] = this.buf.get(idx+i);
+			release(n,false);
+			off += n;
+			len -= n;
+		}
+	}
+
+	public void write(byte[] b) throws IOException{
+		write(b,0,b.length);
+	}
+
+	public void write(byte[] b,int off,int len) throws IOException{
+		while(len>0){
+			int n = Math.min(len, this.shared.pageSize-(int) (this.pos%this.shared.pageSize));
+			int idx = acquire(n,true);
+			for(int i=0;i<n;i++)
+				this.buf.put(idx+i, b[off+i]);
+			release(n,true);
+			off += n;
+			len -= n;
+		}
+	}
+
+	// the fixed size readers and writers use absolute gets/puts unless the value crosses a page boundary
+
+	public byte readByte() throws IOException{
+		int idx = acquire(1,false);
+		byte val = this.buf.get(idx);
+		release(1,false);
+		return val;
+	}
+
+	public short readShort() throws IOException{
+		int idx = acquire(2,false);
+		if(idx<0){
+			byte[] b = new byte[2];
+			readFully(b);
+			return ByteBuffer.wrap(b).getShort();
+		}
+		short val = this.buf.getShort(idx);
+		release(2,false);
+		return val;
+	}
+
+	public int readInt() throws IOException{
+		int idx = acquire(4,false);
+		if(idx<0){
+			byte[] b = new byte[4];
+			readFully(b);
+			return ByteBuffer.wrap(b).getInt();
+		}
+		int val = this.buf.getInt(idx);
+		release(4,false);
+		return val;
+	}
+
+	public long readLong() throws IOException{
+		int idx = acquire(8,false);
+		if(idx<0){
+			byte[] b = new byte[8];
+			readFully(b);
+			return ByteBuffer.wrap(b).getLong();
+		}
+		long val = this.buf.getLong(idx);
+		release(8,false);
+		return val;
+	}
+
+	public float readFloat() throws IOException{
+		return Float.intBitsToFloat(readInt());
+	}
+
+	public double readDouble() throws IOException{
+		return Double.longBitsToDouble(readLong());
+	}
+
+	public void write(int b) throws IOException{
+		writeByte(b);
+	}
+
+	public void writeByte(int v) throws IOException{
+		int idx = acquire(1,true);
+		this.buf.put(idx, (byte) v);
+		release(1,true);
+	}
+
+	public void writeShort(int v) throws IOException{
+		int idx = acquire(2,true);
+		if(idx<0){
+			write(ByteBuffer.allocate(2).putShort((short) v).array());
+			return;
+		}
+		this.buf.putShort(idx, (short) v);
+		release(2,true);
+	}
+
+	public void writeInt(int v) throws IOException{
+		int idx = acquire(4,true);
+		if(idx<0){
+			write(ByteBuffer.allocate(4).putInt(v).array());
+			return;
+		}
+		this.buf.putInt(idx, v);
+		release(4,true);
+	}
+
+	public void writeLong(long v) throws IOException{
+		int idx = acquire(8,true);
+		if(idx<0){
+			write(ByteBuffer.allocate(8).putLong(v).array());
+			return;
+		}
+		this.buf.putLong(idx, v);
+		release(8,true);
+	}
+
+	public void writeFloat(float v) throws IOException{
+		writeInt(Float.floatToIntBits(v));
+	}
+
+	public void writeDouble(double v) throws IOException{
+		writeLong(Double.doubleToLongBits(v));
+	}
+
+	/*
+	 * write the low byte of every character, same as RandomAccessFile.writeBytes
+	 */
+	public void writeBytes(String s) throws IOException{
+		byte[] b = new byte[s.length()];
+		for(int i=0;i<b.length;i++)
+			b[i] = (byte) s.charAt(i);
+		write(b);
+	}
+
+	/*
+	 * write a modified UTF-8 string preceded by its 2-byte length, same as RandomAccessFile.writeUTF
+	 */
+	public void writeUTF(String s) throws IOException{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeUTF(s);
+		out.flush();
+		write(bytes.toByteArray());
+	}
+}
@@ -0,0 +1,237 @@
+package davisDB;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ *  Access path of a SELECT, UPDATE or DELETE, printed by EXPLAIN.
+ *  FileHandler fills it in when it picks the leaves to read: the access path, the leaf range, the estimated number
+ *  of pages and how the where condition is checked. EXPLAIN ANALYZE runs the statement as well and adds what was
+ *  measured: pages visited, rows examined and emitted, and the time of each phase.
+ */
+public class Plan {
+
+	public static enum Access{
+		FULL_SCAN("full scan, leftmost leaf to the end of the leaf chain"),
+		KEY_RANGE("primary key range, from the leaf of the lower bound (or the leftmost leaf) to the leaf of the upper bound (or the end of the chain)"),
+		INDEX("secondary index lookup, only the leaves holding matching rows"),
+		SCHEMA("schema table scan"),
+		CATALOG("row count kept in davisbase_tables, no leaf is read");
+
+		private String description;
+
+		private Access(String description){
+			this.description = description;
+		}
+
+		public String getDescription(){
+			return this.description;
+		}
+	}
+
+	// run the statement as well
+	private boolean analyze;
+
+	private String tableName;
+	private Access access = null;
+	private int treeHeight = 0;
+	private int startPage = 0;
+
+	// last leaf read, 0 for the end of the leaf chain
+	private int lastPage = 0;
+
+	// keys read by a KEY_RANGE scan
+	private String keyRange = null;
+
+	// leaves and pages expected to be read, interior pages of a descent included
+	private int leaves = 0;
+	private int estimatedPages = 0;
+
+	private String predicate = "none";
+
+	// columns decoded from the records emitted, null if not known
+	private String columns = null;
+
+	// columns of an ORDER BY, null if there is none
+	private String order = null;
+
+	// rows of an ORDER BY ... LIMIT kept while sorting, -1 to sort every row
+	private long bound = -1;
+
+	// LIMIT and OFFSET, null if there is none
+	private String limit = null;
+
+	// GROUP BY of an aggregated query, null if the query does not aggregate
+	private String aggregate = null;
+
+	// tables joined to the first table and how, in the order they are joined
+	private ArrayList<String> joins = new ArrayList<>();
+
+	// counters and phase times measured by EXPLAIN ANALYZE
+	private LinkedHashMap<String,Long> actual = new LinkedHashMap<>();
+	private LinkedHashMap<String,Long> phases = new LinkedHashMap<>();
+
+	// Metrics at the start of the statement
+	private LinkedHashMap<String,Long> start = null;
+
+	public Plan(boolean analyze){
+		this.analyze = analyze;
+	}
+
+	public boolean isAnalyze(){
+		return this.analyze;
+	}
+
+	public Access getAccess(){
+		return this.access;
+	}
+
+	/*
+	 * @param tableName the table
+	 * @param access the access path
+	 * @param treeHeight levels of the B+-tree
+	 * @param startPage first leaf read
+	 * @param lastPage last leaf read, 0 for the end of the leaf chain
+	 * @param leaves leaves expected to be read
+	 */
+	public void setAccess(String tableName,Access access,int treeHeight,int startPage,int lastPage,int leaves){
+		this.tableName = tableName;
+		this.access = access;
+		this.treeHeight = treeHeight;
+		this.startPage = startPage;
+		this.lastPage = lastPage;
+		this.leaves = leaves;
+		// a scan descends once and follows the leaf chain, an index descends to each of its leaves
+		if(leaves == 0)
+			this.estimatedPages = 0;
+		else if(access == Access.INDEX)
+			this.estimatedPages = leaves*Math.max(treeHeight, 1);
+		else
+			this.estimatedPages = leaves+(access == Access.FULL_SCAN || access == Access.SCHEMA ? 0 : Math.max(treeHeight-1, 0));
+	}
+
+	public void setKeyRange(String keyRange){
+		this.keyRange = keyRange;
+	}
+
+	public void setPredicate(String predicate){
+		this.predicate = predicate;
+	}
+
+	public void setColumns(String columns){
+		this.columns = columns;
+	}
+
+	/*
+	 * @param bound rows kept while sorting, -1 for every row
+	 */
+	public void setOrder(String order,long bound){
+		this.order = order;
+		this.bound = bound;
+	}
+
+	public void setLimit(String limit){
+		this.limit = limit;
+	}
+
+	public void setAggregate(String aggregate){
+		this.aggregate = aggregate;
+	}
+
+	public void addJoin(String join){
+		this.joins.add(join);
+	}
+
+	/*
+	 * @param phase name of the phase, e.g. plan or read
+	 * @param nanos time the phase took
+	 */
+	public void addPhase(String phase,long nanos){
+		Long before = this.phases.get(phase);
+		this.phases.put(phase, (before == null ? 0 : before)+nanos);
+	}
+
+	/*
+	 * @return nanoseconds spent in the phase so far
+	 */
+	public long getPhase(String phase){
+		Long nanos = this.phases.get(phase);
+		return nanos == null ? 0 : nanos;
+	}
+
+	public void addActual(String name,long value){
+		this.actual.put(name, value);
+	}
+
+	/*
+	 * remember the counters of Metrics before the statement runs
+	 */
+	public void begin(){
+		this.start = Metrics.snapshot();
+	}
+
+	/*
+	 * record the counters of Metrics that moved while the statement ran
+	 */
+	public void end(){
+		if(this.start == null)
+			return;
+		LinkedHashMap<String,Long> now = Metrics.snapshot();
+		// a consumer that counted the rows itself knows better than getPageRecords
+		Long emitted = this.actual.remove("rows emitted");
+		addActual("pages visited", now.get("page_visits")-this.start.get("page_visits"));
+		addActual("pages read from disk", now.get("pages_read")-this.start.get("pages_read"));
+		addActual("rows examined", now.get("rows_examined")-this.start.get("rows_examined"));
+		addActual("rows emitted", emitted != null ? emitted : now.get("rows_returned")-this.start.get("rows_returned"));
+		if(!this.joins.isEmpty())
+			addActual("join partitions", now.get("join_partitions")-this.start.get("join_partitions"));
+		if(this.aggregate != null)
+			addActual("group partitions", now.get("group_partitions")-this.start.get("group_partitions"));
+		if(this.order != null)
+			addActual("sort runs written", now.get("sort_runs")-this.start.get("sort_runs"));
+	}
+
+	public void print(){
+		StringBuilder builder = new StringBuilder();
+		if(this.access == null)
+			line(builder,"table",this.tableName+", no access path, the table contains no data");
+		else{
+			line(builder,"table",this.tableName);
+			line(builder,"access path",this.access.getDescription());
+			line(builder,"tree height",String.valueOf(this.treeHeight));
+			if(this.access == Access.INDEX)
+				line(builder,"leaf range","leaves listed by the index, from page "+this.startPage);
+			else if((this.access == Access.KEY_RANGE || this.access == Access.CATALOG) && this.leaves == 0)
+				line(builder,"leaf range","none");
+			else
+				line(builder,"leaf range",this.startPage == 0 ? "every leaf" : "page "+this.startPage+" to "+(this.lastPage == 0 ? "the end of the chain" : "page "+this.lastPage));
+			if(this.keyRange != null)
+				line(builder,"key range",this.keyRange);
+			line(builder,"estimated pages",this.estimatedPages+" ("+this.leaves+" of them leaves)");
+			line(builder,"predicate",this.predicate);
+			if(this.columns != null)
+				line(builder,"columns decoded",this.columns);
+		}
+		for(String join : this.joins)
+			line(builder,"join",join);
+		if(this.aggregate != null)
+			line(builder,"aggregate",this.aggregate+", groups in memory up to "+AggregateCursor.getMemory()+" bytes, beyond that partitions in temp files");
+		if(this.order != null && this.bound>=0)
+			line(builder,"order by",this.order+", the first "+this.bound+" rows kept in a heap, sorted in runs beyond "+SortCursor.getMemory()+" bytes");
+		else if(this.order != null)
+			line(builder,"order by",this.order+", sorted in memory up to "+SortCursor.getMemory()+" bytes, beyond that in runs merged from temp files");
+		if(this.limit != null)
+			line(builder,"limit",this.limit);
+		if(this.analyze){
+			for(Map.Entry<String,Long> entry : this.actual.entrySet())
+				line(builder,"actual "+entry.getKey(),String.valueOf(entry.getValue()));
+			for(Map.Entry<String,Long> entry : this.phases.entrySet())
+				line(builder,"time "+entry.getKey(),String.format("%.3f ms", entry.getValue()/1e6));
+		}
+		System.out.print(builder.toString());
+	}
+
+	private static void line(StringBuilder builder,String name,String value){
+		builder.append(String.format(" %-32s%s%n", name+":", value));
+	}
+}
@@ -0,0 +1,582 @@
+package davisDB;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/*
+ *  Where condition of a statement, compiled once per statement from the where tree of CommandTree.
+ *  A comparison is specialized by the declared type of its column (integer, real or text) when it is compiled, and
+ *  reads its column straight from the record in the page, so a record is not decoded to be tested.
+ *  Conditions are three-valued as in SQL: a comparison with a null column is unknown, NOT keeps it unknown, and a
+ *  record is taken only when the whole condition is true.
+ */
+public abstract class Predicate {
+
+	public static final int FALSE = 0;
+	public static final int TRUE = 1;
+	public static final int UNKNOWN = 2;
+
+	// operators of a comparison
+	private static final int EQ = 0;
+	private static final int NE = 1;
+	private static final int LT = 2;
+	private static final int LE = 3;
+	private static final int GT = 4;
+	private static final int GE = 5;
+
+	/*
+	 * @param record the record to test
+	 * @return TRUE, FALSE or UNKNOWN
+	 */
+	abstract int eval(Record record) throws Exception;
+
+	/*
+	 * @return true if the record meets the condition
+	 */
+	public boolean test(Record record) throws Exception{
+		return eval(record) == TRUE;
+	}
+
+	/*
+	 * add the conditions every record meeting this one also meets, i.e. the operands of a top level AND
+	 */
+	void conjuncts(ArrayList<Predicate> list){
+		list.add(this);
+	}
+
+	/*
+	 * @param keyColumn ordinal of the integer primary key
+	 * @return the keys every record meeting the condition has, merged from every conjunct, e.g. id > 5 and id <= 9
+	 * and name = 'x' gives [6, 9], null if no conjunct bounds the key
+	 */
+	public KeyRange keyRange(int keyColumn){
+		ArrayList<Predicate> list = new ArrayList<>();
+		conjuncts(list);
+		KeyRange range = null;
+		for(Predicate p : list){
+			KeyRange bound = null;
+			if(p instanceof IntCompare && ((IntCompare) p).column == keyColumn)
+				bound = KeyRange.of(((IntCompare) p).operator,((IntCompare) p).value);
+			else if(p instanceof In && ((In) p).column == keyColumn)
+				bound = new KeyRange(((In) p).low,true,((In) p).high,true);
+			if(bound != null)
+				range = range == null ? bound : range.intersect(bound);
+		}
+		return range;
+	}
+
+	/*
+	 * pick the condition the leaves to read are chosen by
+	 * a bound on the key is taken first, see keyRange, otherwise a conjunct on a column with a secondary index
+	 * @param keyColumn ordinal of the integer primary key, -1 if the table has none
+	 * @param indexes secondary indexes of the table, may be null
+	 * @return a comparison that every record meeting the condition also meets, null if every leaf has to be read
+	 */
+	public Compare drivingCondition(int keyColumn,ArrayList<IndexFile> indexes) throws Exception{
+		ArrayList<Predicate> list = new ArrayList<>();
+		conjuncts(list);
+		KeyRange keys = keyColumn == -1 ? null : keyRange(keyColumn);
+		if(keys != null){
+			String name = null;
+			for(Predicate p : list)
+				if(p instanceof Compare && ((Compare) p).column == keyColumn)
+					name = ((Compare) p).colName;
+				else if(p instanceof In && ((In) p).column == keyColumn)
+					name = ((In) p).colName;
+			// the scan is bounded by the whole range, see FileHandler.scanForKeyRange, the comparison names its key column
+			if(keys.hasLow())
+				return new IntCompare(keyColumn,name,keys.hasHigh() && keys.getLow() == keys.getHigh() ? "=" : ">=",Value.ofLong(0x06,keys.getLow()));
+			return new IntCompare(keyColumn,name,"<=",Value.ofLong(0x06,keys.getHigh()));
+		}
+		if(indexes == null)
+			return null;
+		Compare range = null;
+		for(Predicate p : list){
+			if(!(p instanceof Compare) || !IndexFile.supports(((Compare) p).operator))
+				continue;
+			Compare c = (Compare) p;
+			for(IndexFile index : indexes){
+				if(index.getColumn() != c.column)
+					continue;
+				if(c.op == EQ)
+					return c;
+				if(range == null)
+					range = c;
+			}
+		}
+		return range;
+	}
+
+	/*
+	 *  columns of the record being tested, read from the page as a condition asks for them
+	 *  record layout: flag, payload length, key, header length, type codes, values
+	 *  a row that is not in a page, e.g. a row of a join, is tested through a record reset to it
+	 */
+	public static class Record{
+		private ByteBuffer page;
+		private int cell;
+		private Row row = null;
+
+		// positions of the first columns of the record, positions[i] is valid for i < knownColumns
+		private int[] positions = new int[8];
+		private int knownColumns = 0;
+
+		public void reset(ByteBuffer page,int cell){
+			this.page = page;
+			this.cell = cell;
+			this.row = null;
+			this.knownColumns = 0;
+		}
+
+		public void reset(Row row){
+			this.row = row;
+		}
+
+		public int typeCode(int column){
+			if(this.row != null)
+				return this.row.getTypeCode(column);
+			return this.page.get(this.cell+1+2+4+2+column) & 0xFF;
+		}
+
+		/*
+		 * @return position of a column in the page
+		 */
+		private int position(int column){
+			if(this.knownColumns == 0){
+				this.positions[0] = this.cell+1+2+4+this.page.getShort(this.cell+1+2+4);
+				this.knownColumns = 1;
+			}
+			if(column>=this.positions.length){
+				int[] tmp = new int[Math.max(column+1, this.positions.length*2)];
+				System.arraycopy(this.positions, 0, tmp, 0, this.knownColumns);
+				this.positions = tmp;
+			}
+			while(this.knownColumns<=column){
+				this.positions[this.knownColumns] = this.positions[this.knownColumns-1]+Utilities.getColumnSize(typeCode(this.knownColumns-1));
+				this.knownColumns++;
+			}
+			return this.positions[column];
+		}
+
+		long getLong(int column,int typeCode){
+			if(this.row != null)
+				return this.row.getLong(column);
+			int pos = position(column);
+			switch(typeCode){
+			case 0x04:
+				return this.page.get(pos);
+			case 0x05:
+				return this.page.getShort(pos);
+			case 0x06:
+				return this.page.getInt(pos);
+			case 0x08:
+				return (long) this.page.getFloat(pos);
+			case 0x09:
+				return (long) this.page.getDouble(pos);
+			default:
+				return this.page.getLong(pos);
+			}
+		}
+
+		double getDouble(int column,int typeCode){
+			if(this.row != null)
+				return this.row.getDouble(column);
+			int pos = position(column);
+			switch(typeCode){
+			case 0x08:
+				return this.page.getFloat(pos);
+			case 0x09:
+				return this.page.getDouble(pos);
+			default:
+				return getLong(column,typeCode);
+			}
+		}
+
+		String getText(int column,int typeCode) throws Exception{
+			if(typeCode<=0x0C)
+				return "";
+			if(this.row != null)
+				return this.row.getText(column);
+			byte[] chars = new byte[typeCode-0x0C];
+			int pos = position(column);
+			for(int i=0;i<chars.length;i++)
+				chars[i] = this.page.get(pos+i);
+			return new String(chars,"UTF-8");
+		}
+	}
+
+	private static int toOp(String operator) throws Exception{
+		switch(operator){
+		case "=":
+			return EQ;
+		case "!=":
+		case "<>":
+			return NE;
+		case "<":
+			return LT;
+		case "<=":
+			return LE;
+		case ">":
+			return GT;
+		case ">=":
+			return GE;
+		default:
+			throw new Exception("Error 07: Unsupported comparison operation!");
+		}
+	}
+
+	private static int result(int op,int cmp){
+		boolean r;
+		switch(op){
+		case EQ:
+			r = cmp == 0;
+			break;
+		case NE:
+			r = cmp != 0;
+			break;
+		case LT:
+			r = cmp < 0;
+			break;
+		case LE:
+			r = cmp <= 0;
+			break;
+		case GT:
+			r = cmp > 0;
+			break;
+		default:
+			r = cmp >= 0;
+		}
+		return r ? TRUE : FALSE;
+	}
+
+	/*
+	 * @return real or text for the data type of a column, int for the other types
+	 */
+	private static String kind(String dataType){
+		dataType = dataType.toLowerCase().trim();
+		if(dataType.equals("real") || dataType.equals("double"))
+			return "real";
+		if(dataType.equals("text"))
+			return "text";
+		return "int";
+	}
+
+	/*
+	 * @param column ordinal of the column
+	 * @param colName name of the column
+	 * @param dataType declared type of the column
+	 * @param operator =, !=, <>, <, <=, > or >=
+	 * @param value the value, see Utilities.getData
+	 */
+	public static Compare compare(int column,String colName,String dataType,String operator,Value value) throws Exception{
+		switch(kind(dataType)){
+		case "real":
+			return new RealCompare(column,colName,operator,value);
+		case "text":
+			return new TextCompare(column,colName,operator,value);
+		default:
+			return new IntCompare(column,colName,operator,value);
+		}
+	}
+
+	/*
+	 * @param values the values of the list, see Utilities.getData
+	 */
+	public static Predicate in(int column,String colName,String dataType,ArrayList<Value> values){
+		return new In(column,colName,kind(dataType),values);
+	}
+
+	public static Predicate between(int column,String colName,String dataType,Value low,Value high) throws Exception{
+		return new Between(compare(column,colName,dataType,">=",low),compare(column,colName,dataType,"<=",high));
+	}
+
+	/*
+	 *  column operator value
+	 */
+	public static abstract class Compare extends Predicate{
+		protected final int column;
+		protected final String colName;
+		protected final String operator;
+		protected final Value original;
+		protected final int op;
+
+		Compare(int column,String colName,String operator,Value value) throws Exception{
+			this.column = column;
+			this.colName = colName;
+			this.operator = operator;
+			this.original = value;
+			this.op = toOp(operator);
+		}
+
+		public int getColumn(){
+			return this.column;
+		}
+
+		public String getOperator(){
+			return this.operator;
+		}
+
+		public Value getValue(){
+			return this.original;
+		}
+
+		@Override
+		public String toString(){
+			if(this.original.getTypeCode()>=0x0C)
+				return this.colName+" "+this.operator+" '"+this.original+"'";
+			return this.colName+" "+this.operator+" "+this.original;
+		}
+	}
+
+	/*
+	 *  comparison of a tinyint, smallint, int, bigint, date or datetime column
+	 */
+	static class IntCompare extends Compare{
+		private final long value;
+
+		IntCompare(int column,String colName,String operator,Value value) throws Exception{
+			super(column,colName,operator,value);
+			this.value = value.getLong();
+		}
+
+		@Override
+		int eval(Record record){
+			int typeCode = record.typeCode(this.column);
+			if(typeCode<0x04)
+				return UNKNOWN;
+			return result(this.op,Long.compare(record.getLong(this.column,typeCode),this.value));
+		}
+	}
+
+	/*
+	 *  comparison of a real or double column
+	 */
+	static class RealCompare extends Compare{
+		private final double value;
+
+		RealCompare(int column,String colName,String operator,Value value) throws Exception{
+			super(column,colName,operator,value);
+			this.value = value.getDouble();
+		}
+
+		@Override
+		int eval(Record record){
+			int typeCode = record.typeCode(this.column);
+			if(typeCode<0x04)
+				return UNKNOWN;
+			return result(this.op,Double.compare(record.getDouble(this.column,typeCode),this.value));
+		}
+	}
+
+	/*
+	 *  comparison of a text column, leading and trailing blanks are ignored
+	 */
+	static class TextCompare extends Compare{
+		private final String value;
+
+		TextCompare(int column,String colName,String operator,Value value) throws Exception{
+			super(column,colName,operator,value);
+			this.value = value.getText().trim();
+		}
+
+		@Override
+		int eval(Record record) throws Exception{
+			int typeCode = record.typeCode(this.column);
+			if(typeCode<0x0C)
+				return UNKNOWN;
+			return result(this.op,record.getText(this.column,typeCode).trim().compareTo(this.value));
+		}
+	}
+
+	/*
+	 *  column IN (value, ...), the values are hashed
+	 */
+	static class In extends Predicate{
+		private final int column;
+		private final String colName;
+		private final String kind;
+		private final HashSet<Object> values = new HashSet<>();
+		private final ArrayList<Value> list;
+
+		// smallest and largest value of an integer list
+		private long low = Long.MAX_VALUE;
+		private long high = Long.MIN_VALUE;
+
+		In(int column,String colName,String kind,ArrayList<Value> list){
+			this.column = column;
+			this.colName = colName;
+			this.kind = kind;
+			this.list = list;
+			for(Value value : list){
+				switch(kind){
+				case "real":
+					this.values.add(value.getDouble());
+					break;
+				case "text":
+					this.values.add(value.getText().trim());
+					break;
+				default:
+					this.values.add(value.getLong());
+					this.low = Math.min(this.low, value.getLong());
+					this.high = Math.max(this.high, value.getLong());
+				}
+			}
+		}
+
+		@Override
+		int eval(Record record) throws Exception{
+			int typeCode = record.typeCode(this.column);
+			if(typeCode<0x04)
+				return UNKNOWN;
+			Object value;
+			switch(this.kind){
+			case "real":
+				value = record.getDouble(this.column,typeCode);
+				break;
+			case "text":
+				if(typeCode<0x0C)
+					return UNKNOWN;
+				value = record.getText(this.column,typeCode).trim();
+				break;
+			default:
+				value = record.getLong(this.column,typeCode);
+			}
+			return this.values.contains(value) ? TRUE : FALSE;
+		}
+
+		@Override
+		public String toString(){
+			StringBuilder builder = new StringBuilder(this.colName+" in (");
+			for(int i=0;i<this.list.size();i++){
+				if(i>0)
+					builder.append(", ");
+				Value value = this.list.get(i);
+				builder.append(value.getTypeCode()>=0x0C ? "'"+value+"'" : value.toString());
+			}
+			return builder.append(")").toString();
+		}
+	}
+
+	/*
+	 *  column BETWEEN low AND high, both bounds included
+	 */
+	static class Between extends Predicate{
+		private final Compare low;
+		private final Compare high;
+
+		Between(Compare low,Compare high){
+			this.low = low;
+			this.high = high;
+		}
+
+		@Override
+		int eval(Record record) throws Exception{
+			return And.and(this.low.eval(record),this.high.eval(record));
+		}
+
+		@Override
+		void conjuncts(ArrayList<Predicate> list){
+			list.add(this.low);
+			list.add(this.high);
+		}
+
+		@Override
+		public String toString(){
+			String low = this.low.toString();
+			String high = this.high.toString();
+			return this.low.colName+" between "+low.substring(low.indexOf(">= ")+3)+" and "+high.substring(high.indexOf("<= ")+3);
+		}
+	}
+
+	public static class And extends Predicate{
+		private final Predicate[] operands;
+
+		public And(ArrayList<Predicate> operands){
+			this.operands = operands.toArray(new Predicate[]{});
+		}
+
+		static int and(int a,int b){
+			if(a == FALSE || b == FALSE)
+				return FALSE;
+			return a == TRUE && b == TRUE ? TRUE : UNKNOWN;
+		}
+
+		@Override
+		int eval(Record record) throws Exception{
+			int r = TRUE;
+			for(Predicate operand : this.operands){
+				r = and(r,operand.eval(record));
+				if(r == FALSE)
+					return FALSE;
+			}
+			return r;
+		}
+
+		@Override
+		void conjuncts(ArrayList<Predicate> list){
+			for(Predicate operand : this.operands)
+				operand.conjuncts(list);
+		}
+
+		@Override
+		public String toString(){
+			return join(this.operands," and ");
+		}
+	}
+
+	public static class Or extends Predicate{
+		private final Predicate[] operands;
+
+		public Or(ArrayList<Predicate> operands){
+			this.operands = operands.toArray(new Predicate[]{});
+		}
+
+		@Override
+		int eval(Record record) throws Exception{
+			int r = FALSE;
+			for(Predicate operand : this.operands){
+				int e = operand.eval(record);
+				if(e == TRUE)
+					return TRUE;
+				if(e == UNKNOWN)
+					r = UNKNOWN;
+			}
+			return r;
+		}
+
+		@Override
+		public String toString(){
+			return join(this.operands," or ");
+		}
+	}
+
+	public static class Not extends Predicate{
+		private final Predicate operand;
+
+		public Not(Predicate operand){
+			this.operand = operand;
+		}
+
+		@Override
+		int eval(Record record) throws Exception{
+			int e = this.operand.eval(record);
+			return e == UNKNOWN ? UNKNOWN : (e == TRUE ? FALSE : TRUE);
+		}
+
+		@Override
+		public String toString(){
+			return "not ("+this.operand+")";
+		}
+	}
+
+	private static String join(Predicate[] operands,String connective){
+		StringBuilder builder = new StringBuilder();
+		for(int i=0;i<operands.length;i++){
+			if(i>0)
+				builder.append(connective);
+			boolean nested = operands[i] instanceof And || operands[i] instanceof Or;
+			builder.append(nested ? "("+operands[i]+")" : operands[i].toString());
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,241 @@
+package davisDB;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/*
+ *  A table row decoded from a page or built for insertion.
+ *  Columns are addressed by their ordinal in the table, the type code of every column is kept with the row.
+ *  Integer, date and datetime columns are held in a long, real and double columns as the raw bits of a double,
+ *  text columns in a separate array that is only allocated when the row has a text column.
+ */
+public class Row {
+
+	// column names, shared by all rows read with the same header, may be null
+	private String[] colNames;
+
+	// type code of each column
+	private int[] typeCodes;
+
+	// integer values and raw bits of real values
+	private long[] values;
+
+	// text values
+	private String[] texts = null;
+
+	public Row(int size){
+		this.typeCodes = new int[size];
+		this.values = new long[size];
+	}
+
+	public Row(String[] colNames){
+		this(colNames.length);
+		this.colNames = colNames;
+	}
+
+	static boolean isReal(int typeCode){
+		return typeCode == 0x08 || typeCode == 0x09;
+	}
+
+	public int size(){
+		return this.typeCodes.length;
+	}
+
+	public String[] getColNames(){
+		return this.colNames;
+	}
+
+	/*
+	 * @param colName name of the column
+	 * @return ordinal of the column, -1 if the row has no such column
+	 */
+	public int indexOf(String colName){
+		if(this.colNames == null)
+			return -1;
+		for(int i=0;i<this.colNames.length;i++)
+			if(this.colNames[i].equals(colName))
+				return i;
+		return -1;
+	}
+
+	public int getTypeCode(int i){
+		return this.typeCodes[i];
+	}
+
+	public boolean isNull(int i){
+		return this.typeCodes[i]<0x04;
+	}
+
+	public byte getByte(int i){
+		return (byte) getLong(i);
+	}
+
+	public short getShort(int i){
+		return (short) getLong(i);
+	}
+
+	public int getInt(int i){
+		return (int) getLong(i);
+	}
+
+	public long getLong(int i){
+		if(isReal(this.typeCodes[i]))
+			return (long) Double.longBitsToDouble(this.values[i]);
+		return this.values[i];
+	}
+
+	public float getFloat(int i){
+		return (float) getDouble(i);
+	}
+
+	public double getDouble(int i){
+		if(isReal(this.typeCodes[i]))
+			return Double.longBitsToDouble(this.values[i]);
+		return this.values[i];
+	}
+
+	/*
+	 * @return the text of column i, "null" for a null column
+	 */
+	public String getText(int i){
+		String s = this.texts == null ? null : this.texts[i];
+		if(s == null && isNull(i))
+			return "null";
+		return s;
+	}
+
+	/*
+	 * @return the text of the column with the given name
+	 */
+	public String getText(String colName){
+		return getText(indexOf(colName));
+	}
+
+	/*
+	 * @return a copy of column i
+	 */
+	public Value get(int i){
+		return new Value(this.typeCodes[i],this.values[i],this.texts == null ? null : this.texts[i]);
+	}
+
+	public void setNull(int i,int typeCode){
+		this.typeCodes[i] = typeCode;
+		this.values[i] = 0;
+		if(this.texts != null)
+			this.texts[i] = null;
+	}
+
+	/*
+	 * @param typeCode tinyint, smallint, int, bigint, datetime or date type code
+	 */
+	public void setLong(int i,int typeCode,long val){
+		this.typeCodes[i] = typeCode;
+		this.values[i] = val;
+	}
+
+	/*
+	 * @param typeCode real or double type code
+	 */
+	public void setDouble(int i,int typeCode,double val){
+		this.typeCodes[i] = typeCode;
+		this.values[i] = Double.doubleToRawLongBits(val);
+	}
+
+	public void setText(int i,String val){
+		setText(i,0x0C+val.length(),val);
+	}
+
+	public void setText(int i,int typeCode,String val){
+		if(this.texts == null)
+			this.texts = new String[this.typeCodes.length];
+		this.typeCodes[i] = typeCode;
+		this.texts[i] = val;
+	}
+
+	public void set(int i,Value val){
+		this.typeCodes[i] = val.getTypeCode();
+		this.values[i] = val.getBits();
+		if(val.getTypeCode()>=0x0C)
+			setText(i,val.getTypeCode(),val.getText());
+		else if(this.texts != null)
+			this.texts[i] = null;
+	}
+
+	/*
+	 * copy column j of another row into column i
+	 */
+	public void copy(int i,Row from,int j){
+		this.typeCodes[i] = from.typeCodes[j];
+		this.values[i] = from.values[j];
+		if(from.texts != null && from.texts[j] != null)
+			setText(i,from.typeCodes[j],from.texts[j]);
+		else if(this.texts != null)
+			this.texts[i] = null;
+	}
+
+	/*
+	 * write the row to a temp file, the type code of each column followed by its value, text as UTF and any other
+	 * value as the 8 bytes it is kept in
+	 */
+	public void write(DataOutput out) throws IOException{
+		for(int i=0;i<this.typeCodes.length;i++){
+			out.writeInt(this.typeCodes[i]);
+			if(this.typeCodes[i]>=0x0C)
+				out.writeUTF(this.texts == null || this.texts[i] == null ? "" : this.texts[i]);
+			else
+				out.writeLong(this.values[i]);
+		}
+	}
+
+	/*
+	 * read a row written by write
+	 * @param colNames column names of the row, may be null
+	 * @param size number of columns
+	 */
+	public static Row read(DataInput in,String[] colNames,int size) throws IOException{
+		Row row = colNames == null ? new Row(size) : new Row(colNames);
+		for(int i=0;i<size;i++){
+			int typeCode = in.readInt();
+			if(typeCode>=0x0C)
+				row.setText(i,typeCode,in.readUTF());
+			else
+				row.setLong(i,typeCode,in.readLong());
+		}
+		return row;
+	}
+
+	/*
+	 * @return column i formatted for printing
+	 */
+	public String toString(int i){
+		return format(this.typeCodes[i],this.values[i],this.texts == null ? null : this.texts[i]);
+	}
+
+	static String format(int typeCode,long bits,String text){
+		switch(typeCode){
+		case 0x00:
+		case 0x01:
+		case 0x02:
+		case 0x03:
+			return "null";
+		case 0x04:
+			return Byte.toString((byte) bits);
+		case 0x05:
+			return Short.toString((short) bits);
+		case 0x06:
+			return Integer.toString((int) bits);
+		case 0x07:
+			return Long.toString(bits);
+		case 0x08:
+			return Float.toString((float) Double.longBitsToDouble(bits));
+		case 0x09:
+			return Double.toString(Double.longBitsToDouble(bits));
+		case 0x0A:
+			return Utilities.toZonedDateTime(bits).toLocalDateTime().toString();
+		case 0x0B:
+			return Utilities.toZonedDateTime(bits).toLocalDate().toString();
+		default:
+			return text == null ? "" : text;
+		}
+	}
+}
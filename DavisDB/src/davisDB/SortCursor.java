@@ -0,0 +1,335 @@
+package davisDB;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/*
+ *  Cursor returning the rows of another cursor in the order of an ORDER BY.
+ *  Rows are sorted in memory as long as their estimated size stays within -Ddavisdb.sort.memory bytes (default
+ *  16777216). Beyond that the sorted rows are written to a temp file as a run and the memory is reused, at the end the
+ *  runs are merged, at most FAN_IN of them at a time. Rows that compare equal keep the order they were read in.
+ *  With a bound, as for ORDER BY ... LIMIT, only the first rows up to the bound are kept while the rows are read, in a
+ *  heap with the largest kept row on top that a smaller row replaces. If even those outgrow the memory the rows are
+ *  sorted as without a bound.
+ */
+public class SortCursor implements Cursor {
+
+	private static long memory = Long.parseLong(System.getProperty("davisdb.sort.memory", "16777216"));
+
+	// runs merged at once, more runs are merged into longer runs first
+	private static final int FAN_IN = 64;
+
+	private Cursor input;
+	private Comparator<Row> comparator;
+
+	// rows the consumer reads at most, -1 for every row
+	private long bound;
+
+	// column names and number of columns of the rows, taken from the first row
+	private String[] colNames = null;
+	private int size = 0;
+
+	// rows sorted in memory, and the next one to return if nothing was written to a run
+	private ArrayList<Row> rows = new ArrayList<>();
+	private int pos = 0;
+
+	// runs written to temp files, and the runs being merged ordered by their current row
+	private ArrayList<File> runs = new ArrayList<>();
+	private PriorityQueue<Run> heads = null;
+	private ArrayList<Run> open = new ArrayList<>();
+
+	/*
+	 *  a run being read, its current row is the smallest row of the run not returned yet
+	 */
+	private class Run{
+		private DataInputStream in;
+		private int remaining;
+
+		// position of the run in the runs merged, ties go to the earlier run
+		private int index;
+		private Row row = null;
+
+		Run(File file,int index) throws IOException{
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			this.remaining = this.in.readInt();
+			this.index = index;
+		}
+
+		/*
+		 * @return false if the run has no more rows
+		 */
+		boolean advance() throws IOException{
+			if(this.remaining == 0){
+				this.row = null;
+				return false;
+			}
+			this.remaining--;
+			this.row = Row.read(this.in,SortCursor.this.colNames,SortCursor.this.size);
+			return true;
+		}
+
+		void close() throws IOException{
+			this.in.close();
+		}
+	}
+
+	/*
+	 *  a row kept by a bounded sort and its position in the input, later rows lose ties
+	 */
+	private static class Entry{
+		private Row row;
+		private long seq;
+
+		Entry(Row row,long seq){
+			this.row = row;
+			this.seq = seq;
+		}
+	}
+
+	/*
+	 * @param input cursor over the rows to sort
+	 * @param columns ordinals of the columns to sort by, the first one first
+	 * @param descending the column is sorted in descending order
+	 */
+	public SortCursor(Cursor input,int[] columns,boolean[] descending){
+		this(input,columns,descending,-1);
+	}
+
+	/*
+	 * @param bound rows the consumer reads at most, e.g. OFFSET plus LIMIT, -1 for every row
+	 */
+	public SortCursor(Cursor input,final int[] columns,final boolean[] descending,long bound){
+		this.input = input;
+		this.bound = bound;
+		this.comparator = new Comparator<Row>(){
+			@Override
+			public int compare(Row a,Row b){
+				for(int i=0;i<columns.length;i++){
+					int result = Utilities.compare(a, b, columns[i]);
+					if(result != 0)
+						return descending[i] ? -result : result;
+				}
+				return 0;
+			}
+		};
+	}
+
+	public static long getMemory(){
+		return memory;
+	}
+
+	/*
+	 * read every row of the input, the rows are sorted when open returns
+	 */
+	@Override
+	public void open() throws Exception{
+		this.input.open();
+		long used = 0;
+		PriorityQueue<Entry> heap = null;
+		if(this.bound>=0 && this.bound<Integer.MAX_VALUE)
+			heap = new PriorityQueue<>((int) Math.max(Math.min(this.bound, 1024), 1),new Comparator<Entry>(){
+				@Override
+				public int compare(Entry a,Entry b){
+					int result = SortCursor.this.comparator.compare(b.row, a.row);
+					return result != 0 ? result : Long.compare(b.seq, a.seq);
+				}
+			});
+		long seq = 0;
+		Row row;
+		while((row = this.input.next()) != null){
+			if(this.colNames == null){
+				this.colNames = row.getColNames();
+				this.size = row.size();
+			}
+			if(heap != null){
+				Entry entry = new Entry(row,seq++);
+				if(heap.size()<this.bound){
+					heap.add(entry);
+					used += estimateSize(row);
+				}
+				else if(heap.size()>0 && this.comparator.compare(row, heap.peek().row)<0){
+					used -= estimateSize(heap.poll().row);
+					heap.add(entry);
+					used += estimateSize(row);
+				}
+				if(used<=memory)
+					continue;
+				// the kept rows outgrow the memory, they are sorted with the following rows in runs
+				this.rows.addAll(sorted(heap));
+				heap = null;
+				spill();
+				used = 0;
+				continue;
+			}
+			this.rows.add(row);
+			used += estimateSize(row);
+			if(used>memory){
+				spill();
+				used = 0;
+			}
+		}
+		this.input.close();
+		if(heap != null){
+			this.rows.addAll(sorted(heap));
+			return;
+		}
+		if(this.runs.isEmpty()){
+			Collections.sort(this.rows, this.comparator);
+			return;
+		}
+		if(!this.rows.isEmpty())
+			spill();
+		while(this.runs.size()>FAN_IN){
+			ArrayList<File> merged = new ArrayList<>();
+			for(int i=0;i<this.runs.size();i+=FAN_IN)
+				merged.add(merge(this.runs.subList(i, Math.min(i+FAN_IN, this.runs.size()))));
+			this.runs = merged;
+		}
+		this.heads = openRuns(this.runs);
+	}
+
+	@Override
+	public Row next() throws Exception{
+		if(this.heads == null){
+			if(this.pos>=this.rows.size())
+				return null;
+			Row row = this.rows.get(this.pos);
+			this.rows.set(this.pos++, null);
+			return row;
+		}
+		Run head = this.heads.poll();
+		if(head == null)
+			return null;
+		Row row = head.row;
+		if(head.advance())
+			this.heads.add(head);
+		return row;
+	}
+
+	@Override
+	public void close() throws Exception{
+		this.input.close();
+		this.rows = new ArrayList<>();
+		for(Run run : this.open)
+			run.close();
+		this.open.clear();
+		for(File run : this.runs)
+			run.delete();
+		this.runs.clear();
+		this.heads = null;
+	}
+
+	/*
+	 * @return the rows kept by a bounded sort in order, rows that compare equal in the order they were read in
+	 */
+	private ArrayList<Row> sorted(PriorityQueue<Entry> heap){
+		ArrayList<Entry> entries = new ArrayList<>(heap);
+		Collections.sort(entries, new Comparator<Entry>(){
+			@Override
+			public int compare(Entry a,Entry b){
+				int result = SortCursor.this.comparator.compare(a.row, b.row);
+				return result != 0 ? result : Long.compare(a.seq, b.seq);
+			}
+		});
+		ArrayList<Row> rows = new ArrayList<>();
+		for(Entry entry : entries)
+			rows.add(entry.row);
+		return rows;
+	}
+
+	/*
+	 * sort the rows in memory and write them to a new run
+	 */
+	private void spill() throws IOException{
+		Collections.sort(this.rows, this.comparator);
+		File file = newRun();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try{
+			out.writeInt(this.rows.size());
+			for(Row row : this.rows)
+				row.write(out);
+		}
+		finally{
+			out.close();
+		}
+		this.runs.add(file);
+		this.rows.clear();
+	}
+
+	/*
+	 * merge runs into one run, the merged runs are deleted
+	 */
+	private File merge(java.util.List<File> sources) throws IOException{
+		File file = newRun();
+		PriorityQueue<Run> queue = openRuns(sources);
+		int count = 0;
+		for(Run run : queue)
+			count += run.remaining+1;
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try{
+			out.writeInt(count);
+			Run head;
+			while((head = queue.poll()) != null){
+				head.row.write(out);
+				if(head.advance())
+					queue.add(head);
+			}
+		}
+		finally{
+			out.close();
+			for(Run run : this.open)
+				run.close();
+			this.open.clear();
+		}
+		for(File source : sources)
+			source.delete();
+		return file;
+	}
+
+	/*
+	 * @return the runs that have rows, ordered by their first row
+	 */
+	private PriorityQueue<Run> openRuns(java.util.List<File> files) throws IOException{
+		PriorityQueue<Run> queue = new PriorityQueue<>(Math.max(files.size(), 1),new Comparator<Run>(){
+			@Override
+			public int compare(Run a,Run b){
+				int result = SortCursor.this.comparator.compare(a.row, b.row);
+				return result != 0 ? result : Integer.compare(a.index, b.index);
+			}
+		});
+		for(int i=0;i<files.size();i++){
+			Run run = new Run(files.get(i),i);
+			this.open.add(run);
+			if(run.advance())
+				queue.add(run);
+		}
+		return queue;
+	}
+
+	private File newRun() throws IOException{
+		File file = File.createTempFile("davisdb-sort", ".run");
+		file.deleteOnExit();
+		Metrics.add(Metrics.Counter.SORT_RUNS, 1);
+		return file;
+	}
+
+	/*
+	 * @return bytes a row takes in memory, roughly
+	 */
+	static long estimateSize(Row row){
+		long size = 48+12*row.size();
+		for(int i=0;i<row.size();i++)
+			if(row.getTypeCode(i)>=0x0C)
+				size += 40+2*(row.getTypeCode(i)-0x0C);
+		return size;
+	}
+}
@@ -0,0 +1,214 @@
+package davisDB;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/*
+ *  Process-wide cache of open FileHandlers, one per .tbl file.
+ *  A statement acquires the handler of a file and releases it when it is done. The handler stays open together with its
+ *  decoded database header, so the next statement on the same file reuses it instead of reopening and re-parsing the file.
+ *
+ *  Idle handlers (no statement holds them) are closed when there are more than -Ddavisdb.handles.max of them (default 64,
+ *  least recently used first) or when they were not used for -Ddavisdb.handles.idle milliseconds (default 60000). The
+ *  timeout is checked whenever a handler is released and by a timer once the oldest idle handler expires, so the files
+ *  of an idle session are closed as well.
+ *  DROP TABLE closes the handler of the dropped file, EXIT and JVM shutdown close all of them.
+ */
+public class TableHandles {
+
+	// maximum number of idle handlers kept open
+	private static int maxIdle = Integer.parseInt(System.getProperty("davisdb.handles.max", "64"));
+
+	// idle handlers unused for longer than this are closed, in milliseconds
+	private static long idleTimeout = Long.parseLong(System.getProperty("davisdb.handles.idle", "60000"));
+
+	// canonical path -> cached handler
+	private static HashMap<String,Entry> handles = new HashMap<>();
+
+	// the shutdown hook closing all handlers is installed
+	private static boolean hookInstalled = false;
+
+	// closes the idle handlers once their timeout expires, null until first needed
+	private static Timer timer = null;
+	private static boolean scheduled = false;
+
+	/*
+	 *  one cached handler
+	 */
+	private static class Entry{
+		private String path;
+		private FileHandler handler;
+
+		// number of statements currently holding the handler
+		private int refCount = 0;
+
+		// time of the last acquire or release
+		private long lastUsed;
+
+		public Entry(String path,FileHandler handler){
+			this.path = path;
+			this.handler = handler;
+		}
+	}
+
+	/*
+	 * acquire the handler of a table file, the file is created with the default page size if it does not exist
+	 * @param filePath path of the file
+	 * @return the handler, must be given back with release
+	 */
+	public static FileHandler acquire(String filePath) throws IOException{
+		return acquire(filePath,FileHandler.getDefaultPageSize());
+	}
+
+	/*
+	 * @param filePath path of the file
+	 * @param pageSize page size used if the file is created
+	 * @return the handler, must be given back with release
+	 */
+	public static synchronized FileHandler acquire(String filePath,int pageSize) throws IOException{
+		installHook();
+		String path = new File(filePath).getCanonicalPath();
+		Entry entry = handles.get(path);
+		if(entry != null && !new File(path).exists()){
+			// the file was deleted behind our back
+			close(entry);
+			entry = null;
+		}
+		if(entry == null){
+			entry = new Entry(path,new FileHandler(filePath,true,pageSize));
+			handles.put(path, entry);
+		}
+		else if(entry.refCount>0){
+			// a handler keeps the current page of its caller, a nested user of the same file gets its own uncached handler
+			return new FileHandler(filePath,true,pageSize);
+		}
+		else
+			entry.handler.refresh();
+		entry.refCount++;
+		entry.lastUsed = System.currentTimeMillis();
+		return entry.handler;
+	}
+
+	/*
+	 * give back a handler returned by acquire, a handler that is not cached is closed
+	 * @param handler the handler
+	 */
+	public static synchronized void release(FileHandler handler) throws IOException{
+		Entry entry = handles.get(handler.getFile().getCanonicalPath());
+		if(entry == null || entry.handler != handler){
+			handler.close();
+			return;
+		}
+		if(entry.refCount>0)
+			entry.refCount--;
+		entry.lastUsed = System.currentTimeMillis();
+		evictIdle();
+	}
+
+	/*
+	 * give back every handler still held, called at the end of a statement so a failed statement does not pin its handlers
+	 */
+	public static synchronized void releaseAll() throws IOException{
+		for(Entry entry : handles.values())
+			entry.refCount = 0;
+		evictIdle();
+	}
+
+	/*
+	 * close the handler of a file whether it is held or not, used before the file is deleted
+	 * @param filePath path of the file
+	 */
+	public static synchronized void evict(String filePath) throws IOException{
+		Entry entry = handles.get(new File(filePath).getCanonicalPath());
+		if(entry != null)
+			close(entry);
+	}
+
+	/*
+	 * close all handlers, dirty pages are written back by the last close of each file
+	 */
+	public static synchronized void closeAll() throws IOException{
+		for(Entry entry : new ArrayList<>(handles.values()))
+			close(entry);
+	}
+
+	public static synchronized int getOpenHandles(){
+		return handles.size();
+	}
+
+	private static void close(Entry entry) throws IOException{
+		handles.remove(entry.path);
+		entry.handler.close();
+	}
+
+	private static void evictIdle() throws IOException{
+		long now = System.currentTimeMillis();
+		ArrayList<Entry> idle = new ArrayList<>();
+		for(Entry entry : new ArrayList<>(handles.values())){
+			if(entry.refCount>0)
+				continue;
+			if(now-entry.lastUsed>idleTimeout)
+				close(entry);
+			else
+				idle.add(entry);
+		}
+		while(idle.size()>maxIdle){
+			Entry lru = idle.get(0);
+			for(Entry entry : idle)
+				if(entry.lastUsed<lru.lastUsed)
+					lru = entry;
+			idle.remove(lru);
+			close(lru);
+		}
+		schedule(idle);
+	}
+
+	/*
+	 * let the timer check the timeout again once the oldest of the idle handlers expires
+	 * @param idle the idle handlers left open
+	 */
+	private static void schedule(ArrayList<Entry> idle){
+		if(scheduled || idle.isEmpty())
+			return;
+		long oldest = Long.MAX_VALUE;
+		for(Entry entry : idle)
+			oldest = Math.min(oldest, entry.lastUsed);
+		if(timer == null)
+			timer = new Timer("davisdb-handles-idle",true);
+		scheduled = true;
+		timer.schedule(new TimerTask(){
+			@Override
+			public void run(){
+				synchronized(TableHandles.class){
+					scheduled = false;
+					try{
+						evictIdle();
+					}
+					catch(IOException e){
+						System.err.println(e);
+					}
+				}
+			}
+		}, Math.max(0, oldest+idleTimeout+1-System.currentTimeMillis()));
+	}
+
+	private static void installHook(){
+		if(hookInstalled)
+			return;
+		hookInstalled = true;
+		Runtime.getRuntime().addShutdownHook(new Thread(){
+			@Override
+			public void run(){
+				try{
+					closeAll();
+				}
+				catch(IOException e){
+					System.err.println(e);
+				}
+			}
+		});
+	}
+}
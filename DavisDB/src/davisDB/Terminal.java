@@ -9,6 +9,8 @@ public class Terminal {
 	{
 		System.out.print(prompt);
 		String userCmdInput = "";
+		// the command as typed, for the parts kept in their original case
+		String rawCmdInput = "";
 		Scanner reader = new Scanner(System.in);
 		try
 		{
@@ -18,33 +20,47 @@ public class Terminal {
 				boolean tokenComp = true;
 				boolean multiline = true;
 				
-				String token = reader.next();				
+				String rawToken = reader.next();				
 				
-				token = token.replace('\n',' ').trim().replace('\r', ' ').trim().toLowerCase();
+				rawToken = rawToken.replace('\n',' ').trim().replace('\r', ' ').trim();
+				String token = rawToken.toLowerCase();
 			
 				if (token.endsWith("(") || token.endsWith(")") || token.endsWith(","))
 					multiline = false;
 				
-				if ("version".contains(token) || "help".contains(token) || "exit".contains(token))
+				// only the keywords themselves are glued to the ';' that follows them, not a word such as "on"
+				if (token.isEmpty() || token.equals("version") || token.equals("help") || token.equals("exit"))
 					tokenComp = false;	
 							
 				if (token.endsWith(";"))
 				{
 					userCmdInput += token;
+					rawCmdInput += rawToken;
 					if (!userCmdInput.equals("exit;"))
 					{
 						try
 						{
-							executeCmd(userCmdInput);
+							executeCmd(keepPathCase(userCmdInput,rawCmdInput));
 						}
 						catch(Exception e){
 							System.out.println(e.toString().substring(e.toString().indexOf(':')+1));
 						}
 						userCmdInput = "";
+						rawCmdInput = "";
 						System.out.print(prompt);
 					}
 					else
 					{
+						// close the cached table handlers and write back every page still cached in the buffer pool
+						try
+						{
+							TableHandles.closeAll();
+							PageFile.flushAll();
+							Metrics.dump(true);
+						}
+						catch(Exception e){
+							System.out.println(e.toString().substring(e.toString().indexOf(':')+1));
+						}
 						System.out.println("Bye!");
 					}
 				}
@@ -53,11 +69,13 @@ public class Terminal {
 					if (!tokenComp)
 					{
 						userCmdInput += token;
+						rawCmdInput += rawToken;
 						System.out.print("      -> ");
 					}
 					else
 					{
 						userCmdInput += (token+' ');
+						rawCmdInput += (rawToken+' ');
 						if (!multiline)
 							System.out.print("      -> ");
 					}
@@ -72,6 +90,27 @@ public class Terminal {
 		}
 	}
 	
+	/*
+	 * the file path of LOAD DATA and COPY keeps the case it was typed in, the rest of a command is read in lower case
+	 * @param cmd the command in lower case
+	 * @param raw the command as typed
+	 */
+	private static String keepPathCase(String cmd,String raw)
+	{
+		if ((!cmd.startsWith("load ") && !cmd.startsWith("copy ")) || cmd.length() != raw.length())
+			return cmd;
+		try
+		{
+			int[] quoted = CommandTree.findQuoted(cmd);
+			return cmd.substring(0,quoted[0])+raw.substring(quoted[0],quoted[1])+cmd.substring(quoted[1]);
+		}
+		catch(Exception e)
+		{
+			// no quoted path, the syntax error is reported by the parser
+			return cmd;
+		}
+	}
+	
 	public void executeCmd(String cmd) throws Exception
 	{
 		cmd = cmd.trim();
@@ -105,12 +144,19 @@ public class Terminal {
 		case "select":
 			select(cmd);
 			break;
+		case "explain":
+			explain(cmd);
+			break;
 		case "use":
 			use(cmd);
 			break;
 		case "drop":
 			drop(cmd);
 			break;
+		case "load":
+		case "copy":
+			load(cmd);
+			break;
 		default:
 			System.out.println("ERROR 03: Unsupported Command! Type 'help;' to check supported commands!\n");
 		}
@@ -125,16 +171,19 @@ public class Terminal {
 		System.out.println("All commands are CASE INSENSITIVE!");
 		System.out.println("DDL:");
 		System.out.println("        SHOW TABLES -- Display a list of all tables in DavisDB");
+		System.out.println("        SHOW STATUS -- Display I/O, split, row and statement latency counters");
 		System.out.println("        CREATE TABLE -- Create a new table schema,i.e. a new empty table");
 		System.out.println("        CREATE INDEX -- Create a new table index");
 		System.out.println("        DROP TABLE -- Remove a table schema, and all of its contained data.");
 		System.out.println("        DROP INDEX -- Remove a table index");
 		System.out.println("DML:");
-		System.out.println("        INSERT INTO TABLE -- Inserts a single record into a table");
+		System.out.println("        INSERT INTO TABLE -- Inserts one or more records into a table");
 		System.out.println("        DELETE FROM -- Deletes one or more records from a table");
 		System.out.println("        UPDATE -- Modifies one or more records in a table");
+		System.out.println("        LOAD DATA INFILE -- Loads the rows of a CSV file into a table");
 		System.out.println("VDL:");
-		System.out.println("        SELECT-FROM-WHERE -- style query");
+		System.out.println("        SELECT-FROM-JOIN-WHERE-GROUP BY-ORDER BY-LIMIT -- style query, with COUNT, SUM, AVG, MIN and MAX");
+		System.out.println("        EXPLAIN [ANALYZE] -- Display the access path of a SELECT, UPDATE or DELETE, ANALYZE also runs it");
 		System.out.println("        EXIT -- Cleanly exits the database and saves all table and index information in non-volatile files");
 		System.out.println();
 	}
@@ -208,6 +257,14 @@ public class Terminal {
 
 	}
 	
+	public void explain(String cmd) throws Exception
+	{
+		CommandTree cTree = new CommandTree(cmd);
+		System.out.println();
+		this.cmdExecutor.execute(cTree);
+		System.out.println();
+	}
+	
 	public void use(String cmd) throws Exception
 	{
 		CommandTree cTree = new CommandTree(cmd);
@@ -218,6 +275,14 @@ public class Terminal {
 
 	}
 	
+	public void load(String cmd) throws Exception
+	{
+		CommandTree cTree = new CommandTree(cmd);
+		System.out.println();
+		this.cmdExecutor.execute(cTree);
+		System.out.println("\n");
+	}
+	
 	private void drop(String cmd) throws Exception {
 		CommandTree cTree = new CommandTree(cmd);
 		System.out.println();
@@ -5,8 +5,6 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import org.omg.CORBA.Any;
-import org.omg.CORBA.ORB;
 
 import davisDB.CommandTree.Node;
 
@@ -172,6 +170,76 @@ public class Utilities {
 
 	}
 	
+	// number of rows print buffers to size the columns before it streams the rest of a result
+	private static int printBuffer = Integer.parseInt(System.getProperty("davisdb.print.buffer", "1000"));
+	
+	/*
+	 * print the rows of a cursor as a table without holding the whole result in memory
+	 * the column width is taken from the first davisdb.print.buffer rows, a later value that is longer is printed in full
+	 * @param headerList names of the columns to print
+	 * @param cursor opened cursor over the rows
+	 */
+	public static void printRows(String[] headerList, Cursor cursor) throws Exception{
+		ArrayList<Row> buffer = new ArrayList<>();
+		Row row = null;
+		while(buffer.size()<printBuffer && (row = cursor.next()) != null)
+			buffer.add(row);
+		
+		int maxLength = 0;
+		int[] cols = new int[headerList.length];
+		for(int i=0;i<headerList.length;i++){
+			cols[i] = buffer.isEmpty() ? -1 : buffer.get(0).indexOf(headerList[i]);
+			for(Row r : buffer){
+				if(maxLength<r.toString(cols[i]).length())
+					maxLength = r.toString(cols[i]).length();
+				if(maxLength<headerList[i].length())
+					maxLength = headerList[i].length();
+			}
+		}
+		if(maxLength == 0){
+			System.out.println("Empty Set");
+			return;
+		}
+		
+		String decoration = Utilities.repeat("-", maxLength);
+		StringBuilder line = new StringBuilder(" +"+decoration+"+");
+		for(int i=0;i<headerList.length-1;i++)
+			line.append(decoration+"+");
+		String border = line.toString();
+		
+		System.out.println(border);
+		line.setLength(0);
+		for (int i=0;i<headerList.length;i++){
+			line.append(i == 0 ? " |" : "|");
+			line.append(headerList[i]);
+			line.append(Utilities.repeat(" ", maxLength-headerList[i].length()));
+		}
+		line.append("|");
+		System.out.println(line);
+		System.out.println(border);
+		
+		for(Row r : buffer)
+			printRow(r, cols, maxLength, line);
+		buffer = null;
+		if(row != null)
+			while((row = cursor.next()) != null)
+				printRow(row, cols, maxLength, line);
+		
+		System.out.println(border);
+	}
+	
+	private static void printRow(Row row, int[] cols, int maxLength, StringBuilder line){
+		line.setLength(0);
+		for (int i=0;i<cols.length;i++){
+			line.append(i == 0 ? " |" : "|");
+			String tmp = row.toString(cols[i]);
+			line.append(tmp);
+			line.append(Utilities.repeat(" ", Math.max(0, maxLength-tmp.length())));
+		}
+		line.append("|");
+		System.out.println(line);
+	}
+	
 	//get maximum length of an array
 	public static int getMaxLength(String[] array){
 		int maxLength = 0;
@@ -420,6 +488,30 @@ public class Utilities {
 		return 0;
 	}
 	
+	/*
+	 * compare column i of two rows by its type, a null sorts before every value
+	 * @return a negative number, zero or a positive number as the value of a is less than, equal to or greater than
+	 * the value of b
+	 */
+	public static int compare(Row a,Row b,int i){
+		return compare(a,i,b,i);
+	}
+	
+	/*
+	 * compare column i of row a with column j of row b, as compare(Row,Row,int)
+	 */
+	public static int compare(Row a,int i,Row b,int j){
+		if(a.isNull(i) || b.isNull(j))
+			return a.isNull(i) == b.isNull(j) ? 0 : (a.isNull(i) ? -1 : 1);
+		int typeA = a.getTypeCode(i);
+		int typeB = b.getTypeCode(j);
+		if(typeA>=0x0C || typeB>=0x0C)
+			return a.toString(i).compareTo(b.toString(j));
+		if(Row.isReal(typeA) || Row.isReal(typeB))
+			return Double.compare(a.getDouble(i), b.getDouble(j));
+		return Long.compare(a.getLong(i), b.getLong(j));
+	}
+	
 	public static boolean compare(byte rec_key,byte key,String operator) throws Exception{
 		switch(operator){
 		case "=":
@@ -604,6 +696,60 @@ public class Utilities {
 		return false;
 	}
 	
+	/*
+	 * @return position of a name in a list, -1 if it is not in the list
+	 */
+	public static int indexOf(String[] collection, String a){
+		for(int i=0;i<collection.length;i++){
+			if(collection[i].equals(a))
+				return i;
+		}
+		return -1;
+	}
+	
+	public static int indexOf(int[] collection, int a){
+		for(int i=0;i<collection.length;i++){
+			if(collection[i] == a)
+				return i;
+		}
+		return -1;
+	}
+	
+	/*
+	 * split a line of a CSV file into its fields
+	 * a field may be enclosed in double quotes to hold commas, a double quote inside it is written twice
+	 * @param line the line
+	 * @return the fields, without the enclosing quotes
+	 */
+	public static String[] parseCSVLine(String line) throws Exception{
+		ArrayList<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for(int i=0;i<line.length();i++){
+			char c = line.charAt(i);
+			if(quoted){
+				if(c == '"' && i+1<line.length() && line.charAt(i+1) == '"')
+					field.append(line.charAt(++i));
+				else if(c == '"')
+					quoted = false;
+				else
+					field.append(c);
+			}
+			else if(c == '"')
+				quoted = true;
+			else if(c == ','){
+				fields.add(field.toString().trim());
+				field.setLength(0);
+			}
+			else
+				field.append(c);
+		}
+		if(quoted)
+			throw new Exception("missing closing \" in "+line);
+		fields.add(field.toString().trim());
+		return fields.toArray(new String[]{});
+	}
+	
 	public static int calRecordLength(int[] typeCodes,boolean leaf) {
 		int length = 0;
 		
@@ -683,55 +829,9 @@ public class Utilities {
 		return length;
 	}
 	
-	public static void printVal(int typeCode,Any any){
-		switch(typeCode){
-		case 0x00:
-			 break;
-		case 0x01:
-			 break;
-		case 0x02:
-			 break;
-		case 0x03:
-			 break;
-		case 0x04:
-			byte val = any.extract_octet();
-			System.out.print(val);
-			break;
-		case 0x05:
-			short val1 = any.extract_short();
-			System.out.print(val1);
-			break;
-		case 0x06:
-			int val2 = any.extract_long();
-			System.out.print(val2);
-			break;
-		case 0x07:
-			long val3 = any.extract_longlong();
-			System.out.print(val3);
-			break;
-		case 0x08:
-			float val4 = any.extract_float();
-			System.out.print(val4);
-			break;
-		case 0x09:
-			double val5 = any.extract_double();
-			System.out.print(val5);
-			break;
-		case 0x0A:
-			long val6 = any.extract_longlong();
-			System.out.print(val6);
-			break;
-		case 0x0B:
-			long val7 = any.extract_longlong();
-			System.out.print(val7);
-			break;
-		default:
-			if(typeCode>0x0C){
-				String s = any.extract_string();
-				System.out.print(s);
-				break;
-			}
-		}
+	public static void printVal(Row row,int i){
+		if(!row.isNull(i))
+			System.out.print(row.toString(i));
 	}
 
 	public static String buildStrWithSize(String s, int remainSize) {
@@ -745,7 +845,7 @@ public class Utilities {
 		return builder.toString();
 	}
 
-	public static byte[] convertoBytes(int[] typeCodes, HashMap<Integer, Any> values, boolean leaf, int keyVal) {
+	public static byte[] convertoBytes(int[] typeCodes, Row values, boolean leaf, int keyVal) {
 		int length = calRecordLength(typeCodes,leaf);
 
 		byte[] result = new byte[length];
@@ -782,7 +882,7 @@ public class Utilities {
 			
 			//write payload value
 			for(int i=0;i<typeCodes.length;i++){
-				idx = convertToByteVal(idx,result,typeCodes[i],values.get(i));
+				idx = convertToByteVal(idx,result,typeCodes[i],values,i);
 			}
 		}
 		else{
@@ -792,7 +892,7 @@ public class Utilities {
 			
 			// write left pointer
 			buffer = ByteBuffer.allocate(4);
-			buffer.putInt(values.get(0).extract_long());
+			buffer.putInt(values.getInt(0));
 			tmp = buffer.array();
 			for(int i=0;i<tmp.length;i++)
 				result[idx++] =  tmp[i];
@@ -808,7 +908,7 @@ public class Utilities {
 	}
 
 	
-	public static int convertToByteVal(int idx, byte[] result, int typeCode, Any any){
+	public static int convertToByteVal(int idx, byte[] result, int typeCode, Row values, int col){
 
 		ByteBuffer buffer;
 		byte[] tmp;
@@ -841,61 +941,61 @@ public class Utilities {
 			 return idx;
 		case 0x04:
 			 buffer = ByteBuffer.allocate(1);
-			 buffer.put(any.extract_octet());
+			 buffer.put(values.getByte(col));
 			 result[idx++] = buffer.array()[0];
 			 return idx;
 		case 0x05:
 			 buffer = ByteBuffer.allocate(2);
-			 buffer.putShort(any.extract_short());
+			 buffer.putShort(values.getShort(col));
 			 tmp = buffer.array();
 			 for(int i=0;i<tmp.length;i++)
 				 result[idx++] = tmp[i];
 			 return idx;
 		case 0x06:
 			 buffer = ByteBuffer.allocate(4);
-			 buffer.putInt(any.extract_long());
+			 buffer.putInt(values.getInt(col));
 			 tmp = buffer.array();
 			 for(int i=0;i<tmp.length;i++)
 				 result[idx++] = tmp[i];
 			 return idx;
 		case 0x07:
 			 buffer = ByteBuffer.allocate(8);
-			 buffer.putLong(any.extract_longlong());
+			 buffer.putLong(values.getLong(col));
 			 tmp = buffer.array();
 			 for(int i=0;i<tmp.length;i++)
 				 result[idx++] = tmp[i];
 			 return idx;
 		case 0x08:
 			 buffer = ByteBuffer.allocate(4);
-			 buffer.putFloat(any.extract_float());
+			 buffer.putFloat(values.getFloat(col));
 			 tmp = buffer.array();
 			 for(int i=0;i<tmp.length;i++)
 				 result[idx++] = tmp[i];
 			 return idx;
 		case 0x09:
 			 buffer = ByteBuffer.allocate(8);
-			 buffer.putDouble(any.extract_double());
+			 buffer.putDouble(values.getDouble(col));
 			 tmp = buffer.array();
 			 for(int i=0;i<tmp.length;i++)
 				 result[idx++] = tmp[i];
 			 return idx;
 		case 0x0A:
 			 buffer = ByteBuffer.allocate(8);
-			 buffer.putLong(any.extract_longlong());
+			 buffer.putLong(values.getLong(col));
 			 tmp = buffer.array();
 			 for(int i=0;i<tmp.length;i++)
 				 result[idx++] = tmp[i];
 			return idx;
 		case 0x0B:
 			 buffer = ByteBuffer.allocate(8);
-			 buffer.putLong(any.extract_longlong());
+			 buffer.putLong(values.getLong(col));
 			 tmp = buffer.array();
 			 for(int i=0;i<tmp.length;i++)
 				 result[idx++] = tmp[i];
 			 return idx;
 		default:
 			if(typeCode>0x0C){
-				String s = any.extract_string();
+				String s = values.getText(col);
 				if(s!=null)
 					tmp=s.getBytes();
 				else
@@ -908,7 +1008,7 @@ public class Utilities {
 	}
 
 	public static void checkConstraints(String[] colNames, HashMap<String, HashMap<String, String>> constraints,
-			HashMap<String, byte[]> valueList, ArrayList<Integer> typeCodes, HashMap<Integer,Any> comValList,boolean returnVal) throws Exception {
+			HashMap<String, byte[]> valueList, ArrayList<Integer> typeCodes, Row comValList,boolean returnVal) throws Exception {
 			HashMap<String,String> cons;
 			for(int i=0;i<colNames.length;i++){
 				cons = constraints.get(colNames[i]);
@@ -950,12 +1050,9 @@ public class Utilities {
 	}
 	
 	private static void setReturnValue(int idx,String column_type, String value, String default_val,
-			ArrayList<Integer> typeCodes, HashMap<Integer,Any> comValList) throws Exception {
-			org.omg.CORBA.ORB orb = ORB.init();
-			Any any;
+			ArrayList<Integer> typeCodes, Row comValList) throws Exception {
 			switch(column_type){
 			case "tinyint":
-			    any = orb.create_any();
 				if(value!=null){
 					if (value.contains("\""))
 						value = value.substring(value.indexOf('"')+1,value.lastIndexOf('"'));
@@ -963,23 +1060,19 @@ public class Utilities {
 						value = value.substring(value.indexOf('\'')+1,value.lastIndexOf('\''));
 					if(value.toLowerCase().trim().equals("null")){
 						typeCodes.add(0x00);
-						any.insert_octet((byte) 0);
-						comValList.put(idx,any);
+						comValList.setNull(idx,0x00);
 					}
 					else{
 						typeCodes.add(0x04);
-						any.insert_octet(Byte.parseByte(value));
-						comValList.put(idx,any);
+						comValList.setLong(idx,0x04,Byte.parseByte(value));
 					}
 				}
 				else{
 					typeCodes.add(0x00);
-					any.insert_octet((byte) 0);
-					comValList.put(idx,any);
+					comValList.setNull(idx,0x00);
 				}
 				break;
 			case "smallint":
-				any = orb.create_any();
 				if(value != null){
 					if (value.contains("\""))
 						value = value.substring(value.indexOf('"')+1,value.lastIndexOf('"'));
@@ -987,23 +1080,19 @@ public class Utilities {
 						value = value.substring(value.indexOf('\'')+1,value.lastIndexOf('\''));
 					if(value.toLowerCase().trim().equals("null")){
 						typeCodes.add(0x01);
-						any.insert_short((short) 0);
-						comValList.put(idx,any);
+						comValList.setNull(idx,0x01);
 					}
 					else{
 						typeCodes.add(0x05);
-						any.insert_short(Short.parseShort(value));
-						comValList.put(idx,any);
+						comValList.setLong(idx,0x05,Short.parseShort(value));
 					}
 				}
 				else{
 					typeCodes.add(0x01);
-					any.insert_short((short) 0);
-					comValList.put(idx,any);
+					comValList.setNull(idx,0x01);
 				}
 			    break;
 			case "int":
-				any = orb.create_any();
 				if(value!=null){
 					if (value.contains("\""))
 						value = value.substring(value.indexOf('"')+1,value.lastIndexOf('"'));
@@ -1011,23 +1100,19 @@ public class Utilities {
 						value = value.substring(value.indexOf('\'')+1,value.lastIndexOf('\''));
 					if(value.toLowerCase().trim().equals("null")){
 						typeCodes.add(0x02);
-						any.insert_long(0);
-						comValList.put(idx,any);
+						comValList.setNull(idx,0x02);
 					}
 					else{
 						typeCodes.add(0x06);
-						any.insert_long(Integer.parseInt(value));
-						comValList.put(idx,any);
+						comValList.setLong(idx,0x06,Integer.parseInt(value));
 					}
 				}
 				else{
 					typeCodes.add(0x02);
-					any.insert_long(0);
-					comValList.put(idx,any);
+					comValList.setNull(idx,0x02);
 				}
 				break;
 			case "bigint":
-				any = orb.create_any();
 				if(value!=null){
 					if (value.contains("\""))
 						value = value.substring(value.indexOf('"')+1,value.lastIndexOf('"'));
@@ -1035,24 +1120,20 @@ public class Utilities {
 						value = value.substring(value.indexOf('\'')+1,value.lastIndexOf('\''));
 					if(value.toLowerCase().trim().equals("null")){
 						typeCodes.add(0x03);
-						any.insert_longlong(0);
-						comValList.put(idx,any);
+						comValList.setNull(idx,0x03);
 					}
 					else{
 						typeCodes.add(0x07);
-						any.insert_longlong(Long.parseLong(value));
-						comValList.put(idx,any);
+						comValList.setLong(idx,0x07,Long.parseLong(value));
 					}
 				}
 				else{
 					typeCodes.add(0x03);
-					any.insert_longlong(0);
-					comValList.put(idx,any);
+					comValList.setNull(idx,0x03);
 				}
 				break;
 			case "real":
 				
-				any = orb.create_any();
 				if(value!=null){
 					if (value.contains("\""))
 						value = value.substring(value.indexOf('"')+1,value.lastIndexOf('"'));
@@ -1060,23 +1141,19 @@ public class Utilities {
 						value = value.substring(value.indexOf('\'')+1,value.lastIndexOf('\''));
 					if(value.toLowerCase().trim().equals("null")){
 						typeCodes.add(0x02);
-						any.insert_long(0);
-						comValList.put(idx,any);
+						comValList.setNull(idx,0x02);
 					}
 					else{
 						typeCodes.add(0x08);
-						any.insert_float(Float.parseFloat(value));
-						comValList.put(idx,any);
+						comValList.setDouble(idx,0x08,Float.parseFloat(value));
 					}
 				}
 				else{
 					typeCodes.add(0x02);
-					any.insert_long(0);
-					comValList.put(idx,any);
+					comValList.setNull(idx,0x02);
 				}
 				break;
 			case "double":
-				any = orb.create_any();
 				if(value!=null){
 					if (value.contains("\""))
 						value = value.substring(value.indexOf('"')+1,value.lastIndexOf('"'));
@@ -1084,23 +1161,19 @@ public class Utilities {
 						value = value.substring(value.indexOf('\'')+1,value.lastIndexOf('\''));
 					if(value.toLowerCase().trim().equals("null")){
 						typeCodes.add(0x03);
-						any.insert_longlong(0);
-						comValList.put(idx,any);
+						comValList.setNull(idx,0x03);
 					}
 					else{
 						typeCodes.add(0x09);
-						any.insert_double(Double.parseDouble(value));
-						comValList.put(idx,any);
+						comValList.setDouble(idx,0x09,Double.parseDouble(value));
 					}
 				}
 				else{
 					typeCodes.add(0x03);
-					any.insert_longlong(0);
-					comValList.put(idx,any);
+					comValList.setNull(idx,0x03);
 				}
 				break;
 			case "datetime":
-				any = orb.create_any();
 				if(value!=null){
 					if (value.contains("\""))
 						value = value.substring(value.indexOf('"')+1,value.lastIndexOf('"'));
@@ -1108,23 +1181,19 @@ public class Utilities {
 						value = value.substring(value.indexOf('\'')+1,value.lastIndexOf('\''));
 					if(value.toLowerCase().trim().equals("null")){
 						typeCodes.add(0x03);
-						any.insert_longlong(0);
-						comValList.put(idx,any);
+						comValList.setNull(idx,0x03);
 					}
 					else{
 						typeCodes.add(0x0A);
-						any.insert_longlong(Utilities.parseToZonedDateTime(value, true));
-						comValList.put(idx,any);
+						comValList.setLong(idx,0x0A,Utilities.parseToZonedDateTime(value, true));
 					}
 				}
 				else{
 					typeCodes.add(0x03);
-					any.insert_longlong(0);
-					comValList.put(idx,any);
+					comValList.setNull(idx,0x03);
 				}
 				break;
 			case "date":
-				any = orb.create_any();
 				if(value!=null){
 					if (value.contains("\""))
 						value = value.substring(value.indexOf('"')+1,value.lastIndexOf('"'));
@@ -1132,23 +1201,19 @@ public class Utilities {
 						value = value.substring(value.indexOf('\'')+1,value.lastIndexOf('\''));
 					if(value.toLowerCase().trim().equals("null")){
 						typeCodes.add(0x03);
-						any.insert_longlong(0);
-						comValList.put(idx,any);
+						comValList.setNull(idx,0x03);
 					}
 					else{
 						typeCodes.add(0x0B);
-						any.insert_longlong(Utilities.parseToZonedDateTime(value, false));
-						comValList.put(idx,any);
+						comValList.setLong(idx,0x0B,Utilities.parseToZonedDateTime(value, false));
 					}
 				}
 				else{
 					typeCodes.add(0x03);
-					any.insert_longlong(0);
-					comValList.put(idx,any);
+					comValList.setNull(idx,0x03);
 				}
 				break;
 			case "text":
-				any = orb.create_any();
 				if(value!=null && (!value.contains("\"") && !value.contains("\'"))){
 					if(!(value.toLowerCase().trim().equals("null")))
 						throw new Exception(String.format("Syntax Error: Missing \" for %s",value));
@@ -1160,19 +1225,16 @@ public class Utilities {
 						value = value.substring(value.indexOf('\'')+1,value.lastIndexOf('\''));
 					if(value.toLowerCase().trim().equals("null")){
 						typeCodes.add(0x0C+"null    ".length());  // reserve 8 bytes for future operation
-						any.insert_string("null    ");
-						comValList.put(idx,any);
+						comValList.setText(idx,"null    ");
 					}
 					else{
 						typeCodes.add(0x0C+value.length());
-						any.insert_string(value);
-						comValList.put(idx,any);
+						comValList.setText(idx,value);
 					}
 				}
 				else{
 					typeCodes.add(0x0C+default_val.length());
-					any.insert_string(default_val);
-					comValList.put(idx,any);
+					comValList.setText(idx,default_val);
 				}
 				break;
 			}
@@ -1258,200 +1320,65 @@ public class Utilities {
 		}
 	}
 
-	public static Any getData(String dataType, String whereValue) throws Exception {
-		org.omg.CORBA.ORB orb = ORB.init();
-		Any any = orb.create_any();
+	public static Value getData(String dataType, String whereValue) throws Exception {
 		dataType = dataType.toLowerCase().trim();
 		switch(dataType){
 		case "tinyint":
-			byte tmp = new Byte(whereValue).byteValue();
-			any.insert_octet(tmp);
-			return any;
+			return Value.ofLong(0x04,Byte.parseByte(whereValue));
 		case "smallint":
-			short tmp2 = new Short(whereValue).shortValue();
-			any.insert_short(tmp2);
-			return any;
+			return Value.ofLong(0x05,Short.parseShort(whereValue));
 		case "int":
-			int tmp3 = new Integer(whereValue).intValue();
-			any.insert_long(tmp3);
-			return any;
+			return Value.ofLong(0x06,Integer.parseInt(whereValue));
 		case "bigint":
-			long tmp4 = new Long(whereValue).longValue();
-			any.insert_longlong(tmp4);
-			return any;
+			return Value.ofLong(0x07,Long.parseLong(whereValue));
 		case "real":
-			float tmp5 = new Float(whereValue).floatValue();
-			any.insert_float(tmp5);
-			return any;
+			return Value.ofDouble(0x08,Float.parseFloat(whereValue));
 		case "double":
-			double tmp6 = new Double(whereValue).doubleValue();
-			any.insert_double(tmp6);
-			return any;
+			return Value.ofDouble(0x09,Double.parseDouble(whereValue));
 		case "datetime":
-			long tmp7 = new Long(Utilities.parseToZonedDateTime(whereValue, true)).longValue();
-			any.insert_longlong(tmp7);
-			return any;
+			return Value.ofLong(0x0A,Utilities.parseToZonedDateTime(whereValue, true));
 		case "date":
-			long tmp8 = new Long(Utilities.parseToZonedDateTime(whereValue, false)).longValue();
-			any.insert_longlong(tmp8);
-			return any;
+			return Value.ofLong(0x0B,Utilities.parseToZonedDateTime(whereValue, false));
 		default:
-			any.insert_string(whereValue);
-			return any;
+			return Value.ofText(whereValue);
 		}
 	}
 	
-	public static Any getData(String dataType, String whereValue, int colIndex,HashMap<Integer,Integer> typeCodeList) throws Exception {
-		org.omg.CORBA.ORB orb = ORB.init();
-		Any any = orb.create_any();
+	public static Value getData(String dataType, String whereValue, int colIndex,HashMap<Integer,Integer> typeCodeList) throws Exception {
 		dataType = dataType.toLowerCase().trim();
+		boolean isNull = whereValue == null || whereValue.toLowerCase().trim().equals("null");
+		Value val;
 		switch(dataType){
 		case "tinyint":
-			if(whereValue != null && !(whereValue.toLowerCase().trim().equals("null"))){
-				typeCodeList.put(colIndex, 0x04);
-				byte tmp = new Byte(whereValue).byteValue();
-				any.insert_octet(tmp);
-			}
-			else{
-				typeCodeList.put(colIndex,0x00);
-				byte tmp = new Byte((byte) 0).byteValue();
-				any.insert_octet(tmp);
-			}
-			return any;
+			val = isNull ? Value.ofNull(0x00) : Value.ofLong(0x04,Byte.parseByte(whereValue));
+			break;
 		case "smallint":
-			if(whereValue != null && !(whereValue.toLowerCase().trim().equals("null"))){
-				typeCodeList.put(colIndex, 0x05);
-				short tmp2 = new Short(whereValue).shortValue();
-				any.insert_short(tmp2);
-			}
-			else{
-				typeCodeList.put(colIndex, 0x01);
-				short tmp2 = new Short((short) 0).shortValue();
-				any.insert_short(tmp2);
-			}
-			return any;
+			val = isNull ? Value.ofNull(0x01) : Value.ofLong(0x05,Short.parseShort(whereValue));
+			break;
 		case "int":
-			if(whereValue != null && !(whereValue.toLowerCase().trim().equals("null"))){
-				typeCodeList.put(colIndex, 0x06);
-				int tmp3 = new Integer(whereValue).intValue();
-				any.insert_long(tmp3);
-			}
-			else{
-				typeCodeList.put(colIndex, 0x02);
-				int tmp3 = new Integer(0).intValue();
-				any.insert_long(tmp3);
-			}
-			return any;
+			val = isNull ? Value.ofNull(0x02) : Value.ofLong(0x06,Integer.parseInt(whereValue));
+			break;
 		case "bigint":
-			if(whereValue != null && !(whereValue.toLowerCase().trim().equals("null"))){
-				typeCodeList.put(colIndex, 0x07);
-				long tmp4 = new Long(whereValue).longValue();
-				any.insert_longlong(tmp4);
-			}
-			else{
-				typeCodeList.put(colIndex, 0x03);
-				long tmp4 = new Long(0).longValue();
-				any.insert_longlong(tmp4);
-			}
-			return any;
+			val = isNull ? Value.ofNull(0x03) : Value.ofLong(0x07,Long.parseLong(whereValue));
+			break;
 		case "real":
-			if(whereValue != null && !(whereValue.toLowerCase().trim().equals("null"))){
-				typeCodeList.put(colIndex, 0x08);
-				float tmp5 = new Float(whereValue).floatValue();
-				any.insert_float(tmp5);
-			}
-			else{
-				typeCodeList.put(colIndex, 0x02);
-				float tmp5 = new Float(0).floatValue();
-				any.insert_float(tmp5);
-			}
-			return any;
+			val = isNull ? Value.ofNull(0x02) : Value.ofDouble(0x08,Float.parseFloat(whereValue));
+			break;
 		case "double":
-			if(whereValue != null && !(whereValue.toLowerCase().trim().equals("null"))){
-				typeCodeList.put(colIndex, 0x09);
-				double tmp6 = new Double(whereValue).doubleValue();
-				any.insert_double(tmp6);
-			}
-			else{
-				typeCodeList.put(colIndex, 0x03);
-				double tmp6 = new Double(0).doubleValue();
-				any.insert_double(tmp6);
-			}
-			return any;
+			val = isNull ? Value.ofNull(0x03) : Value.ofDouble(0x09,Double.parseDouble(whereValue));
+			break;
 		case "datetime":
-			if(whereValue != null && !(whereValue.toLowerCase().trim().equals("null"))){
-				typeCodeList.put(colIndex, 0x0A);
-				long tmp7 = new Long(Utilities.parseToZonedDateTime(whereValue,true)).longValue();
-				any.insert_longlong(tmp7);
-			}
-			else{
-				typeCodeList.put(colIndex, 0x03);
-				long tmp7 = new Long(0).longValue();
-				any.insert_longlong(tmp7);
-			}
-			return any;
+			val = isNull ? Value.ofNull(0x03) : Value.ofLong(0x0A,Utilities.parseToZonedDateTime(whereValue,true));
+			break;
 		case "date":
-			if(whereValue != null && !(whereValue.toLowerCase().trim().equals("null"))){
-				typeCodeList.put(colIndex, 0x0B);
-				long tmp8 = new Long(Utilities.parseToZonedDateTime(whereValue,false)).longValue();
-				any.insert_longlong(tmp8);
-			}
-			else{
-				typeCodeList.put(colIndex, 0x03);
-				long tmp8 = new Long(0).longValue();
-				any.insert_longlong(tmp8);
-			}
-			return any;
-		default:
-			typeCodeList.put(colIndex, 0x0C+whereValue.length());
-			any.insert_string(whereValue);
-			return any;
-		}
-	}
-	
-	public static String getStrData(Any any, int typeCode){
-		switch(typeCode){
-		case 0x00:
-			 return "null";
-		case 0x01:
-			 return "null";
-		case 0x02:
-			 return "null";
-		case 0x03:
-			 return "null";
-		case 0x04:
-			byte val = any.extract_octet();
-			return Byte.toString(val);
-		case 0x05:
-			short val1 = any.extract_short();
-			return Short.toString(val1);
-		case 0x06:
-			int val2 = any.extract_long();
-			return Integer.toString(val2);
-		case 0x07:
-			long val3 = any.extract_longlong();
-			return Long.toString(val3);
-		case 0x08:
-			float val4 = any.extract_float();
-			return Float.toString(val4);
-		case 0x09:
-			double val5 = any.extract_double();
-			return Double.toString(val5);
-		case 0x0A:
-			long val6 = any.extract_longlong();
-			java.time.ZonedDateTime datetime = toZonedDateTime(val6);
-			return datetime.toLocalDateTime().toString();
-		case 0x0B:
-			long val7 = any.extract_longlong();
-			java.time.ZonedDateTime datetime2 = toZonedDateTime(val7);
-			return datetime2.toLocalDate().toString();
+			val = isNull ? Value.ofNull(0x03) : Value.ofLong(0x0B,Utilities.parseToZonedDateTime(whereValue,false));
+			break;
 		default:
-			if(typeCode>0x0C){
-				String s = any.extract_string();
-				return s;
-			}
+			val = Value.ofText(whereValue);
+			break;
 		}
-		return null;
+		typeCodeList.put(colIndex, val.getTypeCode());
+		return val;
 	}
 }
 
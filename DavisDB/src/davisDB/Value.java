@@ -0,0 +1,105 @@
+package davisDB;
+
+/*
+ *  A single typed value, e.g. the value of a where condition or of a SET clause.
+ *  The type code is the one used in the record header, see Utilities.TypeCode.
+ *  Integer, date and datetime values are held in a long, real and double values as the raw bits of a double.
+ */
+public final class Value {
+
+	// type code of the value
+	private final int typeCode;
+
+	// integer value or raw bits of a real value
+	private final long bits;
+
+	// text value, null for other types
+	private final String text;
+
+	Value(int typeCode,long bits,String text){
+		this.typeCode = typeCode;
+		this.bits = bits;
+		this.text = text;
+	}
+
+	/*
+	 * @param typeCode tinyint, smallint, int, bigint, datetime, date or a null type code
+	 * @param val the value
+	 */
+	public static Value ofLong(int typeCode,long val){
+		return new Value(typeCode,val,null);
+	}
+
+	/*
+	 * @param typeCode real or double type code
+	 * @param val the value
+	 */
+	public static Value ofDouble(int typeCode,double val){
+		return new Value(typeCode,Double.doubleToRawLongBits(val),null);
+	}
+
+	/*
+	 * @param val the text, its type code is 0x0C + length
+	 */
+	public static Value ofText(String val){
+		return new Value(0x0C+val.length(),0,val);
+	}
+
+	public static Value ofNull(int typeCode){
+		return new Value(typeCode,0,null);
+	}
+
+	public int getTypeCode(){
+		return this.typeCode;
+	}
+
+	public boolean isNull(){
+		return this.typeCode<0x04;
+	}
+
+	long getBits(){
+		return this.bits;
+	}
+
+	public byte getByte(){
+		return (byte) getLong();
+	}
+
+	public short getShort(){
+		return (short) getLong();
+	}
+
+	public int getInt(){
+		return (int) getLong();
+	}
+
+	public long getLong(){
+		if(Row.isReal(this.typeCode))
+			return (long) Double.longBitsToDouble(this.bits);
+		return this.bits;
+	}
+
+	public float getFloat(){
+		return (float) getDouble();
+	}
+
+	public double getDouble(){
+		if(Row.isReal(this.typeCode))
+			return Double.longBitsToDouble(this.bits);
+		return this.bits;
+	}
+
+	/*
+	 * @return the text, "null" for a null value
+	 */
+	public String getText(){
+		if(this.text == null && isNull())
+			return "null";
+		return this.text;
+	}
+
+	@Override
+	public String toString(){
+		return Row.format(this.typeCode, this.bits, this.text);
+	}
+}
@@ -0,0 +1,510 @@
+package davisDB;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/*
+ *  Append-only redo log of page images, davisbase.wal in the working directory.
+ *  With the log a statement never writes a table file in place. When a statement ends, CommandExecutor commits it:
+ *  every page the statement changed is appended to the log followed by a commit record. A dirty page evicted from the
+ *  buffer pool before that goes to the log as well. The table files are only written by a checkpoint, which copies the
+ *  newest image of every logged page into its file once the log grows beyond -Ddavisdb.wal.checkpoint bytes, at EXIT
+ *  and after recovery. A crash in the middle of a statement (e.g. during a page split) therefore leaves the table files
+ *  as they were after the last checkpoint, and recovery replays the committed statements on top of them.
+ *
+ *  The log is synced to the disk according to -Ddavisdb.wal.sync:
+ *  commit - on every commit
+ *  group  - (default) once -Ddavisdb.wal.group commits (default 16) are waiting, or by a timer -Ddavisdb.wal.delay
+ *           milliseconds (default 100) after the oldest waiting one, so an idle session is synced as well. A statement
+ *           does not wait for the sync, the statements of the last delay before a crash may be lost but never a part of one
+ *  off    - only at checkpoints, left to the operating system otherwise
+ *
+ *  -Ddavisdb.wal=off turns the log off, pages are then written back in place as before.
+ *  Only the raf backend is logged, the mmap backend writes the mapping directly.
+ *
+ *  records, each followed by the CRC32 of its bytes as a long:
+ *  page   - 0x01, file path (writeUTF), page size (int), page number (int), file length (long), page content
+ *  commit - 0x02
+ *  drop   - 0x03, file path (writeUTF), the file was deleted, its earlier pages must not be replayed
+ */
+public class WriteAheadLog {
+
+	public static enum Sync{
+		COMMIT,GROUP,OFF;
+
+		public static Sync parse(String name){
+			name = name.toLowerCase().trim();
+			if(name.equals("commit"))
+				return COMMIT;
+			if(name.equals("off"))
+				return OFF;
+			return GROUP;
+		}
+	}
+
+	private static final byte PAGE = 0x01;
+	private static final byte COMMIT = 0x02;
+	private static final byte DROP = 0x03;
+
+	// the only log of the process, null until first use
+	private static WriteAheadLog instance = null;
+
+	// the log is used
+	private static boolean enabled = !System.getProperty("davisdb.wal", "on").toLowerCase().trim().equals("off");
+
+	// sync policy
+	private Sync sync;
+
+	// commits per sync of the group policy
+	private int group;
+
+	// longest time a commit waits for its sync under the group policy, in milliseconds
+	private long delay;
+
+	// log size that triggers a checkpoint, in bytes
+	private long checkpointSize;
+
+	private File file;
+	private RandomAccessFile log;
+
+	// end of the log
+	private long end = 0;
+
+	// records were appended since the last commit record
+	private boolean open = false;
+
+	// commits appended since the last sync, and the time of the oldest of them
+	private int waitingCommits = 0;
+	private long oldestWaiting = 0;
+
+	// the log was written since the last sync
+	private boolean unsynced = false;
+
+	// runs the sync of the group policy once the delay of the oldest waiting commit expires, null until first needed
+	private Timer timer = null;
+	private boolean scheduled = false;
+
+	// (file id, page number) -> newest image of a page in the log that is not written into its file yet
+	private HashMap<Long,Image> images = new HashMap<>();
+
+	// counters
+	private long commits = 0;
+	private long syncs = 0;
+	private long checkpoints = 0;
+	private long loggedPages = 0;
+	private long loggedBytes = 0;
+
+	/*
+	 *  a page image in the log
+	 */
+	private static class Image{
+		private PageFile.Shared file;
+		private int pageNumber;
+
+		// address of the page content in the log
+		private long offset;
+
+		public Image(PageFile.Shared file,int pageNumber,long offset){
+			this.file = file;
+			this.pageNumber = pageNumber;
+			this.offset = offset;
+		}
+	}
+
+	private WriteAheadLog(File file) throws IOException{
+		this.file = file;
+		this.sync = Sync.parse(System.getProperty("davisdb.wal.sync", "group"));
+		this.group = Math.max(1, Integer.parseInt(System.getProperty("davisdb.wal.group", "16")));
+		this.delay = Long.parseLong(System.getProperty("davisdb.wal.delay", "100"));
+		this.checkpointSize = Long.parseLong(System.getProperty("davisdb.wal.checkpoint", "16777216"));
+		recover();
+		this.log = new RandomAccessFile(file,"rw");
+		this.log.setLength(0);
+		Runtime.getRuntime().addShutdownHook(new Thread(){
+			@Override
+			public void run(){
+				// commits waiting for the group sync survive a normal exit
+				try{
+					synchronized(WriteAheadLog.this){
+						if(WriteAheadLog.this.log != null)
+							WriteAheadLog.this.log.getFD().sync();
+					}
+				}
+				catch(IOException e){
+					System.err.println(e);
+				}
+			}
+		});
+	}
+
+	/*
+	 * @return the log of the process, null if the log is turned off
+	 *         the first call replays what a crashed process left in the log
+	 */
+	public static synchronized WriteAheadLog getInstance() throws IOException{
+		if(!enabled)
+			return null;
+		if(instance == null)
+			instance = new WriteAheadLog(new File(System.getProperty("user.dir"),"davisbase.wal"));
+		return instance;
+	}
+
+	/*
+	 * @return the log of the process if it is opened already, null otherwise
+	 */
+	static synchronized WriteAheadLog getOpened(){
+		return instance;
+	}
+
+	private static long key(int fileId,int pageNumber){
+		return ((long)fileId<<32) | (pageNumber & 0xFFFFFFFFL);
+	}
+
+	/*
+	 * append the image of a page, called by the buffer pool
+	 * @param file owner file
+	 * @param pageNumber page number inside the file
+	 * @param page content of the page
+	 */
+	synchronized void appendPage(PageFile.Shared file,int pageNumber,byte[] page) throws IOException{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(page.length+64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(PAGE);
+		out.writeUTF(file.getPath());
+		out.writeInt(file.getPageSize());
+		out.writeInt(pageNumber);
+		out.writeLong(file.getLength());
+		long offset = this.end+out.size();
+		out.write(page, 0, file.getPageSize());
+		append(bytes,out);
+		this.images.put(key(file.getId(),pageNumber), new Image(file,pageNumber,offset));
+		this.loggedPages++;
+	}
+
+	/*
+	 * @param file owner file
+	 * @param pageNumber page number inside the file
+	 * @param page filled with the newest image of the page
+	 * @return the log holds an image of the page, otherwise it must be read from its file
+	 */
+	synchronized boolean readPage(PageFile.Shared file,int pageNumber,byte[] page) throws IOException{
+		Image image = this.images.get(key(file.getId(),pageNumber));
+		if(image == null)
+			return false;
+		this.log.seek(image.offset);
+		this.log.readFully(page, 0, file.getPageSize());
+		return true;
+	}
+
+	/*
+	 * @param file the file
+	 * @return the log holds pages of the file that are not written into it yet
+	 */
+	synchronized boolean holds(PageFile.Shared file){
+		for(Image image : this.images.values())
+			if(image.file == file)
+				return true;
+		return false;
+	}
+
+	/*
+	 * forget the pages of a deleted file, called by the buffer pool when it discards the file
+	 * @param file the deleted file
+	 */
+	synchronized void drop(PageFile.Shared file) throws IOException{
+		boolean logged = false;
+		Iterator<Image> it = this.images.values().iterator();
+		while(it.hasNext()){
+			if(it.next().file == file){
+				it.remove();
+				logged = true;
+			}
+		}
+		if(!logged)
+			return;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(DROP);
+		out.writeUTF(file.getPath());
+		append(bytes,out);
+	}
+
+	/*
+	 * end the current statement: log every page it changed, append a commit record and sync as the policy says
+	 */
+	public void commit() throws IOException{
+		BufferPool pool = BufferPool.getInstance();
+		// the pool calls back into the log while it holds its own lock, take the locks in the same order
+		synchronized(pool){
+			synchronized(this){
+				pool.logPages(this);
+				if(!this.open)
+					return;
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(bytes);
+				out.writeByte(COMMIT);
+				append(bytes,out);
+				this.open = false;
+				this.commits++;
+				if(this.waitingCommits++ == 0)
+					this.oldestWaiting = System.currentTimeMillis();
+				if(this.sync == Sync.COMMIT || (this.sync == Sync.GROUP &&
+						(this.waitingCommits>=this.group || System.currentTimeMillis()-this.oldestWaiting>=this.delay)))
+					force();
+				else if(this.sync == Sync.GROUP)
+					schedule();
+				if(this.end>=this.checkpointSize)
+					checkpoint();
+			}
+		}
+	}
+
+	/*
+	 * sync the log to the disk
+	 */
+	public synchronized void force() throws IOException{
+		this.waitingCommits = 0;
+		if(!this.unsynced)
+			return;
+		this.log.getFD().sync();
+		this.unsynced = false;
+		this.syncs++;
+	}
+
+	/*
+	 * let the timer sync the waiting commits once the delay of the oldest one expires, unless a commit syncs them first
+	 */
+	private void schedule(){
+		if(this.scheduled)
+			return;
+		if(this.timer == null)
+			this.timer = new Timer("davisdb-wal-sync",true);
+		this.scheduled = true;
+		this.timer.schedule(new TimerTask(){
+			@Override
+			public void run(){
+				synchronized(WriteAheadLog.this){
+					WriteAheadLog.this.scheduled = false;
+					try{
+						if(WriteAheadLog.this.waitingCommits>0)
+							force();
+					}
+					catch(IOException e){
+						System.err.println(e);
+					}
+				}
+			}
+		}, Math.max(0, this.oldestWaiting+this.delay-System.currentTimeMillis()));
+	}
+
+	/*
+	 * write the newest image of every logged page into its file, sync the files and empty the log
+	 * only called right after a commit, so every image in the log belongs to a committed statement
+	 */
+	public void checkpoint() throws IOException{
+		BufferPool pool = BufferPool.getInstance();
+		synchronized(pool){
+			synchronized(this){
+				force();
+				HashMap<PageFile.Shared,ArrayList<Image>> byFile = new HashMap<>();
+				for(Image image : this.images.values()){
+					if(!byFile.containsKey(image.file))
+						byFile.put(image.file, new ArrayList<Image>());
+					byFile.get(image.file).add(image);
+				}
+				for(PageFile.Shared file : byFile.keySet()){
+					// a file deleted without being discarded is not brought back
+					if(!new File(file.getPath()).exists())
+						continue;
+					byte[] page = new byte[file.getPageSize()];
+					boolean opened = file.openForWrite();
+					try{
+						for(Image image : byFile.get(file)){
+							this.log.seek(image.offset);
+							this.log.readFully(page);
+							file.writePage(image.pageNumber, page);
+						}
+						file.sync();
+					}
+					finally{
+						if(opened)
+							file.closeForWrite();
+					}
+				}
+				this.images.clear();
+				pool.markWritten();
+				this.log.setLength(0);
+				this.log.getFD().sync();
+				this.end = 0;
+				this.checkpoints++;
+			}
+		}
+	}
+
+	/*
+	 * append a record and its checksum
+	 */
+	private void append(ByteArrayOutputStream bytes,DataOutputStream out) throws IOException{
+		out.flush();
+		CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		out.writeLong(crc.getValue());
+		out.flush();
+		this.log.seek(this.end);
+		this.log.write(bytes.toByteArray());
+		this.end += bytes.size();
+		this.loggedBytes += bytes.size();
+		this.unsynced = true;
+		this.open = true;
+	}
+
+	/*
+	 *  a page of a committed statement found by recovery
+	 */
+	private static class Redo{
+		private String path;
+		private int pageSize;
+		private int pageNumber;
+		private long length;
+		private byte[] page;
+	}
+
+	/*
+	 * replay the pages of the committed statements in the log into their files
+	 * the log ends at the first incomplete or damaged record, the pages after the last commit record are ignored
+	 */
+	private void recover() throws IOException{
+		if(!this.file.exists() || this.file.length() == 0)
+			return;
+		ArrayList<Redo> pending = new ArrayList<>();
+		LinkedHashMap<String,Redo> redo = new LinkedHashMap<>();
+		int statements = 0;
+		CRC32 crc = new CRC32();
+		DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(new FileInputStream(this.file)),crc));
+		try{
+			while(true){
+				crc.reset();
+				byte type = in.readByte();
+				Redo page = null;
+				String dropped = null;
+				if(type == PAGE){
+					page = new Redo();
+					page.path = in.readUTF();
+					page.pageSize = in.readInt();
+					page.pageNumber = in.readInt();
+					page.length = in.readLong();
+					if(page.pageSize<=0 || page.pageSize>65536)
+						break;
+					page.page = new byte[page.pageSize];
+					in.readFully(page.page);
+				}
+				else if(type == DROP)
+					dropped = in.readUTF();
+				else if(type != COMMIT)
+					break;
+				long sum = crc.getValue();
+				if(in.readLong() != sum)
+					break;
+				if(page != null)
+					pending.add(page);
+				else if(dropped != null){
+					Iterator<Redo> it = redo.values().iterator();
+					while(it.hasNext())
+						if(it.next().path.equals(dropped))
+							it.remove();
+					it = pending.iterator();
+					while(it.hasNext())
+						if(it.next().path.equals(dropped))
+							it.remove();
+				}
+				else{
+					for(Redo p : pending){
+						String key = p.path+"#"+p.pageNumber;
+						// keep the order of the first write, a newer image replaces an older one
+						redo.remove(key);
+						redo.put(key, p);
+					}
+					pending.clear();
+					statements++;
+				}
+			}
+		}
+		catch(EOFException e){
+			// torn tail of the log
+		}
+		finally{
+			in.close();
+		}
+
+		HashMap<String,RandomAccessFile> files = new HashMap<>();
+		try{
+			for(Redo p : redo.values()){
+				RandomAccessFile raf = files.get(p.path);
+				if(raf == null){
+					File f = new File(p.path);
+					if(f.getParentFile() != null && !f.getParentFile().exists())
+						continue;
+					raf = new RandomAccessFile(f,"rw");
+					files.put(p.path, raf);
+				}
+				long address = (long)p.pageNumber*p.pageSize;
+				if(address>=p.length)
+					continue;
+				raf.seek(address);
+				raf.write(p.page, 0, (int) Math.min(p.pageSize, p.length-address));
+			}
+			for(RandomAccessFile raf : files.values())
+				raf.getFD().sync();
+		}
+		finally{
+			for(RandomAccessFile raf : files.values())
+				raf.close();
+		}
+		if(!redo.isEmpty())
+			System.out.println(String.format("Recovered %d pages of %d statements from the write-ahead log", redo.size(), statements));
+	}
+
+	public synchronized long getCommits(){
+		return this.commits;
+	}
+
+	public synchronized long getSyncs(){
+		return this.syncs;
+	}
+
+	public synchronized long getCheckpoints(){
+		return this.checkpoints;
+	}
+
+	public synchronized long getLoggedPages(){
+		return this.loggedPages;
+	}
+
+	public synchronized long getLoggedBytes(){
+		return this.loggedBytes;
+	}
+
+	public synchronized long getSize(){
+		return this.end;
+	}
+
+	@Override
+	public synchronized String toString(){
+		return String.format("WriteAheadLog[sync=%s, commits=%d, syncs=%d, checkpoints=%d, pages=%d, bytes=%d]",
+				this.sync,this.commits,this.syncs,this.checkpoints,this.loggedPages,this.loggedBytes);
+	}
+}